@@ -126,6 +126,13 @@ public abstract class Connection
      */
     private String currentSchemaName_ = null;
 
+    /**
+     * Sections of closed prepared statements, kept prepared on the server
+     * for reuse by later statements with the same SQL. Null if the
+     * statementCacheSize property is zero.
+     */
+    PreparedSectionCache preparedSectionCache_ = null;
+
     public boolean autoCommit_ = true;
     protected boolean inUnitOfWork_ = false; // This means a transaction is in progress.
 
@@ -234,6 +241,8 @@ public abstract class Connection
             databaseName_ = databaseName_ + ";" + connAtrrs;
 
         retrieveMessageText_ = dataSource.getRetrieveMessageText();
+        preparedSectionCache_ =
+                newPreparedSectionCache(dataSource.getStatementCacheSize());
 
         loginTimeout_ = dataSource.getLoginTimeout();
         dataSource_ = dataSource;
@@ -266,6 +275,8 @@ public abstract class Connection
         // Extract common properties.
         databaseName_ = dataSource.getDatabaseName();
         retrieveMessageText_ = dataSource.getRetrieveMessageText();
+        preparedSectionCache_ =
+                newPreparedSectionCache(dataSource.getStatementCacheSize());
 
         loginTimeout_ = dataSource.getLoginTimeout();
         dataSource_ = dataSource;
@@ -296,6 +307,7 @@ public abstract class Connection
 
         // DERBY-3723: Reset schema to user name.
         currentSchemaName_ = this.user_;
+        invalidatePreparedSections();
         autoCommit_ = true;
         inUnitOfWork_ = false;
         holdability = ResultSet.HOLD_CURSORS_OVER_COMMIT;
@@ -320,6 +332,8 @@ public abstract class Connection
         // Extract common properties.
         user_ = ClientDataSource.getUser(properties);
         retrieveMessageText_ = ClientDataSource.getRetrieveMessageText(properties);
+        preparedSectionCache_ = newPreparedSectionCache(
+                ClientDataSource.getStatementCacheSize(properties));
 
         loginTimeout_ = driverManagerLoginTimeout;
         serverNameIP_ = serverName;
@@ -866,6 +880,7 @@ public abstract class Connection
             markStatementsClosed();
         }
         CommitAndRollbackListeners_.clear();
+        invalidatePreparedSections();
         markClosed_();
     }
 
@@ -1801,11 +1816,41 @@ public abstract class Connection
         PreparedStatement ps = newPreparedStatement_(sql, resultSetType, resultSetConcurrency, resultSetHoldability, autoGeneratedKeys, columnNames,
                 columnIndexes);
         ps.cursorAttributesToSendOnPrepare_ = ps.cacheCursorAttributesToSendOnPrepare();
-        ps.prepare();
+        if (!ps.prepareFromCache(preparedSectionCache_, currentSchemaName_)) {
+            ps.prepare();
+        }
         openStatements_.put(ps,null);
         return ps;
     }
 
+    private static PreparedSectionCache newPreparedSectionCache(int size) {
+        return size > 0 ? new PreparedSectionCache(size) : null;
+    }
+
+    /**
+     * Frees the cached prepared sections, e.g. after DDL on this connection.
+     * Statements that are open now will not cache their sections when they
+     * are closed.
+     */
+    void invalidatePreparedSections() {
+        if (preparedSectionCache_ != null) {
+            preparedSectionCache_.clear();
+        }
+    }
+
+    /**
+     * Frees the cached prepared sections if the given error suggests that the
+     * schema has changed since they were prepared.
+     *
+     * @param sqlca the SQLCA of a failed statement
+     */
+    void invalidatePreparedSections(Sqlca sqlca) {
+        if (preparedSectionCache_ != null &&
+                PreparedSectionCache.isSchemaChange(sqlca.getSqlState())) {
+            preparedSectionCache_.clear();
+        }
+    }
+
     // not sure if holding on to cursorAttributesToSendOnPrepare and restoring it is the
     // right thing to do here... because if property on the dataSource changes, we may have
     // to send different attributes, i.e. SENSITIVE DYNAMIC, instead of SENSITIVE STATIC.
@@ -2123,6 +2168,7 @@ public abstract class Connection
         open_ = false;
         completeLocalRollback();
         markStatementsClosed();
+        invalidatePreparedSections();
     }
 
     public void completeSqlca(Sqlca sqlca) {
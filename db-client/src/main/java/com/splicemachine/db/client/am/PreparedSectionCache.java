@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.client.am;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.splicemachine.db.client.am.stmtcache.StatementKey;
+
+/**
+ * A cache of prepared sections for one physical connection.
+ * <p>
+ * A closed prepared statement normally frees its section, and preparing the
+ * same SQL again flows PRPSQLSTT and the describes to the server once more.
+ * With this cache the closing statement instead checks its section in,
+ * together with the described parameter and result set metadata. The server
+ * keeps the statement prepared in that section, so a later
+ * <code>prepareStatement</code> with an equal key can take the entry out of
+ * the cache and skip the round trip.
+ * <p>
+ * An entry is owned by at most one statement at a time: {@link #take}
+ * removes it from the cache, and closing the statement puts it back. When the
+ * cache is full the least recently checked in entry is evicted and its
+ * section freed, so that the section number can be reused.
+ * <p>
+ * Every {@link #clear} starts a new generation. Statements remember the
+ * generation they were prepared in, and their sections are not cached if the
+ * cache has been cleared since, as the schema may have changed under them.
+ * <p>
+ * The cache is not synchronized; it is only accessed while holding the lock
+ * of the owning connection.
+ */
+final class PreparedSectionCache {
+
+    /** Cached entries, eldest first. */
+    private final LinkedHashMap sections;
+
+    /** Incremented whenever the cache is cleared. */
+    private int generation;
+
+    /**
+     * Creates a new, empty section cache.
+     *
+     * @param maxSize maximum number of sections in the cache
+     *
+     * @throws IllegalArgumentException if <code>maxSize</code> is less than one
+     */
+    PreparedSectionCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive: " +
+                    maxSize);
+        }
+        this.sections = new LinkedHashMap() {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() > maxSize) {
+                    ((Entry) eldest.getValue()).section.free();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the current generation of the cache, to be passed back to
+     * {@link #put} when the statement being prepared is closed.
+     */
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * Removes and returns the entry for the given key, if one is cached.
+     *
+     * @param key key of the statement being prepared
+     * @return The cached entry, or <code>null</code> if there is none.
+     */
+    Entry take(StatementKey key) {
+        return (Entry) sections.remove(key);
+    }
+
+    /**
+     * Caches a prepared section, unless an entry for the key is already
+     * cached or the cache has been cleared since the section was prepared.
+     * If the section is not cached, the caller still owns it and must free
+     * it.
+     *
+     * @param key key of the statement that owned the section
+     * @param generation the generation the section was prepared in
+     * @param section the prepared section
+     * @param parameterMetaData described parameters, may be <code>null</code>
+     * @param resultSetMetaData described result columns, may be
+     *      <code>null</code>
+     * @return <code>true</code> if the section was cached, <code>false</code>
+     *      otherwise.
+     */
+    boolean put(StatementKey key,
+                int generation,
+                Section section,
+                ColumnMetaData parameterMetaData,
+                ColumnMetaData resultSetMetaData) {
+        if (generation != this.generation || sections.containsKey(key)) {
+            return false;
+        }
+        sections.put(key,
+                new Entry(section, parameterMetaData, resultSetMetaData));
+        return true;
+    }
+
+    /**
+     * Frees all cached sections and starts a new generation.
+     */
+    void clear() {
+        for (Iterator i = sections.values().iterator(); i.hasNext();) {
+            ((Entry) i.next()).section.free();
+            i.remove();
+        }
+        generation++;
+    }
+
+    /** Returns the number of cached sections. */
+    int size() {
+        return sections.size();
+    }
+
+    /**
+     * Tells whether a failed statement suggests that the schema has changed
+     * since the cached sections were prepared. Errors of class 42 (syntax
+     * error or access rule violation) are raised when a statement is compiled,
+     * which for a statement that was already prepared means it was recompiled
+     * against a table, column or routine that has been altered or dropped.
+     *
+     * @param sqlState SQLState of the error
+     * @return <code>true</code> if the cache should be cleared
+     */
+    static boolean isSchemaChange(String sqlState) {
+        return sqlState != null && sqlState.startsWith("42");
+    }
+
+    /**
+     * A prepared section and the metadata described for it.
+     */
+    static final class Entry {
+        final Section section;
+        final ColumnMetaData parameterMetaData;
+        final ColumnMetaData resultSetMetaData;
+
+        Entry(Section section,
+              ColumnMetaData parameterMetaData,
+              ColumnMetaData resultSetMetaData) {
+            this.section = section;
+            this.parameterMetaData = parameterMetaData;
+            this.resultSetMetaData = resultSetMetaData;
+        }
+    }
+}
@@ -36,6 +36,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import com.splicemachine.db.client.ClientPooledConnection;
+import com.splicemachine.db.client.am.stmtcache.StatementKey;
+import com.splicemachine.db.client.am.stmtcache.StatementKeyFactory;
 import com.splicemachine.db.jdbc.ClientDriver;
 
 public class PreparedStatement extends Statement
@@ -82,6 +84,11 @@ public class PreparedStatement extends Statement
     // So instead of caching the scrollableRS_, we will cache the cursorName.  And re-retrieve the scrollable
     // result set from the map using this cursorName every time the PreparedStatement excutes.
     String positionedUpdateCursorName_ = null;
+
+    // Key and cache generation of the section, if it may be returned to the
+    // connection's PreparedSectionCache when this statement is closed.
+    StatementKey preparedSectionKey_ = null;
+    int preparedSectionGeneration_;
     
     // the ClientPooledConnection object used to notify of the events that occur
     // on this prepared statement object
@@ -99,6 +106,7 @@ public class PreparedStatement extends Statement
         parameterTypeList = null;
         isAutoCommittableStatement_ = true;
         isPreparedStatement_ = true;
+        preparedSectionKey_ = null;
     }
 
     protected void initResetPreparedStatement() {
@@ -316,6 +324,54 @@ public class PreparedStatement extends Statement
         }
     }
 
+    /**
+     * Takes a section already prepared for this statement's SQL from the
+     * connection's section cache, instead of preparing it on the server.
+     * Called by Connection.prepareStatementX() before prepare().
+     *
+     * @param cache the connection's section cache, or null if disabled
+     * @param schema the current schema, or null if not known on the client
+     * @return true if a cached section is used, false if the statement still
+     *      has to be prepared
+     */
+    boolean prepareFromCache(PreparedSectionCache cache, String schema) {
+        if (cache == null || schema == null || sqlMode_ == isCall__ ||
+                positionedUpdateCursorName_ != null ||
+                autoGeneratedKeys_ != java.sql.Statement.NO_GENERATED_KEYS ||
+                generatedKeysColumnNames_ != null ||
+                generatedKeysColumnIndexes_ != null) {
+            return false;
+        }
+        preparedSectionKey_ = StatementKeyFactory.newPrepared(sql_, schema,
+                resultSetType_, resultSetConcurrency_, resultSetHoldability_);
+        preparedSectionGeneration_ = cache.generation();
+
+        PreparedSectionCache.Entry entry = cache.take(preparedSectionKey_);
+        if (entry == null) {
+            return false;
+        }
+        section_.free();
+        section_ = entry.section;
+        initPreparedStatement(entry.parameterMetaData, entry.resultSetMetaData);
+        markPrepared();
+        return true;
+    }
+
+    void cachePreparedSection() {
+        PreparedSectionCache cache = connection_.preparedSectionCache_;
+        if (cache == null || preparedSectionKey_ == null || !isPoolable ||
+                section_ == null || cursorName_ != null) {
+            return;
+        }
+        if (cache.put(preparedSectionKey_, preparedSectionGeneration_,
+                section_, parameterMetaData_, resultSetMetaData_)) {
+            // Now owned by the cache, keep markClosed() from freeing them.
+            section_ = null;
+            parameterMetaData_ = null;
+            resultSetMetaData_ = null;
+        }
+    }
+
     // called immediately after the constructor by Connection prepare*() methods
     void prepare() throws SqlException {
         try {
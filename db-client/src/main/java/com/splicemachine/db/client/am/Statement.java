@@ -85,6 +85,7 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
     final static int isInsertSql__ = 0x20;        // used to recognize "insert" for auto-generated keys
     final static int isDeleteSql__ = 0x40;        // used to recognize "delete" for parsing cursorname
     final static int isUpdateSql__ = 0x80;        // used to recognize "update" for parsing cursorname
+    final static int isDdlSql__ = 0x100;          // used to invalidate the connection's prepared sections
 
 
     ColumnMetaData resultSetMetaData_; // type information for output sqlda
@@ -614,11 +615,20 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
             } else {
                 flowCloseOutsideUOW();
             }
+            cachePreparedSection();
         } finally {
             markClosed(true);
         }
     }
 
+    /**
+     * Hands the section of a statement being closed to the connection's
+     * prepared section cache. Called by closeX() once the result sets of the
+     * statement have been closed on the server; a no-op for plain statements.
+     */
+    void cachePreparedSection() {
+    }
+
     /**
      * Returns the value of the poolable hint, indicating whether
      * pooling is requested.
@@ -1437,6 +1447,9 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
         if (sqlca != null) {
             updateCount_ = sqlca.getUpdateCount();
         }
+        if (sqlUpdateMode_ == isDdlSql__) {
+            connection_.invalidatePreparedSections();
+        }
     }
 
     public void readExecuteImmediateForBatch(String sql) throws SqlException {
@@ -1611,8 +1624,12 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
         int sqlcode = sqlca.getSqlCode();
         if (sqlcode < 0) {
             agent_.accumulateReadException(new SqlException(agent_.logWriter_, sqlca));
+            connection_.invalidatePreparedSections(sqlca);
             returnValueFromProcedure_ = sqlcode;
         } else {
+            if (sqlUpdateMode_ == isDdlSql__) {
+                connection_.invalidatePreparedSections();
+            }
             updateCount_ = sqlca.getUpdateCount();
             // sometime for call statement, protocol will return updateCount_, we will always set that to 0
             // sqlMode_ is not set for statements, only for prepared statements
@@ -1843,6 +1860,7 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
         int sqlcode = sqlca.getSqlCode();
         if (sqlcode < 0) {
             connection_.agent_.accumulateReadException(new SqlException(agent_.logWriter_, sqlca));
+            connection_.invalidatePreparedSections(sqlca);
         } else if (sqlcode > 0) {
             accumulateWarning(new SqlWarning(agent_.logWriter_, sqlca));
         }
@@ -2334,7 +2352,7 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
         }
     }
 
-    private void markPrepared() {
+    void markPrepared() {
         //openOnClient_ = true;
         openOnServer_ = true;
         listenToUnitOfWork();
@@ -2549,6 +2567,15 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
         if (firstToken.equalsIgnoreCase("update")) {
             sqlUpdateMode_ = isUpdateSql__;
         }
+        if (firstToken.equalsIgnoreCase("create") ||
+                firstToken.equalsIgnoreCase("alter") ||
+                firstToken.equalsIgnoreCase("drop") ||
+                firstToken.equalsIgnoreCase("rename") ||
+                firstToken.equalsIgnoreCase("truncate") ||
+                firstToken.equalsIgnoreCase("grant") ||
+                firstToken.equalsIgnoreCase("revoke")) {
+            sqlUpdateMode_ = isDdlSql__;
+        }
     }
 
     // the sql is assumed to start with CALL... or ?=CALL...
@@ -2706,7 +2733,8 @@ public class Statement implements java.sql.Statement, StatementCallbackInterface
                 && (sqlUpdateMode_ == isInsertSql__
                 || sqlUpdateMode_ == isDeleteSql__
                 || sqlUpdateMode_ == isUpdateSql__
-                || sqlUpdateMode_ == 0)))// For any undefined pass thru statement like drop create
+                || sqlUpdateMode_ == isDdlSql__
+                || sqlUpdateMode_ == 0)))// For any undefined pass thru statement
         {
             throw new SqlException(agent_.logWriter_, 
                 new ClientMessageId(SQLState.LANG_INVALID_SQL_IN_BATCH), sql);
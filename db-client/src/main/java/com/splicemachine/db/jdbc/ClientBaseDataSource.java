@@ -400,6 +400,19 @@ public abstract class ClientBaseDataSource implements Serializable, Referenceabl
         return parseBoolean(retrieveMessageTextString, propertyDefault_retrieveMessageText);
     }
 
+    // ---------------------------- statementCacheSize -----------------------------------
+    //
+    // Number of prepared sections each connection keeps for reuse after their
+    // statements are closed, see com.splicemachine.db.client.am.PreparedSectionCache.
+    // Zero disables the cache.
+    private int statementCacheSize = propertyDefault_statementCacheSize;
+    public final static int propertyDefault_statementCacheSize = 0;
+
+    public static int getStatementCacheSize(Properties properties) {
+        String statementCacheSizeString = properties.getProperty(Attribute.CLIENT_STATEMENT_CACHE_SIZE);
+        return parseInt(statementCacheSizeString, propertyDefault_statementCacheSize);
+    }
+
     // ---------------------------- traceFile -----------------------------------
     //
     private String traceFile;
@@ -845,6 +858,14 @@ public abstract class ClientBaseDataSource implements Serializable, Referenceabl
         return this.retrieveMessageText;
     }
 
+    synchronized public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getStatementCacheSize() {
+        return this.statementCacheSize;
+    }
+
     // ---------------------------- securityMechanism -----------------------------------
     /**
      * The source security mechanism to use when connecting to this data source.
@@ -1153,6 +1174,9 @@ public abstract class ClientBaseDataSource implements Serializable, Referenceabl
         if (prop.containsKey(Attribute.CLIENT_RETIEVE_MESSAGE_TEXT)) {
             setRetrieveMessageText(getRetrieveMessageText(prop));
         }
+        if (prop.containsKey(Attribute.CLIENT_STATEMENT_CACHE_SIZE)) {
+            setStatementCacheSize(getStatementCacheSize(prop));
+        }
         if (prop.containsKey(Attribute.SSL_ATTR)) {
             sslMode = getClientSSLMode(prop);
         }
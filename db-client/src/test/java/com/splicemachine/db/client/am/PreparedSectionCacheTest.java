@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.client.am;
+
+import java.sql.ResultSet;
+
+import com.splicemachine.db.client.am.stmtcache.StatementKey;
+import com.splicemachine.db.client.am.stmtcache.StatementKeyFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the bookkeeping of the per-connection prepared section cache.
+ */
+public class PreparedSectionCacheTest {
+
+    private static final int HOLD = ResultSet.HOLD_CURSORS_OVER_COMMIT;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroMaxSizeNotAllowed() {
+        new PreparedSectionCache(0);
+    }
+
+    @Test
+    public void testTakeRemovesEntry() {
+        PreparedSectionCache cache = new PreparedSectionCache(4);
+        StatementKey key = key("values 1");
+        TrackedSection section = new TrackedSection(1);
+        ColumnMetaData rsmd = new ColumnMetaData(null);
+
+        Assert.assertNull(cache.take(key));
+        Assert.assertTrue(cache.put(key, cache.generation(), section, null, rsmd));
+
+        PreparedSectionCache.Entry entry = cache.take(key("values 1"));
+        Assert.assertNotNull(entry);
+        Assert.assertSame(section, entry.section);
+        Assert.assertNull(entry.parameterMetaData);
+        Assert.assertSame(rsmd, entry.resultSetMetaData);
+        Assert.assertNull("entry is owned by one statement at a time",
+                cache.take(key));
+        Assert.assertFalse(section.freed);
+    }
+
+    @Test
+    public void testDuplicateNotCached() {
+        PreparedSectionCache cache = new PreparedSectionCache(4);
+        StatementKey key = key("values 1");
+        TrackedSection first = new TrackedSection(1);
+        TrackedSection second = new TrackedSection(2);
+
+        Assert.assertTrue(cache.put(key, cache.generation(), first, null, null));
+        Assert.assertFalse(cache.put(key, cache.generation(), second, null, null));
+        Assert.assertSame(first, cache.take(key).section);
+        // The caller still owns a section that was not cached.
+        Assert.assertFalse(second.freed);
+    }
+
+    @Test
+    public void testEldestEvictedAndFreed() {
+        PreparedSectionCache cache = new PreparedSectionCache(2);
+        TrackedSection s1 = new TrackedSection(1);
+        TrackedSection s2 = new TrackedSection(2);
+        TrackedSection s3 = new TrackedSection(3);
+
+        cache.put(key("values 1"), cache.generation(), s1, null, null);
+        cache.put(key("values 2"), cache.generation(), s2, null, null);
+        cache.put(key("values 3"), cache.generation(), s3, null, null);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(s1.freed);
+        Assert.assertNull(cache.take(key("values 1")));
+        Assert.assertSame(s2, cache.take(key("values 2")).section);
+        Assert.assertSame(s3, cache.take(key("values 3")).section);
+        Assert.assertFalse(s2.freed);
+        Assert.assertFalse(s3.freed);
+    }
+
+    @Test
+    public void testClearFreesAndRejectsOlderGeneration() {
+        PreparedSectionCache cache = new PreparedSectionCache(4);
+        int generation = cache.generation();
+        TrackedSection cached = new TrackedSection(1);
+        cache.put(key("values 1"), generation, cached, null, null);
+
+        cache.clear();
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertTrue(cached.freed);
+        Assert.assertFalse("prepared before the cache was cleared",
+                cache.put(key("values 2"), generation,
+                        new TrackedSection(2), null, null));
+        Assert.assertTrue(cache.put(key("values 2"), cache.generation(),
+                new TrackedSection(2), null, null));
+    }
+
+    @Test
+    public void testSchemaChangeStates() {
+        Assert.assertTrue(PreparedSectionCache.isSchemaChange("42X05"));
+        Assert.assertTrue(PreparedSectionCache.isSchemaChange("42Y07"));
+        Assert.assertFalse(PreparedSectionCache.isSchemaChange("23505"));
+        Assert.assertFalse(PreparedSectionCache.isSchemaChange("40001"));
+        Assert.assertFalse(PreparedSectionCache.isSchemaChange(null));
+    }
+
+    private static StatementKey key(String sql) {
+        return StatementKeyFactory.newPrepared(sql, "APP", HOLD);
+    }
+
+    /**
+     * A generated section, which needs no agent, that records being freed.
+     */
+    private static class TrackedSection extends Section {
+        boolean freed;
+
+        TrackedSection(int sectionNumber) {
+            super(null, "SYSLH000", sectionNumber, "SQL_CURLH000C" + sectionNumber,
+                    HOLD, true);
+        }
+
+        public void free() {
+            freed = true;
+        }
+    }
+}
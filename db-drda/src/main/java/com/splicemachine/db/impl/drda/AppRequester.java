@@ -142,6 +142,18 @@ class AppRequester
 		return clientType == DNC_CLIENT;
 	}
 
+	/**
+	 * Check if the client accepts extra query blocks in reply to a CNTQRY
+	 * which doesn't specify MAXBLKEXT. Derby's client reads any number of
+	 * QRYDTA blocks, but only sends MAXBLKEXT for rowset cursors.
+	 *
+	 * @return <code>true</code> if extra query blocks may be sent when
+	 * MAXBLKEXT is not specified
+	 */
+	protected final boolean supportsDefaultExtraBlocks() {
+		return clientType == DNC_CLIENT;
+	}
+
 	/**
 	 * Check if provided JCC version level is greaterThanOrEqualTo current level
 	 *
@@ -296,6 +296,16 @@ class DDMReader
 		return (pos - count) > 0;
 	}
 
+	/**
+	 * Is there data read from the network which has not been processed yet
+	 *
+	 * @return true if the buffer holds unprocessed data
+	 */
+	protected boolean hasBufferedData()
+	{
+		return count > pos;
+	}
+
 	/**
 	 * Check for the command protocol
 	 *
@@ -305,6 +305,8 @@ class DRDAConnThread extends Thread {
                                 // DDMReader.fill(), which will happen
                                 // only when timeSlice is set.
                             }
+							if (parkIdleSession())
+								break;
 							currentTimeSlice = getTimeSlice();
 						} while ((currentTimeSlice <= 0)  || 
 							(System.currentTimeMillis() - timeStart < currentTimeSlice));
@@ -351,6 +353,38 @@ class DRDAConnThread extends Thread {
 		server.removeThread(this);
 
 	}
+	/**
+	 * Park the current session with the server if it is waiting for its
+	 * client's next request, so that this thread can work on other sessions
+	 * in the meantime. The server schedules the session again once the
+	 * client sends more data.
+	 *
+	 * @return true if the session was parked, and this thread no longer has
+	 *         a session
+	 */
+	private boolean parkIdleSession()
+	{
+		// Only sessions which have accessed their database can be picked up
+		// by another thread, see restoreRequesterState(). XA sessions and
+		// sessions with state pending in this thread stay here, and any data
+		// already read for the session would be lost.
+		if (session == null || session.state != Session.CHKSEC ||
+				session.appRequester == null ||
+				database == null || database instanceof XADatabase ||
+				databaseAccessException != null ||
+				pendingStatementTimeout >= 0 || deferredReset ||
+				reader.hasBufferedData())
+			return false;
+		if (!server.parkSession(session))
+			return false;
+		session = null;
+		database = null;
+		appRequester = null;
+		sockis = null;
+		sockos = null;
+		return true;
+	}
+
 	/**
 	 * Get input stream
 	 *
@@ -659,6 +693,30 @@ class DRDAConnThread extends Thread {
         /* All sessions MUST start as EBCDIC */
         reader.setEbcdicCcsid();
         writer.setEbcdicCcsid();
+
+		// A session which has accessed its database may have been served by
+		// another thread so far, restore what was negotiated with its
+		// application requester.
+		if (session.state == Session.CHKSEC && session.appRequester != null)
+			restoreRequesterState();
+	}
+
+	/**
+	 * Restore the state negotiated with the application requester of a
+	 * session which has accessed its database, as set by EXCSAT, ACCSEC and
+	 * ACCRDB when they were processed.
+	 */
+	private void restoreRequesterState()
+	{
+		sqlamLevel = appRequester.getManagerLevel(CodePoint.SQLAM);
+		if (appRequester.getClientType() == AppRequester.DNC_CLIENT) {
+			sendWarningsOnCNTQRY = true;
+			if (appRequester.greaterThanOrEqualTo(10, 2, 0))
+				diagnosticLevel = CodePoint.DIAGLVL1;
+		}
+		/* ACCSECRD is the last reply that is mandatorily in EBCDIC */
+		if (appRequester.supportsUtf8Ccsid())
+			switchToUtf8();
 	}
 	/**      
 	 * In initial state for a session, 
@@ -2469,6 +2527,7 @@ class DRDAConnThread extends Thread {
 		int nbrrow = 1;
 		int blksize = 0;
 		int maxblkext = -1;
+		boolean gotMaxblkext = false;
 		long qryinsid;
 		boolean gotQryinsid = false;
 		int qryscrorn = CodePoint.QRYSCRREL;
@@ -2572,6 +2631,7 @@ class DRDAConnThread extends Thread {
 				case CodePoint.MAXBLKEXT:
 					checkLength(CodePoint.MAXBLKEXT, 2);
 					maxblkext = reader.readSignedNetworkShort();
+					gotMaxblkext = true;
 					if (SanityManager.DEBUG)
 						trace("maxblkext = "+maxblkext);
 					break;
@@ -2624,6 +2684,10 @@ class DRDAConnThread extends Thread {
 			skipRemainder(true);
 			return null;
 		}
+		// Only send extra query blocks to requesters which didn't ask
+		// for them if we know they can read them
+		if (!gotMaxblkext && !appRequester.supportsDefaultExtraBlocks())
+			maxblkext = CodePoint.MAXBLKEXT_DEFAULT;
 		stmt.setQueryOptions(blksize,qryrelscr,qryrownbr,qryrfrtbl,nbrrow,maxblkext,
 						 qryscrorn,qryrowsns,qryblkrst,qryrtndta,qryrowset,
 						 rtnextdta);
@@ -6929,17 +6993,13 @@ class DRDAConnThread extends Thread {
 	 *  Since splitting is expensive, the server makes some attempt to
 	 *  avoid it. Currently, the server's algorithm for this is to
 	 *  compute the length of the current row, and to stop trying to pack
-	 *  more rows into this buffer if another row of that length would
-	 *  not fit. However, since rows can vary substantially in length,
-	 *  this algorithm is often ineffective at preventing splits. For
-	 *  example, if a short row near the end of the buffer is then
-	 *  followed by a long row, that long row will be split. It is possible
-	 *  to improve this algorithm substantially:
-	 *  - instead of just using the length of the previous row as a guide
-	 *    for whether to attempt packing another row in, use some sort of
-	 *    overall average row size computed over multiple rows (e.g., all
-	 *    the rows we've placed into this QRYDTA block, or all the rows
-	 *    we've process for this result set)
+	 *  more rows into this buffer if another row of that length, or of
+	 *  the average length of the rows sent so far for this result set,
+	 *  would not fit. However, since rows can vary substantially in
+	 *  length, this algorithm can't prevent all splits. For example, if
+	 *  a long row follows short rows near the end of the buffer, that
+	 *  long row will be split. It is possible to improve this algorithm
+	 *  further:
 	 *  - when we discover that the next row will not fit, rather than
 	 *    splitting the row across QRYDTA blocks, if it is relatively
 	 *    small, we could just hold the entire row in a buffer to place
@@ -6952,6 +7012,13 @@ class DRDAConnThread extends Thread {
 	 *  better to be correct than to be efficient, and there have been
 	 *  several bugs in the split logic already.
 	 *
+	 *  If the client accepts extra query blocks (MAXBLKEXT), more QRYDTA
+	 *  blocks are sent after the first one for forward-only cursors under
+	 *  LMTBLKPRC, saving the client a CNTQRY round trip for each. See
+	 *  getExtraBlocks() for how many. We stop sending blocks when the last
+	 *  row had to be split, so that the remainder of a split row is always
+	 *  sent at the start of the reply to the next CNTQRY, as before.
+	 *
 	 * Instance Variables
 	 *   Byte string
 	 *
@@ -6961,10 +7028,73 @@ class DRDAConnThread extends Thread {
 	 */
 	private void writeQRYDTA (DRDAStatement stmt) 
 		throws DRDAProtocolException, SQLException
+	{
+		int extraBlocks = getExtraBlocks(stmt);
+
+		writeQRYDTABlock(stmt);
+		for (int i = 0; i < extraBlocks; i++)
+		{
+			if (!stmt.hasdata() || stmt.getSplitQRYDTA() != null ||
+					stmt.getExtDtaObjects() != null)
+				break;
+			if (SanityManager.DEBUG)
+				trace("Write extra QRYDTA " + (i + 1) + " of " + extraBlocks);
+			writeQRYDTABlock(stmt);
+		}
+
+		if (!stmt.hasdata()) {
+			final boolean qryclsOnLmtblkprc =
+				appRequester.supportsQryclsimpForLmtblkprc();
+			if (stmt.isRSCloseImplicit(qryclsOnLmtblkprc)) {
+				stmt.rsClose();
+			}
+		}
+	}
+
+	/**
+	 * Get the number of QRYDTA blocks which may be sent in addition to the
+	 * first one in reply to the current OPNQRY, CNTQRY or EXCSQLSTT.
+	 *
+	 * Extra blocks are only sent for forward-only cursors under LMTBLKPRC
+	 * (which rules out LOB columns, see DRDAResultSet.getQryprctyp()), and
+	 * only as many as both the client (MAXBLKEXT, -1 meaning no limit) and
+	 * the server (derby.drda.maxExtraQueryBlocks) allow. Within those
+	 * limits, the number of blocks starts at 0 for a new result set and
+	 * doubles with every fetch, so that only clients which keep reading
+	 * the result set get more than one block per round trip.
+	 *
+	 * @param stmt DRDA statement we are processing
+	 * @return the number of extra blocks to send
+	 * @throws SQLException
+	 */
+	private int getExtraBlocks(DRDAStatement stmt) throws SQLException
+	{
+		int maxblkext = stmt.getMaxblkext();
+		if (maxblkext == 0 || stmt.needsToSendParamData ||
+				stmt.isScrollable() || !stmt.getQryrtndta() ||
+				stmt.getQryprctyp() != CodePoint.LMTBLKPRC)
+			return 0;
+
+		int max = server.getMaxExtraBlocks();
+		if (maxblkext > 0 && maxblkext < max)
+			max = maxblkext;
+		return stmt.nextExtraBlocks(max);
+	}
+
+	/**
+	 * Write a single QRYDTA block, see writeQRYDTA().
+	 *
+	 * @param stmt	DRDA statement we are processing
+	 * @throws DRDAProtocolException
+	 * @throws SQLException
+	 */
+	private void writeQRYDTABlock (DRDAStatement stmt)
+		throws DRDAProtocolException, SQLException
 	{
 		boolean getMoreData = true;
 		boolean sentExtData = false;
 		int startLength = 0;
+		long startRowCount = stmt.rowCount;
 		writer.createDssObject();
 
 		if (SanityManager.DEBUG) 
@@ -7001,16 +7131,26 @@ class DRDAConnThread extends Thread {
 			}
 
 			// if we don't have enough room for a row of the 
-			// last row's size, don't try to cram it in.
+			// last row's size, or of the average row size of the
+			// result set, don't try to cram it in.
 			// It would get split up but it is not very efficient.
 			if (getMoreData == true)
 			{
 				int endLength = writer.getDSSLength();
 				int rowsize = endLength - startLength;
+				long rows = stmt.rowCount - startRowCount;
+				if (rows > 0)
+				{
+					// writeFDODTA may have written a rowset
+					stmt.addRowsInBlock(rows, rowsize);
+					rowsize = (int) Math.max(rowsize,
+							(long) stmt.getAverageRowSize() * rows);
+				}
 				if ((stmt.getBlksize() - endLength ) < rowsize)
 					getMoreData = false;
 
 				startLength = endLength;
+				startRowCount = stmt.rowCount;
 			}
 
 		}
@@ -7019,14 +7159,6 @@ class DRDAConnThread extends Thread {
 		// otherwise end it here.
 		if (! sentExtData)
 			writer.endDdmAndDss();
-
-		if (!stmt.hasdata()) {
-			final boolean qryclsOnLmtblkprc =
-				appRequester.supportsQryclsimpForLmtblkprc();
-			if (stmt.isRSCloseImplicit(qryclsOnLmtblkprc)) {
-				stmt.rsClose();
-			}
-		}
 	}
 
 	/**
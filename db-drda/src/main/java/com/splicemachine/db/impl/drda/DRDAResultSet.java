@@ -98,6 +98,18 @@ class DRDAResultSet
 	// emitted in the next QRYDTA response to a CNTQRY request.
 	private byte []splitQRYDTA;
 
+	// Number of rows placed into QRYDTA blocks and the bytes they took,
+	// used to guess whether the next row fits into the current block.
+	private long rowsInBlocks;
+	private long rowBytesInBlocks;
+
+	// Number of QRYDTA blocks to send in addition to the first one in reply
+	// to the next fetch. It grows with every fetch the client sends, so that
+	// clients reading the whole result set get more blocks per round trip,
+	// while clients reading only the first rows don't get rows they never
+	// read.
+	private int extraBlocks;
+
 	DRDAResultSet()
 	{
 		state = NOT_OPENED;
@@ -152,6 +164,43 @@ class DRDAResultSet
 		return splitQRYDTA;
 	}
 
+	/**
+	 * Record the size of rows placed into a QRYDTA block.
+	 *
+	 * @param rows number of rows
+	 * @param bytes number of bytes the rows took in the block
+	 */
+	protected void addRowsInBlock(long rows, int bytes)
+	{
+		rowsInBlocks += rows;
+		rowBytesInBlocks += bytes;
+	}
+
+	/**
+	 * @return the average size of the rows placed into QRYDTA blocks so
+	 * far, or 0 if there are none yet
+	 */
+	protected int getAverageRowSize()
+	{
+		if (rowsInBlocks == 0)
+			return 0;
+		return (int) (rowBytesInBlocks / rowsInBlocks);
+	}
+
+	/**
+	 * Get the number of QRYDTA blocks to send in addition to the first one
+	 * in reply to this fetch, and double it for the next fetch.
+	 *
+	 * @param max the maximum number of extra blocks
+	 * @return the number of extra blocks to send, at most <code>max</code>
+	 */
+	protected int nextExtraBlocks(int max)
+	{
+		int blocks = Math.min(extraBlocks, max);
+		extraBlocks = (blocks == 0) ? Math.min(1, max) : Math.min(2 * blocks, max);
+		return blocks;
+	}
+
 	/**
 	 *@return ResultSet DRDA DataTypes
 	 **/
@@ -349,6 +398,9 @@ class DRDAResultSet
 		extDtaObjects = null;
 		splitQRYDTA = null;
 		rsExtPositions = null;
+		rowsInBlocks = 0;
+		rowBytesInBlocks = 0;
+		extraBlocks = 0;
 	}
 	
 	/**
@@ -395,6 +447,9 @@ class DRDAResultSet
 		rsExtPositions = null;
 		pkgcnstkn = null;
 		splitQRYDTA = null;	
+		rowsInBlocks = 0;
+		rowBytesInBlocks = 0;
+		extraBlocks = 0;
 	}
 
 
@@ -619,6 +619,35 @@ class DRDAStatement
 		currentDrdaRs.hasdata = hasdata;
 	}
 
+	protected int getMaxblkext()
+	{
+		return currentDrdaRs.maxblkext;
+	}
+
+	/**
+	 * @see DRDAResultSet#addRowsInBlock(long, int)
+	 */
+	protected void addRowsInBlock(long rows, int bytes)
+	{
+		currentDrdaRs.addRowsInBlock(rows, bytes);
+	}
+
+	/**
+	 * @see DRDAResultSet#getAverageRowSize()
+	 */
+	protected int getAverageRowSize()
+	{
+		return currentDrdaRs.getAverageRowSize();
+	}
+
+	/**
+	 * @see DRDAResultSet#nextExtraBlocks(int)
+	 */
+	protected int nextExtraBlocks(int max)
+	{
+		return currentDrdaRs.nextExtraBlocks(max);
+	}
+
 	/**
 	 * This method is used to initialize the default statement of the database
 	 * for re-use. It is different from reset() method since default statements
@@ -35,6 +35,7 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import javax.net.SocketFactory;
@@ -44,6 +45,7 @@ import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.SSLServerSocketFactory;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.charset.Charset;
 import java.security.Permission;
 import java.security.AccessController;
@@ -162,6 +164,7 @@ public final class NetworkServerControlImpl {
 	private final static int USE_DEFAULT = -1;
 	private final static int DEFAULT_MAXTHREADS = 0; //for now create whenever needed
 	private final static int DEFAULT_TIMESLICE = 0;	//for now never yield
+	private final static int DEFAULT_MAXEXTRABLOCKS = 15; //16 blocks per fetch
 
 	private final static String DEFAULT_HOST = "localhost";
 	private final static String DRDA_MSG_PREFIX = "DRDA_";
@@ -277,6 +280,8 @@ public final class NetworkServerControlImpl {
 										// and changing timeSlice
 
 	private boolean keepAlive = true;   // keepAlive value for client socket 
+	private boolean nioSelector = true; // park idle sessions on a selector
+	private int maxExtraBlocks = DEFAULT_MAXEXTRABLOCKS; // extra query blocks per fetch
 	private int minPoolSize;			//minimum pool size for pooled connections
 	private int maxPoolSize;			//maximum pool size for pooled connections
 	private Object poolSync = new Object();	// object to use for syning reading
@@ -324,6 +329,11 @@ public final class NetworkServerControlImpl {
 	// number of DRDAConnThreads waiting for something to do
 	private int freeThreads;
 
+	// watches the sockets of idle sessions, null if sessions can't be parked
+	private SessionSelector sessionSelector;
+	// object to use for syncing the scheduling of sessions on threads
+	private final Object scheduleSync = new Object();
+
 	// known application requesters
 	private Hashtable appRequesterTable = new Hashtable();
 
@@ -673,6 +683,13 @@ public final class NetworkServerControlImpl {
 		switch (getSSLMode()) {
 		case SSL_OFF:
 		default:
+			if (nioSelector) {
+				// accept the sockets from a channel, so that idle
+				// sessions can be parked on a selector
+				ServerSocket ss = ServerSocketChannel.open().socket();
+				ss.bind(new InetSocketAddress(hostAddress, portNumber), 0);
+				return ss;
+			}
 			ServerSocketFactory sf =
 				ServerSocketFactory.getDefault();
 			return sf.createServerSocket(portNumber
@@ -791,6 +808,12 @@ public final class NetworkServerControlImpl {
                             NetworkServerMBean.class,
                             "type=NetworkServer");
 
+		// Sessions can only be parked if their sockets have channels
+		if (serverSocket.getChannel() != null) {
+			sessionSelector = new SessionSelector(this);
+			sessionSelector.start();
+		}
+
 		// We accept clients on a separate thread so we don't run into a problem
 		// blocking on the accept when trying to process a shutdown
 		final ClientThread clientThread =	 
@@ -830,6 +853,11 @@ public final class NetworkServerControlImpl {
 	                            //interrupt client thread
 	                            clientThread.interrupt();
 
+	                            //stop watching idle sessions, they are
+	                            //closed with the others below
+	                            if (sessionSelector != null)
+	                                sessionSelector.close();
+
 	                            return null;
 	                       }
 	                    });
@@ -3084,6 +3112,20 @@ public final class NetworkServerControlImpl {
 			StringUtil.SQLEqualsIgnoreCase(propval,"false"))
 			keepAlive = false;
 		
+		propval = PropertyUtil.getSystemProperty( 
+			Property.DRDA_PROP_NIOSELECTOR);
+		if (propval != null && 
+			StringUtil.SQLEqualsIgnoreCase(propval,"false"))
+			nioSelector = false;
+
+		propval = PropertyUtil.getSystemProperty( 
+			Property.DRDA_PROP_MAXEXTRABLOCKS);
+		if (propval != null){
+			if(propval.equals(""))
+				propval = String.valueOf(DEFAULT_MAXEXTRABLOCKS);
+			setMaxExtraBlocks(getIntPropVal(Property.DRDA_PROP_MAXEXTRABLOCKS, propval));
+		}
+
 		propval = PropertyUtil.getSystemProperty( 
 			Property.DRDA_PROP_HOSTNAME);
 		if (propval != null){
@@ -3702,6 +3744,32 @@ public final class NetworkServerControlImpl {
 		return keepAlive;
 	}
 
+	/**
+	 * Get the maximum number of query blocks to send in addition to the
+	 * first one in reply to a single fetch
+	 *
+	 * @return maximum number of extra query blocks
+	 */
+	protected int getMaxExtraBlocks()
+	{
+		return maxExtraBlocks;
+	}
+
+	/**
+	 * Set the maximum number of extra query blocks per fetch
+	 *
+	 * @param value maximum number of extra query blocks
+	 * @exception Exception if value is < 0
+	 */
+	private void setMaxExtraBlocks(int value)
+		throws Exception
+	{
+		if (value < 0)
+			consolePropertyMessage("DRDA_InvalidValue.U", new String [] 
+				{new Integer(value).toString(), "maxExtraQueryBlocks"});
+		maxExtraBlocks = value;
+	}
+
 	/**
 	 * Get the current value of minimum number of threads to create at start
 	 *
@@ -3897,6 +3965,8 @@ public final class NetworkServerControlImpl {
 		retval.put(Property.DRDA_PROP_PORTNUMBER, new Integer(portNumber).toString());
 		retval.put(Property.DRDA_PROP_HOSTNAME, hostArg);
 		retval.put(Property.DRDA_PROP_KEEPALIVE, new Boolean(keepAlive).toString());
+		retval.put(Property.DRDA_PROP_NIOSELECTOR, new Boolean(nioSelector).toString());
+		retval.put(Property.DRDA_PROP_MAXEXTRABLOCKS, new Integer(getMaxExtraBlocks()).toString());
 
 		String tracedir = getTraceDirectory();
 		if (tracedir != null)
@@ -3943,10 +4013,8 @@ public final class NetworkServerControlImpl {
 
 	/**
 	 * Add a session - for use by <code>ClientThread</code>. Put the session
-	 * into the session table and the run queue. Start a new
-	 * <code>DRDAConnThread</code> if there are more sessions waiting than
-	 * there are free threads, and the maximum number of threads is not
-	 * exceeded.
+	 * into the session table and schedule it, see
+	 * <code>scheduleSession()</code>.
 	 *
 	 * <p><code>addSession()</code> should only be called from one thread at a
 	 * time.
@@ -3970,43 +4038,83 @@ public final class NetworkServerControlImpl {
 
 		sessionTable.put(new Integer(connectionNumber), session);
 
-		// Check whether there are enough free threads to service all the
-		// threads in the run queue in addition to the newly added session.
-		boolean enoughThreads;
-		synchronized (runQueue) {
-			enoughThreads = (runQueue.size() < freeThreads);
-		}
-		// No need to hold the synchronization on runQueue any longer than
-		// this. Since no other threads can make runQueue grow, and no other
-		// threads will reduce the number of free threads without removing
-		// sessions from runQueue, (runQueue.size() < freeThreads) cannot go
-		// from true to false until addSession() returns.
-
-		DRDAConnThread thread = null;
-
-		// try to start a new thread if we don't have enough free threads
-		if (!enoughThreads) {
-			// Synchronize on threadsSync to ensure that the value of
-			// maxThreads doesn't change until the new thread is added to
-			// threadList.
-			synchronized (threadsSync) {
-				// only start a new thread if we have no maximum number of
-				// threads or the maximum number of threads is not exceeded
-				if ((maxThreads == 0) || (threadList.size() < maxThreads)) {
-					thread = new DRDAConnThread(session, this, getTimeSlice(),
-												getLogConnections());
-					threadList.add(thread);
-					thread.start();
+		scheduleSession(session);
+	}
+
+	/**
+	 * Schedule a session which needs work - for use by
+	 * <code>addSession()</code> and <code>SessionSelector</code>. Put the
+	 * session into the run queue, and start a new <code>DRDAConnThread</code>
+	 * if there are more sessions waiting than there are free threads, and the
+	 * maximum number of threads is not exceeded.
+	 *
+	 * @param session the session needing work
+	 */
+	void scheduleSession(Session session) {
+		// Only schedule one session at a time, see below.
+		synchronized (scheduleSync) {
+			// Check whether there are enough free threads to service all the
+			// threads in the run queue in addition to the session.
+			boolean enoughThreads;
+			synchronized (runQueue) {
+				enoughThreads = (runQueue.size() < freeThreads);
+			}
+			// No need to hold the synchronization on runQueue any longer than
+			// this. Since no other threads can make runQueue grow, and no other
+			// threads will reduce the number of free threads without removing
+			// sessions from runQueue, (runQueue.size() < freeThreads) cannot go
+			// from true to false until scheduleSession() returns.
+
+			DRDAConnThread thread = null;
+
+			// try to start a new thread if we don't have enough free threads
+			if (!enoughThreads) {
+				// Synchronize on threadsSync to ensure that the value of
+				// maxThreads doesn't change until the new thread is added to
+				// threadList.
+				synchronized (threadsSync) {
+					// only start a new thread if we have no maximum number of
+					// threads or the maximum number of threads is not exceeded
+					if ((maxThreads == 0) || (threadList.size() < maxThreads)) {
+						thread = new DRDAConnThread(session, this, getTimeSlice(),
+													getLogConnections());
+						threadList.add(thread);
+						thread.start();
+					}
 				}
 			}
-		}
 
-		// add the session to the run queue if we didn't start a new thread
-		if (thread == null) {
-			runQueueAdd(session);
+			// add the session to the run queue if we didn't start a new thread
+			if (thread == null) {
+				runQueueAdd(session);
+			}
 		}
 	}
 
+	/**
+	 * Park an idle session until its client sends its next request - for use
+	 * by <code>DRDAConnThread</code> when it has finished a request chain.
+	 * Once the client sends more data, the session is scheduled again.
+	 *
+	 * @param session the idle session, which the caller must not use again
+	 *                if it was parked
+	 * @return true if the session was parked, false if the caller should
+	 *         keep working on it
+	 */
+	boolean parkSession(Session session) {
+		SessionSelector selector = sessionSelector;
+		return selector != null && !shutdown && selector.park(session);
+	}
+
+	/**
+	 * @return the number of idle sessions waiting for their next request
+	 *         without a thread
+	 */
+	int getParkedSessions() {
+		SessionSelector selector = sessionSelector;
+		return selector == null ? 0 : selector.getParkedSessions();
+	}
+
 	/**
 	 * Remove a thread from the thread list. Should be called when a
 	 * <code>DRDAConnThread</code> has been closed.
@@ -25,6 +25,8 @@
 
 package com.splicemachine.db.impl.drda;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -279,6 +281,14 @@ class Session
 	{
 		sessionInput = clientSocket.getInputStream();
 		sessionOutput = clientSocket.getOutputStream();
+		// A socket accepted from a channel is closed when its thread is
+		// interrupted during I/O, and the engine re-asserts interrupts it
+		// has seen while executing a statement, so clear the interrupt
+		// status for each read and write (and restore it afterwards).
+		if (clientSocket.getChannel() != null) {
+			sessionInput = new ClearInterruptInputStream(sessionInput);
+			sessionOutput = new ClearInterruptOutputStream(sessionOutput);
+		}
 		if (traceOn)
 			initTrace(traceDirectory,false);
 		state = INIT;
@@ -295,4 +305,79 @@ class Session
 		s += "\n";
 		return s;
 	}
+
+	/**
+	 * Input stream which clears the interrupt status of the reading thread
+	 * while reading from a channel, and restores it afterwards.
+	 */
+	private static class ClearInterruptInputStream extends FilterInputStream
+	{
+		ClearInterruptInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		public int read() throws IOException
+		{
+			boolean interrupted = Thread.interrupted();
+			try {
+				return in.read();
+			} finally {
+				restoreInterrupt(interrupted);
+			}
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			boolean interrupted = Thread.interrupted();
+			try {
+				return in.read(b, off, len);
+			} finally {
+				restoreInterrupt(interrupted);
+			}
+		}
+	}
+
+	/**
+	 * Output stream which clears the interrupt status of the writing thread
+	 * while writing to a channel, and restores it afterwards.
+	 */
+	private static class ClearInterruptOutputStream extends FilterOutputStream
+	{
+		ClearInterruptOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		public void write(int b) throws IOException
+		{
+			boolean interrupted = Thread.interrupted();
+			try {
+				out.write(b);
+			} finally {
+				restoreInterrupt(interrupted);
+			}
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			boolean interrupted = Thread.interrupted();
+			try {
+				out.write(b, off, len);
+			} finally {
+				restoreInterrupt(interrupted);
+			}
+		}
+	}
+
+	/**
+	 * Interrupt the current thread again if it was interrupted before
+	 * its interrupt status was cleared for I/O, so that the interrupt
+	 * is not lost.
+	 */
+	private static void restoreInterrupt(boolean interrupted)
+	{
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.impl.drda;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Watches the sockets of idle sessions, so that they don't each hold a
+ * <code>DRDAConnThread</code> blocked on a socket read.
+ * <p>
+ * When a <code>DRDAConnThread</code> has answered a request chain and no
+ * more of the session's data is buffered, it parks the session here instead
+ * of waiting for the client's next request. Once the socket becomes readable
+ * (or is closed by the client), the session is put back into blocking mode
+ * and handed back to the run queue, where the next free thread picks it up
+ * and reads the request as before. The protocol handling is unchanged: only
+ * the waiting between requests is multiplexed.
+ * <p>
+ * Only sessions whose socket has a channel (i.e. non-SSL sessions accepted
+ * from a <code>ServerSocketChannel</code>) can be parked.
+ */
+final class SessionSelector extends Thread {
+
+    private final NetworkServerControlImpl server;
+    private final Selector selector;
+    // sessions waiting to be registered with the selector, guarded by itself
+    private final List<Session> pending = new ArrayList<Session>();
+    private volatile boolean closed;
+    private volatile int parkedSessions;
+
+    SessionSelector(NetworkServerControlImpl server) throws IOException {
+        // Create a more meaningful name for this thread (but preserve its
+        // thread id from the default name).
+        NetworkServerControlImpl.setUniqueThreadName(this, "NetworkServerSelector");
+        setDaemon(true);
+        this.server = server;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Park an idle session until its client sends more data. The caller
+     * must not use the session after it has been parked.
+     *
+     * @param session the idle session
+     * @return false if the session can't be parked, in which case the caller
+     * keeps working on it
+     */
+    boolean park(Session session) {
+        if (closed || session.clientSocket.getChannel() == null)
+            return false;
+        synchronized (pending) {
+            pending.add(session);
+        }
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * @return the number of sessions currently waiting for their client
+     */
+    int getParkedSessions() {
+        return parkedSessions;
+    }
+
+    /**
+     * Stop watching sessions. Parked sessions are closed by the server
+     * along with all the other sessions.
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    public void run() {
+        List<Session> ready = new ArrayList<Session>();
+        while (!closed) {
+            try {
+                registerPending();
+                selector.select();
+                if (closed)
+                    break;
+
+                // Cancel the keys of the ready sessions, and flush the
+                // cancelled keys with selectNow() so that their channels can
+                // be put back into blocking mode. selectNow() may find more
+                // ready sessions, so repeat until it doesn't.
+                Set<SelectionKey> selected = selector.selectedKeys();
+                while (!selected.isEmpty()) {
+                    for (SelectionKey key : selected) {
+                        key.cancel();
+                        ready.add((Session) key.attachment());
+                    }
+                    selected.clear();
+                    selector.selectNow();
+                }
+                parkedSessions = selector.keys().size();
+
+                for (int i = 0; i < ready.size(); i++)
+                    wake(ready.get(i));
+                ready.clear();
+            } catch (IOException ioe) {
+                server.consoleExceptionPrintTrace(ioe);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ioe) {
+            // ignore, we are shutting down
+        }
+    }
+
+    private void registerPending() {
+        synchronized (pending) {
+            for (int i = 0; i < pending.size(); i++) {
+                Session session = pending.get(i);
+                try {
+                    SocketChannel channel = session.clientSocket.getChannel();
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ, session);
+                } catch (IOException ioe) {
+                    // the client has gone away
+                    closeSession(session);
+                }
+            }
+            pending.clear();
+        }
+        parkedSessions = selector.keys().size();
+    }
+
+    private void wake(Session session) {
+        try {
+            session.clientSocket.getChannel().configureBlocking(true);
+        } catch (IOException ioe) {
+            // the client has gone away
+            closeSession(session);
+            return;
+        }
+        server.scheduleSession(session);
+    }
+
+    private void closeSession(Session session) {
+        server.removeFromSessionTable(session.getConnNum());
+        try {
+            session.close();
+        } catch (Exception e) {
+            server.consoleExceptionPrintTrace(e);
+        }
+    }
+}
@@ -270,8 +270,8 @@ public interface NetworkServerMBean {
     
     /**
      * <p>
-     * Gets the total number of current connections (waiting or active) to the
-     * Network Server.</p>
+     * Gets the total number of current connections (waiting, idle or active)
+     * to the Network Server.</p>
      * <p>
      * Requires <code>SystemPermission("server", "monitor")</code> if a security
      * manager is installed.</p>
@@ -324,6 +324,22 @@ public interface NetworkServerMBean {
      * @see #getDrdaTimeSlice()
      */
     public int getWaitingConnectionCount();
+
+    /**
+     * <p>
+     * Gets the number of currently idle connections, which are waiting for
+     * their client's next request without holding a connection thread. This
+     * number will always be 0 if <code>db.drda.nioSelector</code> is false
+     * or SSL is used.</p>
+     * <p>
+     * Requires <code>SystemPermission("server", "monitor")</code> if a security
+     * manager is installed.</p>
+     *
+     * @return the number of idle connections
+     * @see #getActiveConnectionCount()
+     * @see #getWaitingConnectionCount()
+     */
+    public int getIdleConnectionCount();
     
     /**
      * <p>
@@ -883,6 +883,23 @@ public interface LanguageConnectionContext extends Context {
         public PreparedStatement prepareInternalStatement(String sqlText) 
 	    throws StandardException;
 
+	/**
+	 * Return an Activation for a statement executed without parameters, compiled
+	 * with its literals replaced by parameters and with the literal values already
+	 * set, so that statements only differing in their literals share a plan in the
+	 * statement cache.
+	 * @param compilationSchema schema
+	 * @param sqlText sql query string
+	 * @param isForReadOnly read only status for resultset
+	 * @param scrollable whether the activation is for a scrollable result set
+	 * @return the activation, or null if auto-parameterization is disabled or does
+	 *         not apply to this statement, in which case the caller prepares the
+	 *         statement as it is.
+	 */
+	public Activation getAutoParameterizedActivation(SchemaDescriptor compilationSchema,
+			String sqlText, boolean isForReadOnly, boolean scrollable)
+	    throws StandardException;
+
 	/**
 	 * Control whether or not optimizer trace is on.
 	 *
@@ -793,6 +793,19 @@ public interface DataDictionary{
     public void deletePartitionStatistics(long conglomerate,
                                           TransactionController tc) throws StandardException;
 
+    /**
+     * Removes the statistics of a single partition of a conglomerate from SYSTABLESTATS
+     * and SYSCOLUMNSTATS.
+     *
+     * @param conglomerate
+     * @param partitionId
+     * @param tc
+     * @throws StandardException
+     */
+    public void deletePartitionStatistics(long conglomerate,
+                                          String partitionId,
+                                          TransactionController tc) throws StandardException;
+
 
     public void clearCaches();
 
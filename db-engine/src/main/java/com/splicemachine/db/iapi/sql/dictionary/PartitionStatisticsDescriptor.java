@@ -40,6 +40,7 @@ public class PartitionStatisticsDescriptor extends TupleDescriptor {
     private long partitionSize;
     private long rowCount;
     private boolean inProgress;
+    private double sampleFraction;
     private List<ColumnStatisticsDescriptor> columnStatsDescriptors;
 
     public PartitionStatisticsDescriptor(long conglomerateId,
@@ -50,6 +51,23 @@ public class PartitionStatisticsDescriptor extends TupleDescriptor {
                                          long rowCount,
                                          long partitionSize,
                                          int meanRowWidth) {
+        this(conglomerateId,partitionId,timestamp,stale,inProgress,rowCount,partitionSize,meanRowWidth,1.0d);
+    }
+
+    /**
+     * @param sampleFraction the fraction of the partition's rows which were read to build these statistics. When
+     *                       this is less than 1, the row count and partition size are already scaled up to the full
+     *                       partition, but the column statistics describe only the sampled rows.
+     */
+    public PartitionStatisticsDescriptor(long conglomerateId,
+                                         String partitionId,
+                                         long timestamp,
+                                         boolean stale,
+                                         boolean inProgress,
+                                         long rowCount,
+                                         long partitionSize,
+                                         int meanRowWidth,
+                                         double sampleFraction) {
         this.conglomerateId = conglomerateId;
         this.partitionId = partitionId;
         this.timestamp = timestamp;
@@ -58,6 +76,7 @@ public class PartitionStatisticsDescriptor extends TupleDescriptor {
         this.partitionSize = partitionSize;
         this.rowCount = rowCount;
         this.inProgress = inProgress;
+        this.sampleFraction = sampleFraction;
     }
 
     public long getConglomerateId() { return conglomerateId; }
@@ -68,6 +87,7 @@ public class PartitionStatisticsDescriptor extends TupleDescriptor {
     public long getPartitionSize() { return partitionSize; }
     public long getRowCount() { return rowCount; }
     public boolean isInProgress() { return inProgress; }
+    public double getSampleFraction() { return sampleFraction; }
 
     public List<ColumnStatisticsDescriptor> getColumnStatsDescriptors() {
         return columnStatsDescriptors;
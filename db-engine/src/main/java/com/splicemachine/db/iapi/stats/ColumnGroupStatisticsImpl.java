@@ -0,0 +1,335 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.db.iapi.stats;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.ArrayUtil;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.frequencies.LongsSketch;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.UpdateSketch;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+/**
+ *
+ * Joint statistics for a group of columns of the same table, for instance (city,zip) or (tenant_id,account_id).
+ *
+ * Single column statistics cannot tell correlated columns apart from independent ones, so the optimizer has to
+ * assume independence when it combines predicates on several of them.  A column group keeps a theta sketch of
+ * the number of distinct value combinations and a small frequent items sketch of the most common combinations,
+ * both keyed on a 64 bit hash of the values.  Rows where any of the columns is null are only counted.
+ *
+ * The items of this statistic are rows holding the group's columns in ascending column order.
+ *
+ */
+public class ColumnGroupStatisticsImpl implements ItemStatistics<ExecRow>, Externalizable {
+    public static final int DEFAULT_FREQUENCIES_SIZE = 256;
+    public static final int DEFAULT_THETA_SIZE = 4096;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    protected int[] columnIds;
+    protected DataValueDescriptor[] columnTypes;
+    protected LongsSketch frequenciesSketch;
+    protected Sketch thetaSketch;
+    protected long notNullCount;
+    protected long nullCount;
+
+    public ColumnGroupStatisticsImpl() {
+
+    }
+
+    /**
+     *
+     * Generates empty group statistics.
+     *
+     * @param columnIds the column positions (indexed from 1) of the group, in ascending order
+     * @param columnTypes a template value for each of the columns
+     */
+    public ColumnGroupStatisticsImpl(int[] columnIds, DataValueDescriptor[] columnTypes) {
+        this(columnIds, columnTypes, new LongsSketch(DEFAULT_FREQUENCIES_SIZE),
+                UpdateSketch.builder().build(DEFAULT_THETA_SIZE), 0l, 0l);
+    }
+
+    public ColumnGroupStatisticsImpl(int[] columnIds, DataValueDescriptor[] columnTypes,
+                                     LongsSketch frequenciesSketch, Sketch thetaSketch,
+                                     long notNullCount, long nullCount) {
+        assert columnIds.length == columnTypes.length:"Each column of the group needs a type";
+        this.columnIds = columnIds;
+        this.columnTypes = columnTypes;
+        this.frequenciesSketch = frequenciesSketch;
+        this.thetaSketch = thetaSketch;
+        this.notNullCount = notNullCount;
+        this.nullCount = nullCount;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ArrayUtil.writeIntArray(out, columnIds);
+        for (DataValueDescriptor columnType : columnTypes)
+            out.writeObject(columnType);
+        out.writeLong(notNullCount);
+        out.writeLong(nullCount);
+        byte[] frequenciesSketchBytes = frequenciesSketch.toByteArray();
+        out.writeInt(frequenciesSketchBytes.length);
+        out.write(frequenciesSketchBytes);
+        byte[] thetaSketchBytes = thetaSketch.toByteArray();
+        out.writeInt(thetaSketchBytes.length);
+        out.write(thetaSketchBytes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        NativeMemory freqMem = null;
+        NativeMemory thetaMem = null;
+        try {
+            columnIds = ArrayUtil.readIntArray(in);
+            columnTypes = new DataValueDescriptor[columnIds.length];
+            for (int i = 0; i < columnTypes.length; i++)
+                columnTypes[i] = (DataValueDescriptor) in.readObject();
+            notNullCount = in.readLong();
+            nullCount = in.readLong();
+            byte[] frequencies = new byte[in.readInt()];
+            in.readFully(frequencies);
+            freqMem = new NativeMemory(frequencies);
+            frequenciesSketch = LongsSketch.getInstance(freqMem);
+            byte[] thetaSketchBytes = new byte[in.readInt()];
+            in.readFully(thetaSketchBytes);
+            thetaMem = new NativeMemory(thetaSketchBytes);
+            thetaSketch = Sketch.heapify(thetaMem);
+        } finally {
+            if (freqMem!=null)
+                freqMem.freeMemory();
+            if (thetaMem!=null)
+                thetaMem.freeMemory();
+        }
+    }
+
+    /**
+     *
+     * Column positions (indexed from 1) of the group, in ascending order.
+     *
+     * @return
+     */
+    public int[] getColumnIds() {
+        return columnIds;
+    }
+
+    /**
+     *
+     * @param columnIds column positions (indexed from 1) in ascending order
+     * @return true if this group is made up of exactly these columns
+     */
+    public boolean isGroupOf(int[] columnIds) {
+        return Arrays.equals(this.columnIds, columnIds);
+    }
+
+    /**
+     *
+     * Column groups do not keep an ordering of their values.
+     *
+     * @return null
+     */
+    @Override
+    public ExecRow minValue() {
+        return null;
+    }
+
+    /**
+     *
+     * Column groups do not keep an ordering of their values.
+     *
+     * @return null
+     */
+    @Override
+    public ExecRow maxValue() {
+        return null;
+    }
+
+    @Override
+    public long totalCount() {
+        return notNullCount+nullCount;
+    }
+
+    /**
+     *
+     * Number of rows where at least one of the columns is null.
+     *
+     * @return
+     */
+    @Override
+    public long nullCount() {
+        return nullCount;
+    }
+
+    @Override
+    public long notNullCount() {
+        return notNullCount;
+    }
+
+    /**
+     *
+     * Number of distinct value combinations, via the theta sketch.
+     *
+     * @return
+     */
+    @Override
+    public long cardinality() {
+        return (long) thetaSketch.getEstimate();
+    }
+
+    /**
+     *
+     * Number of rows matching all of the group's values.
+     *
+     * If
+     *  any value is null then 0 (an equality predicate never matches null)
+     * elseif
+     *  frequent combination then frequencies sketch estimate
+     * else {
+     *     not null count/thetaSketch estimate
+     * }
+     *
+     * @param element the group's values, in ascending column order
+     * @return
+     */
+    @Override
+    public long selectivity(ExecRow element) {
+        try {
+            Long hash = hash(element, true);
+            if (hash == null)
+                return 0l;
+            long count = frequenciesSketch.getEstimate(hash);
+            if (count > 0)
+                return count;
+        } catch (StandardException se) {
+            // not comparable with the stored values, fall back to the average
+        }
+        double cardinality = thetaSketch.getEstimate();
+        return cardinality == 0d ? 0l : (long) (((double) notNullCount) / cardinality);
+    }
+
+    /**
+     *
+     * Unsupported: groups are only used for equality predicates.
+     *
+     */
+    @Override
+    public long rangeSelectivity(ExecRow start, ExecRow stop, boolean includeStart, boolean includeStop) {
+        throw new UnsupportedOperationException("Range selectivity is not supported on column groups");
+    }
+
+    /**
+     *
+     * Updating the sketches with one row's values of the group.
+     *
+     * @param row the group's values, in ascending column order
+     */
+    @Override
+    public void update(ExecRow row) {
+        try {
+            Long hash = hash(row, false);
+            if (hash == null) {
+                nullCount++;
+            } else {
+                notNullCount++;
+                frequenciesSketch.update(hash);
+                ((UpdateSketch) thetaSketch).update(hash);
+            }
+        } catch (StandardException se) {
+            throw new RuntimeException(se);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ColumnGroupStatistics{columns=%s, nullCount=%d, notNullCount=%d, theta=%s}",
+                Arrays.toString(columnIds),nullCount,notNullCount,thetaSketch.toString());
+    }
+
+    /**
+     *
+     * Shallow copy of the statistics.
+     *
+     * @return
+     */
+    @Override
+    public ItemStatistics<ExecRow> getClone() {
+        return new ColumnGroupStatisticsImpl(columnIds,columnTypes,frequenciesSketch,thetaSketch,notNullCount,nullCount);
+    }
+
+    /**
+     *
+     * COLUMN_GROUP
+     *
+     * @return
+     */
+    @Override
+    public Type getType() {
+        return Type.COLUMN_GROUP;
+    }
+
+    public DataValueDescriptor[] getColumnTypes() {
+        return columnTypes;
+    }
+
+    public LongsSketch getFrequenciesSketch() {
+        return frequenciesSketch;
+    }
+
+    public Sketch getThetaSketch() {
+        return thetaSketch;
+    }
+
+    /**
+     *
+     * Empty row with the group's column types.
+     *
+     * @return
+     */
+    public ExecRow newGroupRow() {
+        ExecRow row = new ValueRow(columnTypes.length);
+        for (int i = 0; i < columnTypes.length; i++)
+            row.setColumn(i+1, columnTypes[i].getNewNull());
+        return row;
+    }
+
+    /*
+     * Values of a different type than the column (a BIGINT constant compared to an INTEGER column, say) are
+     * converted first, so that equal values hash the same as the stored ones.
+     */
+    private Long hash(ExecRow row, boolean convert) throws StandardException {
+        assert row.nColumns() == columnTypes.length:"Row does not match the column group";
+        long hash = 0l;
+        for (int i = 0; i < columnTypes.length; i++) {
+            DataValueDescriptor value = row.getColumn(i+1);
+            if (value == null || value.isNull())
+                return null;
+            if (convert && value.getTypeFormatId() != columnTypes[i].getTypeFormatId()) {
+                DataValueDescriptor converted = columnTypes[i].getNewNull();
+                converted.setValue(value);
+                value = converted;
+            }
+            hash = hash*HASH_MULTIPLIER + (value.hashCode() & 0xffffffffL);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.db.iapi.stats;
+
+import com.splicemachine.db.agg.Aggregator;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.yahoo.sketches.frequencies.LongsSketch;
+import com.yahoo.sketches.theta.Sketches;
+import com.yahoo.sketches.theta.Union;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ *
+ * Aggregator for merging together the statistics of one column group across partitions.
+ *
+ * @see Aggregator
+ *
+ */
+public class ColumnGroupStatisticsMerge implements Aggregator<ColumnGroupStatisticsImpl, ColumnGroupStatisticsImpl, ColumnGroupStatisticsMerge>, Externalizable {
+    protected boolean initialized;
+    protected int[] columnIds;
+    protected DataValueDescriptor[] columnTypes;
+    protected Union thetaSketchUnion;
+    protected LongsSketch frequenciesSketch;
+    protected long notNullCount = 0l;
+    protected long nullCount = 0l;
+
+    public ColumnGroupStatisticsMerge() {
+
+    }
+
+    public static ColumnGroupStatisticsMerge instance() {
+        return new ColumnGroupStatisticsMerge();
+    }
+
+    /*
+     * No-op init
+     *
+     */
+    @Override
+    public void init() {
+
+    }
+
+    /**
+     *
+     * Accumulate path, check for initialization and then merge sketches.
+     *
+     * @param value
+     * @throws StandardException
+     */
+    @Override
+    public void accumulate(ColumnGroupStatisticsImpl value) throws StandardException {
+        if (!initialized) {
+            columnIds = value.getColumnIds();
+            columnTypes = value.getColumnTypes();
+            thetaSketchUnion = Sketches.setOperationBuilder().buildUnion();
+            frequenciesSketch = new LongsSketch(ColumnGroupStatisticsImpl.DEFAULT_FREQUENCIES_SIZE);
+            initialized = true;
+        }
+        assert value.isGroupOf(columnIds):"Cannot merge different column groups";
+        frequenciesSketch.merge(value.getFrequenciesSketch());
+        thetaSketchUnion.update(value.getThetaSketch());
+        notNullCount += value.notNullCount();
+        nullCount += value.nullCount();
+    }
+
+    /**
+     * Merges two aggregated sets of statistics.
+     *
+     * @param otherAggregator
+     */
+    @Override
+    public void merge(ColumnGroupStatisticsMerge otherAggregator) {
+        frequenciesSketch.merge(otherAggregator.frequenciesSketch);
+        thetaSketchUnion.update(otherAggregator.thetaSketchUnion.getResult());
+        notNullCount += otherAggregator.notNullCount;
+        nullCount += otherAggregator.nullCount;
+    }
+
+    /**
+     *
+     * Generate the effective column group statistics.
+     *
+     * @return
+     */
+    @Override
+    public ColumnGroupStatisticsImpl terminate() {
+        return new ColumnGroupStatisticsImpl(columnIds,columnTypes,frequenciesSketch,thetaSketchUnion.getResult(),notNullCount,nullCount);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        terminate().writeExternal(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        ColumnGroupStatisticsImpl value = new ColumnGroupStatisticsImpl();
+        value.readExternal(in);
+        try {
+            accumulate(value);
+        } catch (StandardException se) {
+            throw new IOException(se);
+        }
+    }
+}
@@ -15,6 +15,8 @@
 
 package com.splicemachine.db.iapi.stats;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -29,9 +31,11 @@ import java.util.List;
  */
 public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
     private ItemStatistics[] itemStatistics;
+    private List<ColumnGroupStatisticsImpl> columnGroupStatistics = Collections.emptyList();
     private long rowCount;
     private long totalSize;
     private int avgRowWidth;
+    private double sampleFraction = 1.0d;
     double fallbackNullFraction;
     double extraQualifierMultiplier;
 
@@ -54,6 +58,22 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
                                             int avgRowWidth,
                                             double fallbackNullFraction,
                                                     double extraQualifierMultiplier) {
+        this(itemStatisticsBuilder,rowCount,totalSize,avgRowWidth,fallbackNullFraction,extraQualifierMultiplier,1.0d);
+    }
+
+    /**
+     *
+     * Generating effective partitions from the merges of sampled columns.
+     *
+     * @param sampleFraction the fraction of rows the merged column statistics were built from
+     */
+    public EffectivePartitionStatisticsImpl(ColumnStatisticsMerge[] itemStatisticsBuilder,
+                                            long rowCount, long totalSize,
+                                            int avgRowWidth,
+                                            double fallbackNullFraction,
+                                            double extraQualifierMultiplier,
+                                            double sampleFraction) {
+        this.sampleFraction = sampleFraction;
         this.rowCount = rowCount;
         this.totalSize = totalSize;
         this.avgRowWidth = avgRowWidth;
@@ -65,6 +85,26 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
        }
     }
 
+    /**
+     *
+     * Generating effective partitions from the merges of sampled columns and column groups.
+     *
+     * @param columnGroupBuilder the merged statistics of each column group
+     */
+    public EffectivePartitionStatisticsImpl(ColumnStatisticsMerge[] itemStatisticsBuilder,
+                                            List<ColumnGroupStatisticsMerge> columnGroupBuilder,
+                                            long rowCount, long totalSize,
+                                            int avgRowWidth,
+                                            double fallbackNullFraction,
+                                            double extraQualifierMultiplier,
+                                            double sampleFraction) {
+        this(itemStatisticsBuilder,rowCount,totalSize,avgRowWidth,fallbackNullFraction,extraQualifierMultiplier,sampleFraction);
+        columnGroupStatistics = new ArrayList<>(columnGroupBuilder.size());
+        for (ColumnGroupStatisticsMerge columnGroupMerge : columnGroupBuilder) {
+            columnGroupStatistics.add(columnGroupMerge.terminate());
+        }
+    }
+
     /**
      * Row Count
      *
@@ -108,6 +148,17 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
         return null;
     }
 
+    /**
+     *
+     * Row weighted sample rate of the merged partitions.
+     *
+     * @return
+     */
+    @Override
+    public double sampleFraction() {
+        return sampleFraction;
+    }
+
     /**
      *
      * Unsupported operation.
@@ -119,6 +170,17 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
         throw new UnsupportedOperationException("Use getAllColumnStatistics on the table vs. agains the effective partition.");
     }
 
+    /**
+     *
+     * Column group statistics merged across the partitions.
+     *
+     * @return
+     */
+    @Override
+    public List<ColumnGroupStatisticsImpl> getColumnGroupStatistics() {
+        return columnGroupStatistics;
+    }
+
     /**
      *
      * This is 0 based retrieval of statistics.
@@ -169,7 +231,8 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
     @Override
     public long nullCount(int positionNumber) {
         ItemStatistics stats = positionNumber >= itemStatistics.length?null:itemStatistics[positionNumber];
-        return stats==null?(long) (fallbackNullFraction * (double) rowCount()):itemStatistics[positionNumber].nullCount();
+        return stats==null?(long) (fallbackNullFraction * (double) rowCount()):
+                SampledStatistics.scaleCount(itemStatistics[positionNumber].nullCount(),sampleFraction);
     }
 
     /**
@@ -182,7 +245,8 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
     @Override
     public long notNullCount(int positionNumber) {
         ItemStatistics stats = positionNumber >= itemStatistics.length?null:itemStatistics[positionNumber];
-        return stats==null?(long) ( (1.0 - fallbackNullFraction) * (double) rowCount()):itemStatistics[positionNumber].notNullCount();
+        return stats==null?(long) ( (1.0 - fallbackNullFraction) * (double) rowCount()):
+                SampledStatistics.scaleCount(itemStatistics[positionNumber].notNullCount(),sampleFraction);
     }
 
     /**
@@ -195,7 +259,8 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
     @Override
     public long cardinality(int positionNumber) {
         ItemStatistics stats = positionNumber >= itemStatistics.length?null:itemStatistics[positionNumber];
-        return stats==null?rowCount():itemStatistics[positionNumber].cardinality();
+        return stats==null?rowCount():
+                SampledStatistics.scaleCardinality(stats.cardinality(),stats.totalCount(),sampleFraction,rowCount());
     }
 
     /**
@@ -210,7 +275,8 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
     @Override
     public <T extends Comparator<T>> long selectivity(T element, int positionNumber) {
         ItemStatistics stats = positionNumber >= itemStatistics.length?null:itemStatistics[positionNumber];
-        return stats==null?(long) (( (double) rowCount()) * extraQualifierMultiplier ):itemStatistics[positionNumber].selectivity((T) element);
+        return stats==null?(long) (( (double) rowCount()) * extraQualifierMultiplier ):
+                SampledStatistics.scaleCount(itemStatistics[positionNumber].selectivity((T) element),sampleFraction);
     }
 
     /**
@@ -55,6 +55,16 @@ public class FakePartitionStatisticsImpl implements PartitionStatistics {
         this.extraQualifierMultiplier = extraQualifierMultiplier;
     }
 
+    /**
+     * Stubbed statistics are not sampled.
+     *
+     * @return
+     */
+    @Override
+    public double sampleFraction() {
+        return 1.0d;
+    }
+
     /**
      * Return row count.
      *
@@ -108,6 +118,17 @@ public class FakePartitionStatisticsImpl implements PartitionStatistics {
         return itemStatistics;
     }
 
+    /**
+     *
+     * No column groups in fake partition
+     *
+     * @return
+     */
+    @Override
+    public List<ColumnGroupStatisticsImpl> getColumnGroupStatistics() {
+        return Collections.emptyList();
+    }
+
     /**
      *
      * This is 1 based with the 0 entry being the key
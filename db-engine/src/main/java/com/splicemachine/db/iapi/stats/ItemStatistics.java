@@ -26,12 +26,13 @@ import java.util.Comparator;
 public interface ItemStatistics<T extends Comparator<T>> extends Serializable, Externalizable {
     /**
      *
-     * Enumeration of statistical types.  NONUNIQUEKEY,UNIQUEKEY,PRIMARYKEY todo.
+     * Enumeration of statistical types.  NONUNIQUEKEY,UNIQUEKEY,PRIMARYKEY todo.  COLUMN_GROUP holds the joint
+     * statistics of several columns of the same row.
      *
      * @return
      */
     public enum Type {
-        COLUMN,NONUNIQUEKEY,UNIQUEKEY,PRIMARYKEY
+        COLUMN,NONUNIQUEKEY,UNIQUEKEY,PRIMARYKEY,COLUMN_GROUP
     }
 
     /**
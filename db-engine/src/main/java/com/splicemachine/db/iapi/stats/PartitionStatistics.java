@@ -48,11 +48,22 @@ public interface PartitionStatistics {
      */
     String partitionId();
 
+    /**
+     * @return the fraction of the partition's rows which the statistics were built from. Row counts and sizes
+     * are already scaled to the full partition; column level estimates are scaled by the implementation.
+     */
+    double sampleFraction();
+
     /**
      * @return Statistics about individual columns (which were most recently collected).
      */
     List<? extends ItemStatistics> getAllColumnStatistics();
 
+    /**
+     * @return Joint statistics for groups of columns, or an empty list if none were collected.
+     */
+    List<ColumnGroupStatisticsImpl> getColumnGroupStatistics();
+
 
     <T extends Comparator<T>> T minValue(int positionNumber);
 
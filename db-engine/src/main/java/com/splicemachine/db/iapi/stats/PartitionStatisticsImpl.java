@@ -27,6 +27,7 @@ import java.util.List;
 public class PartitionStatisticsImpl implements PartitionStatistics {
     PartitionStatisticsDescriptor partitionStatistics;
     private List<ItemStatistics> itemStatistics = new ArrayList<>();
+    private List<ColumnGroupStatisticsImpl> columnGroupStatistics = new ArrayList<>();
 
     public PartitionStatisticsImpl() {
 
@@ -35,7 +36,12 @@ public class PartitionStatisticsImpl implements PartitionStatistics {
     public PartitionStatisticsImpl(PartitionStatisticsDescriptor partitionStatistics) {
        this.partitionStatistics = partitionStatistics;
         for (ColumnStatisticsDescriptor columnStatisticsDescriptor : partitionStatistics.getColumnStatsDescriptors()) {
-            itemStatistics.add(columnStatisticsDescriptor.getStats());
+            ItemStatistics stats = columnStatisticsDescriptor.getStats();
+            // column groups are kept apart, so that column statistics stay indexed by position
+            if (stats.getType() == ItemStatistics.Type.COLUMN_GROUP)
+                columnGroupStatistics.add((ColumnGroupStatisticsImpl) stats);
+            else
+                itemStatistics.add(stats);
         }
     }
 
@@ -59,11 +65,21 @@ public class PartitionStatisticsImpl implements PartitionStatistics {
         return partitionStatistics.getPartitionId();
     }
 
+    @Override
+    public double sampleFraction() {
+        return partitionStatistics.getSampleFraction();
+    }
+
     @Override
     public List<? extends ItemStatistics> getAllColumnStatistics() {
         return itemStatistics;
     }
 
+    @Override
+    public List<ColumnGroupStatisticsImpl> getColumnGroupStatistics() {
+        return columnGroupStatistics;
+    }
+
     /**
      *
      * This is 1 based with the 0 entry being the key
@@ -88,26 +104,28 @@ public class PartitionStatisticsImpl implements PartitionStatistics {
 
     @Override
     public long nullCount(int positionNumber) {
-        return itemStatistics.get(positionNumber).nullCount();
+        return SampledStatistics.scaleCount(itemStatistics.get(positionNumber).nullCount(),sampleFraction());
     }
 
     @Override
     public long notNullCount(int positionNumber) {
-        return itemStatistics.get(positionNumber).notNullCount();
+        return SampledStatistics.scaleCount(itemStatistics.get(positionNumber).notNullCount(),sampleFraction());
     }
 
     @Override
     public long cardinality(int positionNumber) {
-        return itemStatistics.get(positionNumber).cardinality();
+        ItemStatistics stats = itemStatistics.get(positionNumber);
+        return SampledStatistics.scaleCardinality(stats.cardinality(),stats.totalCount(),sampleFraction(),rowCount());
     }
 
     @Override
     public <T extends Comparator<T>> long selectivity(T element, int positionNumber) {
-        return itemStatistics.get(positionNumber).selectivity((T) element);
+        return SampledStatistics.scaleCount(itemStatistics.get(positionNumber).selectivity((T) element),sampleFraction());
     }
 
     @Override
     public <T extends Comparator<T>> long rangeSelectivity(T start, T stop, boolean includeStart, boolean includeStop, int positionNumber) {
-        return itemStatistics.get(positionNumber).rangeSelectivity((T) start, (T) stop, includeStart, includeStop);
+        return SampledStatistics.scaleCount(
+                itemStatistics.get(positionNumber).rangeSelectivity((T) start, (T) stop, includeStart, includeStop),sampleFraction());
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.db.iapi.stats;
+
+/**
+ * Scales counts which were computed from a random sample of rows back up to the full data set.
+ *
+ * Counts (nulls, matching rows) scale linearly with the sample rate. Distinct value counts do not: a
+ * column with few distinct values shows all of them in even a small sample, while a column whose values
+ * are mostly unique shows about as many distinct values as sampled rows. We follow the usual heuristic
+ * of treating the column as unique-ish (and scaling) when the sample's distinct count is at least
+ * {@link #DISTINCT_SCALING_THRESHOLD} of the sampled rows, and leaving the count alone otherwise.
+ */
+public final class SampledStatistics {
+    static final double DISTINCT_SCALING_THRESHOLD = 0.1d;
+
+    private SampledStatistics(){}
+
+    /**
+     * @param sampledCount a count taken over the sampled rows
+     * @param sampleFraction the fraction of rows which were sampled, in (0,1]
+     * @return the estimated count over all rows
+     */
+    public static long scaleCount(long sampledCount,double sampleFraction){
+        if(sampleFraction>=1.0d || sampleFraction<=0d)
+            return sampledCount;
+        return Math.round(sampledCount/sampleFraction);
+    }
+
+    /**
+     * @param sampledCardinality the number of distinct values seen in the sample
+     * @param sampledRows the number of rows in the sample
+     * @param sampleFraction the fraction of rows which were sampled, in (0,1]
+     * @param totalRows the estimated number of rows in the full data set
+     * @return the estimated number of distinct values in the full data set
+     */
+    public static long scaleCardinality(long sampledCardinality,long sampledRows,double sampleFraction,long totalRows){
+        if(sampleFraction>=1.0d || sampleFraction<=0d)
+            return sampledCardinality;
+        if(sampledCardinality<DISTINCT_SCALING_THRESHOLD*sampledRows)
+            return sampledCardinality;
+        return Math.min(scaleCount(sampledCardinality,sampleFraction),Math.max(totalRows,sampledCardinality));
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.splicemachine.db.iapi.stats;
 
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import java.util.Comparator;
 import java.util.List;
 
@@ -136,5 +137,32 @@ public interface TableStatistics {
      */
     <T extends Comparator<T>> double rangeSelectivity(T start,T stop, boolean includeStart,boolean includeStop,int positionNumber);
 
+    /**
+     *
+     * Joint statistics for groups of columns, merged across all partitions.
+     *
+     * @return the column groups, or an empty list if none were collected
+     */
+    List<ColumnGroupStatisticsImpl> getColumnGroupStatistics();
+
+    /**
+     *
+     * Number of distinct value combinations of a column group.
+     *
+     * @param columnIds the column positions of the group (indexed from 1), in ascending order
+     * @return the estimate, or -1 if no statistics were collected for the group
+     */
+    long columnGroupCardinality(int[] columnIds);
+
+    /**
+     *
+     * Selectivity of equality predicates on every column of a column group.
+     *
+     * @param columnIds the column positions of the group (indexed from 1), in ascending order
+     * @param values the value of each column, in the same order
+     * @return the fraction of rows matching all of the values, or -1 if no statistics were collected for the group
+     */
+    double columnGroupSelectivity(int[] columnIds, ExecRow values);
+
 }
 
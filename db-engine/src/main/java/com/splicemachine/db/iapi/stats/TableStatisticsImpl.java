@@ -13,8 +13,13 @@
  * specific language governing permissions and limitations under the License.
  */
 package com.splicemachine.db.iapi.stats;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of Table Level Statistics.  The partition statistics contained within have each partition we know about.
@@ -109,11 +114,14 @@ public class TableStatisticsImpl implements TableStatistics {
         try {
             ColumnStatisticsMerge[] itemStatisticsBuilder = null;
             boolean fake = false;
+            double sampledRowCount = 0d;
             if (effectivePartitionStatistics == null) {
                 assert partitionStatistics !=null:"Partition Statistics are null";
+                Map<String,ColumnGroupStatisticsMerge> columnGroupBuilder = new LinkedHashMap<>();
                 for (PartitionStatistics partStats : partitionStatistics) {
                     List<? extends ItemStatistics> itemStatisticsList = partStats.getAllColumnStatistics();
                     rowCount += partStats.rowCount();
+                    sampledRowCount += partStats.rowCount()*partStats.sampleFraction();
                     totalSize += partStats.totalSize();
                     avgRowWidth += partStats.avgRowWidth(); // todo fix
                     if (itemStatisticsList.size() ==0)
@@ -125,15 +133,25 @@ public class TableStatisticsImpl implements TableStatistics {
                             itemStatisticsBuilder[i] = ColumnStatisticsMerge.instance();
                         itemStatisticsBuilder[i].accumulate((ColumnStatisticsImpl)itemStatisticsList.get(i));
                     }
+                    for (ColumnGroupStatisticsImpl columnGroup : partStats.getColumnGroupStatistics()) {
+                        String key = Arrays.toString(columnGroup.getColumnIds());
+                        ColumnGroupStatisticsMerge columnGroupMerge = columnGroupBuilder.get(key);
+                        if (columnGroupMerge == null) {
+                            columnGroupMerge = ColumnGroupStatisticsMerge.instance();
+                            columnGroupBuilder.put(key,columnGroupMerge);
+                        }
+                        columnGroupMerge.accumulate(columnGroup);
+                    }
                 }
                     if (fake) {
                         effectivePartitionStatistics = new FakePartitionStatisticsImpl(tableId, null, rowCount, totalSize,
                                 fallbackNullFraction,extraQualifierMultiplier);
                     }
                     else {
+                        double sampleFraction = rowCount==0?1.0d:Math.min(1.0d,sampledRowCount/rowCount);
                         effectivePartitionStatistics = new EffectivePartitionStatisticsImpl(itemStatisticsBuilder,
-                                rowCount, totalSize,
-                                avgRowWidth,fallbackNullFraction,extraQualifierMultiplier);
+                                new ArrayList<>(columnGroupBuilder.values()), rowCount, totalSize,
+                                avgRowWidth,fallbackNullFraction,extraQualifierMultiplier,sampleFraction);
                     }
             }
             return effectivePartitionStatistics;
@@ -239,6 +257,61 @@ public class TableStatisticsImpl implements TableStatistics {
         return ((double)selectivity/(double)rowCount);
     }
 
+    /**
+     *
+     * Column group statistics merged across all partitions.
+     *
+     * @return
+     */
+    @Override
+    public List<ColumnGroupStatisticsImpl> getColumnGroupStatistics() {
+        return getEffectivePartitionStatistics().getColumnGroupStatistics();
+    }
+
+    /**
+     *
+     * Number of distinct value combinations of the column group, scaled up to the whole table when the
+     * statistics were sampled.
+     *
+     * @param columnIds
+     * @return
+     */
+    @Override
+    public long columnGroupCardinality(int[] columnIds) {
+        ColumnGroupStatisticsImpl columnGroup = findColumnGroup(columnIds);
+        if (columnGroup == null)
+            return -1l;
+        PartitionStatistics effectiveStatistics = getEffectivePartitionStatistics();
+        long cardinality = SampledStatistics.scaleCardinality(columnGroup.cardinality(),columnGroup.totalCount(),
+                effectiveStatistics.sampleFraction(),effectiveStatistics.rowCount());
+        return Math.min(cardinality,rowCount());
+    }
+
+    /**
+     *
+     * Fraction of rows which match all of the values of the column group.  The estimate and the row count come
+     * from the same (possibly sampled) rows, so no scaling is needed.
+     *
+     * @param columnIds
+     * @param values
+     * @return
+     */
+    @Override
+    public double columnGroupSelectivity(int[] columnIds, ExecRow values) {
+        ColumnGroupStatisticsImpl columnGroup = findColumnGroup(columnIds);
+        if (columnGroup == null || columnGroup.totalCount() == 0)
+            return -1.0d;
+        return Math.min(1.0d,((double) columnGroup.selectivity(values))/((double) columnGroup.totalCount()));
+    }
+
+    private ColumnGroupStatisticsImpl findColumnGroup(int[] columnIds) {
+        for (ColumnGroupStatisticsImpl columnGroup : getColumnGroupStatistics()) {
+            if (columnGroup.isGroupOf(columnIds))
+                return columnGroup;
+        }
+        return null;
+    }
+
     /**
      *
      * Return the number of partitions.
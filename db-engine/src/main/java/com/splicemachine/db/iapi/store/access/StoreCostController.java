@@ -254,6 +254,32 @@ public interface StoreCostController extends RowCountable{
      */
     double baseRowCount();
 
+    /**
+     * Groups of columns for which joint statistics exist.
+     *
+     * @return the column ids (indexed from 1, ascending) of each group, largest groups first. Empty if there
+     * are no column group statistics.
+     */
+    int[][] columnGroups();
+
+    /**
+     * Get the selectivity fraction of equality predicates on every column of a column group. Unlike
+     * combining the selectivities of the individual columns, this accounts for correlated columns.
+     *
+     * @param columnNumbers the ids of the group's columns (indexed from 1), as returned by {@link #columnGroups()}
+     * @param values the value each column is compared to, in the same order
+     * @return an estimate of the selectivity fraction, or -1 if there are no statistics for the group
+     */
+    double columnGroupSelectivity(int[] columnNumbers, DataValueDescriptor[] values);
+
+    /**
+     * Retrieve the number of distinct value combinations of a column group.
+     *
+     * @param columnNumbers the ids of the group's columns (indexed from 1), as returned by {@link #columnGroups()}
+     * @return an estimate of the joint cardinality, or -1 if there are no statistics for the group
+     */
+    long columnGroupCardinality(int[] columnNumbers);
+
     DataValueDescriptor minValue(int columnNumber);
 
     DataValueDescriptor maxValue(int columnNumber) ;
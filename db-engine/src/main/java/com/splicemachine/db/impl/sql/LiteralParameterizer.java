@@ -0,0 +1,316 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.impl.sql;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLChar;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the literals of a statement into parameters, so that statements which only differ in their
+ * literal values (as generated by most ORMs) share one entry in the statement cache.
+ *
+ * The rewrite works on the statement text, before it is parsed, and is deliberately conservative. Only
+ * numeric and character string literals which are
+ * <ul>
+ *     <li>the right hand side of an =, &lt;&gt; or != comparison, or</li>
+ *     <li>an element of an IN list</li>
+ * </ul>
+ * and which are not part of an arithmetic or concatenation expression are replaced. These take the type
+ * of the other operand, and their value barely changes the estimates of the optimizer. Literals which do
+ * drive the plan (range bounds, LIKE patterns, FETCH FIRST and OFFSET counts, ORDER BY positions) are
+ * left alone, as is anything in a comment, so that optimizer hints are kept.
+ *
+ * Only SELECT, INSERT, UPDATE and DELETE statements without any parameters of their own are rewritten.
+ */
+public final class LiteralParameterizer{
+
+    private LiteralParameterizer(){ }
+
+    /**
+     * The text of a statement with its literals replaced by parameters, and the values of those literals.
+     */
+    public static final class ParameterizedStatement{
+        private final String statementText;
+        private final DataValueDescriptor[] literals;
+
+        ParameterizedStatement(String statementText,DataValueDescriptor[] literals){
+            this.statementText=statementText;
+            this.literals=literals;
+        }
+
+        public String getStatementText(){ return statementText; }
+
+        /**
+         * @return the value of each parameter, in parameter order
+         */
+        public DataValueDescriptor[] getLiterals(){ return literals; }
+    }
+
+    /**
+     * @param sqlText the statement text
+     * @return the parameterized statement, or null if nothing in the statement can be parameterized
+     */
+    public static ParameterizedStatement parameterize(String sqlText){
+        List<Token> tokens=tokenize(sqlText);
+        if(tokens==null || !isParameterizableStatement(tokens))
+            return null;
+
+        StringBuilder text=null;
+        List<DataValueDescriptor> literals=new ArrayList<>();
+        int copied=0;
+        boolean[] inList=new boolean[tokens.size()+1];
+        int depth=0;
+        for(int i=0;i<tokens.size();i++){
+            Token token=tokens.get(i);
+            switch(token.kind){
+                case LPAREN:
+                    depth++;
+                    inList[depth]=i>0 && tokens.get(i-1).isWord("IN");
+                    continue;
+                case RPAREN:
+                    if(depth>0) depth--;
+                    continue;
+                case STRING:
+                case NUMBER:
+                    break;
+                default:
+                    continue;
+            }
+            Token prev=i>0?tokens.get(i-1):null;
+            Token next=i+1<tokens.size()?tokens.get(i+1):null;
+            if(!isParameterizablePosition(prev,next,depth>0 && inList[depth]))
+                continue;
+            DataValueDescriptor literal=toLiteral(sqlText,token);
+            if(literal==null)
+                continue;
+            if(text==null)
+                text=new StringBuilder(sqlText.length());
+            text.append(sqlText,copied,token.start).append('?');
+            copied=token.end;
+            literals.add(literal);
+        }
+        if(text==null)
+            return null;
+        text.append(sqlText,copied,sqlText.length());
+        return new ParameterizedStatement(text.toString(),literals.toArray(new DataValueDescriptor[literals.size()]));
+    }
+
+    /**
+     * @param sqlText the statement text
+     * @return true if the statement holds any literal value (a string, number or typed literal), or
+     *         cannot be tokenized. Comments and quoted identifiers are not literals.
+     */
+    public static boolean hasLiterals(String sqlText){
+        List<Token> tokens=tokenize(sqlText);
+        if(tokens==null)
+            return true;
+        for(Token token:tokens){
+            switch(token.kind){
+                case STRING:
+                case NUMBER:
+                    return true;
+                case OTHER:
+                    // a typed literal such as X'00', or a number followed by letters
+                    char first=token.image.charAt(0);
+                    if(first=='\'' || Character.isDigit(first) || first=='.')
+                        return true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isParameterizableStatement(List<Token> tokens){
+        Token first=null;
+        for(Token token:tokens){
+            if(token.kind==Kind.PARAMETER)
+                return false;
+            if(first==null && token.kind!=Kind.LPAREN)
+                first=token;
+        }
+        return first!=null
+                && (first.isWord("SELECT") || first.isWord("WITH") || first.isWord("INSERT")
+                || first.isWord("UPDATE") || first.isWord("DELETE"));
+    }
+
+    private static boolean isParameterizablePosition(Token prev,Token next,boolean inList){
+        if(prev==null)
+            return false;
+        if(next!=null && next.kind==Kind.OPERATOR && next.isArithmetic())
+            return false;
+        if(prev.kind==Kind.OPERATOR)
+            return prev.isEquality();
+        return inList
+                && (prev.kind==Kind.LPAREN || prev.kind==Kind.COMMA)
+                && next!=null && (next.kind==Kind.RPAREN || next.kind==Kind.COMMA);
+    }
+
+    /*
+     * Literals have the same types as the parser gives them: CHAR for strings, INTEGER, BIGINT or DECIMAL
+     * for exact numbers depending on their magnitude, and DOUBLE for approximate numbers.
+     */
+    private static DataValueDescriptor toLiteral(String sqlText,Token token){
+        String image=sqlText.substring(token.start,token.end);
+        if(token.kind==Kind.STRING)
+            return new SQLChar(image.substring(1,image.length()-1).replace("''","'"));
+        try{
+            if(image.indexOf('e')>=0 || image.indexOf('E')>=0){
+                double value=Double.parseDouble(image);
+                return Double.isInfinite(value)?null:new SQLDouble(value);
+            }
+            if(image.indexOf('.')>=0)
+                return new SQLDecimal(new BigDecimal(image));
+            BigInteger value=new BigInteger(image);
+            if(value.bitLength()<32)
+                return new SQLInteger(value.intValue());
+            if(value.bitLength()<64)
+                return new SQLLongint(value.longValue());
+            return new SQLDecimal(new BigDecimal(value));
+        }catch(NumberFormatException|StandardException e){
+            // not something we understand, leave it to the parser
+            return null;
+        }
+    }
+
+    private enum Kind{ WORD, STRING, NUMBER, OPERATOR, LPAREN, RPAREN, COMMA, PARAMETER, OTHER }
+
+    private static final class Token{
+        final Kind kind;
+        final String image;
+        final int start;
+        final int end;
+
+        Token(Kind kind,String image,int start,int end){
+            this.kind=kind;
+            this.image=image;
+            this.start=start;
+            this.end=end;
+        }
+
+        boolean isWord(String word){
+            return kind==Kind.WORD && image.equalsIgnoreCase(word);
+        }
+
+        boolean isEquality(){
+            return "=".equals(image) || "<>".equals(image) || "!=".equals(image);
+        }
+
+        boolean isArithmetic(){
+            return "+".equals(image) || "-".equals(image) || "*".equals(image)
+                    || "/".equals(image) || "||".equals(image);
+        }
+    }
+
+    /*
+     * Splits the statement into tokens, skipping white space and comments. Returns null if the text
+     * cannot be tokenized, in which case it is left to the parser to report the problem.
+     */
+    private static List<Token> tokenize(String sql){
+        List<Token> tokens=new ArrayList<>();
+        int n=sql.length();
+        int i=0;
+        while(i<n){
+            char c=sql.charAt(i);
+            int start=i;
+            if(Character.isWhitespace(c)){
+                i++;
+            }else if(c=='-' && i+1<n && sql.charAt(i+1)=='-'){
+                while(i<n && sql.charAt(i)!='\n' && sql.charAt(i)!='\r') i++;
+            }else if(c=='/' && i+1<n && sql.charAt(i+1)=='*'){
+                int close=sql.indexOf("*/",i+2);
+                if(close<0) return null;
+                i=close+2;
+            }else if(c=='\'' || c=='"'){
+                i++;
+                while(true){
+                    if(i>=n) return null;
+                    if(sql.charAt(i)==c){
+                        if(i+1<n && sql.charAt(i+1)==c){
+                            i+=2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                Kind kind=c=='\''?Kind.STRING:Kind.WORD;
+                // a string directly after a word is a typed literal such as X'00' or DATE'2016-01-01'
+                if(kind==Kind.STRING && start>0 && isIdentifierPart(sql.charAt(start-1)))
+                    kind=Kind.OTHER;
+                tokens.add(new Token(kind,sql.substring(start,i),start,i));
+            }else if(Character.isDigit(c) || (c=='.' && i+1<n && Character.isDigit(sql.charAt(i+1)))){
+                while(i<n && Character.isDigit(sql.charAt(i))) i++;
+                if(i<n && sql.charAt(i)=='.'){
+                    i++;
+                    while(i<n && Character.isDigit(sql.charAt(i))) i++;
+                }
+                if(i<n && (sql.charAt(i)=='e' || sql.charAt(i)=='E')){
+                    int e=i+1;
+                    if(e<n && (sql.charAt(e)=='+' || sql.charAt(e)=='-')) e++;
+                    if(e<n && Character.isDigit(sql.charAt(e))){
+                        i=e;
+                        while(i<n && Character.isDigit(sql.charAt(i))) i++;
+                    }
+                }
+                Kind kind=Kind.NUMBER;
+                if(i<n && isIdentifierPart(sql.charAt(i))){
+                    while(i<n && isIdentifierPart(sql.charAt(i))) i++;
+                    kind=Kind.OTHER;
+                }
+                tokens.add(new Token(kind,sql.substring(start,i),start,i));
+            }else if(Character.isLetter(c) || c=='_'){
+                while(i<n && isIdentifierPart(sql.charAt(i))) i++;
+                tokens.add(new Token(Kind.WORD,sql.substring(start,i),start,i));
+            }else if(c=='('){
+                tokens.add(new Token(Kind.LPAREN,"(",i,++i));
+            }else if(c==')'){
+                tokens.add(new Token(Kind.RPAREN,")",i,++i));
+            }else if(c==','){
+                tokens.add(new Token(Kind.COMMA,",",i,++i));
+            }else if(c=='?'){
+                tokens.add(new Token(Kind.PARAMETER,"?",i,++i));
+            }else if("=<>!+-*/|".indexOf(c)>=0){
+                i++;
+                if(i<n){
+                    String pair=sql.substring(start,i+1);
+                    if("<=".equals(pair) || ">=".equals(pair) || "<>".equals(pair)
+                            || "!=".equals(pair) || "||".equals(pair))
+                        i++;
+                }
+                tokens.add(new Token(Kind.OPERATOR,sql.substring(start,i),start,i));
+            }else{
+                tokens.add(new Token(Kind.OTHER,String.valueOf(c),i,++i));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isIdentifierPart(char c){
+        return Character.isLetterOrDigit(c) || c=='_';
+    }
+}
@@ -45,16 +45,19 @@ import org.spark_project.guava.cache.CacheBuilder;
 import org.spark_project.guava.cache.RemovalListener;
 import org.spark_project.guava.cache.RemovalNotification;
 
-import javax.management.MXBean;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
  * Cache Holder for making sense of data dictionary caching and concurrency.
  *
  */
-public class DataDictionaryCache {
+public class DataDictionaryCache implements DataDictionaryCacheManagement {
     private static Logger LOG = Logger.getLogger(DataDictionaryCache.class);
     private Cache<UUID,TableDescriptor> oidTdCache;
     private Cache<TableKey,TableDescriptor> nameTdCache;
@@ -67,9 +70,16 @@ public class DataDictionaryCache {
     private Cache<GenericStatement,GenericStorablePreparedStatement> statementCache;
     private Cache<String,SchemaDescriptor> schemaCache;
     private Cache<String,Optional<RoleGrantDescriptor>> roleCache;
+    private Cache<String,Boolean> unparameterizableCache;
     private int tdCacheSize;
     private int stmtCacheSize;
+    private int statementCacheSize;
     private int permissionsCacheSize;
+    private boolean autoParameterize;
+    private final AtomicLong compilations = new AtomicLong();
+    private final AtomicLong compileTimeNanos = new AtomicLong();
+    private final AtomicLong autoParameterizedExecutions = new AtomicLong();
+    private final AtomicLong autoParameterizeFallbacks = new AtomicLong();
     private DataDictionary dd;
 
 
@@ -90,6 +100,13 @@ public class DataDictionaryCache {
         permissionsCacheSize=PropertyUtil.intPropertyValue(Property.LANG_PERMISSIONS_CACHE_SIZE, value,
                 0, Integer.MAX_VALUE, Property.LANG_PERMISSIONS_CACHE_SIZE_DEFAULT);
 
+        value=startParams.getProperty(Property.DD_STATEMENT_CACHE_SIZE);
+        statementCacheSize=PropertyUtil.intPropertyValue(Property.DD_STATEMENT_CACHE_SIZE, value,
+                0, Integer.MAX_VALUE, Property.DD_STATEMENT_CACHE_SIZE_DEFAULT);
+
+        value=startParams.getProperty(Property.LANG_AUTO_PARAMETERIZE);
+        autoParameterize=value==null?Property.LANG_AUTO_PARAMETERIZE_DEFAULT:Boolean.parseBoolean(value.trim());
+
         RemovalListener<Object,Dependent> dependentInvalidator = new RemovalListener<Object, Dependent>() {
             @Override
             public void onRemoval(RemovalNotification<Object, Dependent> removalNotification) {
@@ -111,7 +128,8 @@ public class DataDictionaryCache {
         sequenceGeneratorCache=CacheBuilder.newBuilder().maximumSize(seqgenCacheSize).build();
         partitionStatisticsCache = CacheBuilder.newBuilder().maximumSize(8092).build();
         conglomerateCache = CacheBuilder.newBuilder().maximumSize(1024).build();
-        statementCache = CacheBuilder.newBuilder().maximumSize(1024).removalListener(dependentInvalidator).build();
+        statementCache = CacheBuilder.newBuilder().maximumSize(statementCacheSize).recordStats().removalListener(dependentInvalidator).build();
+        unparameterizableCache = CacheBuilder.newBuilder().maximumSize(statementCacheSize).build();
         schemaCache = CacheBuilder.newBuilder().maximumSize(1024).build();
         roleCache = CacheBuilder.newBuilder().maximumSize(100).build();
         permissionsCache=CacheBuilder.newBuilder().maximumSize(permissionsCacheSize).build();
@@ -335,6 +353,7 @@ public class DataDictionaryCache {
         storedPreparedStatementCache.invalidateAll();
         schemaCache.invalidateAll();
         statementCache.invalidateAll();
+        unparameterizableCache.invalidateAll();
         roleCache.invalidateAll();
     }
 
@@ -346,6 +365,7 @@ public class DataDictionaryCache {
         sequenceGeneratorCache.invalidateAll();
         permissionsCache.invalidateAll();
         statementCache.invalidateAll();
+        unparameterizableCache.invalidateAll();
         roleCache.invalidateAll();
     }
 
@@ -361,10 +381,29 @@ public class DataDictionaryCache {
         statementCache.invalidate(gs);
     }
 
+    @Override
     public void clearStatementCache() {
         if (LOG.isDebugEnabled())
             LOG.debug("clearStatementCache ");
         statementCache.invalidateAll();
+        unparameterizableCache.invalidateAll();
+    }
+
+    /**
+     * The statements which have an up to date plan in the statement cache, and which do not depend on
+     * anything private to a connection (temporary tables). Used to save the hot statements of this server,
+     * so that they can be compiled ahead of time after a restart.
+     *
+     * @return the cached statements
+     */
+    public List<GenericStatement> getCachedStatements() throws StandardException {
+        List<GenericStatement> statements = new ArrayList<>((int)statementCache.size());
+        for (Map.Entry<GenericStatement,GenericStorablePreparedStatement> entry : statementCache.asMap().entrySet()) {
+            GenericStorablePreparedStatement gsps = entry.getValue();
+            if (gsps.upToDate() && !gsps.referencesSessionSchema())
+                statements.add(entry.getKey());
+        }
+        return statements;
     }
 
     public void statementCacheAdd(GenericStatement gs, GenericStorablePreparedStatement gsp) throws StandardException {
@@ -384,6 +423,88 @@ public class DataDictionaryCache {
         return gsps;
     }
 
+    /**
+     * @return true if statements executed without parameters should have their literals replaced by
+     * parameters before they are looked up in the statement cache
+     * @see com.splicemachine.db.impl.sql.LiteralParameterizer
+     */
+    @Override
+    public boolean isAutoParameterizeEnabled() {
+        return autoParameterize;
+    }
+
+    /**
+     * @param parameterizedText the text of a statement after its literals have been replaced by parameters
+     * @return false if that text failed to compile or to take the literal values before
+     */
+    public boolean isParameterizable(String parameterizedText) {
+        return unparameterizableCache.getIfPresent(parameterizedText)==null;
+    }
+
+    /**
+     * Records that a parameterized statement text could not be used, so that statements with the same
+     * shape are compiled with their literals until the next DDL clears the statement cache.
+     */
+    public void markUnparameterizable(String parameterizedText) {
+        if (LOG.isDebugEnabled())
+            LOG.debug("markUnparameterizable " + parameterizedText);
+        unparameterizableCache.put(parameterizedText,Boolean.TRUE);
+        autoParameterizeFallbacks.incrementAndGet();
+    }
+
+    public void recordAutoParameterizedExecution() {
+        autoParameterizedExecutions.incrementAndGet();
+    }
+
+    public void recordAutoParameterizeFallback() {
+        autoParameterizeFallbacks.incrementAndGet();
+    }
+
+    public void recordCompilation(long nanos) {
+        compilations.incrementAndGet();
+        compileTimeNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public long getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    @Override
+    public long getStatementCacheEntries() {
+        return statementCache.size();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementCache.stats().hitCount();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementCache.stats().missCount();
+    }
+
+    @Override
+    public long getStatementCompilations() {
+        return compilations.get();
+    }
+
+    @Override
+    public long getStatementCompileTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(compileTimeNanos.get());
+    }
+
+    @Override
+    public long getAutoParameterizedExecutions() {
+        return autoParameterizedExecutions.get();
+    }
+
+    @Override
+    public long getAutoParameterizeFallbacks() {
+        return autoParameterizeFallbacks.get();
+    }
+
     public void roleCacheAdd(String roleName, Optional<RoleGrantDescriptor> optional) throws StandardException {
         if (!dd.canUseCache(null))
             return;
@@ -406,12 +527,4 @@ public class DataDictionaryCache {
         roleCache.invalidate(roleName);
     }
 
-
-
-    @MXBean
-    @SuppressWarnings("UnusedDeclaration")
-    public interface DataDictionaryCacheIFace {
-
-    }
-
-}
\ No newline at end of file
+}
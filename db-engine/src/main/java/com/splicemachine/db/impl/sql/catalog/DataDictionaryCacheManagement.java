@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.impl.sql.catalog;
+
+import javax.management.MXBean;
+
+/**
+ * JMX hook for monitoring the statement cache of the {@link DataDictionaryCache}.
+ */
+@MXBean
+@SuppressWarnings("UnusedDeclaration")
+public interface DataDictionaryCacheManagement {
+
+    /**
+     * @return the maximum number of compiled statements kept in the statement cache
+     */
+    long getStatementCacheSize();
+
+    long getStatementCacheEntries();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    /**
+     * @return the number of statements compiled (parsed, bound, optimized and generated)
+     */
+    long getStatementCompilations();
+
+    /**
+     * @return the total time spent compiling statements
+     */
+    long getStatementCompileTimeMillis();
+
+    boolean isAutoParameterizeEnabled();
+
+    /**
+     * @return the number of statements which ran with a plan compiled for their parameterized text
+     */
+    long getAutoParameterizedExecutions();
+
+    /**
+     * @return the number of statements which had to be compiled with their literals, because the
+     * parameterized text did not compile or a literal did not fit the type of its parameter
+     */
+    long getAutoParameterizeFallbacks();
+
+    void clearStatementCache();
+}
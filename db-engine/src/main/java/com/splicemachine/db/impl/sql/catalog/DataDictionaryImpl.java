@@ -1216,6 +1216,17 @@ public abstract class DataDictionaryImpl extends BaseDataDictionary{
         deleteColumnStatistics(conglomerate,tc);
     }
 
+    @Override
+    public void deletePartitionStatistics(long conglomerate,
+                                          String partitionId,
+                                          TransactionController tc) throws StandardException{
+        ExecIndexRow keyRow=exFactory.getIndexableRow(2);
+        keyRow.setColumn(1,new SQLLongint(conglomerate));
+        keyRow.setColumn(2,new SQLVarchar(partitionId));
+        getNonCoreTI(SYSTABLESTATS_CATALOG_NUM).deleteRow(tc,keyRow,SYSTABLESTATISTICSRowFactory.SYSTABLESTATISTICS_INDEX2_ID);
+        getNonCoreTI(SYSCOLUMNSTATS_CATALOG_NUM).deleteRow(tc,keyRow,SYSCOLUMNSTATISTICSRowFactory.SYSCOLUMNSTATISTICS_INDEX2_ID);
+    }
+
     @Override
     public void deleteColumnStatistics(long conglomerate,
                                       TransactionController tc) throws StandardException{
@@ -7547,6 +7558,18 @@ public abstract class DataDictionaryImpl extends BaseDataDictionary{
         return coreInfo[SYSCOLUMNS_CORE_NUM].getHeapConglomerate();
     }
 
+    /**
+     * Get the heap conglomerate number for SYS.SYSTABLESTATS.
+     * (Useful for adding new columns to the table during upgrade.)
+     *
+     * @return The heap conglomerate number for SYS.SYSTABLESTATS.
+     */
+    //used in Splice
+    @SuppressWarnings("unused")
+    public long getSYSTABLESTATSHeapConglomerateNumber() throws StandardException{
+        return getNonCoreTI(SYSTABLESTATS_CATALOG_NUM).getHeapConglomerate();
+    }
+
     private long getBootParameter(Properties startParams,String key,boolean required) throws StandardException{
 
         String value=startParams.getProperty(key);
@@ -223,6 +223,7 @@ public class ScanCostFunction{
 
     public void generateCost() throws StandardException {
 
+        applyColumnGroupSelectivity();
         double baseTableSelectivity = computePhaseSelectivity(selectivityHolder,QualifierPhase.BASE);
         double filterBaseTableSelectivity = computePhaseSelectivity(selectivityHolder,QualifierPhase.BASE,QualifierPhase.FILTER_BASE);
         double projectionSelectivity = computePhaseSelectivity(selectivityHolder,QualifierPhase.FILTER_PROJECTION);
@@ -382,6 +383,62 @@ public class ScanCostFunction{
         return selectivity;
     }
 
+    /**
+     *
+     * Replaces the equality selectivities of columns which have joint statistics by the selectivity of their column
+     * group (city = 'Boston' and zip = '02116' -> (city,zip) = ('Boston','02116')).
+     *
+     * Combining the selectivities of the individual columns assumes that they are independent, which badly
+     * underestimates the number of rows when they are correlated.  The largest groups are matched first, each
+     * equality is used for at most one group, and all the equalities of a group have to be applied in the same phase.
+     *
+     * @throws StandardException
+     */
+    private void applyColumnGroupSelectivity() throws StandardException {
+        for (int[] columnGroup : scc.columnGroups()) {
+            RangeSelectivity[] equalities = new RangeSelectivity[columnGroup.length];
+            DataValueDescriptor[] values = new DataValueDescriptor[columnGroup.length];
+            QualifierPhase phase = null;
+            boolean covered = true;
+            for (int i = 0; i < columnGroup.length && covered; i++) {
+                equalities[i] = getEqualitySelectivity(columnGroup[i]);
+                covered = equalities[i] != null && (phase == null || phase == equalities[i].getPhase());
+                if (covered) {
+                    phase = equalities[i].getPhase();
+                    values[i] = equalities[i].start;
+                }
+            }
+            if (!covered)
+                continue;
+            ColumnGroupSelectivity groupSelectivity = new ColumnGroupSelectivity(scc,columnGroup,values,phase);
+            if (groupSelectivity.getSelectivity() < 0.0d)
+                continue; // no statistics for the group
+            for (int i = 0; i < columnGroup.length; i++)
+                selectivityHolder[columnGroup[i]].remove(equalities[i]);
+            addSelectivity(groupSelectivity);
+        }
+    }
+
+    /**
+     *
+     * Find the equality (colNum = constant) selectivity of a column, if there is one.
+     *
+     * @param colNum
+     * @return
+     */
+    private RangeSelectivity getEqualitySelectivity(int colNum) {
+        if (colNum >= selectivityHolder.length || selectivityHolder[colNum] == null)
+            return null;
+        for (SelectivityHolder holder : selectivityHolder[colNum]) {
+            if (!holder.isRangeSelectivity())
+                continue;
+            RangeSelectivity rq = (RangeSelectivity) holder;
+            if (rq.start != null && rq.start == rq.stop && rq.includeStart && rq.includeStop)
+                return rq;
+        }
+        return null;
+    }
+
     /**
      *
      * Method to combine range qualifiers a>12 and a< 15 -> range qualifier (12<a<15)
@@ -30,8 +30,12 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.compile.*;
 import com.splicemachine.db.iapi.sql.dictionary.ConglomerateDescriptor;
 import com.splicemachine.db.iapi.sql.dictionary.IndexRowGenerator;
+import com.splicemachine.db.iapi.store.access.StoreCostController;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -84,10 +88,95 @@ public class SelectivityUtil {
                 if (!p.isJoinPredicate()) continue;
                 selectivity = Math.min(selectivity, p.joinSelectivity(innerTable, innerCD, innerRowCount, outerRowCount, selectivityJoinType));
             }
+            if (selectivityJoinType == SelectivityJoinType.INNER)
+                selectivity = Math.min(selectivity, columnGroupJoinSelectivity(innerTable, predList, outerRowCount));
         }
         return selectivity;
     };
 
+    /**
+     *
+     * Join selectivity from the joint cardinality of column groups of the inner table whose columns are all joined by
+     * equality (a.city = b.city and a.zip = b.zip).  The selectivities of the individual predicates cannot see how
+     * selective the columns are together, so the best they can do is the most selective single column.
+     *
+     * @return the selectivity, or 1 if no column group is covered by the join predicates
+     */
+    private static double columnGroupJoinSelectivity(Optimizable innerTable,
+                                                     OptimizablePredicateList predList,
+                                                     long outerRowCount) throws StandardException {
+        Map<Integer,ColumnReference> joinColumns = new HashMap<>(); // inner column position -> outer column
+        StoreCostController innerCostController = null;
+        for (int i = 0; i < predList.size(); i++) {
+            Predicate p = (Predicate) predList.getOptPredicate(i);
+            if (!p.isJoinPredicate() || !(p.getRelop() instanceof BinaryRelationalOperatorNode))
+                continue;
+            BinaryRelationalOperatorNode relop = (BinaryRelationalOperatorNode) p.getRelop();
+            if (relop.getOperator() != RelationalOperator.EQUALS_RELOP ||
+                    !isBaseColumn(relop.getLeftOperand()) || !isBaseColumn(relop.getRightOperand()))
+                continue;
+            ColumnReference left = (ColumnReference) relop.getLeftOperand();
+            ColumnReference right = (ColumnReference) relop.getRightOperand();
+            ColumnReference inner;
+            ColumnReference outer;
+            if (left.getTableNumber() == innerTable.getTableNumber()) {
+                inner = left;
+                outer = right;
+            } else if (right.getTableNumber() == innerTable.getTableNumber()) {
+                inner = right;
+                outer = left;
+            } else
+                continue;
+            if (innerCostController == null)
+                innerCostController = inner.getStoreCostController();
+            joinColumns.put(inner.getSource().getColumnPosition(), outer);
+        }
+        double selectivity = 1.0d;
+        if (innerCostController == null || joinColumns.size() < 2)
+            return selectivity;
+        for (int[] columnGroup : innerCostController.columnGroups()) {
+            ColumnReference[] outerColumns = new ColumnReference[columnGroup.length];
+            boolean covered = true;
+            for (int i = 0; i < columnGroup.length && covered; i++) {
+                outerColumns[i] = joinColumns.get(columnGroup[i]);
+                covered = outerColumns[i] != null;
+            }
+            if (!covered)
+                continue;
+            long innerCardinality = innerCostController.columnGroupCardinality(columnGroup);
+            if (innerCardinality <= 0)
+                continue;
+            long outerCardinality = outerColumnGroupCardinality(outerColumns, outerRowCount);
+            selectivity = Math.min(selectivity, 1.0d / Math.max(1l, Math.min(innerCardinality, outerCardinality)));
+        }
+        return selectivity;
+    }
+
+    /**
+     *
+     * Joint cardinality of the outer columns, when they form a column group of a single table.  Otherwise we only
+     * know that there cannot be more distinct combinations than rows.
+     *
+     */
+    private static long outerColumnGroupCardinality(ColumnReference[] outerColumns, long outerRowCount) throws StandardException {
+        int[] columnGroup = new int[outerColumns.length];
+        for (int i = 0; i < outerColumns.length; i++) {
+            if (outerColumns[i].getTableNumber() != outerColumns[0].getTableNumber() ||
+                    !outerColumns[i].getSource().getTableColumnDescriptor().getReferencingUUID().equals(
+                    outerColumns[0].getSource().getTableColumnDescriptor().getReferencingUUID()))
+                return outerRowCount;
+            columnGroup[i] = outerColumns[i].getSource().getColumnPosition();
+        }
+        Arrays.sort(columnGroup);
+        long cardinality = outerColumns[0].getStoreCostController().columnGroupCardinality(columnGroup);
+        return cardinality <= 0 ? outerRowCount : cardinality;
+    }
+
+    private static boolean isBaseColumn(ValueNode operand) {
+        return operand instanceof ColumnReference && ((ColumnReference) operand).getSource() != null &&
+                ((ColumnReference) operand).getSource().getTableColumnDescriptor() != null;
+    }
+
     public static double estimateScanSelectivity(Optimizable innerTable, OptimizablePredicateList predList) throws StandardException {
         double selectivity = 1d;
         if (innerTable == null) {
@@ -56,11 +56,15 @@ import com.splicemachine.db.iapi.sql.execute.*;
 import com.splicemachine.db.iapi.sql.execute.CursorActivation;
 import com.splicemachine.db.iapi.store.access.TransactionController;
 import com.splicemachine.db.iapi.store.access.XATransactionController;
+import com.splicemachine.db.iapi.types.DataTypeDescriptor;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.iapi.types.DataValueFactory;
 import com.splicemachine.db.iapi.util.IdUtil;
 import com.splicemachine.db.iapi.util.InterruptStatus;
 import com.splicemachine.db.impl.sql.GenericStatement;
 import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
+import com.splicemachine.db.impl.sql.LiteralParameterizer;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import com.splicemachine.db.impl.sql.compile.CompilerContextImpl;
 import com.splicemachine.db.impl.sql.execute.*;
 import java.util.*;
@@ -93,6 +97,23 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
             return 0L;
         }
     };
+    /*
+     * Compilation errors which a ? parameter can cause where the literal it replaced would not
+     * (typically because the parameter has no type to take from its context)
+     */
+    private static final Set<String> PARAMETER_ERRORS=new HashSet<>(Arrays.asList(
+            SQLState.LANG_PARAM_IN_SELECT_LIST,
+            SQLState.LANG_BINARY_OPERANDS_BOTH_PARMS,
+            SQLState.LANG_UNARY_OPERAND_PARM,
+            SQLState.LANG_PARAMETER_RECEIVER,
+            SQLState.LANG_ALL_RESULT_EXPRESSIONS_PARAMS,
+            SQLState.LANG_NO_PARAMS_IN_VIEWS,
+            SQLState.LANG_NO_PARAMS_IN_TABLES,
+            SQLState.LANG_TABLE_CONSTRUCTOR_ALL_PARAM_COLUMN,
+            SQLState.LANG_NO_PARAMS_IN_TRIGGER_ACTION,
+            SQLState.LANG_DB2_COALESCE_FUNCTION_ALL_PARAMS,
+            SQLState.LANG_XMLPARSE_UNKNOWN_PARAM_TYPE));
+
     // make sure these are not zeros
     private final static int NON_XA=0;
     private final static int XA_ONE_PHASE=1;
@@ -1090,6 +1111,78 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
         return connFactory.getStatement(getDefaultSchema(),sqlText,true).prepare(this);
     }
 
+    @Override
+    public Activation getAutoParameterizedActivation(SchemaDescriptor compilationSchema,
+                                                     String sqlText,
+                                                     boolean isForReadOnly,
+                                                     boolean scrollable) throws StandardException{
+        DataDictionaryCache cache=getDataDictionary().getDataDictionaryCache();
+        if(restoreMode || !cache.isAutoParameterizeEnabled())
+            return null;
+        LiteralParameterizer.ParameterizedStatement parameterized=LiteralParameterizer.parameterize(sqlText);
+        if(parameterized==null || !cache.isParameterizable(parameterized.getStatementText()))
+            return null;
+
+        PreparedStatement ps;
+        int depth=getStatementDepth();
+        try{
+            ps=prepareInternalStatement(compilationSchema,parameterized.getStatementText(),isForReadOnly,false);
+        }catch(StandardException se){
+            if(se.getSeverity()>ExceptionSeverity.STATEMENT_SEVERITY)
+                throw se;
+            /*
+             * The parameterized text does not compile. Undo what the failed compilation left behind,
+             * and let the statement be compiled with its literals.
+             */
+            while(getStatementDepth()>depth){
+                popStatementContext(getStatementContext(),null);
+            }
+            if(PARAMETER_ERRORS.contains(se.getSQLState())){
+                //statements of this shape will never compile with parameters, so stop trying
+                cache.markUnparameterizable(parameterized.getStatementText());
+            }else{
+                /*
+                 * Anything else (a missing table, a lock timeout, an error in the statement itself)
+                 * has nothing to do with the parameters, and may not happen the next time. Compiling
+                 * with the literals will report it if it is still there.
+                 */
+                cache.recordAutoParameterizeFallback();
+            }
+            return null;
+        }
+
+        DataValueDescriptor[] literals=parameterized.getLiterals();
+        DataTypeDescriptor[] types=ps.getParameterTypes();
+        if(types==null || types.length!=literals.length){
+            cache.markUnparameterizable(parameterized.getStatementText());
+            return null;
+        }
+        Activation activation=ps.getActivation(this,scrollable);
+        ParameterValueSet pvs=activation.getParameterValueSet();
+        for(int i=0;i<literals.length;i++){
+            /*
+             * The plan was compiled for the type of each parameter. A literal which does not keep its
+             * value in that type (1.5 against an INTEGER column, or a string longer than a CHAR column)
+             * would give different results than the literal itself, so such statements are compiled as
+             * they are.
+             */
+            boolean fits;
+            try{
+                DataValueDescriptor value=types[i].normalize(literals[i],pvs.getParameterForSet(i));
+                fits=value.compare(literals[i])==0;
+            }catch(StandardException se){
+                fits=false;
+            }
+            if(!fits){
+                activation.close();
+                cache.recordAutoParameterizeFallback();
+                return null;
+            }
+        }
+        cache.recordAutoParameterizedExecution();
+        return activation;
+    }
+
     /**
      * Remove the activation to those known about by this connection.
      */
@@ -2,14 +2,21 @@ package com.splicemachine.db.impl.sql.execute;
 
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ItemStatistics;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
+
+import java.util.ArrayList;
+import java.util.List;
 /**
  * Created by jleach on 8/1/16.
  */
 public class StatisticsRow extends ValueRow {
     private ItemStatistics[] statistics;
+    private ColumnGroupStatisticsImpl[] columnGroupStatistics = new ColumnGroupStatisticsImpl[0];
+    private int[][] columnGroupPositions;
+    private ExecRow[] columnGroupRows;
 
     public StatisticsRow(ExecRow execRow) throws StandardException {
         assert execRow!=null:"ExecRow passed in is null";
@@ -21,6 +28,38 @@ public class StatisticsRow extends ValueRow {
         }
     }
 
+    /**
+     *
+     * Also collects joint statistics for groups of columns.
+     *
+     * @param execRow
+     * @param columnGroups the column ids (indexed from 1, ascending) of each group
+     * @param columnPositionMap the column id of each column of the row
+     * @throws StandardException
+     */
+    public StatisticsRow(ExecRow execRow, int[][] columnGroups, int[] columnPositionMap) throws StandardException {
+        this(execRow);
+        List<ColumnGroupStatisticsImpl> groupStatistics = new ArrayList<>(columnGroups.length);
+        List<int[]> groupPositions = new ArrayList<>(columnGroups.length);
+        GROUPS: for (int[] columnGroup : columnGroups) {
+            int[] positions = new int[columnGroup.length];
+            DataValueDescriptor[] columnTypes = new DataValueDescriptor[columnGroup.length];
+            for (int i = 0; i < columnGroup.length; i++) {
+                positions[i] = rowPosition(columnGroup[i],columnPositionMap,execRow.nColumns());
+                if (positions[i] < 0)
+                    continue GROUPS; // a column of the group is not collected
+                columnTypes[i] = execRow.getColumn(positions[i]).getNewNull();
+            }
+            groupStatistics.add(new ColumnGroupStatisticsImpl(columnGroup,columnTypes));
+            groupPositions.add(positions);
+        }
+        columnGroupStatistics = groupStatistics.toArray(new ColumnGroupStatisticsImpl[groupStatistics.size()]);
+        columnGroupPositions = groupPositions.toArray(new int[groupPositions.size()][]);
+        columnGroupRows = new ExecRow[columnGroupStatistics.length];
+        for (int i = 0; i < columnGroupRows.length; i++)
+            columnGroupRows[i] = new ValueRow(columnGroupPositions[i].length);
+    }
+
 
     /**
      *
@@ -38,9 +77,27 @@ public class StatisticsRow extends ValueRow {
         for (int i = 1; i<= execRow.nColumns(); i++) {
             setColumn(i,execRow.getColumn(i));
         }
+        for (int i = 0; i < columnGroupStatistics.length; i++) {
+            int[] positions = columnGroupPositions[i];
+            for (int j = 0; j < positions.length; j++)
+                columnGroupRows[i].setColumn(j+1,execRow.getColumn(positions[j]));
+            columnGroupStatistics[i].update(columnGroupRows[i]);
+        }
     }
 
     public ItemStatistics[] getItemStatistics() {
         return statistics;
     }
+
+    public ColumnGroupStatisticsImpl[] getColumnGroupStatistics() {
+        return columnGroupStatistics;
+    }
+
+    private static int rowPosition(int columnId, int[] columnPositionMap, int numColumns) {
+        for (int i = 0; i < numColumns && i < columnPositionMap.length; i++) {
+            if (columnPositionMap[i] == columnId)
+                return i+1;
+        }
+        return -1;
+    }
 }
\ No newline at end of file
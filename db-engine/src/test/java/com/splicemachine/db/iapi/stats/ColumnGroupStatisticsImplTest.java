@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.db.iapi.stats;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+public class ColumnGroupStatisticsImplTest {
+    private static final int[] COLUMNS = {2, 5};
+
+    @Test
+    public void testCorrelatedColumnsHaveJointCardinalityOfDeterminingColumn() {
+        // every zip belongs to a single city: 100 combinations, not 10 cities * 100 zips
+        ColumnGroupStatisticsImpl stats = cityZip(0, 10000);
+        Assert.assertEquals(100, stats.cardinality());
+        Assert.assertEquals(10000, stats.notNullCount());
+        Assert.assertEquals(0, stats.nullCount());
+        Assert.assertEquals(100, stats.selectivity(row(new SQLVarchar("city3"), new SQLInteger(37))));
+    }
+
+    @Test
+    public void testSelectivityConvertsValuesToColumnTypes() {
+        ColumnGroupStatisticsImpl stats = cityZip(0, 10000);
+        Assert.assertEquals(stats.selectivity(row(new SQLVarchar("city3"), new SQLInteger(37))),
+                stats.selectivity(row(new SQLVarchar("city3"), new SQLLongint(37))));
+    }
+
+    @Test
+    public void testNullValuesAreOnlyCounted() {
+        ColumnGroupStatisticsImpl stats = new ColumnGroupStatisticsImpl(COLUMNS,
+                new DataValueDescriptor[]{new SQLVarchar(), new SQLInteger()});
+        stats.update(row(new SQLVarchar("city1"), new SQLInteger(10)));
+        stats.update(row(new SQLVarchar(), new SQLInteger(10)));
+        stats.update(row(new SQLVarchar("city1"), new SQLInteger()));
+        Assert.assertEquals(1, stats.cardinality());
+        Assert.assertEquals(1, stats.notNullCount());
+        Assert.assertEquals(2, stats.nullCount());
+        Assert.assertEquals(3, stats.totalCount());
+        Assert.assertEquals(0, stats.selectivity(row(new SQLVarchar(), new SQLInteger(10))));
+    }
+
+    @Test
+    public void testMergeAcrossPartitions() throws Exception {
+        ColumnGroupStatisticsMerge merge = ColumnGroupStatisticsMerge.instance();
+        merge.accumulate(cityZip(0, 5000));
+        merge.accumulate(cityZip(5000, 10000));
+        ColumnGroupStatisticsImpl merged = merge.terminate();
+        Assert.assertArrayEquals(COLUMNS, merged.getColumnIds());
+        Assert.assertEquals(100, merged.cardinality());
+        Assert.assertEquals(10000, merged.notNullCount());
+        Assert.assertEquals(100, merged.selectivity(row(new SQLVarchar("city3"), new SQLInteger(37))));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        ColumnGroupStatisticsImpl stats = cityZip(0, 10000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            stats.writeExternal(out);
+        }
+        ColumnGroupStatisticsImpl read = new ColumnGroupStatisticsImpl();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read.readExternal(in);
+        }
+        Assert.assertTrue(read.isGroupOf(COLUMNS));
+        Assert.assertEquals(stats.cardinality(), read.cardinality());
+        Assert.assertEquals(stats.notNullCount(), read.notNullCount());
+        Assert.assertEquals(stats.selectivity(row(new SQLVarchar("city3"), new SQLInteger(37))),
+                read.selectivity(row(new SQLVarchar("city3"), new SQLInteger(37))));
+    }
+
+    private static ColumnGroupStatisticsImpl cityZip(int start, int stop) {
+        ColumnGroupStatisticsImpl stats = new ColumnGroupStatisticsImpl(COLUMNS,
+                new DataValueDescriptor[]{new SQLVarchar(), new SQLInteger()});
+        for (int i = start; i < stop; i++) {
+            int zip = i % 100;
+            stats.update(row(new SQLVarchar("city" + zip / 10), new SQLInteger(zip)));
+        }
+        return stats;
+    }
+
+    private static ExecRow row(DataValueDescriptor... values) {
+        ExecRow row = new ValueRow(values.length);
+        row.setRowArray(values);
+        return row;
+    }
+}
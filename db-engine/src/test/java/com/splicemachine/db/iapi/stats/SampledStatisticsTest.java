@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.splicemachine.db.iapi.stats;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SampledStatisticsTest {
+
+    @Test
+    public void testUnsampledCountsAreUnchanged() {
+        Assert.assertEquals(1234, SampledStatistics.scaleCount(1234, 1.0d));
+        Assert.assertEquals(1234, SampledStatistics.scaleCardinality(1234, 2000, 1.0d, 2000));
+    }
+
+    @Test
+    public void testCountsScaleWithSampleRate() {
+        Assert.assertEquals(10000, SampledStatistics.scaleCount(100, 0.01d));
+        Assert.assertEquals(4000, SampledStatistics.scaleCount(1000, 0.25d));
+        Assert.assertEquals(0, SampledStatistics.scaleCount(0, 0.25d));
+    }
+
+    @Test
+    public void testLowCardinalityIsNotScaled() {
+        // 12 distinct values in 10000 sampled rows: every value has most likely been seen already
+        Assert.assertEquals(12, SampledStatistics.scaleCardinality(12, 10000, 0.1d, 100000));
+    }
+
+    @Test
+    public void testHighCardinalityScalesUpToRowCount() {
+        Assert.assertEquals(50000, SampledStatistics.scaleCardinality(5000, 10000, 0.1d, 100000));
+        // a unique column cannot have more distinct values than rows
+        Assert.assertEquals(100000, SampledStatistics.scaleCardinality(9990, 10000, 0.099d, 100000));
+    }
+}
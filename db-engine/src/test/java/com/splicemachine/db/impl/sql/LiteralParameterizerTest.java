@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.impl.sql;
+
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLChar;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LiteralParameterizerTest {
+
+    @Test
+    public void testEqualityLiteralsAreParameterized() throws Exception {
+        LiteralParameterizer.ParameterizedStatement ps =
+                LiteralParameterizer.parameterize("select * from t where a = 1 and b='it''s' and c<>2.50");
+        Assert.assertEquals("select * from t where a = ? and b=? and c<>?", ps.getStatementText());
+        DataValueDescriptor[] literals = ps.getLiterals();
+        Assert.assertEquals(3, literals.length);
+        Assert.assertTrue(literals[0] instanceof SQLInteger);
+        Assert.assertEquals(1, literals[0].getInt());
+        Assert.assertTrue(literals[1] instanceof SQLChar);
+        Assert.assertEquals("it's", literals[1].getString());
+        Assert.assertTrue(literals[2] instanceof SQLDecimal);
+        Assert.assertEquals("2.50", literals[2].getString());
+    }
+
+    @Test
+    public void testStatementsDifferingInLiteralsShareText() {
+        Assert.assertEquals(
+                LiteralParameterizer.parameterize("UPDATE t SET v = 'x' WHERE id = 17").getStatementText(),
+                LiteralParameterizer.parameterize("UPDATE t SET v = 'yy' WHERE id = 42").getStatementText());
+    }
+
+    @Test
+    public void testInListElementsAreParameterized() {
+        LiteralParameterizer.ParameterizedStatement ps =
+                LiteralParameterizer.parameterize("delete from t where a in (1, 2,3) and b not in ('x')");
+        Assert.assertEquals("delete from t where a in (?, ?,?) and b not in (?)", ps.getStatementText());
+        Assert.assertEquals(4, ps.getLiterals().length);
+    }
+
+    @Test
+    public void testNumericLiteralTypes() {
+        DataValueDescriptor[] literals = LiteralParameterizer.parameterize(
+                "select * from t where a = 2147483648 and b = 99999999999999999999 and c = 1e3").getLiterals();
+        Assert.assertTrue(literals[0] instanceof SQLLongint);
+        Assert.assertTrue(literals[1] instanceof SQLDecimal);
+        Assert.assertTrue(literals[2] instanceof SQLDouble);
+    }
+
+    @Test
+    public void testPlanSensitiveLiteralsAreKept() {
+        String sql = "select a, 1 from t where b > 5 and c between 1 and 10 and d like 'ab%' " +
+                "order by 1 offset 10 rows fetch first 5 rows only";
+        Assert.assertNull(LiteralParameterizer.parameterize(sql));
+    }
+
+    @Test
+    public void testExpressionsAndTypedLiteralsAreKept() {
+        Assert.assertNull(LiteralParameterizer.parameterize(
+                "select * from t where a = 1 + b and c = -2 and d = DATE'2016-01-01' and e = X'0F' and f = 'a' || g"));
+        Assert.assertNull(LiteralParameterizer.parameterize("select * from t where a = cast('1' as int)"));
+    }
+
+    @Test
+    public void testCommentsAndQuotedIdentifiersAreKept() {
+        LiteralParameterizer.ParameterizedStatement ps = LiteralParameterizer.parameterize(
+                "select * from t --splice-properties index=ix_1\n where \"a=1\" = 3 /* b = 4 */");
+        Assert.assertEquals("select * from t --splice-properties index=ix_1\n where \"a=1\" = ? /* b = 4 */",
+                ps.getStatementText());
+        Assert.assertEquals(1, ps.getLiterals().length);
+    }
+
+    @Test
+    public void testOnlyParameterFreeDmlIsParameterized() {
+        Assert.assertNull(LiteralParameterizer.parameterize("select * from t where a = ? and b = 1"));
+        Assert.assertNull(LiteralParameterizer.parameterize("create table t (a int default 1)"));
+        Assert.assertNull(LiteralParameterizer.parameterize("call syscs_util.proc(a = 1)"));
+        Assert.assertNull(LiteralParameterizer.parameterize("select * from t where a = 'unterminated"));
+        Assert.assertNotNull(LiteralParameterizer.parameterize("(select * from t where a = 1)"));
+    }
+
+    @Test
+    public void testHasLiterals() {
+        Assert.assertFalse(LiteralParameterizer.hasLiterals("select * from t where a = ? and \"b1\" in (?, ?)"));
+        Assert.assertFalse(LiteralParameterizer.hasLiterals("select * from t --splice-properties index=ix_1\n where a = ?"));
+        Assert.assertFalse(LiteralParameterizer.hasLiterals("select * from t2 /* 'x' */"));
+        Assert.assertTrue(LiteralParameterizer.hasLiterals("select * from t where a = 'secret'"));
+        Assert.assertTrue(LiteralParameterizer.hasLiterals("select * from t where a = ? fetch first 10 rows only"));
+        Assert.assertTrue(LiteralParameterizer.hasLiterals("select * from t where a = .5"));
+        Assert.assertTrue(LiteralParameterizer.hasLiterals("select * from t where d = DATE'2016-01-01'"));
+        Assert.assertTrue(LiteralParameterizer.hasLiterals("select * from t where a = 'unterminated"));
+    }
+}
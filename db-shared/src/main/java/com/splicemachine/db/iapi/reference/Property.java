@@ -667,6 +667,25 @@ public interface Property {
 	String STATEMENT_CACHE_SIZE = "derby.language.statementCacheSize";
 	int STATEMENT_CACHE_SIZE_DEFAULT = 100;
 
+	/*
+		Size of the data dictionary's statement cache, which is shared by
+		all connections of the database
+		By default, 1024 statements are cached
+	 */
+	String DD_STATEMENT_CACHE_SIZE = "derby.language.ddStatementCacheSize";
+	int DD_STATEMENT_CACHE_SIZE_DEFAULT = 1024;
+
+	/**
+	 * Whether statements executed without parameters have their literals
+	 * replaced by parameters before the statement cache is searched, so that
+	 * statements differing only in literal values share one compiled plan.
+	 * Default is false.  Database.  Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String LANG_AUTO_PARAMETERIZE = "derby.language.autoParameterize";
+	boolean LANG_AUTO_PARAMETERIZE_DEFAULT = false;
+
 	/**
 	 * Tells if the system stored procedures should be updated during database boot up.
 	 * Default is false.  System property.  Loaded once (static initializer).
@@ -1081,7 +1100,27 @@ public interface Property {
 	 * client socket setKeepAlive value
 	 */
 	public final static String DRDA_PROP_KEEPALIVE = "derby.drda.keepAlive";
-	
+
+	/**
+	 * db.drda.nioSelector
+	 *
+	 *<BR>
+	 * whether idle client sessions wait for their next request on a shared
+	 * NIO selector rather than each holding a connection thread. Has no
+	 * effect when SSL is used.
+	 */
+	public final static String DRDA_PROP_NIOSELECTOR = "derby.drda.nioSelector";
+
+	/**
+	 * db.drda.maxExtraQueryBlocks
+	 *
+	 *<BR>
+	 * maximum number of query blocks sent in addition to the first one in
+	 * reply to a single fetch of a forward-only cursor, if the client
+	 * accepts extra query blocks. 0 sends one block per fetch.
+	 */
+	public final static String DRDA_PROP_MAXEXTRABLOCKS = "derby.drda.maxExtraQueryBlocks";
+
 
     /**
      * db.drda.streamOutBufferSize
@@ -273,6 +273,12 @@ public interface Attribute {
      */    
     String CLIENT_RETIEVE_MESSAGE_TEXT = "retrieveMessageText";
 
+    /**
+     * statementCacheSize.
+     * Client driver attribute.
+     */
+    String CLIENT_STATEMENT_CACHE_SIZE = "statementCacheSize";
+
     /**
        The attribute that is used to set client SSL mode.
     */
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.db.impl.drda;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.splicemachine.dbTesting.junit.BaseTestCase;
+
+/**
+ * Tests the streams of a <code>Session</code> whose socket was accepted from
+ * a channel, using package-private classes/methods.
+ */
+public class SessionTest extends BaseTestCase {
+
+    private ServerSocketChannel serverChannel;
+    private SocketChannel client;
+    private Session session;
+
+    public SessionTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+        session = new Session(null, 1, serverChannel.accept().socket(), null, false);
+    }
+
+    protected void tearDown() throws Exception {
+        // don't let a failed test leave this thread interrupted
+        Thread.interrupted();
+        session.close();
+        client.close();
+        serverChannel.close();
+        session = null;
+        client = null;
+        serverChannel = null;
+    }
+
+    /**
+     * Writing to the client must neither close the socket of an interrupted
+     * thread nor lose the interrupt.
+     */
+    public void testWriteKeepsInterrupt() throws IOException {
+        Thread.currentThread().interrupt();
+        session.sessionOutput.write(new byte[] {1, 2, 3}, 0, 3);
+        session.sessionOutput.write(4);
+        session.sessionOutput.flush();
+        assertTrue("Interrupt was lost", Thread.interrupted());
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while (buffer.hasRemaining())
+            assertTrue(client.read(buffer) > 0);
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}),
+                (ByteBuffer) buffer.flip());
+        assertTrue(session.clientSocket.getChannel().isOpen());
+    }
+
+    /**
+     * Reading from the client must neither close the socket of an
+     * interrupted thread nor lose the interrupt.
+     */
+    public void testReadKeepsInterrupt() throws IOException {
+        client.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}));
+
+        Thread.currentThread().interrupt();
+        assertEquals(1, session.sessionInput.read());
+        byte[] b = new byte[3];
+        int read = 0;
+        while (read < b.length)
+            read += session.sessionInput.read(b, read, b.length - read);
+        assertTrue("Interrupt was lost", Thread.interrupted());
+
+        assertEquals(2, b[0]);
+        assertEquals(4, b[2]);
+        assertTrue(session.clientSocket.getChannel().isOpen());
+    }
+
+    /**
+     * A thread which was not interrupted must not become interrupted.
+     */
+    public void testNoInterruptWithoutInterrupt() throws IOException {
+        session.sessionOutput.write(1);
+        session.sessionOutput.flush();
+        client.write(ByteBuffer.wrap(new byte[] {2}));
+        assertEquals(2, session.sessionInput.read());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    public static Test suite() {
+        return new TestSuite(SessionTest.class, "SessionTest");
+    }
+}
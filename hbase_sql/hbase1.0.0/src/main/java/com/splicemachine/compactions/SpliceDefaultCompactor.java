@@ -28,6 +28,7 @@ import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.si.data.hbase.coprocessor.TableType;
 import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.server.CompactionObserver;
 import com.splicemachine.si.impl.server.SICompactionState;
 import com.splicemachine.storage.Partition;
 import com.splicemachine.utils.SpliceLogUtils;
@@ -62,6 +63,7 @@ public class SpliceDefaultCompactor extends DefaultCompactor {
     private String conglomId = null;
     private String tableDisplayName = null;
     private String indexDisplayName = null;
+    private CompactionObserver compactionObserver = null;
 
     private static final String TABLE_DISPLAY_NAME_ATTR = SIConstants.TABLE_DISPLAY_NAME_ATTR;
     private static final String INDEX_DISPLAY_NAME_ATTR = SIConstants.INDEX_DISPLAY_NAME_ATTR;
@@ -83,6 +85,13 @@ public class SpliceDefaultCompactor extends DefaultCompactor {
         this.smallestReadPoint = smallestReadPoint;
     }
 
+    /**
+     * @param compactionObserver notified of the cells written by {@link #sparkCompact(CompactionRequest)}
+     */
+    public void setCompactionObserver(CompactionObserver compactionObserver) {
+        this.compactionObserver = compactionObserver;
+    }
+
     @Override
     public List<Path> compact(CompactionRequest request) throws IOException {
         if(!allowSpark || store.getRegionInfo().isSystemTable())
@@ -102,7 +111,7 @@ public class SpliceDefaultCompactor extends DefaultCompactor {
         String regionLocation = getRegionLocation(store);
         SConfiguration config = HConfiguration.getConfiguration();
         DistributedCompaction jobRequest=new DistributedCompaction(
-                getCompactionFunction(),
+                getCompactionFunction(collectStatistics(request, config)),
                 files,
                 getJobDetails(request),
                 getJobGroup(request,regionLocation),
@@ -181,13 +190,19 @@ public class SpliceDefaultCompactor extends DefaultCompactor {
         throw new IOException("Splice compaction service not initialized yet. Compaction aborted.");
     }
 
-    private SparkCompactionFunction getCompactionFunction() {
+    private SparkCompactionFunction getCompactionFunction(boolean collectStatistics) {
         return new SparkCompactionFunction(
             smallestReadPoint,
             store.getTableName().getNamespace(),
             store.getTableName().getQualifier(),
             store.getRegionInfo(),
-            store.getFamily().getName());
+            store.getFamily().getName(),
+            collectStatistics);
+    }
+
+    private boolean collectStatistics(CompactionRequest request, SConfiguration config) {
+        return request.isMajor() && config.getCollectStatisticsOnCompaction()
+                && EnvUtils.getTableType(config, store.getTableName()) == TableType.USER_TABLE;
     }
 
     private String getScope(CompactionRequest request) {
@@ -284,6 +299,7 @@ public class SpliceDefaultCompactor extends DefaultCompactor {
                     SICompactionState state = new SICompactionState(driver.getTxnSupplier(),
                             driver.getRollForward(),
                             driver.getConfiguration().getActiveTransactionCacheSize());
+                    state.setObserver(compactionObserver);
                     scanner = new SICompactionScanner(state,scanner);
                 }
                 if (scanner == null) {
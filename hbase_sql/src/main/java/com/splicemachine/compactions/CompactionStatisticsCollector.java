@@ -0,0 +1,348 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.compactions;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.dictionary.ConglomerateDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatisticsImpl;
+import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
+import com.splicemachine.db.iapi.stats.ItemStatistics;
+import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.db.impl.sql.catalog.SYSCOLUMNSTATISTICSRowFactory;
+import com.splicemachine.db.impl.sql.execute.StatisticsRow;
+import com.splicemachine.derby.ddl.DDLUtils;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.SITableScanner;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.jdbc.SpliceTransactionResourceImpl;
+import com.splicemachine.derby.stream.control.ControlDataSet;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.derby.stream.iterator.TableScannerIterator;
+import com.splicemachine.derby.utils.StatisticsAdmin;
+import com.splicemachine.metrics.Metrics;
+import com.splicemachine.metrics.TimeView;
+import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.protobuf.ProtoUtil;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.impl.TxnRegion;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.readresolve.NoOpReadResolver;
+import com.splicemachine.si.impl.rollforward.NoopRollForward;
+import com.splicemachine.si.impl.server.CompactionObserver;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.HCell;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rebuilds the statistics of a single region from the rows written out by a major compaction, so that
+ * frequently compacted tables get fresh statistics without a separate full scan.
+ * <p/>
+ * The rows are decoded in the same way as COLLECT_TABLE_STATISTICS reads them, as of a transaction begun
+ * when the compaction started. Once the compaction has finished, {@link #finish()} replaces the region's
+ * entries in SYS.SYSTABLESTATS and SYS.SYSCOLUMNSTATS; the regions of a table are merged when the statistics
+ * are read, just as they are for explicitly collected statistics.
+ * <p/>
+ * Statistics are strictly best-effort: any failure is logged and disables the collector, but never fails
+ * the compaction.
+ */
+public class CompactionStatisticsCollector implements CompactionObserver {
+    private static final Logger LOG = Logger.getLogger(CompactionStatisticsCollector.class);
+
+    private final long conglomId;
+    private final String partitionId;
+    private final TableDescriptor table;
+    private final int[] columnPositionMap;
+    private final int[][] columnGroups;
+    private final ExecRow template;
+    private final Txn txn;
+    private final SITableScanner scanner;
+    private final RowFeed rowFeed;
+
+    private List<DataCell> currentRow = new ArrayList<>();
+    private StatisticsRow statisticsRow;
+    private long rowCount = 0l;
+    private long rowWidth = 0l;
+    private boolean failed = false;
+
+    private CompactionStatisticsCollector(long conglomId,
+                                          String partitionId,
+                                          TableDescriptor table,
+                                          int[] columnPositionMap,
+                                          int[][] columnGroups,
+                                          ExecRow template,
+                                          Txn txn,
+                                          SITableScanner scanner,
+                                          RowFeed rowFeed) {
+        this.conglomId = conglomId;
+        this.partitionId = partitionId;
+        this.table = table;
+        this.columnPositionMap = columnPositionMap;
+        this.columnGroups = columnGroups;
+        this.template = template;
+        this.txn = txn;
+        this.scanner = scanner;
+        this.rowFeed = rowFeed;
+    }
+
+    /**
+     * @return a collector for the given region of the conglomerate, or {@code null} if statistics are not kept
+     * for it (it is an index, it is not a base table, or it no longer exists).
+     */
+    public static CompactionStatisticsCollector create(long conglomId, Partition partition) throws IOException {
+        SIDriver driver = SIDriver.driver();
+        Txn txn = driver.lifecycleManager().beginTransaction();
+        boolean prepared = false;
+        CompactionStatisticsCollector collector = null;
+        SpliceTransactionResourceImpl transactionResource = null;
+        try {
+            transactionResource = new SpliceTransactionResourceImpl();
+            prepared = transactionResource.marshallTransaction(txn);
+            LanguageConnectionContext lcc = transactionResource.getLcc();
+            DataDictionary dd = lcc.getDataDictionary();
+            ConglomerateDescriptor cd = dd.getConglomerateDescriptor(conglomId);
+            if (cd == null || cd.isIndex())
+                return null;
+            TableDescriptor td = dd.getTableDescriptor(cd.getTableID());
+            if (td == null || td.getTableType() != TableDescriptor.BASE_TABLE_TYPE || td.getStoredAs() != null)
+                return null;
+
+            TxnRegion region = new TxnRegion(partition, NoopRollForward.INSTANCE, NoOpReadResolver.INSTANCE,
+                    driver.getTxnSupplier(), driver.getTransactor(), driver.getOperationFactory());
+            RowFeed rowFeed = new RowFeed(partition);
+            RegionScanBuilder builder = new RegionScanBuilder();
+            StatisticsAdmin.createTableScanner(builder, lcc, td, txn, 1.0d);
+            builder.region(region).scanner(rowFeed);
+            int[][] columnGroups = StatisticsAdmin.getColumnGroups(td, driver.getConfiguration().getColumnGroupMaxColumns());
+            collector = new CompactionStatisticsCollector(conglomId, partition.getName(), td,
+                    builder.getColumnPositionMap(), columnGroups, builder.getTemplate(), txn, builder.build(), rowFeed);
+            return collector;
+        } catch (SQLException | StandardException e) {
+            throw Exceptions.getIOException(e);
+        } finally {
+            if (prepared)
+                transactionResource.close();
+            if (collector == null)
+                txn.rollback();
+        }
+    }
+
+    @Override
+    public void observe(Collection<Cell> cells) throws IOException {
+        if (failed)
+            return;
+        try {
+            for (Cell cell : cells) {
+                if (!currentRow.isEmpty() && !CellUtil.matchingRow(((HCell) currentRow.get(0)).unwrapDelegate(), cell))
+                    flushRow();
+                currentRow.add(new HCell(cell));
+            }
+        } catch (Exception e) {
+            disable(e);
+        }
+    }
+
+    /**
+     * Replaces the statistics stored for this region with those of the rows seen by the compaction. Should only
+     * be called once the compaction has completed successfully.
+     */
+    public void finish() {
+        if (failed)
+            return;
+        List<ExecRow> rows;
+        try {
+            flushRow();
+            scanner.close();
+            txn.commit();
+            rows = statisticsRows();
+        } catch (Exception e) {
+            disable(e);
+            return;
+        }
+
+        String changeId = null;
+        boolean prepared = false;
+        SpliceTransactionResourceImpl transactionResource = null;
+        Txn writeTxn = null;
+        try {
+            writeTxn = SIDriver.driver().lifecycleManager().beginTransaction(Bytes.toBytes("dictionary"));
+            transactionResource = new SpliceTransactionResourceImpl();
+            prepared = transactionResource.marshallTransaction(writeTxn);
+            LanguageConnectionContext lcc = transactionResource.getLcc();
+            DataDictionary dd = lcc.getDataDictionary();
+            TransactionController tc = lcc.getTransactionExecute();
+            dd.deletePartitionStatistics(conglomId, partitionId, tc);
+            for (ExecRow row : rows) {
+                if (row.nColumns() == SYSCOLUMNSTATISTICSRowFactory.SYSCOLUMNSTATISTICS_COLUMN_COUNT)
+                    dd.addColumnStatistics(row, tc);
+                else
+                    dd.addTableStatistics(row, tc);
+            }
+            changeId = DDLUtils.notifyMetadataChange(
+                    ProtoUtil.alterStats(writeTxn.getTxnId(), Collections.singletonList(table)));
+            writeTxn.commit();
+            if (LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG, "Replaced statistics of partition %s of conglomerate %d, %d rows",
+                        partitionId, conglomId, rowCount);
+        } catch (Exception e) {
+            LOG.warn("Unable to store statistics of partition " + partitionId + " collected during compaction", e);
+            try {
+                if (writeTxn != null)
+                    writeTxn.rollback();
+            } catch (IOException ioe) {
+                LOG.warn("Unable to roll back statistics transaction " + writeTxn.getTxnId(), ioe);
+            }
+            return;
+        } finally {
+            if (prepared)
+                transactionResource.close();
+        }
+        try {
+            DDLUtils.finishMetadataChange(changeId);
+        } catch (StandardException e) {
+            LOG.warn("Unable to finish statistics change " + changeId, e);
+        }
+    }
+
+    /**
+     * Gives up on the statistics of a compaction that did not complete, releasing the collector's transaction
+     * and scanner. Nothing is written.
+     */
+    public void abort() {
+        if (failed)
+            return;
+        failed = true;
+        currentRow = null;
+        release();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void flushRow() throws StandardException, IOException {
+        if (currentRow.isEmpty())
+            return;
+        rowFeed.set(currentRow);
+        ExecRow row;
+        while ((row = scanner.next()) != null) {
+            if (statisticsRow == null)
+                statisticsRow = new StatisticsRow(row, columnGroups, columnPositionMap);
+            statisticsRow.setExecRow(row);
+            rowWidth += row.getRowSize();
+            rowCount++;
+        }
+        currentRow = new ArrayList<>();
+    }
+
+    private List<ExecRow> statisticsRows() throws StandardException {
+        List<ExecRow> rows = new ArrayList<>(columnPositionMap.length + 1);
+        if (statisticsRow != null) {
+            int meanRowWidth = (int) (((double) rowWidth) / ((double) rowCount));
+            ItemStatistics[] itemStatistics = statisticsRow.getItemStatistics();
+            for (int i = 0; i < itemStatistics.length; i++) {
+                if (itemStatistics[i] != null)
+                    rows.add(StatisticsAdmin.generateRowFromStats(conglomId, partitionId, columnPositionMap[i], itemStatistics[i]));
+            }
+            ColumnGroupStatisticsImpl[] columnGroupStatistics = statisticsRow.getColumnGroupStatistics();
+            for (int i = 0; i < columnGroupStatistics.length; i++) {
+                rows.add(StatisticsAdmin.generateRowFromStats(conglomId, partitionId, StatisticsAdmin.columnGroupId(i),
+                        columnGroupStatistics[i]));
+            }
+            rows.add(StatisticsAdmin.generateRowFromStats(conglomId, partitionId, rowCount, rowCount * ((long) meanRowWidth), meanRowWidth));
+        } else {
+            for (int i = 0; i < template.nColumns(); i++) {
+                rows.add(StatisticsAdmin.generateRowFromStats(conglomId, partitionId, columnPositionMap[i],
+                        new ColumnStatisticsImpl(template.getColumn(i + 1))));
+            }
+            rows.add(StatisticsAdmin.generateRowFromStats(conglomId, partitionId, 0, 0, 0));
+        }
+        return rows;
+    }
+
+    private void disable(Exception e) {
+        failed = true;
+        currentRow = null;
+        LOG.warn("Unable to collect statistics of partition " + partitionId + " during compaction", e);
+        release();
+    }
+
+    private void release() {
+        try {
+            scanner.close();
+            txn.rollback();
+        } catch (Exception ignored) {
+            // we are giving up on these statistics anyway
+        }
+    }
+
+    /**
+     * Scans the single region being compacted. The region and the row feed are set before the scanner is built,
+     * so a data set over it reads the rows currently fed to it.
+     */
+    private static class RegionScanBuilder extends TableScannerBuilder<LocatedRow> {
+        @Override
+        public DataSet<LocatedRow> buildDataSet() throws StandardException {
+            return new ControlDataSet<>(new TableScannerIterator(this, null));
+        }
+    }
+
+    /**
+     * Hands a single row at a time to the table scanner.
+     */
+    private static class RowFeed implements DataScanner {
+        private final Partition partition;
+        private List<DataCell> row = Collections.emptyList();
+
+        RowFeed(Partition partition) {
+            this.partition = partition;
+        }
+
+        void set(List<DataCell> row) {
+            this.row = row;
+        }
+
+        @Nonnull
+        @Override
+        public List<DataCell> next(int limit) throws IOException {
+            List<DataCell> next = row;
+            row = Collections.emptyList();
+            return next;
+        }
+
+        @Override public TimeView getReadTime() { return Metrics.noOpTimeView(); }
+        @Override public long getBytesOutput() { return 0l; }
+        @Override public long getRowsFiltered() { return 0l; }
+        @Override public long getRowsVisited() { return 0l; }
+        @Override public void close() throws IOException { }
+        @Override public Partition getPartition() { return partition; }
+    }
+}
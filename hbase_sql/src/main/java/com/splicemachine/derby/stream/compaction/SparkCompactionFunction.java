@@ -42,13 +42,16 @@ import org.apache.log4j.Logger;
 
 import com.splicemachine.access.HConfiguration;
 import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.compactions.CompactionStatisticsCollector;
 import com.splicemachine.compactions.SpliceDefaultCompactor;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.impl.SpliceSpark;
 import com.splicemachine.derby.stream.function.SpliceFlatMapFunction;
 import com.splicemachine.hbase.ReadOnlyHTableDescriptor;
+import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.storage.ClientPartition;
+import com.splicemachine.storage.RegionPartition;
 import com.splicemachine.utils.SpliceLogUtils;
 import scala.Tuple2;
 
@@ -59,6 +62,7 @@ public class SparkCompactionFunction extends SpliceFlatMapFunction<SpliceOperati
     private byte[] tableName;
     private byte[] storeColumn;
     private HRegionInfo hri;
+    private boolean collectStatistics;
 
     public SparkCompactionFunction() {
 
@@ -66,11 +70,20 @@ public class SparkCompactionFunction extends SpliceFlatMapFunction<SpliceOperati
 
     public SparkCompactionFunction(long smallestReadPoint, byte[] namespace,
                                    byte[] tableName, HRegionInfo hri, byte[] storeColumn) {
+        this(smallestReadPoint, namespace, tableName, hri, storeColumn, false);
+    }
+
+    /**
+     * @param collectStatistics whether to rebuild the statistics of the region from the compacted rows
+     */
+    public SparkCompactionFunction(long smallestReadPoint, byte[] namespace,
+                                   byte[] tableName, HRegionInfo hri, byte[] storeColumn, boolean collectStatistics) {
         this.smallestReadPoint = smallestReadPoint;
         this.namespace = namespace;
         this.tableName = tableName;
         this.hri = hri;
         this.storeColumn = storeColumn;
+        this.collectStatistics = collectStatistics;
     }
 
     @Override
@@ -86,6 +99,7 @@ public class SparkCompactionFunction extends SpliceFlatMapFunction<SpliceOperati
         out.write(hriBytes);
         out.writeInt(storeColumn.length);
         out.write(storeColumn);
+        out.writeBoolean(collectStatistics);
     }
 
     @Override
@@ -105,6 +119,7 @@ public class SparkCompactionFunction extends SpliceFlatMapFunction<SpliceOperati
         }
         storeColumn = new byte[in.readInt()];
         in.readFully(storeColumn);
+        collectStatistics = in.readBoolean();
         SpliceSpark.setupSpliceStaticComponents();
     }
 
@@ -148,7 +163,26 @@ public class SparkCompactionFunction extends SpliceFlatMapFunction<SpliceOperati
         }
 
         SpliceDefaultCompactor sdc = new SpliceDefaultCompactor(conf, store, smallestReadPoint);
-        List<Path> paths = sdc.sparkCompact(new CompactionRequest(readersToClose));
+        CompactionStatisticsCollector statisticsCollector = null;
+        if (collectStatistics) {
+            try {
+                statisticsCollector = CompactionStatisticsCollector.create(
+                        Long.parseLong(Bytes.toString(tableName)), new RegionPartition(region));
+            } catch (Exception e) {
+                LOG.warn("Unable to collect statistics during compaction of region " + hri.getRegionNameAsString(), e);
+            }
+            sdc.setCompactionObserver(statisticsCollector);
+        }
+        List<Path> paths;
+        try {
+            paths = sdc.sparkCompact(new CompactionRequest(readersToClose));
+        } catch (Throwable t) {
+            if (statisticsCollector != null)
+                statisticsCollector.abort();
+            throw t;
+        }
+        if (statisticsCollector != null)
+            statisticsCollector.finish();
 
         if (LOG.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder(100);
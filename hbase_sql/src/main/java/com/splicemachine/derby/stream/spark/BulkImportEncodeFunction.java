@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.db.iapi.services.io.ArrayUtil;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.RowLocation;
+import com.splicemachine.ddl.DDLMessage;
+import com.splicemachine.derby.impl.sql.execute.index.IndexTransformer;
+import com.splicemachine.derby.impl.sql.execute.sequence.SpliceSequence;
+import com.splicemachine.derby.stream.ActivationHolder;
+import com.splicemachine.derby.stream.output.insert.InsertPipelineWriter;
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.driver.SIDriver;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import scala.Tuple2;
+import scala.util.Either;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Encodes the rows of a bulk import into the rows of the table and of each of its indexes, exactly as the
+ * write pipeline would write them.
+ */
+public class BulkImportEncodeFunction<K> implements PairFlatMapFunction<Iterator<Tuple2<K, Either<Exception, ExecRow>>>, BulkImportKey, byte[]>, Externalizable{
+    private SparkOperationContext operationContext;
+    private TxnView txn;
+    private int[] pkCols;
+    private String tableVersion;
+    private ExecRow execRowDefinition;
+    private long heapConglom;
+    private List<DDLMessage.TentativeIndex> indexes;
+
+    public BulkImportEncodeFunction(){
+    }
+
+    public BulkImportEncodeFunction(SparkOperationContext operationContext,
+                                    TxnView txn,
+                                    int[] pkCols,
+                                    String tableVersion,
+                                    ExecRow execRowDefinition,
+                                    long heapConglom,
+                                    List<DDLMessage.TentativeIndex> indexes){
+        this.operationContext=operationContext;
+        this.txn=txn;
+        this.pkCols=pkCols;
+        this.tableVersion=tableVersion;
+        this.execRowDefinition=execRowDefinition;
+        this.heapConglom=heapConglom;
+        this.indexes=indexes;
+    }
+
+    @Override
+    public Iterator<Tuple2<BulkImportKey, byte[]>> call(Iterator<Tuple2<K, Either<Exception, ExecRow>>> rows) throws Exception{
+        ActivationHolder activationHolder=operationContext.getActivationHolder();
+        if(activationHolder!=null)
+            activationHolder.reinitialize(txn);
+        InsertPipelineWriter encoder=new InsertPipelineWriter(pkCols,tableVersion,execRowDefinition,
+                new RowLocation[0],new SpliceSequence[0],heapConglom,txn,operationContext,false);
+        IndexTransformer[] transformers=new IndexTransformer[indexes.size()];
+        long[] indexConglomerates=new long[indexes.size()];
+        for(int i=0;i<transformers.length;i++){
+            transformers[i]=new IndexTransformer(indexes.get(i));
+            indexConglomerates[i]=indexes.get(i).getIndex().getConglomerate();
+        }
+        return new EncodingIterator(rows,activationHolder,encoder,transformers,indexConglomerates);
+    }
+
+    private class EncodingIterator implements Iterator<Tuple2<BulkImportKey, byte[]>>{
+        private final Iterator<Tuple2<K, Either<Exception, ExecRow>>> rows;
+        private final ActivationHolder activationHolder;
+        private final InsertPipelineWriter encoder;
+        private final IndexTransformer[] transformers;
+        private final long[] indexConglomerates;
+        private final ArrayDeque<Tuple2<BulkImportKey, byte[]>> encoded=new ArrayDeque<>();
+        private boolean closed;
+
+        EncodingIterator(Iterator<Tuple2<K, Either<Exception, ExecRow>>> rows,
+                         ActivationHolder activationHolder,
+                         InsertPipelineWriter encoder,
+                         IndexTransformer[] transformers,
+                         long[] indexConglomerates){
+            this.rows=rows;
+            this.activationHolder=activationHolder;
+            this.encoder=encoder;
+            this.transformers=transformers;
+            this.indexConglomerates=indexConglomerates;
+        }
+
+        @Override
+        public boolean hasNext(){
+            try{
+                while(encoded.isEmpty() && !closed){
+                    if(rows.hasNext())
+                        encode(rows.next()._2());
+                    else
+                        close();
+                }
+                return !encoded.isEmpty();
+            }catch(Exception e){
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Tuple2<BulkImportKey, byte[]> next(){
+            if(!hasNext())
+                throw new NoSuchElementException();
+            return encoded.poll();
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException("Not implemented");
+        }
+
+        private void encode(Either<Exception, ExecRow> row) throws Exception{
+            if(row.isLeft())
+                throw row.left().get();
+            ExecRow execRow=row.right().get();
+            KVPair pair;
+            try{
+                pair=encoder.encode(execRow);
+            }catch(Exception e){
+                if(operationContext.isPermissive()){
+                    operationContext.recordBadRecord(e.getLocalizedMessage()+execRow.toString(),e);
+                    return;
+                }
+                throw Exceptions.parseException(e);
+            }
+            encoded.add(new Tuple2<>(new BulkImportKey(heapConglom,pair.getRowKey()),pair.getValue()));
+            for(int i=0;i<transformers.length;i++){
+                KVPair indexPair=transformers[i].translate(pair);
+                if(indexPair!=null)
+                    encoded.add(new Tuple2<>(new BulkImportKey(indexConglomerates[i],indexPair.getRowKey()),indexPair.getValue()));
+            }
+            operationContext.recordWrite();
+        }
+
+        private void close(){
+            if(closed)
+                return;
+            closed=true;
+            if(activationHolder!=null)
+                activationHolder.close();
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        out.writeObject(operationContext);
+        SIDriver.driver().getOperationFactory().writeTxn(txn,out);
+        ArrayUtil.writeIntArray(out,pkCols);
+        out.writeUTF(tableVersion);
+        out.writeObject(execRowDefinition);
+        out.writeLong(heapConglom);
+        out.writeInt(indexes.size());
+        for(DDLMessage.TentativeIndex index : indexes){
+            byte[] message=index.toByteArray();
+            out.writeInt(message.length);
+            out.write(message);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        operationContext=(SparkOperationContext)in.readObject();
+        txn=SIDriver.driver().getOperationFactory().readTxn(in);
+        pkCols=ArrayUtil.readIntArray(in);
+        tableVersion=in.readUTF();
+        execRowDefinition=(ExecRow)in.readObject();
+        heapConglom=in.readLong();
+        int size=in.readInt();
+        indexes=new ArrayList<>(size);
+        for(int i=0;i<size;i++){
+            byte[] message=new byte[in.readInt()];
+            in.readFully(message);
+            indexes.add(DDLMessage.TentativeIndex.parseFrom(message));
+        }
+    }
+}
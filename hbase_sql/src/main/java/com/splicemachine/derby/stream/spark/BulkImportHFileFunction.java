@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.access.HConfiguration;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.access.hbase.HBaseConnectionFactory;
+import com.splicemachine.access.hbase.HBaseTableInfoFactory;
+import com.splicemachine.pipeline.ErrorState;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.driver.SIDriver;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import scala.Tuple2;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * Writes the (sorted) encoded rows of one region to an HFile under {@code <directory>/<conglomerate>/V}, the
+ * layout LoadIncrementalHFiles expects.
+ *
+ * The cells are stamped with the id of the transaction of the import, so they are invisible until that
+ * transaction commits, exactly like cells written through the write pipeline. Since the rows of a region
+ * arrive sorted, two rows with the same key are next to each other: that can only be a duplicate primary
+ * or unique index key within the imported data, which fails the import.
+ */
+public class BulkImportHFileFunction implements FlatMapFunction<Iterator<Tuple2<BulkImportKey, byte[]>>, String>, Serializable{
+    private static final long serialVersionUID=1l;
+    private final String directory;
+    private final long txnId;
+    private final long heapConglom;
+
+    public BulkImportHFileFunction(String directory,long txnId,long heapConglom){
+        this.directory=directory;
+        this.txnId=txnId;
+        this.heapConglom=heapConglom;
+    }
+
+    @Override
+    public Iterator<String> call(Iterator<Tuple2<BulkImportKey, byte[]>> rows) throws Exception{
+        if(!rows.hasNext())
+            return Collections.emptyIterator();
+        Tuple2<BulkImportKey, byte[]> row=rows.next();
+        long conglomerate=row._1().getConglomerate();
+
+        Configuration conf=HConfiguration.unwrapDelegate();
+        HColumnDescriptor family=getFamily(conglomerate);
+        HFileContext context=new HFileContextBuilder()
+                .withCompression(family.getCompressionType())
+                .withBlockSize(family.getBlocksize())
+                .withDataBlockEncoding(family.getDataBlockEncoding())
+                .build();
+        Path path=new Path(new Path(new Path(directory,Long.toString(conglomerate)),family.getNameAsString()),
+                UUID.randomUUID().toString().replace("-",""));
+        FileSystem fs=path.getFileSystem(conf);
+        StoreFile.Writer writer=new StoreFile.WriterBuilder(conf,new CacheConfig(conf),fs)
+                .withFilePath(path)
+                .withComparator(KeyValue.COMPARATOR)
+                .withBloomType(family.getBloomFilterType())
+                .withFileContext(context)
+                .build();
+        try{
+            byte[] lastKey=null;
+            while(true){
+                byte[] rowKey=row._1().getRowKey();
+                if(lastKey!=null && Bytes.equals(lastKey,rowKey))
+                    throw ErrorState.LANG_DUPLICATE_KEY_CONSTRAINT.newException(Long.toString(conglomerate),Long.toString(heapConglom));
+                writer.append(new KeyValue(rowKey,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,
+                        txnId,KeyValue.Type.Put,row._2()));
+                lastKey=rowKey;
+                if(!rows.hasNext())
+                    break;
+                row=rows.next();
+                assert row._1().getConglomerate()==conglomerate:"A partition holds the rows of a single region";
+            }
+            writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY,Bytes.toBytes(System.currentTimeMillis()));
+            writer.appendTrackedTimestampsToMetadata();
+        }finally{
+            writer.close();
+        }
+        return Collections.singletonList(path.toString()).iterator();
+    }
+
+    private static HColumnDescriptor getFamily(long conglomerate) throws Exception{
+        SConfiguration config=SIDriver.driver().getConfiguration();
+        try(Admin admin=HBaseConnectionFactory.getInstance(config).getConnection().getAdmin()){
+            return admin.getTableDescriptor(HBaseTableInfoFactory.getInstance(config).getTableInfo(Long.toString(conglomerate)))
+                    .getFamily(SIConstants.DEFAULT_FAMILY_BYTES);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.primitives.Bytes;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The row key of a bulk imported row, along with the conglomerate (the table itself, or one of its indexes)
+ * the row belongs to. Keys sort the way HBase sorts rows within each conglomerate.
+ */
+public class BulkImportKey implements Comparable<BulkImportKey>, Serializable{
+    private static final long serialVersionUID=1l;
+    private final long conglomerate;
+    private final byte[] rowKey;
+
+    @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
+    public BulkImportKey(long conglomerate,byte[] rowKey){
+        this.conglomerate=conglomerate;
+        this.rowKey=rowKey;
+    }
+
+    public long getConglomerate(){
+        return conglomerate;
+    }
+
+    @SuppressFBWarnings(value="EI_EXPOSE_REP", justification="Intentional")
+    public byte[] getRowKey(){
+        return rowKey;
+    }
+
+    @Override
+    public int compareTo(BulkImportKey o){
+        int compare=Long.compare(conglomerate,o.conglomerate);
+        if(compare!=0)
+            return compare;
+        return Bytes.BASE_COMPARATOR.compare(rowKey,o.rowKey);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this==o) return true;
+        if(!(o instanceof BulkImportKey)) return false;
+        BulkImportKey that=(BulkImportKey)o;
+        return conglomerate==that.conglomerate && Arrays.equals(rowKey,that.rowKey);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31*Arrays.hashCode(rowKey)+Long.hashCode(conglomerate);
+    }
+
+    @Override
+    public String toString(){
+        return conglomerate+":"+Bytes.toHex(rowKey);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.primitives.Bytes;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends each bulk imported row to the partition of the region it is loaded into, so that every partition
+ * writes the HFile of exactly one region.
+ *
+ * Partitions are numbered by conglomerate first, then by region: the regions of the first conglomerate
+ * take the partitions 0 to n-1, those of the second conglomerate the next ones, and so on.
+ */
+public class BulkImportPartitioner extends org.apache.spark.Partitioner{
+    private static final long serialVersionUID=1l;
+    private final long[] conglomerates;
+    private final byte[][][] regionStartKeys;
+    private final int[] offsets;
+    private final int numPartitions;
+
+    /**
+     * @param conglomerates the conglomerates rows are imported into
+     * @param regionStartKeys for each conglomerate, the sorted start keys of its regions
+     */
+    @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
+    public BulkImportPartitioner(long[] conglomerates,byte[][][] regionStartKeys){
+        assert conglomerates.length==regionStartKeys.length:"Region start keys are needed for every conglomerate";
+        this.conglomerates=conglomerates;
+        this.regionStartKeys=regionStartKeys;
+        this.offsets=new int[conglomerates.length];
+        int n=0;
+        for(int i=0;i<conglomerates.length;i++){
+            offsets[i]=n;
+            n+=regionStartKeys[i].length;
+        }
+        this.numPartitions=n;
+    }
+
+    @Override
+    public int numPartitions(){
+        return numPartitions;
+    }
+
+    @Override
+    public int getPartition(Object key){
+        BulkImportKey bulkImportKey=(BulkImportKey)key;
+        for(int i=0;i<conglomerates.length;i++){
+            if(conglomerates[i]==bulkImportKey.getConglomerate())
+                return offsets[i]+getRegion(regionStartKeys[i],bulkImportKey.getRowKey());
+        }
+        throw new IllegalArgumentException("Unexpected conglomerate "+bulkImportKey.getConglomerate());
+    }
+
+    /**
+     * @return the index of the region holding the row key, which is the last region starting at or before it
+     */
+    static int getRegion(byte[][] startKeys,byte[] rowKey){
+        int low=0;
+        int high=startKeys.length-1;
+        while(low<high){
+            int mid=(low+high+1)>>>1;
+            if(Bytes.BASE_COMPARATOR.compare(startKeys[mid],rowKey)<=0)
+                low=mid;
+            else
+                high=mid-1;
+        }
+        return low;
+    }
+
+    /**
+     * Picks the keys to split the regions of a conglomerate at, so that no region receives more than
+     * {@code regionSize} bytes of imported data.
+     *
+     * @param startKeys the sorted start keys of the current regions, the first one being empty
+     * @param sampleKeys the sorted row keys of a sample of the imported rows
+     * @param bytesPerSample the number of imported bytes each sampled row stands for
+     * @param regionSize the number of bytes to load into each region
+     * @return the split points, in order
+     */
+    static List<byte[]> getSplitPoints(byte[][] startKeys,List<byte[]> sampleKeys,double bytesPerSample,long regionSize){
+        List<byte[]> splitPoints=new ArrayList<>();
+        int from=0;
+        for(int region=0;region<startKeys.length && from<sampleKeys.size();region++){
+            int to=from;
+            while(to<sampleKeys.size()
+                    && (region+1==startKeys.length || Bytes.BASE_COMPARATOR.compare(sampleKeys.get(to),startKeys[region+1])<0))
+                to++;
+            int samples=to-from;
+            int pieces=(int)Math.ceil(samples*bytesPerSample/regionSize);
+            byte[] last=startKeys[region];
+            for(int piece=1;piece<pieces;piece++){
+                byte[] splitPoint=sampleKeys.get(from+(int)((long)piece*samples/pieces));
+                // a region cannot be split at its own start key, nor twice at the same key
+                if(Bytes.BASE_COMPARATOR.compare(splitPoint,last)>0){
+                    splitPoints.add(splitPoint);
+                    last=splitPoint;
+                }
+            }
+            from=to;
+        }
+        return splitPoints;
+    }
+}
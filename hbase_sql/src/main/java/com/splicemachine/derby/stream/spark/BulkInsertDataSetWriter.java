@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.access.HConfiguration;
+import com.splicemachine.access.api.PartitionAdmin;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.access.hbase.HBaseConnectionFactory;
+import com.splicemachine.access.hbase.HBaseTableInfoFactory;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.RowLocation;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.ddl.DDLMessage;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.SpliceSpark;
+import com.splicemachine.derby.impl.sql.execute.operations.InsertOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.sequence.SpliceSequence;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.derby.stream.iapi.TableWriter;
+import com.splicemachine.derby.stream.output.DataSetWriter;
+import com.splicemachine.derby.stream.output.insert.InsertPipelineWriter;
+import com.splicemachine.pipeline.ErrorState;
+import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.log4j.Logger;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.storage.StorageLevel;
+import scala.Tuple2;
+import scala.util.Either;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Imports rows by writing HFiles for the table and each of its indexes and loading them into their regions,
+ * rather than sending the rows through the write pipeline.
+ *
+ * The rows are encoded once and kept, a sample of them is used to split the regions which would otherwise
+ * receive more data than a region holds, and the rows are then sorted by region and written to one HFile per
+ * region. All the cells are written by a single child transaction of the import, which is committed once every
+ * HFile has been loaded: until then none of the imported rows are visible, and if anything fails the child
+ * transaction is rolled back and the loaded cells are ignored like any rolled back write.
+ *
+ * Since the rows are not written through the pipeline, they are not checked against the rows already in the
+ * table: a key imported twice fails the import, but a key which already exists in the table is not detected.
+ * InsertOperation only picks this writer for a table with a primary key or unique index while it is empty.
+ */
+public class BulkInsertDataSetWriter<K> implements DataSetWriter{
+    private static final Logger LOG=Logger.getLogger(BulkInsertDataSetWriter.class);
+    private static final long SPLIT_WAIT_MS=60000L;
+    private static final long SPLIT_POLL_MS=1000L;
+
+    private JavaPairRDD<K, Either<Exception, ExecRow>> rdd;
+    private OperationContext<? extends SpliceOperation> opContext;
+    private int[] pkCols;
+    private String tableVersion;
+    private ExecRow execRowDefinition;
+    private RowLocation[] autoIncRowArray;
+    private SpliceSequence[] sequences;
+    private long heapConglom;
+    private String bulkImportDirectory;
+    private TxnView txn;
+
+    public BulkInsertDataSetWriter(){
+    }
+
+    public BulkInsertDataSetWriter(JavaPairRDD<K, Either<Exception, ExecRow>> rdd,
+                                   OperationContext<? extends SpliceOperation> opContext,
+                                   int[] pkCols,
+                                   String tableVersion,
+                                   ExecRow execRowDefinition,
+                                   RowLocation[] autoIncRowArray,
+                                   SpliceSequence[] sequences,
+                                   long heapConglom,
+                                   String bulkImportDirectory){
+        this.rdd=rdd;
+        this.opContext=opContext;
+        this.pkCols=pkCols;
+        this.tableVersion=tableVersion;
+        this.execRowDefinition=execRowDefinition;
+        this.autoIncRowArray=autoIncRowArray;
+        this.sequences=sequences;
+        this.heapConglom=heapConglom;
+        this.bulkImportDirectory=bulkImportDirectory;
+    }
+
+    @Override
+    public DataSet<LocatedRow> write() throws StandardException{
+        InsertOperation insertOperation=(InsertOperation)opContext.getOperation();
+        List<DDLMessage.TentativeIndex> indexes=insertOperation.getBulkImportIndexes();
+        long[] conglomerates=new long[indexes.size()+1];
+        conglomerates[0]=heapConglom;
+        for(int i=0;i<indexes.size();i++)
+            conglomerates[i+1]=indexes.get(i).getIndex().getConglomerate();
+
+        TxnView parentTxn=getTxn();
+        SConfiguration config=SIDriver.driver().getConfiguration();
+        Configuration conf=HConfiguration.unwrapDelegate();
+        Path directory=new Path(bulkImportDirectory,UUID.randomUUID().toString());
+        JavaPairRDD<BulkImportKey, byte[]> encoded=rdd.mapPartitionsToPair(new BulkImportEncodeFunction<K>(
+                (SparkOperationContext)opContext,parentTxn,pkCols,tableVersion,execRowDefinition,heapConglom,indexes))
+                .persist(StorageLevel.MEMORY_AND_DISK_SER());
+        TxnView childTxn;
+        try{
+            childTxn=SIDriver.driver().lifecycleManager().beginChildTransaction(parentTxn,
+                    parentTxn.getIsolationLevel(),true,getDestinationTable());
+        }catch(IOException e){
+            encoded.unpersist();
+            throw Exceptions.parseException(e);
+        }
+        try{
+            Connection connection=HBaseConnectionFactory.getInstance(config).getConnection();
+            HBaseTableInfoFactory tableInfoFactory=HBaseTableInfoFactory.getInstance(config);
+
+            splitRegions(encoded,conglomerates,config.getBulkImportSampleFraction(),connection,tableInfoFactory,conf);
+
+            byte[][][] regionStartKeys=new byte[conglomerates.length][][];
+            for(int i=0;i<conglomerates.length;i++)
+                regionStartKeys[i]=getStartKeys(connection,tableInfoFactory.getTableInfo(Long.toString(conglomerates[i])));
+            encoded.repartitionAndSortWithinPartitions(new BulkImportPartitioner(conglomerates,regionStartKeys))
+                    .mapPartitions(new BulkImportHFileFunction(directory.toString(),childTxn.getTxnId(),heapConglom))
+                    .count();
+
+            if(opContext.isPermissive()){
+                long numBadRecords=opContext.getBadRecords();
+                if(numBadRecords>0 && insertOperation.isAboveFailThreshold(numBadRecords))
+                    throw ErrorState.LANG_IMPORT_TOO_MANY_BAD_RECORDS.newException(opContext.getBadRecordFileName());
+            }
+
+            FileSystem fs=directory.getFileSystem(conf);
+            LoadIncrementalHFiles loader=new LoadIncrementalHFiles(conf);
+            for(long conglomerate : conglomerates){
+                Path hfiles=new Path(directory,Long.toString(conglomerate));
+                if(!fs.exists(hfiles))
+                    continue;
+                TableName tableName=tableInfoFactory.getTableInfo(Long.toString(conglomerate));
+                try(Admin admin=connection.getAdmin();
+                    Table table=connection.getTable(tableName);
+                    RegionLocator regionLocator=connection.getRegionLocator(tableName)){
+                    loader.doBulkLoad(hfiles,admin,table,regionLocator);
+                }
+            }
+            SIDriver.driver().lifecycleManager().commit(childTxn.getTxnId());
+        }catch(Exception e){
+            try{
+                SIDriver.driver().lifecycleManager().rollback(childTxn.getTxnId());
+            }catch(IOException re){
+                LOG.error("Unable to roll back bulk import transaction "+childTxn,re);
+            }
+            throw Exceptions.parseException(e);
+        }finally{
+            encoded.unpersist();
+            try{
+                directory.getFileSystem(conf).delete(directory,true);
+            }catch(IOException e){
+                LOG.warn("Unable to delete bulk import directory "+directory,e);
+            }
+        }
+
+        if(opContext.getOperation()!=null){
+            opContext.getOperation().fireAfterStatementTriggers();
+        }
+        ValueRow valueRow=new ValueRow(3);
+        valueRow.setColumn(1,new SQLLongint(opContext.getRecordsWritten()));
+        valueRow.setColumn(2,new SQLLongint());
+        valueRow.setColumn(3,new SQLVarchar());
+        if(opContext.isPermissive()){
+            long numBadRecords=opContext.getBadRecords();
+            valueRow.setColumn(2,new SQLLongint(numBadRecords));
+            if(numBadRecords>0)
+                valueRow.setColumn(3,new SQLVarchar(opContext.getBadRecordFileName()));
+        }
+        return new SparkDataSet<>(SpliceSpark.getContext().parallelize(Collections.singletonList(new LocatedRow(valueRow)),1));
+    }
+
+    /*
+     * Splits the regions which the sample says would receive more than a region's worth of imported data.
+     * Splits are asynchronous, so this waits a while for them to show up; a region which has not split in time
+     * only means a larger HFile, which LoadIncrementalHFiles splits itself when the region has split meanwhile.
+     */
+    private void splitRegions(JavaPairRDD<BulkImportKey, byte[]> encoded,
+                              long[] conglomerates,
+                              double sampleFraction,
+                              Connection connection,
+                              HBaseTableInfoFactory tableInfoFactory,
+                              Configuration conf) throws IOException, InterruptedException{
+        List<Tuple2<BulkImportKey, byte[]>> sample=encoded.sample(false,sampleFraction).collect();
+        if(sample.isEmpty())
+            return;
+        long sampledBytes=0;
+        Map<Long, List<byte[]>> sampleKeys=new HashMap<>();
+        for(Tuple2<BulkImportKey, byte[]> row : sample){
+            sampledBytes+=row._1().getRowKey().length+row._2().length;
+            List<byte[]> keys=sampleKeys.get(row._1().getConglomerate());
+            if(keys==null){
+                keys=new ArrayList<>();
+                sampleKeys.put(row._1().getConglomerate(),keys);
+            }
+            keys.add(row._1().getRowKey());
+        }
+        double bytesPerSample=sampledBytes/(double)sample.size()/sampleFraction;
+
+        try(PartitionAdmin admin=SIDriver.driver().getTableFactory().getAdmin();
+            Admin hbaseAdmin=connection.getAdmin()){
+            for(long conglomerate : conglomerates){
+                List<byte[]> keys=sampleKeys.get(conglomerate);
+                if(keys==null)
+                    continue;
+                Collections.sort(keys,Bytes.BASE_COMPARATOR);
+                TableName tableName=tableInfoFactory.getTableInfo(Long.toString(conglomerate));
+                long regionSize=hbaseAdmin.getTableDescriptor(tableName).getMaxFileSize();
+                if(regionSize<=0)
+                    regionSize=conf.getLong(HConstants.HREGION_MAX_FILESIZE,HConstants.DEFAULT_MAX_FILE_SIZE);
+                List<byte[]> splitPoints=BulkImportPartitioner.getSplitPoints(getStartKeys(connection,tableName),
+                        keys,bytesPerSample,regionSize);
+                if(splitPoints.isEmpty())
+                    continue;
+                SpliceLogUtils.info(LOG,"Splitting conglomerate %d at %d points before bulk import",conglomerate,splitPoints.size());
+
+                long deadline=System.currentTimeMillis()+SPLIT_WAIT_MS;
+                while(true){
+                    Set<byte[]> startKeys=new TreeSet<>(Bytes.BASE_COMPARATOR);
+                    Collections.addAll(startKeys,getStartKeys(connection,tableName));
+                    List<byte[]> pending=new ArrayList<>();
+                    for(byte[] splitPoint : splitPoints){
+                        if(!startKeys.contains(splitPoint))
+                            pending.add(splitPoint);
+                    }
+                    if(pending.isEmpty() || System.currentTimeMillis()>deadline)
+                        break;
+                    for(byte[] splitPoint : pending){
+                        try{
+                            admin.splitTable(Long.toString(conglomerate),splitPoint);
+                        }catch(IOException e){
+                            // most likely the region is still splitting, try again on the next round
+                            SpliceLogUtils.debug(LOG,"Unable to split conglomerate %d: %s",conglomerate,e.getMessage());
+                        }
+                    }
+                    Thread.sleep(SPLIT_POLL_MS);
+                }
+            }
+        }
+    }
+
+    private static byte[][] getStartKeys(Connection connection,TableName tableName) throws IOException{
+        try(RegionLocator regionLocator=connection.getRegionLocator(tableName)){
+            return regionLocator.getStartKeys();
+        }
+    }
+
+    @Override
+    public void setTxn(TxnView childTxn){
+        this.txn=childTxn;
+    }
+
+    @Override
+    public TableWriter getTableWriter() throws StandardException{
+        return new InsertPipelineWriter(pkCols,tableVersion,execRowDefinition,autoIncRowArray,sequences,heapConglom,
+                txn,opContext,false);
+    }
+
+    @Override
+    public TxnView getTxn(){
+        if(txn==null)
+            return opContext.getTxn();
+        else
+            return txn;
+    }
+
+    @Override
+    public byte[] getDestinationTable(){
+        return Bytes.toBytes(heapConglom);
+    }
+}
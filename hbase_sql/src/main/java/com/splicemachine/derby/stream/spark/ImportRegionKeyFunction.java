@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import com.splicemachine.db.iapi.services.io.ArrayUtil;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.stream.output.insert.InsertPipelineWriter;
+import com.splicemachine.derby.utils.marshall.KeyEncoder;
+import org.apache.spark.api.java.function.PairFunction;
+import scala.Tuple2;
+import scala.util.Either;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Keys each imported row by the primary key it is written with, so the rows can be shuffled to the region they
+ * are written to. The row itself is carried along unchanged.
+ *
+ * The key only decides which task writes the row: the row is encoded again when it is written, so a row whose
+ * key cannot be encoded here is simply sent to the first region, and fails (or not) when it is written.
+ */
+public class ImportRegionKeyFunction<K> implements PairFunction<Tuple2<K, Either<Exception, ExecRow>>, BulkImportKey, Tuple2<K, Either<Exception, ExecRow>>>, Externalizable{
+    private static final byte[] NO_KEY=new byte[0];
+    private int[] pkCols;
+    private String tableVersion;
+    private ExecRow execRowDefinition;
+    private long heapConglom;
+    private transient KeyEncoder keyEncoder;
+
+    public ImportRegionKeyFunction(){
+    }
+
+    public ImportRegionKeyFunction(int[] pkCols,String tableVersion,ExecRow execRowDefinition,long heapConglom){
+        assert pkCols!=null:"Rows without a primary key get their key when they are written";
+        this.pkCols=pkCols;
+        this.tableVersion=tableVersion;
+        this.execRowDefinition=execRowDefinition;
+        this.heapConglom=heapConglom;
+    }
+
+    @Override
+    public Tuple2<BulkImportKey, Tuple2<K, Either<Exception, ExecRow>>> call(Tuple2<K, Either<Exception, ExecRow>> row) throws Exception{
+        if(keyEncoder==null)
+            keyEncoder=InsertPipelineWriter.getKeyEncoder(pkCols,tableVersion,execRowDefinition);
+        byte[] rowKey=NO_KEY;
+        if(row._2().isRight()){
+            try{
+                rowKey=keyEncoder.getKey(row._2().right().get());
+            }catch(Exception e){
+                // reported when the row is written
+            }
+        }
+        return new Tuple2<>(new BulkImportKey(heapConglom,rowKey),row);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException{
+        ArrayUtil.writeIntArray(out,pkCols);
+        out.writeUTF(tableVersion);
+        out.writeObject(execRowDefinition);
+        out.writeLong(heapConglom);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException{
+        pkCols=ArrayUtil.readIntArray(in);
+        tableVersion=in.readUTF();
+        execRowDefinition=(ExecRow)in.readObject();
+        heapConglom=in.readLong();
+    }
+}
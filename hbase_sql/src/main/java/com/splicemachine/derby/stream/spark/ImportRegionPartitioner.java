@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.util.Arrays;
+
+/**
+ * Sends each imported row to a partition writing only to the region the row belongs to.
+ *
+ * Each region gets a fixed number of partitions, so that an import into a table with few regions keeps as many
+ * writing tasks as it read the input with: the partitions of region i are i*partitionsPerRegion to
+ * (i+1)*partitionsPerRegion-1, and the rows of a region are spread over them by the hash of their key.
+ */
+public class ImportRegionPartitioner extends org.apache.spark.Partitioner{
+    private static final long serialVersionUID=1l;
+    private final byte[][] regionStartKeys;
+    private final int partitionsPerRegion;
+
+    /**
+     * @param regionStartKeys the sorted start keys of the regions of the table
+     * @param partitionsPerRegion the number of partitions writing to each region
+     */
+    @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
+    public ImportRegionPartitioner(byte[][] regionStartKeys,int partitionsPerRegion){
+        assert partitionsPerRegion>0:"Every region needs a partition";
+        this.regionStartKeys=regionStartKeys;
+        this.partitionsPerRegion=partitionsPerRegion;
+    }
+
+    @Override
+    public int numPartitions(){
+        return regionStartKeys.length*partitionsPerRegion;
+    }
+
+    @Override
+    public int getPartition(Object key){
+        byte[] rowKey=((BulkImportKey)key).getRowKey();
+        int region=BulkImportPartitioner.getRegion(regionStartKeys,rowKey);
+        if(partitionsPerRegion==1)
+            return region;
+        return region*partitionsPerRegion+(Arrays.hashCode(rowKey)&Integer.MAX_VALUE)%partitionsPerRegion;
+    }
+}
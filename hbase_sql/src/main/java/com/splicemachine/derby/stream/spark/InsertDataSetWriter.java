@@ -15,7 +15,10 @@
 
 package com.splicemachine.derby.stream.spark;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import com.splicemachine.db.iapi.types.SQLVarchar;
 import com.splicemachine.derby.impl.SpliceSpark;
@@ -37,8 +40,12 @@ import com.splicemachine.derby.stream.iapi.TableWriter;
 import com.splicemachine.derby.stream.output.DataSetWriter;
 import com.splicemachine.derby.stream.output.insert.InsertPipelineWriter;
 import com.splicemachine.pipeline.ErrorState;
+import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.storage.Partition;
+import scala.util.Either;
 
 /**
  * @author Scott Fines
@@ -84,7 +91,10 @@ public class InsertDataSetWriter<K,V> implements DataSetWriter{
 
     @Override
     public DataSet<LocatedRow> write() throws StandardException{
-            rdd.saveAsNewAPIHadoopDataset(config);
+            if(opContext.isPermissive() && pkCols!=null && SIDriver.driver().getConfiguration().getImportRegionPartitioning())
+                partitionByRegion().saveAsNewAPIHadoopDataset(config);
+            else
+                rdd.saveAsNewAPIHadoopDataset(config);
             if(opContext.getOperation()!=null){
                 opContext.getOperation().fireAfterStatementTriggers();
             }
@@ -107,6 +117,37 @@ public class InsertDataSetWriter<K,V> implements DataSetWriter{
             return new SparkDataSet<>(SpliceSpark.getContext().parallelize(Collections.singletonList(new LocatedRow(valueRow)), 1));
     }
 
+    /*
+     * Rows read from import files are in no particular order, so each task would write to most regions of the
+     * table in small batches. Shuffling them by region, and sorting them, lets each task write large batches
+     * to the regions of a single server.
+     */
+    @SuppressWarnings("unchecked")
+    private JavaPairRDD<K, Either<Exception, ExecRow>> partitionByRegion() throws StandardException{
+        byte[][] regionStartKeys=getRegionStartKeys();
+        if(regionStartKeys.length<2)
+            return (JavaPairRDD<K, Either<Exception, ExecRow>>)rdd;
+        int partitionsPerRegion=Math.max(1,(rdd.getNumPartitions()+regionStartKeys.length-1)/regionStartKeys.length);
+        JavaPairRDD<K, Either<Exception, ExecRow>> rows=(JavaPairRDD<K, Either<Exception, ExecRow>>)rdd;
+        return JavaPairRDD.fromJavaRDD(rows
+                .mapToPair(new ImportRegionKeyFunction<K>(pkCols,tableVersion,execRowDefinition,heapConglom))
+                .repartitionAndSortWithinPartitions(new ImportRegionPartitioner(regionStartKeys,partitionsPerRegion))
+                .values());
+    }
+
+    private byte[][] getRegionStartKeys() throws StandardException{
+        try(Partition table=SIDriver.driver().getTableFactory().getTable(Long.toString(heapConglom))){
+            List<Partition> regions=table.subPartitions();
+            byte[][] startKeys=new byte[regions.size()][];
+            for(int i=0;i<startKeys.length;i++)
+                startKeys[i]=regions.get(i).getStartKey();
+            Arrays.sort(startKeys,Bytes.BASE_COMPARATOR);
+            return startKeys;
+        }catch(IOException e){
+            throw Exceptions.parseException(e);
+        }
+    }
+
     @Override
     public void setTxn(TxnView childTxn){
         this.txn = childTxn;
@@ -235,6 +235,40 @@ public class SparkDataSetProcessor implements DistributedDataSetProcessor, Seria
         }
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    public DataSet<byte[]> readTextFileBytes(String path, SpliceOperation op) throws StandardException {
+        try {
+            FileInfo fileInfo = ImportUtils.getImportFileInfo(path);
+            String displayString="";
+            if(op!=null)
+                displayString = op.getScopeName()+": "+OperationContext.Scope.READ_TEXT_FILE.displayName();
+
+            SpliceSpark.pushScope(displayString);
+            JavaPairRDD<LongWritable, Text> pairRdd=SpliceSpark.getContext().newAPIHadoopFile(
+                    path,
+                    SMTextInputFormat.class,
+                    LongWritable.class,
+                    Text.class,
+                    new Configuration(HConfiguration.unwrapDelegate()));
+
+            JavaRDD rdd =pairRdd.values()
+                    .map(new Function<Text,byte[]>() {
+                        @Override
+                        public byte[] call(Text o) throws Exception {
+                            // the record reader reuses the Text for the next line
+                            return Arrays.copyOf(o.getBytes(),o.getLength());
+                        }
+                    });
+            SparkUtils.setAncestorRDDNames(rdd, 1, new String[] {fileInfo.toSummary()}, null);
+            return new SparkDataSet<>(rdd,OperationContext.Scope.READ_TEXT_FILE.displayName());
+        } catch (IOException | StandardException ioe) {
+            throw new RuntimeException(ioe);
+        } finally {
+            SpliceSpark.popScope();
+        }
+    }
+
     @Override
     public <K, V> PairDataSet<K, V> getEmptyPair() {
         return new SparkPairDataSet<>(SpliceSpark.getContext().parallelizePairs(Collections.<Tuple2<K,V>>emptyList(), 1));
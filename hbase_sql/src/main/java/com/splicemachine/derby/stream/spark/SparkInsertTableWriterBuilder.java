@@ -50,6 +50,17 @@ public class SparkInsertTableWriterBuilder<K,V> extends InsertTableWriterBuilder
         if(operationContext.getOperation()!=null){
             operationContext.getOperation().fireBeforeStatementTriggers();
         }
+        if(bulkImportDirectory!=null){
+            return new BulkInsertDataSetWriter<>((JavaPairRDD)rdd,
+                    operationContext,
+                    pkCols,
+                    tableVersion,
+                    execRowDefinition,
+                    autoIncrementRowLocationArray,
+                    spliceSequences,
+                    heapConglom,
+                    bulkImportDirectory);
+        }
         final Configuration conf=new Configuration(HConfiguration.unwrapDelegate());
         try{
             TableWriterUtils.serializeInsertTableWriterBuilder(conf,this);
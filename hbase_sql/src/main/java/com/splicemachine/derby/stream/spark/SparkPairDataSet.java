@@ -115,6 +115,12 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
      return new SparkPairDataSet<>(rdd2);
     }
 
+    @Override
+    public PairDataSet<K, V> sortByKey(Comparator<K> comparator, String name, long limit) {
+        // the limit is applied downstream
+        return sortByKey(comparator, name);
+    }
+
     @Override
     public PairDataSet<K, V> partitionBy(Partitioner<K> partitioner, Comparator<K> comparator) {
         partitioner.initialize();
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkImportPartitionerTest{
+
+    private static final byte[][] START_KEYS={{},{0x20},{0x40},{(byte)0x80}};
+
+    @Test
+    public void testRowsGoToTheRegionHoldingThem() throws Exception{
+        Assert.assertEquals(0,BulkImportPartitioner.getRegion(START_KEYS,new byte[]{0x00}));
+        Assert.assertEquals(0,BulkImportPartitioner.getRegion(START_KEYS,new byte[]{0x1f,0x7f}));
+        Assert.assertEquals(1,BulkImportPartitioner.getRegion(START_KEYS,new byte[]{0x20}));
+        Assert.assertEquals(2,BulkImportPartitioner.getRegion(START_KEYS,new byte[]{0x7f}));
+        // unsigned order: 0x90 sorts after 0x80
+        Assert.assertEquals(3,BulkImportPartitioner.getRegion(START_KEYS,new byte[]{(byte)0x90}));
+        Assert.assertEquals(0,BulkImportPartitioner.getRegion(new byte[][]{{}},new byte[]{0x10}));
+    }
+
+    @Test
+    public void testPartitionsAreNumberedByConglomerateThenRegion() throws Exception{
+        BulkImportPartitioner partitioner=new BulkImportPartitioner(new long[]{1600,1616},
+                new byte[][][]{START_KEYS,{{},{0x50}}});
+        Assert.assertEquals(6,partitioner.numPartitions());
+        Assert.assertEquals(1,partitioner.getPartition(new BulkImportKey(1600,new byte[]{0x21})));
+        Assert.assertEquals(4,partitioner.getPartition(new BulkImportKey(1616,new byte[]{0x21})));
+        Assert.assertEquals(5,partitioner.getPartition(new BulkImportKey(1616,new byte[]{0x51})));
+    }
+
+    @Test
+    public void testSmallImportDoesNotSplit() throws Exception{
+        List<byte[]> samples=keys(0x01,0x21,0x41,0x81);
+        Assert.assertTrue(BulkImportPartitioner.getSplitPoints(START_KEYS,samples,10,100).isEmpty());
+    }
+
+    @Test
+    public void testLargeImportSplitsEachRegionEvenly() throws Exception{
+        // 8 samples of 50 bytes in the first region: 400 bytes in regions of 100 bytes, so 4 pieces
+        List<byte[]> samples=keys(0x01,0x02,0x03,0x04,0x05,0x06,0x07,0x08,0x41);
+        List<byte[]> splitPoints=BulkImportPartitioner.getSplitPoints(START_KEYS,samples,50,100);
+        Assert.assertEquals(3,splitPoints.size());
+        Assert.assertArrayEquals(new byte[]{0x03},splitPoints.get(0));
+        Assert.assertArrayEquals(new byte[]{0x05},splitPoints.get(1));
+        Assert.assertArrayEquals(new byte[]{0x07},splitPoints.get(2));
+    }
+
+    @Test
+    public void testSplitPointsAreDistinctAndAfterTheRegionStart() throws Exception{
+        List<byte[]> samples=keys(0x20,0x20,0x20,0x20,0x21);
+        List<byte[]> splitPoints=BulkImportPartitioner.getSplitPoints(START_KEYS,samples,100,100);
+        Assert.assertEquals(1,splitPoints.size());
+        Assert.assertArrayEquals(new byte[]{0x21},splitPoints.get(0));
+    }
+
+    private static List<byte[]> keys(int... keys){
+        List<byte[]> list=new ArrayList<>(keys.length);
+        for(int key : keys)
+            list.add(new byte[]{(byte)key});
+        return list;
+    }
+}
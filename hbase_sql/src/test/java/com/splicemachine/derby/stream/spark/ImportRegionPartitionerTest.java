@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.spark;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImportRegionPartitionerTest{
+
+    private static final byte[][] START_KEYS={{},{0x20},{0x40},{(byte)0x80}};
+
+    @Test
+    public void testOnePartitionPerRegion() throws Exception{
+        ImportRegionPartitioner partitioner=new ImportRegionPartitioner(START_KEYS,1);
+        Assert.assertEquals(4,partitioner.numPartitions());
+        Assert.assertEquals(0,partitioner.getPartition(key(0x00)));
+        Assert.assertEquals(1,partitioner.getPartition(key(0x21)));
+        Assert.assertEquals(3,partitioner.getPartition(key(0x90)));
+    }
+
+    @Test
+    public void testRowsOfARegionStayWithinItsPartitions() throws Exception{
+        ImportRegionPartitioner partitioner=new ImportRegionPartitioner(START_KEYS,3);
+        Assert.assertEquals(12,partitioner.numPartitions());
+        boolean[] used=new boolean[3];
+        for(int i=0x40;i<0x80;i++){
+            int partition=partitioner.getPartition(key(i));
+            Assert.assertTrue("Row "+i+" went to partition "+partition,partition>=6 && partition<9);
+            used[partition-6]=true;
+        }
+        for(boolean u : used)
+            Assert.assertTrue("Rows of a region should be spread over its partitions",u);
+    }
+
+    @Test
+    public void testRowsWithoutKeyGoToTheFirstRegion() throws Exception{
+        ImportRegionPartitioner partitioner=new ImportRegionPartitioner(START_KEYS,2);
+        int partition=partitioner.getPartition(new BulkImportKey(1600,new byte[0]));
+        Assert.assertTrue(partition==0 || partition==1);
+    }
+
+    private static BulkImportKey key(int key){
+        return new BulkImportKey(1600,new byte[]{(byte)key});
+    }
+}
@@ -16,6 +16,8 @@
 package com.splicemachine.si.data.hbase.coprocessor;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
@@ -23,6 +25,7 @@ import com.google.protobuf.Service;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.hadoop.hbase.Coprocessor;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.coprocessor.CoprocessorService;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.protobuf.ResponseConverter;
@@ -34,11 +37,14 @@ import com.splicemachine.concurrent.CountedReference;
 import com.splicemachine.concurrent.SystemClock;
 import com.splicemachine.constants.EnvUtils;
 import com.splicemachine.hbase.ZkUtils;
+import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.lifecycle.TxnLifecycleStore;
 import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
 import com.splicemachine.si.coprocessor.TxnMessage;
+import com.splicemachine.si.impl.TxnUtils;
 import com.splicemachine.si.impl.data.StripedTxnLifecycleStore;
 import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.store.SharedActiveTxnCache;
 import com.splicemachine.si.impl.region.RegionServerControl;
 import com.splicemachine.si.impl.region.RegionTxnStore;
 import com.splicemachine.si.impl.region.TransactionResolver;
@@ -55,6 +61,7 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
     private static final Logger LOG=Logger.getLogger(TxnLifecycleEndpoint.class);
 
     private TxnLifecycleStore lifecycleStore;
+    private HRegionInfo regionInfo;
     private volatile boolean isTxnTable=false;
 
     public static final CountedReference<TransactionResolver> resolverRef=new CountedReference<>(new Supplier<TransactionResolver>(){
@@ -90,6 +97,7 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
             int txnLockStrips = configuration.getTransactionLockStripes();
             lifecycleStore = new StripedTxnLifecycleStore(txnLockStrips,regionStore,
                     new RegionServerControl(region,rce.getRegionServerServices()),timestampSource);
+            regionInfo=region.getRegionInfo();
             isTxnTable=true;
         }
     }
@@ -173,6 +181,59 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
         }
     }
 
+    @Override
+    public void getTransactions(RpcController controller,TxnMessage.TxnBatchRequest request,RpcCallback<TxnMessage.TxnBatchResponse> done){
+        try{
+            int count=request.getTxnIdsCount();
+            long[] txnIds=new long[count];
+            for(int i=0;i<count;i++){
+                txnIds[i]=request.getTxnIds(i);
+            }
+            List<TxnMessage.Txn> txns=lifecycleStore.getTransactions(txnIds);
+            done.run(TxnMessage.TxnBatchResponse.newBuilder().addAllTxns(txns).build());
+        }catch(IOException ioe){
+            ResponseConverter.setControllerException(controller,ioe);
+        }
+    }
+
+    @Override
+    public void keepAliveTransactions(RpcController controller,TxnMessage.KeepAliveBatchRequest request,RpcCallback<TxnMessage.KeepAliveBatchResponse> done){
+        try{
+            TxnMessage.KeepAliveBatchResponse.Builder response=TxnMessage.KeepAliveBatchResponse.newBuilder();
+            /*
+             * Leave out the transactions which we don't hold before taking any locks, so that we only lock the
+             * stripes of our own transactions. The client has to send the others again (our region may have split).
+             */
+            int count=request.getTxnIdsCount();
+            long[] txnIds=new long[count];
+            int held=0;
+            for(int i=0;i<count;i++){
+                long txnId=request.getTxnIds(i);
+                if(regionInfo.containsRow(TxnUtils.getRowKey(txnId)))
+                    txnIds[held++]=txnId;
+                else
+                    response.addNotHeldTxnIds(txnId);
+            }
+            if(held<count)
+                txnIds=Arrays.copyOf(txnIds,held);
+            Txn.State[] states=held>0?lifecycleStore.keepAlive(txnIds):new Txn.State[0];
+            for(int i=0;i<held;i++){
+                Txn.State state=states[i];
+                if(state==null) continue; //no longer stored, nothing to keep alive
+                if(state==Txn.State.ACTIVE)
+                    response.addAliveTxnIds(txnIds[i]);
+                else{
+                    if(state==Txn.State.ROLLEDBACK)
+                        response.addRolledBackTxnIds(txnIds[i]);
+                    invalidateActiveTxn(txnIds[i]);
+                }
+            }
+            done.run(response.build());
+        }catch(IOException ioe){
+            ResponseConverter.setControllerException(controller,ioe);
+        }
+    }
+
     @Override
     public void getActiveTransactionIds(RpcController controller,TxnMessage.ActiveTxnRequest request,RpcCallback<TxnMessage.ActiveTxnIdResponse> done){
         long endTxnId=request.getEndTxnId();
@@ -214,15 +275,21 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
     }
 
     public long commit(long txnId) throws IOException{
-        return lifecycleStore.commitTransaction(txnId);
+        long commitTs=lifecycleStore.commitTransaction(txnId);
+        invalidateActiveTxn(txnId);
+        return commitTs;
     }
 
     public void rollback(long txnId) throws IOException{
         lifecycleStore.rollbackTransaction(txnId);
+        invalidateActiveTxn(txnId);
     }
 
     public boolean keepAlive(long txnId) throws IOException{
-        return lifecycleStore.keepAlive(txnId);
+        boolean alive=lifecycleStore.keepAlive(txnId);
+        if(!alive)
+            invalidateActiveTxn(txnId);
+        return alive;
     }
 
     @Override
@@ -235,4 +302,18 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
             ResponseConverter.setControllerException(controller,ioe);
         }
     }
-}
\ No newline at end of file
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void invalidateActiveTxn(long txnId){
+        /*
+         * Scans on this server may be holding the transaction as active; they will fall back to
+         * reading it from the store after the entry expires, but we can save them the wait.
+         */
+        SIDriver driver=SIDriver.driver();
+        if(driver==null) return;
+        SharedActiveTxnCache activeTxnCache=driver.getSharedActiveTxnCache();
+        if(activeTxnCache!=null)
+            activeTxnCache.invalidate(txnId);
+    }
+}
@@ -15,12 +15,18 @@
 
 package com.splicemachine.si.impl;
 
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import com.carrotsearch.hppc.LongOpenHashSet;
+import org.apache.hadoop.hbase.exceptions.UnknownProtocolException;
 import org.apache.hadoop.hbase.ipc.ServerRpcController;
 import org.spark_project.guava.collect.Iterators;
 import org.spark_project.guava.collect.Lists;
 import org.spark_project.guava.primitives.Longs;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.ZeroCopyLiteralByteString;
+import com.splicemachine.access.HConfiguration;
+import com.splicemachine.access.api.PartitionFactory;
 import com.splicemachine.annotations.ThreadSafe;
 import com.splicemachine.encoding.DecodingIterator;
 import com.splicemachine.encoding.Encoding;
@@ -32,6 +38,7 @@ import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.coprocessor.TxnMessage;
 import com.splicemachine.si.impl.txn.InheritingTxnView;
+import com.splicemachine.storage.Partition;
 import com.splicemachine.timestamp.api.TimestampSource;
 import com.splicemachine.utils.ByteSlice;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -52,6 +59,8 @@ import java.util.concurrent.atomic.AtomicLong;
 @ThreadSafe
 public class CoprocessorTxnStore implements TxnStore {
     private final TxnNetworkLayerFactory tableFactory;
+    private final PartitionFactory<?> partitionFactory; //for the boundaries of the transaction table's regions
+    private volatile boolean refreshTxnRegions;
     private TxnSupplier cache; //a transaction store which uses a global cache for us
     @ThreadSafe
     private final TimestampSource timestampSource;
@@ -64,9 +73,11 @@ public class CoprocessorTxnStore implements TxnStore {
     private final AtomicLong commits=new AtomicLong(0l);
 
     public CoprocessorTxnStore(TxnNetworkLayerFactory tableFactory,
+                               PartitionFactory<?> partitionFactory,
                                TimestampSource timestampSource,
                                @ThreadSafe TxnSupplier txnCache){
         this.tableFactory=tableFactory;
+        this.partitionFactory=partitionFactory;
         this.cache = txnCache==null?this:txnCache; // Not Used...
         this.timestampSource=timestampSource;
     }
@@ -144,6 +155,62 @@ public class CoprocessorTxnStore implements TxnStore {
         }
     }
 
+    @Override
+    public Txn.State[] keepAlive(long[] txnIds) throws IOException{
+        Txn.State[] states=new Txn.State[txnIds.length];
+        if(txnIds.length<=0) return states;
+
+        LongObjectOpenHashMap<Txn.State> found=new LongObjectOpenHashMap<>(txnIds.length);
+        LongArrayList resend=new LongArrayList();
+        try(TxnNetworkLayer table = tableFactory.accessTxnNetwork()){
+            //send each transaction region only the transactions which it holds, in a single call
+            for(LongArrayList regionTxns:groupByRegion(txnIds)){
+                TxnMessage.KeepAliveBatchRequest.Builder request=TxnMessage.KeepAliveBatchRequest.newBuilder();
+                for(int i=0;i<regionTxns.size();i++){
+                    request.addTxnIds(regionTxns.get(i));
+                }
+                TxnMessage.KeepAliveBatchResponse response;
+                try{
+                    response=table.keepAlive(getTransactionRowKey(regionTxns.get(0)),request.build());
+                }catch(IOException ioe){
+                    if(!isUnknownMethod(ioe)) throw ioe;
+                    //the region's server predates batched keep alives, as during a rolling upgrade
+                    resend.addAll(regionTxns);
+                    continue;
+                }
+                for(Long txnId:response.getAliveTxnIdsList()){
+                    found.put(txnId,Txn.State.ACTIVE);
+                }
+                for(Long txnId:response.getRolledBackTxnIdsList()){
+                    found.put(txnId,Txn.State.ROLLEDBACK);
+                }
+                if(response.getNotHeldTxnIdsCount()>0){
+                    //our view of the regions is out of date (a region has split or moved)
+                    refreshTxnRegions=true;
+                    for(Long txnId:response.getNotHeldTxnIdsList()){
+                        resend.add(txnId);
+                    }
+                }
+            }
+        }
+
+        //keeping alive a single transaction is routed by its row, so it always reaches the right region
+        for(int i=0;i<resend.size();i++){
+            long txnId=resend.get(i);
+            try{
+                if(keepAlive(txnId))
+                    found.put(txnId,Txn.State.ACTIVE);
+            }catch(HTransactionTimeout tte){
+                found.put(txnId,Txn.State.ROLLEDBACK);
+            }
+        }
+
+        for(int i=0;i<txnIds.length;i++){
+            states[i]=found.get(txnIds[i]);
+        }
+        return states;
+    }
+
     @Override
     public void elevateTransaction(Txn txn,byte[] newDestinationTable) throws IOException{
         byte[] rowKey=getTransactionRowKey(txn.getTxnId());
@@ -242,6 +309,55 @@ public class CoprocessorTxnStore implements TxnStore {
         }
     }
 
+    @Override
+    public TxnView[] getTransactions(long[] txnIds) throws IOException{
+        TxnView[] txns=new TxnView[txnIds.length];
+        if(txnIds.length<=1){
+            if(txnIds.length==1)
+                txns[0]=getTransaction(txnIds[0]);
+            return txns;
+        }
+
+        /*
+         * Send all the distinct ids to every region which could hold one of them, and let each
+         * region return the ones that it actually owns. Because the transaction table is bucketed,
+         * this is a single parallel call to (at most) every transaction region, rather than one call
+         * per transaction.
+         */
+        LongOpenHashSet distinctIds=new LongOpenHashSet(txnIds.length);
+        TxnMessage.TxnBatchRequest.Builder request=TxnMessage.TxnBatchRequest.newBuilder();
+        byte[] startRow=null;
+        byte[] endRow=null;
+        for(long txnId:txnIds){
+            if(!distinctIds.add(txnId)) continue;
+            request.addTxnIds(txnId);
+            byte[] rowKey=getTransactionRowKey(txnId);
+            if(startRow==null || Bytes.compareTo(rowKey,startRow)<0) startRow=rowKey;
+            if(endRow==null || Bytes.compareTo(rowKey,endRow)>0) endRow=rowKey;
+        }
+        lookups.addAndGet(distinctIds.size());
+
+        LongObjectOpenHashMap<TxnView> found=new LongObjectOpenHashMap<>(distinctIds.size());
+        try(TxnNetworkLayer table = tableFactory.accessTxnNetwork()){
+            Collection<TxnMessage.TxnBatchResponse> data=table.getTxns(startRow,endRow,request.build());
+            for(TxnMessage.TxnBatchResponse response : data){
+                int size=response.getTxnsCount();
+                for(int i=0;i<size;i++){
+                    TxnView txn=decode(response.getTxns(i));
+                    if(txn!=null)
+                        found.put(txn.getTxnId(),txn);
+                }
+            }
+        }catch(Throwable throwable){
+            throw new IOException(throwable);
+        }
+
+        for(int i=0;i<txnIds.length;i++){
+            txns[i]=found.get(txnIds[i]);
+        }
+        return txns;
+    }
+
     /*caching methods--since we don't have a cache, these are no-ops*/
     @Override
     public boolean transactionCached(long txnId){
@@ -399,6 +515,45 @@ public class CoprocessorTxnStore implements TxnStore {
         return encoder.build();
     }
 
+    /*
+     * Group the transactions by the transaction table region which holds their rows, as far as the
+     * cached region boundaries know.
+     */
+    private Collection<LongArrayList> groupByRegion(long[] txnIds) throws IOException{
+        List<Partition> regions;
+        try(Partition txnTable=partitionFactory.getTable(HConfiguration.TRANSACTION_TABLE)){
+            boolean refresh=refreshTxnRegions;
+            refreshTxnRegions=false;
+            regions=txnTable.subPartitions(refresh);
+        }
+        byte[][] startKeys=new byte[regions.size()][];
+        for(int i=0;i<startKeys.length;i++){
+            startKeys[i]=regions.get(i).getStartKey();
+        }
+        Arrays.sort(startKeys,Bytes.BYTES_COMPARATOR);
+
+        Map<Integer,LongArrayList> groups=new TreeMap<>();
+        for(long txnId:txnIds){
+            int pos=Arrays.binarySearch(startKeys,getTransactionRowKey(txnId),Bytes.BYTES_COMPARATOR);
+            int region=pos>=0?pos:Math.max(-pos-2,0); //the last region starting at or before the row
+            LongArrayList group=groups.get(region);
+            if(group==null){
+                group=new LongArrayList();
+                groups.put(region,group);
+            }
+            group.add(txnId);
+        }
+        return groups.values();
+    }
+
+    private static boolean isUnknownMethod(Throwable t){
+        while(t!=null){
+            if(t instanceof UnknownProtocolException) return true;
+            t=t.getCause();
+        }
+        return false;
+    }
+
     private static byte[] getTransactionRowKey(long txnId){
         return TxnUtils.getRowKey(txnId);
     }
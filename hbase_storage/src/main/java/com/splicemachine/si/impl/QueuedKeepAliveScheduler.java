@@ -19,26 +19,44 @@ import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import com.splicemachine.annotations.ThreadSafe;
 import com.splicemachine.concurrent.ThreadLocalRandom;
 import com.splicemachine.si.api.txn.KeepAliveScheduler;
+import com.splicemachine.si.api.txn.KeepAliveSchedulerManagement;
 import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.TxnStore;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Keeps transactions alive in batches.
+ * <p/>
+ * Rather than scheduling a separate keep alive call for each transaction, all the transactions
+ * are kept alive together once every keep alive interval, with a single {@link TxnStore#keepAlive(long[])}
+ * call per batch (which in turn is one call per transaction region).
+ *
  * @author Scott Fines
  *         Date: 6/25/14
  */
-public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
+public class QueuedKeepAliveScheduler implements KeepAliveScheduler, KeepAliveSchedulerManagement{
     private static final Logger LOG=Logger.getLogger(QueuedKeepAliveScheduler.class);
+    /*
+     * The largest number of transactions to keep alive in one call, to keep the size of
+     * each request bounded when there are very many active transactions.
+     */
+    private static final int MAX_BATCH_SIZE=1024;
     private final long maxWaitIntervalMs;
     private final long maxKeepAliveIntervalMs;
     private final ScheduledExecutorService threadPool;
-    private final com.splicemachine.concurrent.ThreadLocalRandom random;
+    private final ConcurrentMap<Long,KeepAlive> keepAlives=new ConcurrentHashMap<>();
 
     private final
     @ThreadSafe
@@ -46,6 +64,13 @@ public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
 
     private volatile boolean shutdown=false;
 
+    private final AtomicLong batches=new AtomicLong(0l);
+    private final AtomicLong failedBatches=new AtomicLong(0l);
+    private final AtomicLong batchedTxns=new AtomicLong(0l);
+    private final AtomicLong timedOut=new AtomicLong(0l);
+    private final AtomicLong batchTimeMs=new AtomicLong(0l);
+    private volatile long lastBatchTimeMs; //only written by the keep alive task
+    private volatile int largestBatch; //only written by the keep alive task
 
     public QueuedKeepAliveScheduler(long maxWaitIntervalMs,long maxKeepAliveIntervalMs,
                                     int numKeepers,TxnStore txnStore){
@@ -53,17 +78,19 @@ public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
         ThreadFactory factory=new ThreadFactoryBuilder().setNameFormat("keepAlive-thread-%d").setDaemon(true).build();
 
         this.threadPool=Executors.newScheduledThreadPool(numKeepers,factory);
-        this.random=ThreadLocalRandom.current();
         this.txnStore=txnStore;
         this.maxKeepAliveIntervalMs=maxKeepAliveIntervalMs;
+        //use a random initial delay to load-balance the keep alive requests of different servers
+        long initialDelay=ThreadLocalRandom.current().nextLong(maxWaitIntervalMs);
+        threadPool.scheduleWithFixedDelay(new KeepAliveTask(),initialDelay,maxWaitIntervalMs,TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void scheduleKeepAlive(Txn txn){
         if(shutdown) return;
+        if(txn.getEffectiveState()!=Txn.State.ACTIVE) return;
 
-//				activeTxns.add(txn);
-        threadPool.schedule(new KeepAlive(txn),random.nextLong(maxWaitIntervalMs),TimeUnit.MILLISECONDS);
+        keepAlives.putIfAbsent(txn.getTxnId(),new KeepAlive(txn));
     }
 
     @Override
@@ -74,79 +101,154 @@ public class QueuedKeepAliveScheduler implements KeepAliveScheduler{
     public void stop(){
         shutdown=true;
         threadPool.shutdownNow();
+        keepAlives.clear();
+    }
+
+    @Override public int getTrackedTransactionCount(){ return keepAlives.size(); }
+    @Override public long getBatchCount(){ return batches.get(); }
+    @Override public long getFailedBatchCount(){ return failedBatches.get(); }
+    @Override public long getKeepAliveCount(){ return batchedTxns.get(); }
+    @Override public long getTimedOutCount(){ return timedOut.get(); }
+    @Override public int getLargestBatchSize(){ return largestBatch; }
+    @Override public long getLastBatchTimeMs(){ return lastBatchTimeMs; }
+
+    @Override
+    public double getAverageBatchSize(){
+        long b=batches.get();
+        return b==0?0d:((double)batchedTxns.get())/b;
     }
 
-    private class KeepAlive implements Runnable{
+    @Override
+    public double getAverageBatchTimeMs(){
+        long b=batches.get();
+        return b==0?0d:((double)batchTimeMs.get())/b;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods and classes*/
+    private void rollback(final Txn txn){
+        timedOut.incrementAndGet();
+        threadPool.execute(new Runnable(){
+            @Override
+            public void run(){
+                try{
+                    txn.rollback();
+                }catch(IOException e){
+                    LOG.info("Unable to roll back transaction "+txn.getTxnId()
+                            +" but nothing to be concerned with, since it has already timed out",e);
+                }
+            }
+        });
+    }
+
+    private static class KeepAlive{
         private final Txn txn;
-        private long lastKeepAliveTime;
+        private volatile long lastKeepAliveTime;
 
-        public KeepAlive(Txn txn){
+        KeepAlive(Txn txn){
             this.txn=txn;
             this.lastKeepAliveTime=System.currentTimeMillis();
         }
+    }
+
+    private class KeepAliveTask implements Runnable{
 
         @Override
         public void run(){
-            if(txn.getEffectiveState()!=Txn.State.ACTIVE){
-                return; //nothing to do, we no longer need to keep anything alive
-            }
-            long keepAliveTime=System.currentTimeMillis()-lastKeepAliveTime;
-
-            if(keepAliveTime>2*maxKeepAliveIntervalMs){
-                SpliceLogUtils.warn(LOG,"It has been %d ms since the last time we tried to perform"+
-                        "a keep alive, which is longer than the maximum interval");
-                                /*
-								 * We are the only ones trying to keep this transaction alive. If we know
-								 * for a fact that we had to wait longer than the transaction timeout, then
-								 * we don't need to keep trying--just roll back the transaction and return.
-								 *
-								 * However, we want to leave some room for network slop here, so we err
-								 * on the side of caution, and only use this if we exceed twice the actual
-								 * keep alive window. That way, we probably never need this, but it's available
-								 * if we do.
-								 */
-                try{
-                    txn.rollback();
-                }catch(IOException e){
-                    LOG.info("Unable to roll back transaction "+txn.getTxnId()
-                            +" but nothing to be concerned with, since it has already timed out",e);
+            try{
+                List<KeepAlive> batch=new ArrayList<>(Math.min(keepAlives.size(),MAX_BATCH_SIZE));
+                Iterator<KeepAlive> it=keepAlives.values().iterator();
+                while(it.hasNext() && !shutdown){
+                    KeepAlive keepAlive=it.next();
+                    if(keepAlive.txn.getEffectiveState()!=Txn.State.ACTIVE){
+                        it.remove(); //nothing to do, we no longer need to keep anything alive
+                        continue;
+                    }
+                    long keepAliveTime=System.currentTimeMillis()-keepAlive.lastKeepAliveTime;
+                    if(keepAliveTime>2*maxKeepAliveIntervalMs){
+                        SpliceLogUtils.warn(LOG,"It has been %d ms since the last time we kept alive transaction %d, "+
+                                "which is longer than the maximum interval",keepAliveTime,keepAlive.txn.getTxnId());
+                        /*
+                         * We are the only ones trying to keep this transaction alive. If we know
+                         * for a fact that we had to wait longer than the transaction timeout, then
+                         * we don't need to keep trying--just roll back the transaction.
+                         *
+                         * However, we want to leave some room for network slop here, so we err
+                         * on the side of caution, and only use this if we exceed twice the actual
+                         * keep alive window. That way, we probably never need this, but it's available
+                         * if we do.
+                         */
+                        it.remove();
+                        rollback(keepAlive.txn);
+                        continue;
+                    }
+                    batch.add(keepAlive);
+                    if(batch.size()>=MAX_BATCH_SIZE){
+                        keepAlive(batch);
+                        batch.clear();
+                    }
                 }
-                return;
+                if(batch.size()>0 && !shutdown)
+                    keepAlive(batch);
+            }catch(Throwable t){
+                //never let an exception escape, or the task will not be run again
+                LOG.error("Unexpected error keeping transactions alive",t);
             }
+        }
 
+        private void keepAlive(List<KeepAlive> batch){
+            long[] txnIds=new long[batch.size()];
+            for(int i=0;i<txnIds.length;i++){
+                txnIds[i]=batch.get(i).txn.getTxnId();
+            }
+            Txn.State[] states;
+            long time=System.currentTimeMillis();
             try{
-                long time=System.currentTimeMillis();
-                boolean reschedule=txnStore.keepAlive(txn.getTxnId());
-                time=System.currentTimeMillis()-time; //measure our latency
-                if(reschedule){
-                    //use a random slop factor to load-balance our keep alive requests.
-                    threadPool.schedule(this,random.nextLong(maxWaitIntervalMs),TimeUnit.MILLISECONDS);
-                    lastKeepAliveTime=System.currentTimeMillis(); //include network latency in our wait period
+                states=txnStore.keepAlive(txnIds);
+            }catch(IOException e){
+                /*
+                 * This could be a real problem, but we don't have anything that we can really do about this,
+                 * so we just log the error and hope it resolves itself. The transactions are kept, and
+                 * will be tried again with the next batch.
+                 */
+                failedBatches.incrementAndGet();
+                LOG.error("Unable to keep "+txnIds.length+" transactions alive. Will try again in a bit",e);
+                return;
+            }
+            long end=System.currentTimeMillis();
+            time=end-time; //measure our latency
+            recordBatch(txnIds.length,time);
+            if(time>0.1*maxKeepAliveIntervalMs)
+                SpliceLogUtils.warn(LOG,"It took longer than 10%% of the keep-alive interval to perform "+
+                        "keep alive for %d transactions. This may be a sign that load will begin interfering "+
+                        "with the transaction system",txnIds.length);
+
+            for(int i=0;i<states.length;i++){
+                KeepAlive keepAlive=batch.get(i);
+                Txn.State state=states[i];
+                if(state==Txn.State.ACTIVE){
+                    keepAlive.lastKeepAliveTime=end; //include network latency in our wait period
+                    continue;
                 }
-                if(time>0.1*maxKeepAliveIntervalMs)
-                    SpliceLogUtils.warn(LOG,"It took longer than 10% of the keep-alive interval to perform"+
-                            "keep alive for transaction %d. This may be a sign that load will begin interfering"+
-                            "with the transaction system",txn.getTxnId());
-            }catch(HTransactionTimeout tte){
-                LOG.error("Transaction "+txn.getTxnId()+" has timed out");
-									/*
-									 * We attempted to keep alive a transaction that has already timed out for a different
-									 * reason. Ensure that the transaction is rolled back
-									 */
-                try{
-                    txn.rollback();
-                }catch(IOException e){
-                    LOG.info("Unable to roll back transaction "+
-                            txn.getTxnId()+" but nothing to be concerned with, since it has already timed out",e);
+                keepAlives.remove(txnIds[i]);
+                if(state==Txn.State.ROLLEDBACK && keepAlive.txn.getEffectiveState()==Txn.State.ACTIVE){
+                    /*
+                     * We attempted to keep alive a transaction that has already timed out (or been rolled back
+                     * for a different reason). Ensure that the transaction is rolled back
+                     */
+                    LOG.error("Transaction "+txnIds[i]+" has timed out");
+                    rollback(keepAlive.txn);
                 }
-            }catch(IOException e){
-								/*
-								 * This could be a real problem, but we don't have anything that we can really do about this,
-								 * so we just log the error and hope it resolves itself.
-								 */
-                LOG.error("Unable to keep transaction "+txn.getTxnId()+" alive. Will try again in a bit",e);
-                threadPool.schedule(this,random.nextLong(maxWaitIntervalMs),TimeUnit.MILLISECONDS);
             }
         }
+
+        private void recordBatch(int size,long timeMs){
+            batches.incrementAndGet();
+            batchedTxns.addAndGet(size);
+            batchTimeMs.addAndGet(timeMs);
+            lastBatchTimeMs=timeMs;
+            if(size>largestBatch)
+                largestBatch=size;
+        }
     }
 }
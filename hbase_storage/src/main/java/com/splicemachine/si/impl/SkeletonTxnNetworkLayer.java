@@ -117,6 +117,33 @@ public abstract class SkeletonTxnNetworkLayer implements TxnNetworkLayer{
         return done.get();
     }
 
+    @Override
+    public Collection<TxnMessage.TxnBatchResponse> getTxns(byte[] startRow,byte[] endRow,final TxnMessage.TxnBatchRequest request) throws IOException{
+        Map<byte[], TxnMessage.TxnBatchResponse> data=coprocessorService(TxnMessage.TxnLifecycleService.class,
+                startRow,endRow,new Batch.Call<TxnMessage.TxnLifecycleService, TxnMessage.TxnBatchResponse>(){
+                    @Override
+                    public TxnMessage.TxnBatchResponse call(TxnMessage.TxnLifecycleService instance) throws IOException{
+                        ServerRpcController controller=new ServerRpcController();
+                        BlockingRpcCallback<TxnMessage.TxnBatchResponse> response=new BlockingRpcCallback<>();
+
+                        instance.getTransactions(controller,request,response);
+                        dealWithError(controller);
+                        return response.get();
+                    }
+                });
+        return data.values();
+    }
+
+    @Override
+    public TxnMessage.KeepAliveBatchResponse keepAlive(byte[] rowKey,TxnMessage.KeepAliveBatchRequest request) throws IOException{
+        TxnMessage.TxnLifecycleService service=getLifecycleService(rowKey);
+        ServerRpcController controller=new ServerRpcController();
+        BlockingRpcCallback<TxnMessage.KeepAliveBatchResponse> done=new BlockingRpcCallback<>();
+        service.keepAliveTransactions(controller,request,done);
+        dealWithError(controller);
+        return done.get();
+    }
+
     protected abstract TxnMessage.TxnLifecycleService getLifecycleService(byte[] rowKey) throws IOException;
 
     protected abstract <C> Map<byte[],C> coprocessorService(Class<TxnMessage.TxnLifecycleService> txnLifecycleServiceClass,
@@ -38,5 +38,18 @@ public interface TxnNetworkLayer extends AutoCloseable{
 
     TxnMessage.Txn getTxn(byte[] rowKey,TxnMessage.TxnRequest request) throws IOException;
 
+    /**
+     * Fetch many transactions at once. The request is sent to every transaction table region between
+     * {@code startRow} and {@code endRow} (inclusive) in parallel, and each region returns the requested
+     * transactions that it holds.
+     */
+    Collection<TxnMessage.TxnBatchResponse> getTxns(byte[] startRow,byte[] endRow,TxnMessage.TxnBatchRequest request) throws IOException;
+
+    /**
+     * Keep many transactions alive at once. The request is sent to the transaction table region holding
+     * {@code rowKey}, which keeps alive the requested transactions that it holds, and reports back the others.
+     */
+    TxnMessage.KeepAliveBatchResponse keepAlive(byte[] rowKey,TxnMessage.KeepAliveBatchRequest request) throws IOException;
+
     void close() throws IOException;
 }
@@ -27,11 +27,14 @@ import com.splicemachine.storage.Partition;
 import com.splicemachine.storage.RegionPartition;
 import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.TrafficControl;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.NotServingRegionException;
 import org.apache.hadoop.hbase.RegionTooBusyException;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.log4j.Logger;
 
@@ -79,16 +82,20 @@ public class SynchronousReadResolver implements KeyedReadResolver{
     }
 
     public boolean resolve(Partition region,ByteSlice rowKey,long txnId,TxnSupplier supplier,RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
+        return resolve(region,new ByteSlice[]{rowKey},1,txnId,supplier,status,failOnError,trafficControl)>0;
+    }
+
+    @Override
+    public int resolve(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,TxnSupplier supplier,RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
         try{
             TxnView transaction=supplier.getTransaction(txnId);
-            boolean resolved=false;
+            int resolved=0;
             if(transaction.getEffectiveState()==Txn.State.ROLLEDBACK){
-                trafficControl.acquire(1);
+                trafficControl.acquire(numRows);
                 try{
-                    SynchronousReadResolver.INSTANCE.resolveRolledback(region,rowKey,txnId,failOnError);
-                    resolved=true;
+                    resolved=SynchronousReadResolver.INSTANCE.resolveRolledback(region,rowKeys,numRows,txnId,failOnError);
                 }finally{
-                    trafficControl.release(1);
+                    trafficControl.release(numRows);
                 }
             }else{
                 TxnView t=transaction;
@@ -96,81 +103,109 @@ public class SynchronousReadResolver implements KeyedReadResolver{
                     t=t.getParentTxnView();
                 }
                 if(t==Txn.ROOT_TRANSACTION){
-                    trafficControl.acquire(1);
+                    trafficControl.acquire(numRows);
                     try{
-                        SynchronousReadResolver.INSTANCE.resolveCommitted(region,rowKey,txnId,transaction.getEffectiveCommitTimestamp(),failOnError);
-                        resolved=true;
+                        resolved=SynchronousReadResolver.INSTANCE.resolveCommitted(region,rowKeys,numRows,txnId,transaction.getEffectiveCommitTimestamp(),failOnError);
                     }finally{
-                        trafficControl.release(1);
+                        trafficControl.release(numRows);
                     }
                 }
             }
-            status.rowResolved();
+            for(int i=0;i<numRows;i++){
+                status.rowResolved();
+            }
             return resolved;
         }catch(IOException e){
             LOG.info("Unable to fetch transaction for id "+txnId+", will not resolve",e);
             if(failOnError)
                 throw new RuntimeException(e);
-            return false;
+            return 0;
         }catch(InterruptedException e){
             LOG.debug("Interrupted which performing read resolution, will not resolve");
             Thread.currentThread().interrupt();
-            return false;
+            return 0;
         }
     }
 
     /******************************************************************************************************************/
     /*private helper methods */
-    private void resolveCommitted(Partition region,ByteSlice rowKey,long txnId,long commitTimestamp,boolean failOnError){
+    private int resolveCommitted(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,long commitTimestamp,boolean failOnError){
         assert region instanceof RegionPartition: "Not on a region!";
         /*
-         * Resolve the row as committed directly.
+         * Resolve the rows as committed directly.
          *
-         * This does a Put to the row, bypassing SI and the WAL, so it should be pretty low impact
+         * This does a single batch of Puts to the region, bypassing SI and the WAL, so it should be pretty low impact
          */
         if(DISABLED_ROLLFORWARD || region.isClosed() || region.isClosing())
-            return; //do nothing if we are closing or rollforward is disabled
+            return 0; //do nothing if we are closing or rollforward is disabled
 
-        Put put=new Put(rowKey.getByteCopy());
-        put.add(SIConstants.DEFAULT_FAMILY_BYTES,
-                SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,
-                Bytes.toBytes(commitTimestamp));
-        put.setAttribute(SIConstants.SI_EXEMPT,SIConstants.TRUE_BYTES);
-        put.setAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
-        put.setDurability(Durability.SKIP_WAL);
+        byte[] commitTs=Bytes.toBytes(commitTimestamp);
+        Mutation[] puts=new Mutation[numRows];
+        for(int i=0;i<numRows;i++){
+            Put put=new Put(rowKeys[i].getByteCopy());
+            put.add(SIConstants.DEFAULT_FAMILY_BYTES,
+                    SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,
+                    commitTs);
+            put.setAttribute(SIConstants.SI_EXEMPT,SIConstants.TRUE_BYTES);
+            put.setAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+            put.setDurability(Durability.SKIP_WAL);
+            puts[i]=put;
+        }
         try{
-            ((RegionPartition)region).unwrapDelegate().put(put);
+            return moveResolvedToFront(rowKeys,((RegionPartition)region).unwrapDelegate().batchMutate(puts));
         }catch(IOException e){
             if(!(e instanceof RegionTooBusyException) && !(e instanceof NotServingRegionException)){
-                LOG.info("Exception encountered when attempting to resolve a row as committed",e);
+                LOG.info("Exception encountered when attempting to resolve rows as committed",e);
                 if(failOnError)
                     throw new RuntimeException(e);
             }
+            return 0;
         }
     }
 
-    private void resolveRolledback(Partition region,ByteSlice rowKey,long txnId,boolean failOnError){
+    private int resolveRolledback(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,boolean failOnError){
         assert region instanceof RegionPartition: "Not on a region!";
         /*
-         * Resolve the row as rolled back directly.
+         * Resolve the rows as rolled back directly.
          *
-         * This does a Delete to the row, bypassing SI and the WAL, so it should be pretty low impact
+         * This does a single batch of Deletes to the region, bypassing SI and the WAL, so it should be pretty low impact
          */
         if(DISABLED_ROLLFORWARD || region.isClosed() || region.isClosing())
-            return; //do nothing if we are closing
+            return 0; //do nothing if we are closing
 
-        Delete delete=new Delete(rowKey.getByteCopy(),txnId)
-                .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId) //delete all the columns for our family only
-                .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_TOMBSTONE_COLUMN_BYTES,txnId) //delete all the columns for our family only
-                .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_ANTI_TOMBSTONE_VALUE_BYTES,txnId); //delete all the columns for our family only
-        delete.setDurability(Durability.SKIP_WAL);
-        delete.setAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+        Mutation[] deletes=new Mutation[numRows];
+        for(int i=0;i<numRows;i++){
+            Delete delete=new Delete(rowKeys[i].getByteCopy(),txnId)
+                    .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId) //delete all the columns for our family only
+                    .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_TOMBSTONE_COLUMN_BYTES,txnId) //delete all the columns for our family only
+                    .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.SNAPSHOT_ISOLATION_ANTI_TOMBSTONE_VALUE_BYTES,txnId); //delete all the columns for our family only
+            delete.setDurability(Durability.SKIP_WAL);
+            delete.setAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+            deletes[i]=delete;
+        }
         try{
-            ((RegionPartition)region).unwrapDelegate().delete(delete);
+            return moveResolvedToFront(rowKeys,((RegionPartition)region).unwrapDelegate().batchMutate(deletes));
         }catch(IOException ioe){
-            LOG.info("Exception encountered when attempting to resolve a row as rolled back",ioe);
+            LOG.info("Exception encountered when attempting to resolve rows as rolled back",ioe);
             if(failOnError)
                 throw new RuntimeException(ioe);
+            return 0;
+        }
+    }
+
+    /*
+     * Swap the rows whose mutation succeeded to the front of the batch, so that callers
+     * know which ones were resolved, and return how many there are
+     */
+    private static int moveResolvedToFront(ByteSlice[] rowKeys,OperationStatus[] statuses){
+        int resolved=0;
+        for(int i=0;i<statuses.length;i++){
+            if(statuses[i].getOperationStatusCode()!=HConstants.OperationStatusCode.SUCCESS) continue;
+            ByteSlice rowKey=rowKeys[i];
+            rowKeys[i]=rowKeys[resolved];
+            rowKeys[resolved]=rowKey;
+            resolved++;
         }
+        return resolved;
     }
 }
@@ -32,8 +32,11 @@ import com.splicemachine.utils.Source;
 import com.splicemachine.utils.SpliceLogUtils;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.log4j.Logger;
 import java.io.IOException;
@@ -88,6 +91,22 @@ public class RegionTxnStore implements TxnPartition{
         return decode(txnId,result);
     }
 
+    @Override
+    public List<TxnMessage.Txn> getTransactions(long[] txnIds) throws IOException{
+        if(LOG.isTraceEnabled())
+            SpliceLogUtils.trace(LOG,"getTransactions count=%d",txnIds.length);
+        HRegionInfo regionInfo=region.getRegionInfo();
+        List<TxnMessage.Txn> txns=new ArrayList<>(txnIds.length);
+        for(long txnId:txnIds){
+            byte[] rowKey=getRowKey(txnId);
+            if(!regionInfo.containsRow(rowKey)) continue; //held by another region
+            Result result=region.get(new Get(rowKey));
+            if(result==null||result.isEmpty()) continue; //no transaction
+            txns.add(decode(txnId,result));
+        }
+        return txns;
+    }
+
     @Override
     public void addDestinationTable(long txnId,byte[] destinationTable) throws IOException{
         if(LOG.isTraceEnabled())
@@ -156,6 +175,50 @@ public class RegionTxnStore implements TxnPartition{
         return true;
     }
 
+    @Override
+    public Txn.State[] keepAlive(long[] txnIds) throws IOException{
+        if(LOG.isTraceEnabled())
+            SpliceLogUtils.trace(LOG,"keepAlive count=%d",txnIds.length);
+        HRegionInfo regionInfo=region.getRegionInfo();
+        Txn.State[] states=new Txn.State[txnIds.length];
+        List<Mutation> puts=new ArrayList<>(txnIds.length);
+        long currTime=clock.currentTimeMillis();
+        for(int i=0;i<txnIds.length;i++){
+            byte[] rowKey=getRowKey(txnIds[i]);
+            if(!regionInfo.containsRow(rowKey)) continue; //held by another region
+            Get get=new Get(rowKey);
+            get.addColumn(FAMILY,V2TxnDecoder.KEEP_ALIVE_QUALIFIER_BYTES);
+            get.addColumn(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES);
+            Result result=region.get(get);
+            if(result==null) continue; //read-only transaction
+            Cell stateKv=result.getColumnLatestCell(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES);
+            if(stateKv==null){
+                // couldn't find the transaction data, it's fine under Restore Mode, issue a warning nonetheless
+                LOG.warn("Couldn't load data for keeping alive transaction "+txnIds[i]+". This isn't an issue under Restore Mode");
+                continue;
+            }
+            Txn.State state=Txn.State.decode(stateKv.getValueArray(),stateKv.getValueOffset(),stateKv.getValueLength());
+            if(state==Txn.State.ACTIVE){
+                Cell oldKAKV=result.getColumnLatestCell(FAMILY,V2TxnDecoder.KEEP_ALIVE_QUALIFIER_BYTES);
+                state=adjustStateForTimeout(state,oldKAKV);
+                if(state==Txn.State.ACTIVE){
+                    Put newPut=new Put(rowKey);
+                    newPut.add(FAMILY,V2TxnDecoder.KEEP_ALIVE_QUALIFIER_BYTES,Encoding.encode(currTime));
+                    puts.add(newPut);
+                }
+            }
+            states[i]=state;
+        }
+        if(puts.size()>0){
+            OperationStatus[] statuses=region.batchMutate(puts.toArray(new Mutation[puts.size()]));
+            for(OperationStatus status:statuses){
+                if(status.getOperationStatusCode()!=HConstants.OperationStatusCode.SUCCESS)
+                    throw new IOException("Unable to keep transactions alive: "+status.getExceptionMsg());
+            }
+        }
+        return states;
+    }
+
     @Override
     public Txn.State getState(long txnId) throws IOException{
         if(LOG.isTraceEnabled())
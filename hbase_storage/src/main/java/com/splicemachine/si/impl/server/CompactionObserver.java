@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl.server;
+
+import org.apache.hadoop.hbase.Cell;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Receives the cells which survive SI compaction, in the order in which they are written out. The cells
+ * of a single row may be spread across consecutive calls.
+ */
+public interface CompactionObserver {
+
+    void observe(Collection<Cell> cells) throws IOException;
+}
@@ -49,6 +49,7 @@ public class SICompactionState {
     private SortedSet<Cell> dataToReturn;
     private final RollForward rollForward;
     private ByteSlice rowSlice = new ByteSlice();
+    private CompactionObserver observer;
 
     public SICompactionState(TxnSupplier transactionStore,RollForward rollForward,int activeTransactionCacheSize) {
         this.rollForward = rollForward;
@@ -56,6 +57,13 @@ public class SICompactionState {
         this.dataToReturn  =new TreeSet<>(KeyValue.COMPARATOR);
     }
 
+    /**
+     * @param observer notified of every batch of cells which is kept by this compaction, or {@code null}
+     */
+    public void setObserver(CompactionObserver observer) {
+        this.observer = observer;
+    }
+
     /**
      * Given a list of key-values, populate the results list with possibly mutated values.
      *
@@ -68,6 +76,8 @@ public class SICompactionState {
             mutate(aRawList);
         }
         results.addAll(dataToReturn);
+        if(observer!=null)
+            observer.observe(dataToReturn);
     }
 
     /**
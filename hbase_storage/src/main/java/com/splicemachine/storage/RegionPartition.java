@@ -18,6 +18,7 @@ package com.splicemachine.storage;
 import org.spark_project.guava.base.Function;
 import com.splicemachine.si.impl.HRegionTooBusy;
 
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.DroppedSnapshotException;
 import org.spark_project.guava.collect.Iterators;
 import com.splicemachine.kvpair.KVPair;
@@ -210,6 +211,48 @@ public class RegionPartition implements Partition{
         }
     }
 
+    @Override
+    public Iterator<DataResult> getLatest(List<byte[]> sortedKeys,DataResult previous) throws IOException{
+        if(sortedKeys.isEmpty())
+            return Collections.emptyIterator();
+        /*
+         * A single scan over the range of the keys, seeking forward from one key to the next, rather than a
+         * Get for each key, which would seek every store from scratch.
+         */
+        Scan scan=new Scan(sortedKeys.get(0),Bytes.add(sortedKeys.get(sortedKeys.size()-1),new byte[]{0}));
+        scan.setMaxVersions(1);
+        Result empty=Result.create(Collections.<Cell>emptyList());
+        List<Result> results=new ArrayList<>(sortedKeys.size());
+        try(RegionScanner scanner=region.getScanner(scan)){
+            Result row=null;
+            boolean more=true;
+            boolean first=true;
+            for(byte[] key : sortedKeys){
+                if(more && (row==null || Bytes.compareTo(row.getRow(),key)<0)){
+                    if(!first)
+                        scanner.reseek(key);
+                    first=false;
+                    List<Cell> cells=new ArrayList<>();
+                    more=scanner.next(cells);
+                    row=cells.isEmpty()?null:Result.create(cells);
+                }
+                results.add(row!=null && Bytes.equals(row.getRow(),key)?row:empty);
+            }
+        }catch(NotServingRegionException nsre){
+            throw new HNotServingRegion(nsre.getMessage());
+        }catch(WrongRegionException wre){
+            throw new HWrongRegion(wre.getMessage());
+        }
+        final HResult result=previous==null?new HResult():(HResult)previous;
+        return Iterators.transform(results.iterator(),new Function<Result, DataResult>(){
+            @Override
+            public DataResult apply(Result input){
+                result.set(input);
+                return result;
+            }
+        });
+    }
+
     /*Multi-row access*/
     @Override
     public DataScanner openScanner(DataScan scan) throws IOException{
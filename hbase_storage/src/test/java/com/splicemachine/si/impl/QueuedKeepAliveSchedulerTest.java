@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl;
+
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnStore;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for keeping transactions alive in batches.
+ */
+public class QueuedKeepAliveSchedulerTest{
+    private static final long WAIT_INTERVAL_MS=10l;
+    private static final long TEST_TIMEOUT_MS=10000l;
+
+    @Test
+    public void testKeepsTransactionsAliveInBoundedBatches() throws Exception{
+        final List<Integer> batchSizes=Collections.synchronizedList(new ArrayList<Integer>());
+        TxnStore store=mock(TxnStore.class);
+        when(store.keepAlive(any(long[].class))).thenAnswer(new Answer<Txn.State[]>(){
+            @Override
+            public Txn.State[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                batchSizes.add(txnIds.length);
+                return states(txnIds.length,Txn.State.ACTIVE);
+            }
+        });
+
+        QueuedKeepAliveScheduler scheduler=new QueuedKeepAliveScheduler(WAIT_INTERVAL_MS,Long.MAX_VALUE/4,1,store);
+        try{
+            for(int i=1;i<=2000;i++){
+                scheduler.scheduleKeepAlive(activeTxn(i));
+            }
+            Assert.assertEquals(2000,scheduler.getTrackedTransactionCount());
+
+            //once every transaction is tracked, a run takes one full batch and one with the rest
+            long deadline=System.currentTimeMillis()+TEST_TIMEOUT_MS;
+            while(!containsFullRun(batchSizes)){
+                Assert.assertTrue("Never saw a run with all the transactions, batches: "+batchSizes,System.currentTimeMillis()<deadline);
+                Thread.sleep(WAIT_INTERVAL_MS);
+            }
+            synchronized(batchSizes){
+                for(Integer size : batchSizes){
+                    Assert.assertTrue("Batch exceeds the maximum size: "+size,size<=1024);
+                }
+            }
+            Assert.assertEquals(1024,scheduler.getLargestBatchSize());
+            Assert.assertEquals(0l,scheduler.getFailedBatchCount());
+            Assert.assertEquals(0l,scheduler.getTimedOutCount());
+            Assert.assertEquals("No transaction should be dropped",2000,scheduler.getTrackedTransactionCount());
+            verify(store,never()).keepAlive(anyLong());
+        }finally{
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testRollsBackTransactionRolledBackByTheStore() throws Exception{
+        TxnStore store=mock(TxnStore.class);
+        when(store.keepAlive(any(long[].class))).thenAnswer(new Answer<Txn.State[]>(){
+            @Override
+            public Txn.State[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                Txn.State[] states=states(txnIds.length,Txn.State.ACTIVE);
+                for(int i=0;i<txnIds.length;i++){
+                    if(txnIds[i]==2l)
+                        states[i]=Txn.State.ROLLEDBACK;
+                }
+                return states;
+            }
+        });
+
+        QueuedKeepAliveScheduler scheduler=new QueuedKeepAliveScheduler(WAIT_INTERVAL_MS,Long.MAX_VALUE/4,1,store);
+        try{
+            Txn live=activeTxn(1l);
+            Txn timedOut=activeTxn(2l);
+            scheduler.scheduleKeepAlive(live);
+            scheduler.scheduleKeepAlive(timedOut);
+
+            verify(timedOut,timeout(TEST_TIMEOUT_MS)).rollback();
+            Assert.assertEquals(1l,scheduler.getTimedOutCount());
+            Assert.assertEquals("Only the live transaction should still be tracked",1,scheduler.getTrackedTransactionCount());
+            verify(live,never()).rollback();
+        }finally{
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testRetriesFailedBatchesUntilTheTransactionTimesOut() throws Exception{
+        final AtomicInteger calls=new AtomicInteger(0);
+        TxnStore store=mock(TxnStore.class);
+        when(store.keepAlive(any(long[].class))).thenAnswer(new Answer<Txn.State[]>(){
+            @Override
+            public Txn.State[] answer(InvocationOnMock invocation) throws Throwable{
+                calls.incrementAndGet();
+                throw new IOException("region unavailable");
+            }
+        });
+
+        //a short keep alive interval, so that failing for long enough rolls the transaction back locally
+        long keepAliveIntervalMs=50l;
+        QueuedKeepAliveScheduler scheduler=new QueuedKeepAliveScheduler(WAIT_INTERVAL_MS,keepAliveIntervalMs,1,store);
+        try{
+            Txn txn=activeTxn(1l);
+            scheduler.scheduleKeepAlive(txn);
+
+            verify(txn,timeout(TEST_TIMEOUT_MS)).rollback();
+            Assert.assertTrue("Failed batch should have been retried, calls: "+calls.get(),calls.get()>=2);
+            verify(store,atLeast(2)).keepAlive(any(long[].class));
+            Assert.assertTrue(scheduler.getFailedBatchCount()>=2);
+            Assert.assertEquals("Failed batches should not be counted as batches",0l,scheduler.getBatchCount());
+            Assert.assertEquals(1l,scheduler.getTimedOutCount());
+            Assert.assertEquals(0,scheduler.getTrackedTransactionCount());
+        }finally{
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testStopsTrackingTransactionsWhichAreNoLongerActive() throws Exception{
+        TxnStore store=mock(TxnStore.class);
+        when(store.keepAlive(any(long[].class))).thenAnswer(new Answer<Txn.State[]>(){
+            @Override
+            public Txn.State[] answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                return states(txnIds.length,Txn.State.COMMITTED);
+            }
+        });
+
+        QueuedKeepAliveScheduler scheduler=new QueuedKeepAliveScheduler(WAIT_INTERVAL_MS,Long.MAX_VALUE/4,1,store);
+        try{
+            Txn txn=activeTxn(1l);
+            scheduler.scheduleKeepAlive(txn);
+            verify(store,timeout(TEST_TIMEOUT_MS)).keepAlive(any(long[].class));
+
+            long deadline=System.currentTimeMillis()+TEST_TIMEOUT_MS;
+            while(scheduler.getTrackedTransactionCount()>0){
+                Assert.assertTrue(System.currentTimeMillis()<deadline);
+                Thread.sleep(WAIT_INTERVAL_MS);
+            }
+            verify(txn,never()).rollback();
+            Assert.assertEquals(0l,scheduler.getTimedOutCount());
+        }finally{
+            scheduler.stop();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static Txn activeTxn(long txnId){
+        Txn txn=mock(Txn.class);
+        when(txn.getTxnId()).thenReturn(txnId);
+        when(txn.getEffectiveState()).thenReturn(Txn.State.ACTIVE);
+        return txn;
+    }
+
+    private static Txn.State[] states(int size,Txn.State state){
+        Txn.State[] states=new Txn.State[size];
+        Arrays.fill(states,state);
+        return states;
+    }
+
+    private static boolean containsFullRun(List<Integer> batchSizes){
+        synchronized(batchSizes){
+            for(int i=1;i<batchSizes.size();i++){
+                if(batchSizes.get(i-1)==1024 && batchSizes.get(i)==976)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.splicemachine.utils.TrafficControl;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.Iterator;
 
 /**
  * Read-Resolver which resolves elements synchronously on the calling thread.
@@ -73,16 +74,23 @@ public class MSynchronousReadResolver implements KeyedReadResolver{
     }
 
     public boolean resolve(Partition region,ByteSlice rowKey,long txnId,TxnSupplier supplier,RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
+        return resolve(region,new ByteSlice[]{rowKey},1,txnId,supplier,status,failOnError,trafficControl)>0;
+    }
+
+    @Override
+    public int resolve(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,TxnSupplier supplier,RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
         try{
             TxnView transaction=supplier.getTransaction(txnId);
-            boolean resolved=false;
+            int resolved=0;
             if(transaction.getEffectiveState()==Txn.State.ROLLEDBACK){
-                trafficControl.acquire(1);
+                trafficControl.acquire(numRows);
                 try{
-                    MSynchronousReadResolver.INSTANCE.resolveRolledback(region,rowKey,txnId,failOnError);
-                    resolved=true;
+                    for(int i=0;i<numRows;i++){
+                        if(MSynchronousReadResolver.INSTANCE.resolveRolledback(region,rowKeys[i],txnId,failOnError))
+                            swap(rowKeys,i,resolved++);
+                    }
                 }finally{
-                    trafficControl.release(1);
+                    trafficControl.release(numRows);
                 }
             }else{
                 TxnView t=transaction;
@@ -90,62 +98,75 @@ public class MSynchronousReadResolver implements KeyedReadResolver{
                     t=t.getParentTxnView();
                 }
                 if(t==Txn.ROOT_TRANSACTION){
-                    trafficControl.acquire(1);
+                    trafficControl.acquire(numRows);
                     try{
-                        MSynchronousReadResolver.INSTANCE.resolveCommitted(region,rowKey,txnId,transaction.getEffectiveCommitTimestamp(),failOnError);
-                        resolved=true;
+                        resolved=MSynchronousReadResolver.INSTANCE.resolveCommitted(region,rowKeys,numRows,txnId,transaction.getEffectiveCommitTimestamp(),failOnError);
                     }finally{
-                        trafficControl.release(1);
+                        trafficControl.release(numRows);
                     }
                 }
             }
-            status.rowResolved();
+            for(int i=0;i<numRows;i++){
+                status.rowResolved();
+            }
             return resolved;
         }catch(IOException e){
             LOG.info("Unable to fetch transaction for id "+txnId+", will not resolve",e);
             if(failOnError)
                 throw new RuntimeException(e);
-            return false;
+            return 0;
         }catch(InterruptedException e){
             LOG.debug("Interrupted which performing read resolution, will not resolve");
             Thread.currentThread().interrupt();
-            return false;
+            return 0;
         }
     }
 
     /******************************************************************************************************************/
     /*private helper methods */
-    private void resolveCommitted(Partition region,ByteSlice rowKey,long txnId,long commitTimestamp,boolean failOnError){
+    private int resolveCommitted(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,long commitTimestamp,boolean failOnError){
         /*
-         * Resolve the row as committed directly.
+         * Resolve the rows as committed directly.
          *
-         * This does a Put to the row, bypassing SI and the WAL, so it should be pretty low impact
+         * This does a single batch of Puts, bypassing SI and the WAL, so it should be pretty low impact
          */
         if(DISABLED_ROLLFORWARD || region.isClosed() || region.isClosing())
-            return; //do nothing if we are closing or rollforward is disabled
+            return 0; //do nothing if we are closing or rollforward is disabled
 
-        DataPut put=new MPut(rowKey.getByteCopy());
-        put.addCell(SIConstants.DEFAULT_FAMILY_BYTES,
-                SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,
-                Bytes.toBytes(commitTimestamp));
-        put.addAttribute(SIConstants.SI_EXEMPT,SIConstants.TRUE_BYTES);
-        put.addAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+        byte[] commitTs=Bytes.toBytes(commitTimestamp);
+        DataPut[] puts=new DataPut[numRows];
+        for(int i=0;i<numRows;i++){
+            DataPut put=new MPut(rowKeys[i].getByteCopy());
+            put.addCell(SIConstants.DEFAULT_FAMILY_BYTES,
+                    SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,
+                    commitTs);
+            put.addAttribute(SIConstants.SI_EXEMPT,SIConstants.TRUE_BYTES);
+            put.addAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
+            puts[i]=put;
+        }
         try{
-            region.put(put);
+            Iterator<MutationStatus> statuses=region.writeBatch(puts);
+            int resolved=0;
+            for(int i=0;statuses.hasNext();i++){
+                if(statuses.next().isSuccess())
+                    swap(rowKeys,i,resolved++);
+            }
+            return resolved;
         }catch(IOException e){
             if(failOnError)
                 throw new RuntimeException(e);
+            return 0;
         }
     }
 
-    private void resolveRolledback(Partition region,ByteSlice rowKey,long txnId,boolean failOnError){
+    private boolean resolveRolledback(Partition region,ByteSlice rowKey,long txnId,boolean failOnError){
         /*
          * Resolve the row as rolled back directly.
          *
          * This does a Delete to the row, bypassing SI and the WAL, so it should be pretty low impact
          */
         if(DISABLED_ROLLFORWARD || region.isClosed() || region.isClosing())
-            return; //do nothing if we are closing
+            return false; //do nothing if we are closing
 
         DataDelete delete=new MDelete(rowKey.getByteCopy())
                 .deleteColumn(SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId) //delete all the columns for our family only
@@ -154,10 +175,21 @@ public class MSynchronousReadResolver implements KeyedReadResolver{
         delete.addAttribute(SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_NAME,SIConstants.SUPPRESS_INDEXING_ATTRIBUTE_VALUE);
         try{
             region.delete(delete);
+            return true;
         }catch(IOException ioe){
             LOG.info("Exception encountered when attempting to resolve a row as rolled back",ioe);
             if(failOnError)
                 throw new RuntimeException(ioe);
+            return false;
         }
     }
+
+    /*
+     * Rows which were resolved are moved to the front of the batch, so that callers know which ones they are
+     */
+    private static void swap(ByteSlice[] rowKeys,int i,int j){
+        ByteSlice rowKey=rowKeys[i];
+        rowKeys[i]=rowKeys[j];
+        rowKeys[j]=rowKey;
+    }
 }
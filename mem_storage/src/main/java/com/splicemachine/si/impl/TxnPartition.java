@@ -173,6 +173,11 @@ public class TxnPartition implements Partition{
         return basePartition.getLatest(key,previous);
     }
 
+    @Override
+    public Iterator<DataResult> getLatest(List<byte[]> sortedKeys,DataResult previous) throws IOException{
+        return basePartition.getLatest(sortedKeys,previous);
+    }
+
     @Override
     public Lock getRowLock(byte[] key,int keyOff,int keyLen) throws IOException{
         return basePartition.getRowLock(key,keyOff,keyLen);
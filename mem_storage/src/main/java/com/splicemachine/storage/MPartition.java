@@ -286,6 +286,15 @@ public class MPartition implements Partition{
         return new MResult(results);
     }
 
+    @Override
+    public Iterator<DataResult> getLatest(List<byte[]> sortedKeys,DataResult previous) throws IOException{
+        List<DataResult> results=new ArrayList<>(sortedKeys.size());
+        for(byte[] key : sortedKeys){
+            results.add(getLatest(key,null));
+        }
+        return results.iterator();
+    }
+
     @Override
     public Lock getRowLock(byte[] key,int keyOff,int keyLen) throws IOException{
         final ByteBuffer wrap=ByteBuffer.wrap(key,keyOff,keyLen);
@@ -164,6 +164,10 @@ public interface SConfiguration {
 
     long getTransactionTimeout();
 
+    int getSharedActiveTransactionCacheSize();
+
+    long getSharedActiveTransactionCacheExpiration();
+
     // SQLConfiguration
     boolean debugDumpBindTree();
 
@@ -197,6 +201,10 @@ public interface SConfiguration {
 
     long getBroadcastRegionRowThreshold();
 
+    long getBroadcastJoinMemoryBudget();
+
+    long getControlSideSpillThreshold();
+
     long getOptimizerPlanMaximumTimeout();
 
     long getOptimizerPlanMinimumTimeout();
@@ -207,6 +215,16 @@ public interface SConfiguration {
 
     String getStorageFactoryHome();
 
+    String getStatementCacheWarmupDirectory();
+
+    int getStatementCacheWarmupSize();
+
+    long getStatementCacheSaveInterval();
+
+    double getBulkImportSampleFraction();
+
+    boolean getImportRegionPartitioning();
+
     int getNestedLoopJoinBatchSize();
 
     // StatsConfiguration
@@ -214,6 +232,14 @@ public interface SConfiguration {
 
     double getOptimizerExtraQualifierMultiplier();
 
+    double getMinimumSampleFraction();
+
+    long getAutoSampleTargetSize();
+
+    boolean getCollectStatisticsOnCompaction();
+
+    int getColumnGroupMaxColumns();
+
     int getCardinalityPrecision();
 
     int getFallbackRowWidth();
@@ -37,6 +37,8 @@ public class ConfigurationBuilder {
     public int transactionLockStripes;
     public long transactionKeepAliveInterval;
     public long transactionTimeout;
+    public int sharedActiveTransactionCacheSize;
+    public long sharedActiveTransactionCacheExpiration;
 
     // OperationConfiguration
     public int sequenceBlockSize;
@@ -61,6 +63,7 @@ public class ConfigurationBuilder {
     // StatsConfiguration
     public double fallbackNullFraction;
     public double optimizerExtraQualifierMultiplier;
+    public double minimumSampleFraction;
     public int cardinalityPrecision;
     public int fallbackRowWidth;
     public int indexFetchSampleSize;
@@ -71,6 +74,9 @@ public class ConfigurationBuilder {
     public long fallbackRegionRowCount;
     public long fallbackRemoteLatencyRatio;
     public long partitionCacheExpiration;
+    public long autoSampleTargetSize;
+    public boolean collectStatisticsOnCompaction;
+    public int columnGroupMaxColumns;
 
     // StorageConfiguration
     public int splitBlockSize;
@@ -111,12 +117,19 @@ public class ConfigurationBuilder {
     public int partitionserverPort;
     public long broadcastRegionMbThreshold;
     public long broadcastRegionRowThreshold;
+    public long broadcastJoinMemoryBudget;
+    public long controlSideSpillThreshold;
     public long optimizerPlanMaximumTimeout;
     public long optimizerPlanMinimumTimeout;
     public String networkBindAddress;
     public String upgradeForcedFrom;
     public String storageFactoryHome;
     public int nestedLoopJoinBatchSize;
+    public String statementCacheWarmupDirectory;
+    public int statementCacheWarmupSize;
+    public long statementCacheSaveInterval;
+    public double bulkImportSampleFraction;
+    public boolean importRegionPartitioning;
 
     // PipelineConfiguration
     public int coreWriterThreads;
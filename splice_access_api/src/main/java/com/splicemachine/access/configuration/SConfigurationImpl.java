@@ -117,6 +117,8 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  int transactionLockStripes;
     private final  long transactionKeepAliveInterval;
     private final  long transactionTimeout;
+    private final  int sharedActiveTransactionCacheSize;
+    private final  long sharedActiveTransactionCacheExpiration;
 
     // SQLConfiguration
     private final  boolean debugDumpBindTree;
@@ -135,16 +137,27 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  int partitionserverPort;
     private final  long broadcastRegionMbThreshold;
     private final  long broadcastRegionRowThreshold;
+    private final  long broadcastJoinMemoryBudget;
+    private final  long controlSideSpillThreshold;
     private final  long optimizerPlanMaximumTimeout;
     private final  long optimizerPlanMinimumTimeout;
     private final  String networkBindAddress;
     private final  String upgradeForcedFrom;
     private final String storageFactoryHome;
     private final int nestedLoopJoinBatchSize;
+    private final String statementCacheWarmupDirectory;
+    private final int statementCacheWarmupSize;
+    private final long statementCacheSaveInterval;
+    private final double bulkImportSampleFraction;
+    private final boolean importRegionPartitioning;
 
     // StatsConfiguration
     private final  double fallbackNullFraction;
     private final  double optimizerExtraQualifierMultiplier;
+    private final  double minimumSampleFraction;
+    private final  long autoSampleTargetSize;
+    private final  boolean collectStatisticsOnCompaction;
+    private final  int columnGroupMaxColumns;
     private final  int cardinalityPrecision;
     private final  int fallbackRowWidth;
     private final  int indexFetchSampleSize;
@@ -410,6 +423,14 @@ public final class SConfigurationImpl implements SConfiguration {
         return transactionKeepAliveInterval;
     }
     @Override
+    public int getSharedActiveTransactionCacheSize() {
+        return sharedActiveTransactionCacheSize;
+    }
+    @Override
+    public long getSharedActiveTransactionCacheExpiration() {
+        return sharedActiveTransactionCacheExpiration;
+    }
+    @Override
     public long getTransactionTimeout() {
         return transactionTimeout;
     }
@@ -480,6 +501,14 @@ public final class SConfigurationImpl implements SConfiguration {
         return broadcastRegionRowThreshold;
     }
     @Override
+    public long getBroadcastJoinMemoryBudget() {
+        return broadcastJoinMemoryBudget;
+    }
+    @Override
+    public long getControlSideSpillThreshold() {
+        return controlSideSpillThreshold;
+    }
+    @Override
     public long getOptimizerPlanMaximumTimeout() {
         return optimizerPlanMaximumTimeout;
     }
@@ -510,6 +539,22 @@ public final class SConfigurationImpl implements SConfiguration {
         return optimizerExtraQualifierMultiplier;
     }
     @Override
+    public double getMinimumSampleFraction() {
+        return minimumSampleFraction;
+    }
+    @Override
+    public long getAutoSampleTargetSize() {
+        return autoSampleTargetSize;
+    }
+    @Override
+    public boolean getCollectStatisticsOnCompaction() {
+        return collectStatisticsOnCompaction;
+    }
+    @Override
+    public int getColumnGroupMaxColumns() {
+        return columnGroupMaxColumns;
+    }
+    @Override
     public int getCardinalityPrecision() {
         return cardinalityPrecision;
     }
@@ -551,6 +596,16 @@ public final class SConfigurationImpl implements SConfiguration {
     }
     @Override
     public String getStorageFactoryHome() { return storageFactoryHome;}
+    @Override
+    public String getStatementCacheWarmupDirectory() { return statementCacheWarmupDirectory;}
+    @Override
+    public int getStatementCacheWarmupSize() { return statementCacheWarmupSize;}
+    @Override
+    public long getStatementCacheSaveInterval() { return statementCacheSaveInterval;}
+    @Override
+    public double getBulkImportSampleFraction() { return bulkImportSampleFraction;}
+    @Override
+    public boolean getImportRegionPartitioning() { return importRegionPartitioning;}
 
     // StorageConfiguration
     @Override
@@ -593,6 +648,8 @@ public final class SConfigurationImpl implements SConfiguration {
         transactionLockStripes = builder.transactionLockStripes;
         transactionKeepAliveInterval = builder.transactionKeepAliveInterval;
         transactionTimeout = builder.transactionTimeout;
+        sharedActiveTransactionCacheSize = builder.sharedActiveTransactionCacheSize;
+        sharedActiveTransactionCacheExpiration = builder.sharedActiveTransactionCacheExpiration;
         sequenceBlockSize = builder.sequenceBlockSize;
         ddlDrainingInitialWait = builder.ddlDrainingInitialWait;
         ddlDrainingMaximumWait = builder.ddlDrainingMaximumWait;
@@ -609,6 +666,10 @@ public final class SConfigurationImpl implements SConfiguration {
         authenticationNativeAlgorithm = builder.authenticationNativeAlgorithm;
         fallbackNullFraction = builder.fallbackNullFraction;
         optimizerExtraQualifierMultiplier = builder.optimizerExtraQualifierMultiplier;
+        minimumSampleFraction = builder.minimumSampleFraction;
+        autoSampleTargetSize = builder.autoSampleTargetSize;
+        collectStatisticsOnCompaction = builder.collectStatisticsOnCompaction;
+        columnGroupMaxColumns = builder.columnGroupMaxColumns;
         cardinalityPrecision = builder.cardinalityPrecision;
         fallbackRowWidth = builder.fallbackRowWidth;
         topkSize = builder.topkSize;
@@ -646,6 +707,8 @@ public final class SConfigurationImpl implements SConfiguration {
         partitionserverPort = builder.partitionserverPort;
         broadcastRegionMbThreshold = builder.broadcastRegionMbThreshold;
         broadcastRegionRowThreshold = builder.broadcastRegionRowThreshold;
+        broadcastJoinMemoryBudget = builder.broadcastJoinMemoryBudget;
+        controlSideSpillThreshold = builder.controlSideSpillThreshold;
         optimizerPlanMaximumTimeout = builder.optimizerPlanMaximumTimeout;
         optimizerPlanMinimumTimeout = builder.optimizerPlanMinimumTimeout;
         networkBindAddress = builder.networkBindAddress;
@@ -677,6 +740,11 @@ public final class SConfigurationImpl implements SConfiguration {
         olapCompactionMaximumWait = builder.olapCompactionMaximumWait;
         reservedSlotsTimeout = builder.reservedSlotsTimeout;
         storageFactoryHome = builder.storageFactoryHome;
+        statementCacheWarmupDirectory = builder.statementCacheWarmupDirectory;
+        statementCacheWarmupSize = builder.statementCacheWarmupSize;
+        statementCacheSaveInterval = builder.statementCacheSaveInterval;
+        bulkImportSampleFraction = builder.bulkImportSampleFraction;
+        importRegionPartitioning = builder.importRegionPartitioning;
         nestedLoopJoinBatchSize = builder.nestedLoopJoinBatchSize;
 
     }
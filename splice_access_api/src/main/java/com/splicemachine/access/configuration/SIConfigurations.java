@@ -149,6 +149,23 @@ public class SIConfigurations implements ConfigurationDefault {
     public static final String ACTIVE_TRANSACTION_CACHE_SIZE="splice.txn.activeCacheSize";
     private static final int DEFAULT_ACTIVE_TRANSACTION_CACHE_SIZE = 1<<12;
 
+    /**
+     * The maximum number of active transactions held in the server-wide cache which
+     * is shared between concurrent scans.
+     *
+     * Defaults to 16384
+     */
+    public static final String SHARED_ACTIVE_TRANSACTION_CACHE_SIZE="splice.txn.sharedActiveCacheSize";
+    private static final int DEFAULT_SHARED_ACTIVE_TRANSACTION_CACHE_SIZE = 1<<14;
+
+    /**
+     * The length of time (in milliseconds) that an active transaction remains in the shared
+     * active transaction cache before it must be read again.
+     *
+     * Defaults to the transaction keep alive interval
+     */
+    public static final String SHARED_ACTIVE_TRANSACTION_CACHE_EXPIRATION="splice.txn.sharedActiveCacheExpirationMs";
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         builder.completedTxnConcurrency  = configurationSource.getInt(completedTxnConcurrency, DEFAULT_COMPLETED_TRANSACTION_CONCURRENCY);
@@ -168,6 +185,8 @@ public class SIConfigurations implements ConfigurationDefault {
 
         builder.transactionTimeout = configurationSource.getLong(TRANSACTION_TIMEOUT, DEFAULT_TRANSACTION_TIMEOUT);
         builder.transactionKeepAliveInterval = configurationSource.getLong(TRANSACTION_KEEP_ALIVE_INTERVAL, DEFAULT_TRANSACTION_KEEP_ALIVE_INTERVAL);
+        builder.sharedActiveTransactionCacheSize = configurationSource.getInt(SHARED_ACTIVE_TRANSACTION_CACHE_SIZE, DEFAULT_SHARED_ACTIVE_TRANSACTION_CACHE_SIZE);
+        builder.sharedActiveTransactionCacheExpiration = configurationSource.getLong(SHARED_ACTIVE_TRANSACTION_CACHE_EXPIRATION, builder.transactionKeepAliveInterval);
 
     }
 }
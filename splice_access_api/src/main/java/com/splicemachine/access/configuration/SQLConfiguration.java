@@ -72,6 +72,13 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String CONTROL_SIDE_ROWCOUNT_THRESHOLD = "splice.dataset.control.rowCountThreshold";
     private static final double DEFAULT_CONTROL_SIDE_ROWCOUNT_THRESHOLD = 100000D;
 
+    /**
+     * The estimated number of bytes a single control-side aggregation, sort or join may hold in
+     * memory before it spills to local disk. Default is 5% of the heap.
+     */
+    public static final String CONTROL_SIDE_SPILL_THRESHOLD = "splice.dataset.control.spillThreshold";
+    private static final long DEFAULT_CONTROL_SIDE_SPILL_THRESHOLD = Runtime.getRuntime().maxMemory() / 20;
+
     //debug options
     /**
      * For debugging an operation, this will force the query parser to dump any generated
@@ -110,6 +117,13 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String BROADCAST_REGION_ROW_THRESHOLD = "splice.optimizer.broadcastRegionRowThreshold";
     private static final int DEFAULT_BROADCAST_REGION_ROW_THRESHOLD = 1000000;
 
+    /**
+     * The number of bytes which the broadcast join tables cached on a server may hold in memory.
+     * A table which does not fit spills its rows to local disk. Default is 10% of the heap.
+     */
+    public static final String BROADCAST_JOIN_MEMORY_BUDGET = "splice.broadcastJoin.memoryBudget";
+    private static final long DEFAULT_BROADCAST_JOIN_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 10;
+
     /**
      * Minimum fixed duration (in millisecomds) that should be allowed to lapse
      * before the optimizer can determine that it should stop trying to find
@@ -203,6 +217,49 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String NESTEDLOOPJOIN_BATCH_SIZE = "splice.nestedLoopJoin.batchSize";
     private static final int DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE = 10;
 
+    /**
+     * Directory of the (distributed) file system where each server periodically saves the statements
+     * in its statement cache, and from which it compiles the statements saved by all servers when it
+     * boots, so that a restarted server does not have to compile its hot statements under load.
+     *
+     * Defaults to null, which disables saving and warming up the statement cache.
+     */
+    public static final String STATEMENT_CACHE_WARMUP_DIRECTORY = "splice.statementCache.warmupDirectory";
+
+    /**
+     * The maximum number of statements a server compiles when it warms up its statement cache.
+     *
+     * Defaults to 1000
+     */
+    public static final String STATEMENT_CACHE_WARMUP_SIZE = "splice.statementCache.warmupSize";
+    private static final int DEFAULT_STATEMENT_CACHE_WARMUP_SIZE = 1000;
+
+    /**
+     * How often (in milliseconds) a server saves the statements in its statement cache.
+     *
+     * Defaults to 5 minutes
+     */
+    public static final String STATEMENT_CACHE_SAVE_INTERVAL = "splice.statementCache.saveInterval";
+    private static final long DEFAULT_STATEMENT_CACHE_SAVE_INTERVAL = 300000L;
+
+    /**
+     * The fraction of the rows of a bulk import which are sampled to pick the split points of the
+     * regions the imported rows are loaded into.
+     *
+     * Defaults to 0.005
+     */
+    public static final String BULK_IMPORT_SAMPLE_FRACTION = "splice.bulkImport.sampleFraction";
+    private static final double DEFAULT_BULK_IMPORT_SAMPLE_FRACTION = 0.005d;
+
+    /**
+     * Whether imports through the write pipeline shuffle their rows by the region they are written to, so
+     * that each task writes large sorted batches to a few regions rather than small batches to all of them.
+     *
+     * Defaults to true
+     */
+    public static final String IMPORT_REGION_PARTITIONING = "splice.import.regionPartitioning";
+    private static final boolean DEFAULT_IMPORT_REGION_PARTITIONING = true;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         // FIXME: JC - some of these are not referenced anywhere outside. Do we need them?
@@ -216,6 +273,7 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.partitionserverJmxPort = configurationSource.getInt(PARTITIONSERVER_JMX_PORT, DEFAULT_PARTITIONSERVER_JMX_PORT);
         builder.partitionserverPort = configurationSource.getInt(PARTITIONSERVER_PORT, DEFAULT_PARTITIONSERVER_PORT);
         builder.nestedLoopJoinBatchSize = configurationSource.getInt(NESTEDLOOPJOIN_BATCH_SIZE, DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE);
+        builder.statementCacheWarmupSize = configurationSource.getInt(STATEMENT_CACHE_WARMUP_SIZE, DEFAULT_STATEMENT_CACHE_WARMUP_SIZE);
 
         // Where to place jar files...
         String defaultStorageFactoryHome;
@@ -228,6 +286,10 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.optimizerPlanMinimumTimeout = configurationSource.getLong(OPTIMIZER_PLAN_MINIMUM_TIMEOUT, DEFAULT_OPTIMIZER_PLAN_MINIMUM_TIMEOUT);
         builder.broadcastRegionMbThreshold = configurationSource.getLong(BROADCAST_REGION_MB_THRESHOLD, DEFAULT_BROADCAST_REGION_MB_THRESHOLD);
         builder.broadcastRegionRowThreshold = configurationSource.getLong(BROADCAST_REGION_ROW_THRESHOLD, DEFAULT_BROADCAST_REGION_ROW_THRESHOLD);
+        builder.broadcastJoinMemoryBudget = configurationSource.getLong(BROADCAST_JOIN_MEMORY_BUDGET, DEFAULT_BROADCAST_JOIN_MEMORY_BUDGET);
+        builder.controlSideSpillThreshold = configurationSource.getLong(CONTROL_SIDE_SPILL_THRESHOLD, DEFAULT_CONTROL_SIDE_SPILL_THRESHOLD);
+        builder.statementCacheSaveInterval = configurationSource.getLong(STATEMENT_CACHE_SAVE_INTERVAL, DEFAULT_STATEMENT_CACHE_SAVE_INTERVAL);
+        builder.bulkImportSampleFraction = configurationSource.getDouble(BULK_IMPORT_SAMPLE_FRACTION, DEFAULT_BULK_IMPORT_SAMPLE_FRACTION);
 
         //always disable debug statements by default
         builder.debugLogStatementContext = configurationSource.getBoolean(DEBUG_LOG_STATEMENT_CONTEXT, DEFAULT_LOG_STATEMENT_CONTEXT);
@@ -236,10 +298,12 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.debugDumpClassFile = configurationSource.getBoolean(DEBUG_DUMP_CLASS_FILE, DEFAULT_DUMP_CLASS_FILE);
         builder.ignoreSavePoints = configurationSource.getBoolean(IGNORE_SAVE_POINTS, DEFAULT_IGNORE_SAVEPTS);
         builder.upgradeForced = configurationSource.getBoolean(UPGRADE_FORCED, DEFAULT_UPGRADE_FORCED);
+        builder.importRegionPartitioning = configurationSource.getBoolean(IMPORT_REGION_PARTITIONING, DEFAULT_IMPORT_REGION_PARTITIONING);
 
 //        builder.controlSideCostThreshold = configurationSource.getDouble(CONTROL_SIDE_COST_THRESHOLD, DEFAULT_CONTROL_SIDE_COST_THRESHOLD);
 //        builder.controlSideRowcountThreshold = configurationSource.getDouble(CONTROL_SIDE_ROWCOUNT_THRESHOLD, DEFAULT_CONTROL_SIDE_ROWCOUNT_THRESHOLD);
 
         builder.networkBindAddress = configurationSource.getString(NETWORK_BIND_ADDRESS, DEFAULT_NETWORK_BIND_ADDRESS);
+        builder.statementCacheWarmupDirectory = configurationSource.getString(STATEMENT_CACHE_WARMUP_DIRECTORY, null);
     }
 }
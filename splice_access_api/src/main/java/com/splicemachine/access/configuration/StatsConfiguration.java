@@ -125,6 +125,36 @@ public class StatsConfiguration implements ConfigurationDefault {
     public static final String FALLBACK_ROW_WIDTH="splice.statistics.fallbackMinimumRowWidth";
     public static final int DEFAULT_FALLBACK_ROW_WIDTH=170;
 
+    /**
+     * When statistics are collected with an automatically chosen sample rate (e.g. only re-collecting
+     * stale statistics for a schema), the sample rate is chosen so that roughly this much of each table
+     * is read. Tables smaller than this are read in full. Measured in MB.
+     */
+    public static final String AUTO_SAMPLE_TARGET_SIZE="splice.statistics.autoSampleTargetSize";
+    public static final long DEFAULT_AUTO_SAMPLE_TARGET_SIZE=8*1024; //8 GB
+
+    /**
+     * The smallest sample rate which will be chosen automatically, no matter how large the table is. Very
+     * small samples make for poor cardinality estimates.
+     */
+    public static final String MINIMUM_SAMPLE_FRACTION="splice.statistics.minimumSampleFraction";
+    public static final double DEFAULT_MINIMUM_SAMPLE_FRACTION=0.01d;
+
+    /**
+     * When enabled, major compactions which run on Spark also rebuild the statistics of the region being
+     * compacted, replacing whatever statistics were previously collected for it. Off by default.
+     */
+    public static final String COLLECT_STATISTICS_ON_COMPACTION="splice.statistics.collectOnMajorCompaction";
+    public static final boolean DEFAULT_COLLECT_STATISTICS_ON_COMPACTION=false;
+
+    /**
+     * The largest column group (the leading columns of a multi-column index or primary key) for which joint
+     * statistics are collected, so that the optimizer can tell correlated columns apart from independent ones.
+     * Values below 2 turn column group statistics off.
+     */
+    public static final String COLUMN_GROUP_MAX_COLUMNS="splice.statistics.columnGroupMaxColumns";
+    public static final int DEFAULT_COLUMN_GROUP_MAX_COLUMNS=4;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         // FIXME: JC - some of these are not referenced anywhere outside. Do we need them?
@@ -147,5 +177,9 @@ public class StatsConfiguration implements ConfigurationDefault {
 //        builder.fallbackCardinalityFraction = configurationSource.getDouble(FALLBACK_CARDINALITY_FRACTION, DEFAULT_FALLBACK_CARDINALITY_FRACTION);
 //        builder.fallbackIndexSelectivityFraction = configurationSource.getDouble(FALLBACK_INDEX_SELECTIVITY_FRACTION, DEFAULT_FALLBACK_INDEX_SELECTIVITY_FRACTION);
         builder.optimizerExtraQualifierMultiplier = configurationSource.getDouble(OPTIMIZER_EXTRA_QUALIFIER_MULTIPLIER, DEFAULT_OPTIMIZER_EXTRA_QUALIFIER_MULTIPLIER);
+        builder.autoSampleTargetSize = configurationSource.getLong(AUTO_SAMPLE_TARGET_SIZE, DEFAULT_AUTO_SAMPLE_TARGET_SIZE);
+        builder.minimumSampleFraction = configurationSource.getDouble(MINIMUM_SAMPLE_FRACTION, DEFAULT_MINIMUM_SAMPLE_FRACTION);
+        builder.collectStatisticsOnCompaction = configurationSource.getBoolean(COLLECT_STATISTICS_ON_COMPACTION, DEFAULT_COLLECT_STATISTICS_ON_COMPACTION);
+        builder.columnGroupMaxColumns = configurationSource.getInt(COLUMN_GROUP_MAX_COLUMNS, DEFAULT_COLUMN_GROUP_MAX_COLUMNS);
     }
 }
@@ -104,6 +104,18 @@ public interface Partition extends AutoCloseable{
      */
     DataResult getLatest(byte[] key,DataResult previous) throws IOException;
 
+    /**
+     * Get the latest single value for all data types of many rows, as {@link #getLatest(byte[],DataResult)}
+     * does for each of them, but in a single forward pass over the rows where the storage allows it.
+     *
+     * @param sortedKeys the row keys to fetch, in ascending order
+     * @param previous a holder object to save storage, as in {@link #getLatest(byte[],DataResult)}
+     * @return the results, one for each key and in the same order. A key without a row gets an empty result.
+     * The same holder object may be returned for each key, so a result must be used before moving to the next.
+     * @throws IOException if something goes wrong
+     */
+    Iterator<DataResult> getLatest(List<byte[]> sortedKeys,DataResult previous) throws IOException;
+
     Lock getRowLock(byte[] key,int keyOff,int keyLen) throws IOException;
 
     DataResultScanner openResultScanner(DataScan scan,MetricFactory metricFactory) throws IOException;
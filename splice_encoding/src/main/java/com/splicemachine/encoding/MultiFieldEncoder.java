@@ -206,12 +206,34 @@ public class MultiFieldEncoder {
         //if you haven't tried to encode anything, return empty array
         if(currentPos==0) return Encoding.EMPTY_BYTE_ARRAY;
 
-        byte[] data = new byte[currentSize+currentPos-1];
-        int destPos=0;
+        byte[] data = new byte[getEncodedLength()];
+        build(data,0);
+        return data;
+    }
+
+    /**
+     * @return the number of bytes which the fields encoded so far will take up once
+     * built (i.e. the length of the array returned by {@link #build()}).
+     */
+    public int getEncodedLength(){
+        if(currentPos==0) return 0;
+        return currentSize+currentPos-1;
+    }
+
+    /**
+     * Build the encoded fields into an existing array, rather than allocating a new one.
+     *
+     * @param destination the array to write into. Must have at least {@link #getEncodedLength()}
+     *                    bytes available after {@code offset}
+     * @param offset the position in {@code destination} to start writing at
+     * @return the number of bytes written
+     */
+    public int build(byte[] destination,int offset){
+        int destPos=offset;
         for(int srcPos=0;srcPos<currentPos;srcPos++){
             byte[] src = fields[srcPos];
             if(srcPos != 0){
-                data[destPos] = 0x00; //we know that 0x00 is never allowed, so it's a safe terminator
+                destination[destPos] = 0x00; //we know that 0x00 is never allowed, so it's a safe terminator
                 destPos++;
             }
             if(src==null || src.length==0) {
@@ -219,10 +241,10 @@ public class MultiFieldEncoder {
                 continue;
             }
 
-            System.arraycopy(src,0,data,destPos,src.length);
+            System.arraycopy(src,0,destination,destPos,src.length);
             destPos+=src.length;
         }
-        return data;
+        return destPos-offset;
     }
 
     public void mark() {
@@ -320,6 +342,13 @@ public class MultiFieldEncoder {
         return fields.length;
     }
 
+    /**
+     * @return the number of fields which have been encoded so far
+     */
+    public int getEncodedFieldCount(){
+        return currentPos;
+    }
+
     public MultiFieldEncoder setRawBytes(ByteSlice slice) {
         return setRawBytes(slice.array(),slice.offset(),slice.length());
     }
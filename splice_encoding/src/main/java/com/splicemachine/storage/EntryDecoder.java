@@ -40,6 +40,11 @@ public class EntryDecoder implements Supplier<MultiFieldDecoder> {
 
     /* Position within currentData of the first delimiter (end of BitIndex)  */
     private int dataOffset;
+    /* The number of bytes of field data, not counting the field directory (if there is one) */
+    private int dataLength;
+    /* Position within currentData of the field directory, or -1 if the row doesn't have one */
+    private int directoryOffset=-1;
+    private int offsetWidth;
 
     private BitIndex bitIndex;
     private MultiFieldDecoder decoder;
@@ -64,8 +69,23 @@ public class EntryDecoder implements Supplier<MultiFieldDecoder> {
         currentData.set(bytes, offset, length);
 
         rebuildBitIndex();
+        readFieldDirectory();
         if (decoder != null)
-            decoder.set(bytes, offset + dataOffset, length - dataOffset);
+            decoder.set(bytes, offset + dataOffset, dataLength);
+    }
+
+    private void readFieldDirectory() {
+        byte[] data = currentData.array();
+        int offset = currentData.offset();
+        int length = currentData.length();
+        if ((data[offset] & EntryEncoder.FIELD_DIRECTORY_BIT) == 0) {
+            directoryOffset = -1;
+            dataLength = length - dataOffset;
+            return;
+        }
+        offsetWidth = data[offset + length - 1];
+        directoryOffset = length - 1 - (bitIndex.cardinality() - 1) * offsetWidth;
+        dataLength = directoryOffset - 1 - dataOffset; //don't include the terminator before the directory
     }
 
     private void rebuildBitIndex() {
@@ -127,6 +147,34 @@ public class EntryDecoder implements Supplier<MultiFieldDecoder> {
         return bitIndex;
     }
 
+    /**
+     * @return true if the current row has a field directory, so that {@link #seekToField(MultiFieldDecoder, int)}
+     * can be used instead of skipping over fields.
+     */
+    public boolean hasFieldDirectory() {
+        return directoryOffset >= 0;
+    }
+
+    /**
+     * Position the decoder at the start of a field, without walking the fields before it. Only valid if
+     * the row {@link #hasFieldDirectory() has a field directory}.
+     *
+     * @param field the number of the field within the encoded data (i.e. the number of set fields in the
+     *              index before it, not its position in the row)
+     */
+    public void seekToField(MultiFieldDecoder decoder, int field) {
+        assert directoryOffset >= 0 : "Row does not have a field directory";
+        int fieldOffset = 0;
+        if (field > 0) {
+            byte[] data = currentData.array();
+            int pos = currentData.offset() + directoryOffset + (field - 1) * offsetWidth;
+            for (int i = 0; i < offsetWidth; i++) {
+                fieldOffset = (fieldOffset << 8) | (data[pos + i] & 0xFF);
+            }
+        }
+        decoder.seek(currentData.offset() + dataOffset + fieldOffset);
+    }
+
     public byte[] getData(int position) throws IOException {
         if (!isSet(position)) throw new NoSuchElementException();
 
@@ -134,7 +182,7 @@ public class EntryDecoder implements Supplier<MultiFieldDecoder> {
         int fieldsToSkip = bitIndex.cardinality(position);
         int fieldSkipped = 0;
         int start;
-        int length = currentData.length();
+        int length = dataOffset + dataLength;
         byte[] data = currentData.array();
         for (start = dataOffset; start < length && fieldSkipped < fieldsToSkip; start++) {
             if (data[start] == 0x00) {
@@ -161,7 +209,7 @@ public class EntryDecoder implements Supplier<MultiFieldDecoder> {
     public MultiFieldDecoder getEntryDecoder() throws IOException {
         if (decoder == null) {
             if(currentData!=null) {
-                decoder = MultiFieldDecoder.wrap(currentData);
+                decoder = MultiFieldDecoder.wrap(currentData.array(),currentData.offset(),dataOffset+dataLength);
             }else
                 decoder = MultiFieldDecoder.create();
         }
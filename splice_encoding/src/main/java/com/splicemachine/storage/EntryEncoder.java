@@ -24,6 +24,21 @@ import com.carrotsearch.hppc.BitSet;
 
 
 /**
+ * Encodes a row as a {@link BitIndex}, a 0x00 separator, and then the packed fields.
+ *
+ * Rows with at least {@link #FIELD_DIRECTORY_THRESHOLD} fields are followed by a field directory,
+ * which lets readers jump straight to a field instead of walking all the fields before it:
+ *
+ * <pre>
+ *     [index][0x00][field 0][0x00]...[field n-1][0x00][offset 1]...[offset n-1][width]
+ * </pre>
+ *
+ * where each offset is the (big-endian, {@code width}-byte) position of a field relative to the
+ * start of field 0. The {@link #FIELD_DIRECTORY_BIT} in the header byte of the index marks rows which
+ * have a directory; none of the index encodings use that bit, so rows written before the directory
+ * existed are read exactly as they always were. The directory is separated from the last field by a
+ * terminator, so readers which don't know about it still decode the fields correctly.
+ *
  * @author Scott Fines
  *         Created on: 7/5/13
  */
@@ -41,6 +56,15 @@ public class EntryEncoder {
      * The bit to indicate whether or not the data has been compressed.
      */
     private static final byte COMPRESSED_DATA_BIT = 0x20;
+    /*
+     * The bit in the header byte of the index which indicates that the row has a field directory.
+     */
+    static final byte FIELD_DIRECTORY_BIT = 0x10;
+    /*
+     * The smallest number of fields for which we write a field directory. Below this, walking the
+     * fields is cheap enough that the directory isn't worth the space.
+     */
+    static final int FIELD_DIRECTORY_THRESHOLD=16;
 
     private MultiFieldEncoder encoder;
     private final KryoPool kryoPool;
@@ -60,13 +84,41 @@ public class EntryEncoder {
     public byte[] encode() throws IOException {
         byte[] finalData = encoder.build();
         byte[] bitData = bitIndex.encode();
-        byte[] entry = new byte[bitData.length+finalData.length+1];
+        int numFields = encoder.getEncodedFieldCount();
+        if(numFields<FIELD_DIRECTORY_THRESHOLD || numFields!=bitIndex.cardinality()){
+            byte[] entry = new byte[bitData.length+finalData.length+1];
+            System.arraycopy(bitData, 0, entry, 0, bitData.length);
+            entry[bitData.length] = 0;
+            System.arraycopy(finalData,0,entry,bitData.length+1,finalData.length);
+            return entry;
+        }
+
+        int width = offsetWidth(finalData.length);
+        byte[] entry = new byte[bitData.length+1+finalData.length+1+(numFields-1)*width+1];
         System.arraycopy(bitData, 0, entry, 0, bitData.length);
+        entry[0] |= FIELD_DIRECTORY_BIT; //bitData may be cached by the index, so only set the bit in the copy
         entry[bitData.length] = 0;
         System.arraycopy(finalData,0,entry,bitData.length+1,finalData.length);
+        int pos = bitData.length+1+finalData.length;
+        entry[pos++] = 0; //terminate the last field
+        int fieldOffset = 0;
+        for(int i=1;i<numFields;i++){
+            byte[] field = encoder.getEncodedBytes(i-1);
+            fieldOffset += (field==null?0:field.length)+1;
+            for(int shift=8*(width-1);shift>=0;shift-=8){
+                entry[pos++] = (byte)(fieldOffset>>>shift);
+            }
+        }
+        entry[pos] = (byte)width;
         return entry;
     }
 
+    private static int offsetWidth(int dataLength){
+        if(dataLength<=0xFF) return 1;
+        else if(dataLength<=0xFFFF) return 2;
+        else return 4;
+    }
+
     public void reset(BitSet nonNullFields) {
         int oldCardinality = bitIndex.cardinality();
         boolean differs = nonNullFields.cardinality() != oldCardinality;
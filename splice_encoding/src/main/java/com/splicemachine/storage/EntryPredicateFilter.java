@@ -47,13 +47,24 @@ public class EntryPredicateFilter {
 				BitSet remainingFields = accumulator.getRemainingFields();
 
 				MultiFieldDecoder decoder = decoderProvider.get();
+				/*
+				 * If the row has a field directory, we can jump straight to the fields we want
+				 * instead of decoding our way past the ones we don't.
+				 */
+				EntryDecoder directory = null;
+				if(decoderProvider instanceof EntryDecoder && ((EntryDecoder)decoderProvider).hasFieldDirectory())
+						directory = (EntryDecoder)decoderProvider;
+				int field = 0;
 				for(int encodedPos =index.nextSetBit(0);
 						remainingFields.cardinality()>0 && encodedPos>=0&&encodedPos<=remainingFields.length();
-						encodedPos=index.nextSetBit(encodedPos + 1)){
+						encodedPos=index.nextSetBit(encodedPos + 1),field++){
 						if(!remainingFields.get(encodedPos)){
-								skipField(decoder,encodedPos,index);
+								if(directory==null)
+										skipField(decoder,encodedPos,index);
 								continue;
 						}
+						if(directory!=null)
+								directory.seekToField(decoder,field);
 
 						int offset = decoder.offset();
 
@@ -17,6 +17,7 @@ package com.splicemachine.storage;
 
 import com.splicemachine.encoding.MultiFieldDecoder;
 import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.storage.index.BitIndexing;
 import com.splicemachine.utils.kryo.KryoPool;
 import org.junit.Assert;
 import org.junit.Test;
@@ -134,4 +135,119 @@ public class EntryEncoderTest {
         Assert.assertTrue("expected: "+ correct+", actual: "+ next,correct.compareTo(next)==0);
 
     }
+
+    @Test
+    public void testWideRowHasFieldDirectory() throws Exception {
+        byte[] encode = encodeWideRow(200,"value");
+
+        EntryDecoder decoder = new EntryDecoder();
+        decoder.set(encode);
+        Assert.assertTrue("Wide row should have a field directory",decoder.hasFieldDirectory());
+
+        //decoding every field in order still works
+        MultiFieldDecoder fieldDecoder = decoder.getEntryDecoder();
+        for(int i=0;i<200;i+=2){
+            assertWideRowField(fieldDecoder,i,"value");
+        }
+        Assert.assertFalse("Field directory should not be visible as data",fieldDecoder.available());
+
+        //and so does jumping straight to a field, in any order
+        for(int i=198;i>=0;i-=2){
+            decoder.seekToField(fieldDecoder,decoder.getCurrentIndex().cardinality(i));
+            assertWideRowField(fieldDecoder,i,"value");
+        }
+    }
+
+    @Test
+    public void testFieldDirectoryWithLargeOffsets() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0;i<1000;i++){
+            sb.append('a');
+        }
+        String value = sb.toString();
+        byte[] encode = encodeWideRow(200,value);
+
+        EntryDecoder decoder = new EntryDecoder();
+        decoder.set(encode);
+        Assert.assertTrue(decoder.hasFieldDirectory());
+        MultiFieldDecoder fieldDecoder = decoder.getEntryDecoder();
+        for(int i=198;i>=0;i-=2){
+            decoder.seekToField(fieldDecoder,decoder.getCurrentIndex().cardinality(i));
+            assertWideRowField(fieldDecoder,i,value);
+        }
+    }
+
+    @Test
+    public void testNarrowRowHasNoFieldDirectory() throws Exception {
+        byte[] encode = encodeWideRow(6,"value");
+
+        EntryDecoder decoder = new EntryDecoder();
+        decoder.set(encode);
+        Assert.assertFalse(decoder.hasFieldDirectory());
+        MultiFieldDecoder fieldDecoder = decoder.getEntryDecoder();
+        for(int i=0;i<6;i+=2){
+            assertWideRowField(fieldDecoder,i,"value");
+        }
+    }
+
+    @Test
+    public void testWideRowWithoutFieldDirectoryIsReadable() throws Exception {
+        //rows written before the field directory existed are just the index and the fields
+        BitSet setCols = new BitSet();
+        BitSet scalarFields = new BitSet();
+        for(int i=0;i<200;i+=2){
+            setCols.set(i);
+            if(i%4==0) scalarFields.set(i);
+        }
+        EntryEncoder encoder = EntryEncoder.create(defaultPool,200,setCols,scalarFields,null,null);
+        MultiFieldEncoder entryEncoder = encoder.getEntryEncoder();
+        for(int i=0;i<200;i+=2){
+            encodeWideRowField(entryEncoder,i,"value");
+        }
+        byte[] index = BitIndexing.getBestIndex(setCols,scalarFields,new BitSet(),new BitSet()).encode();
+        byte[] data = entryEncoder.build();
+        byte[] encode = new byte[index.length+1+data.length];
+        System.arraycopy(index,0,encode,0,index.length);
+        System.arraycopy(data,0,encode,index.length+1,data.length);
+
+        EntryDecoder decoder = new EntryDecoder();
+        decoder.set(encode);
+        Assert.assertFalse(decoder.hasFieldDirectory());
+        MultiFieldDecoder fieldDecoder = decoder.getEntryDecoder();
+        for(int i=0;i<200;i+=2){
+            assertWideRowField(fieldDecoder,i,"value");
+        }
+    }
+
+    /*
+     * Encodes a row with every other column present, alternating between scalar and string fields
+     */
+    static byte[] encodeWideRow(int numColumns,String value) throws Exception {
+        BitSet setCols = new BitSet();
+        BitSet scalarFields = new BitSet();
+        for(int i=0;i<numColumns;i+=2){
+            setCols.set(i);
+            if(i%4==0) scalarFields.set(i);
+        }
+        EntryEncoder encoder = EntryEncoder.create(defaultPool,numColumns,setCols,scalarFields,null,null);
+        MultiFieldEncoder entryEncoder = encoder.getEntryEncoder();
+        for(int i=0;i<numColumns;i+=2){
+            encodeWideRowField(entryEncoder,i,value);
+        }
+        return encoder.encode();
+    }
+
+    private static void encodeWideRowField(MultiFieldEncoder entryEncoder,int column,String value){
+        if(column%4==0)
+            entryEncoder.encodeNext(column*1000L);
+        else
+            entryEncoder.encodeNext(value+column);
+    }
+
+    static void assertWideRowField(MultiFieldDecoder fieldDecoder,int column,String value){
+        if(column%4==0)
+            Assert.assertEquals("Incorrect value for column "+column,column*1000L,fieldDecoder.decodeNextLong());
+        else
+            Assert.assertEquals("Incorrect value for column "+column,value+column,fieldDecoder.decodeNextString());
+    }
 }
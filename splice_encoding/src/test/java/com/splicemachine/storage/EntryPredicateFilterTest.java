@@ -140,4 +140,33 @@ public class EntryPredicateFilterTest {
         Assert.assertEquals("Incorrect string returned!",testType1,decodedField);
         Assert.assertTrue("more than one field available in field decoder!",fieldDecoder.nextIsNull());
     }
+
+    @Test
+    public void testReturnsOnlyMatchingColumnsFromRowWithFieldDirectory() throws Exception {
+        BitSet fieldsToReturn = new BitSet();
+        fieldsToReturn.set(6);
+        fieldsToReturn.set(160);
+        EntryPredicateFilter predicateFilter = new EntryPredicateFilter(fieldsToReturn,true);
+
+        EntryDecoder decoder = new EntryDecoder();
+        decoder.set(EntryEncoderTest.encodeWideRow(200,"value"));
+        Assert.assertTrue(decoder.hasFieldDirectory());
+
+        EntryAccumulator accumulator = predicateFilter.newAccumulator();
+        Assert.assertTrue("did not match!",predicateFilter.match(decoder, accumulator));
+
+        byte[] retBytes = accumulator.finish();
+        int i;
+        //noinspection StatementWithEmptyBody
+        for(i=0;i<retBytes.length&&retBytes[i]!=0x00;i++);
+        BitIndex returnedIndex = BitIndexing.wrap(retBytes,0,i);
+        Assert.assertEquals(2,returnedIndex.cardinality());
+        Assert.assertTrue(returnedIndex.isSet(6));
+        Assert.assertTrue(returnedIndex.isSet(160));
+
+        MultiFieldDecoder fieldDecoder = MultiFieldDecoder.wrap(retBytes, i + 1, retBytes.length - (i + 1));
+        EntryEncoderTest.assertWideRowField(fieldDecoder,6,"value");
+        EntryEncoderTest.assertWideRowField(fieldDecoder,160,"value");
+        Assert.assertTrue("more than two fields available in field decoder!",fieldDecoder.nextIsNull());
+    }
 }
@@ -33,6 +33,8 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.MapSerializer;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatisticsImpl;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatisticsMerge;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsMerge;
 import com.splicemachine.db.impl.sql.execute.*;
@@ -850,6 +852,8 @@ public class SpliceKryoRegistry implements KryoPool.KryoRegistry{
         instance.register(StatisticsFlatMapFunction.class,EXTERNALIZABLE_SERIALIZER,277);
         instance.register(ColumnStatisticsMerge.class,EXTERNALIZABLE_SERIALIZER,278);
         instance.register(RowToLocatedRowFunction.class,EXTERNALIZABLE_SERIALIZER,279);
+        instance.register(ColumnGroupStatisticsImpl.class,EXTERNALIZABLE_SERIALIZER,280);
+        instance.register(ColumnGroupStatisticsMerge.class,EXTERNALIZABLE_SERIALIZER,281);
 
     }
 }
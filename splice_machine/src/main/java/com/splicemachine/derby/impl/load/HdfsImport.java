@@ -188,6 +188,7 @@ public class HdfsImport {
                  charset,
                  true,
                  false,
+                 null,
                  results);
     }
 
@@ -268,6 +269,59 @@ public class HdfsImport {
                  charset,
                  false,
                  false,
+                 null,
+                 results);
+    }
+
+    /**
+     * The SYSCS_UTIL.BULK_IMPORT_HFILE system procedure imports data exactly like
+     * {@link #IMPORT_DATA, SYSCS_UTIL.IMPORT_DATA}, except that the rows are written to HFiles in
+     * <code>bulkImportDirectory</code>, which are then loaded directly into the regions of the table and of its
+     * indexes instead of being written through the write pipeline. Regions which would receive too much data are
+     * split first, based on a sample of the imported rows.
+     * <p/>
+     * The imported rows are not checked against the rows already in the table. A table which has a primary key or
+     * a unique index is therefore imported through the write pipeline unless it is empty, and so are tables with
+     * triggers or foreign keys.
+     *
+     * @param bulkImportDirectory a directory, on the file system of the cluster, to write the HFiles to. The files
+     *                            are removed once they are loaded.
+     * @see #IMPORT_DATA for the other parameters
+     */
+    public static void BULK_IMPORT_HFILE(String schemaName,
+                                         String tableName,
+                                         String insertColumnList,
+                                         String fileName,
+                                         String columnDelimiter,
+                                         String characterDelimiter,
+                                         String timestampFormat,
+                                         String dateFormat,
+                                         String timeFormat,
+                                         long badRecordsAllowed,
+                                         String badRecordDirectory,
+                                         String oneLineRecords,
+                                         String charset,
+                                         String bulkImportDirectory,
+                                         ResultSet[] results
+    ) throws SQLException {
+        if (bulkImportDirectory == null)
+            throw PublicAPI.wrapStandardException(ErrorState.LANG_NULL_INTO_NON_NULL.newException("bulkImportDirectory"));
+        doImport(schemaName,
+                 tableName,
+                 insertColumnList,
+                 fileName,
+                 columnDelimiter,
+                 characterDelimiter,
+                 timestampFormat,
+                 dateFormat,
+                 timeFormat,
+                 badRecordsAllowed,
+                 badRecordDirectory,
+                 oneLineRecords,
+                 charset,
+                 false,
+                 false,
+                 bulkImportDirectory,
                  results);
     }
 
@@ -287,15 +341,16 @@ public class HdfsImport {
                                  String charset,
                                  boolean isUpsert,
                                  boolean isCheckScan,
+                                 String bulkImportDirectory,
                                  ResultSet[] results) throws SQLException {
         if (LOG.isTraceEnabled())
             SpliceLogUtils.trace(LOG, "doImport {schemaName=%s, tableName=%s, insertColumnList=%s, fileName=%s, " +
                                      "columnDelimiter=%s, characterDelimiter=%s, timestampFormat=%s, dateFormat=%s, " +
                 "timeFormat=%s, badRecordsAllowed=%d, badRecordDirectory=%s, oneLineRecords=%s, charset=%s, " +
-                "isUpsert=%s, isCheckScan=%s}",
+                "isUpsert=%s, isCheckScan=%s, bulkImportDirectory=%s}",
                                  schemaName, tableName, insertColumnListString, fileName, columnDelimiter, characterDelimiter,
                                  timestampFormat, dateFormat, timeFormat, badRecordsAllowed, badRecordDirectory,
-                                 oneLineRecords, charset, isUpsert, isCheckScan);
+                                 oneLineRecords, charset, isUpsert, isCheckScan, bulkImportDirectory);
 
         if (charset == null) {
             charset = StandardCharsets.UTF_8.name();
@@ -375,7 +430,8 @@ public class HdfsImport {
             ColumnInfo columnInfo = new ColumnInfo(conn, schemaName, tableName, insertColumnList);
             String insertSql = "INSERT INTO " + entityName + "(" + columnInfo.getInsertColumnNames() + ") " +
                 "--splice-properties insertMode=" + (isUpsert ? "UPSERT" : "INSERT") + ", statusDirectory=" +
-                badRecordDirectory + ", badRecordsAllowed=" + badRecordsAllowed + "\n" +
+                badRecordDirectory + ", badRecordsAllowed=" + badRecordsAllowed +
+                (bulkImportDirectory == null ? "" : ", bulkImportDirectory=" + bulkImportDirectory) + "\n" +
                 " SELECT "+
                     generateColumnList(((EmbedConnection)conn).getLanguageConnection(),schemaName,tableName,insertColumnList) +
                     " from " +
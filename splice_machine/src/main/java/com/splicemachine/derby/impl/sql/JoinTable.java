@@ -27,8 +27,14 @@ import java.util.Iterator;
  */
 public interface JoinTable extends AutoCloseable{
 
-    interface Factory{
+    interface Factory extends AutoCloseable{
         JoinTable newTable();
+
+        /**
+         * Release the resources held by the table. No table may be in use, or be created, afterwards.
+         */
+        @Override
+        void close();
     }
 
     Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException;
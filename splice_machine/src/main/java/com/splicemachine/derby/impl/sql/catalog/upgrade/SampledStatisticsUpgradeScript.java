@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.catalog.upgrade;
+
+import com.splicemachine.db.catalog.UUID;
+import com.splicemachine.db.catalog.types.DefaultInfoImpl;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.dictionary.ColumnDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.ColumnDescriptorList;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
+import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.db.iapi.types.DataTypeDescriptor;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.impl.sql.catalog.SYSTABLESTATISTICSRowFactory;
+import com.splicemachine.derby.impl.sql.catalog.SpliceDataDictionary;
+import com.splicemachine.pipeline.ErrorState;
+
+import java.sql.Types;
+
+/**
+ * Adds the SAMPLEFRACTION column to SYS.SYSTABLESTATS, which records the fraction of each partition's rows
+ * that were read when its statistics were collected.
+ */
+public class SampledStatisticsUpgradeScript extends UpgradeScriptBase {
+    private static final String SAMPLE_FRACTION_COLUMN="SAMPLEFRACTION";
+
+    public SampledStatisticsUpgradeScript(SpliceDataDictionary sdd, TransactionController tc) {
+        super(sdd, tc);
+    }
+
+    @Override
+    protected void upgradeSystemTables() throws StandardException {
+        super.upgradeSystemTables();
+        addSampleFractionColumnToSysTableStats(tc);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void addSampleFractionColumnToSysTableStats(TransactionController tc) throws StandardException {
+        TableDescriptor sysTableStats = sdd.getTableDescriptor(SYSTABLESTATISTICSRowFactory.TABLENAME_STRING,
+                sdd.getSystemSchemaDescriptor(),tc);
+        ColumnDescriptorList columnDescriptorList=sysTableStats.getColumnDescriptorList();
+        for(ColumnDescriptor cd:columnDescriptorList){
+            /*
+             * Another region server may have started at the same time and already added the column,
+             * in which case there is nothing left to do
+             */
+            if(SAMPLE_FRACTION_COLUMN.equalsIgnoreCase(cd.getColumnName())){
+                return;
+            }
+        }
+
+        SQLDouble template_column = new SQLDouble();
+        DataTypeDescriptor dtd = DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.DOUBLE);
+        int position = SYSTABLESTATISTICSRowFactory.SAMPLEFRACTION;
+        tc.addColumnToConglomerate(sdd.getSYSTABLESTATSHeapConglomerateNumber(),position-1,
+                template_column,dtd.getCollationType());
+
+        UUID defaultUuid = sdd.getUUIDFactory().createUUID();
+        ColumnDescriptor cd = new ColumnDescriptor(SAMPLE_FRACTION_COLUMN,position,position,
+                dtd,
+                template_column,
+                new DefaultInfoImpl(false,null,null),
+                sysTableStats,
+                defaultUuid,
+                0,
+                0,position);
+
+        try{
+            sdd.addDescriptor(cd,sysTableStats,DataDictionary.SYSCOLUMNS_CATALOG_NUM,false,tc);
+        }catch(StandardException se){
+            /*
+             * Same race as in LassenUpgradeScript: losing it just means the column is already there
+             */
+            if(!ErrorState.LANG_OBJECT_ALREADY_EXISTS_IN_OBJECT.getSqlState().equals(se.getSQLState()))
+                throw se;
+            columnDescriptorList.add(cd);
+            return;
+        }
+
+        columnDescriptorList.add(cd);
+        sdd.updateSYSCOLPERMSforAddColumnToUserTable(sysTableStats.getUUID(), tc);
+    }
+}
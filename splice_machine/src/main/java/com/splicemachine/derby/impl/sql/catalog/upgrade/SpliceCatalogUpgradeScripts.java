@@ -62,6 +62,7 @@ public class SpliceCatalogUpgradeScripts{
         scripts=new TreeMap<>(ddComparator);
         scripts.put(new Splice_DD_Version(sdd,1,0,0),new UpgradeScriptForFuji(sdd,tc));
         scripts.put(new Splice_DD_Version(sdd,1,1,1),new LassenUpgradeScript(sdd,tc));
+        scripts.put(new Splice_DD_Version(sdd,3,0,0),new SampledStatisticsUpgradeScript(sdd,tc));
     }
 
     public void run() throws StandardException{
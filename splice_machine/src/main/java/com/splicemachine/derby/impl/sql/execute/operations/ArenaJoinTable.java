@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.encoding.MultiFieldDecoder;
+import com.splicemachine.encoding.MultiFieldEncoder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A JoinTable backed by a {@link JoinRowArena}.
+ *
+ * The outer key is encoded into a probe buffer which is reused from row to row, and inner rows are
+ * only decoded (into a fresh row, since callers may hold on to them) once they have matched.
+ *
+ * This class is not thread-safe; each thread gets its own instance from the {@link Factory}, all
+ * of which share the same (immutable) arena.
+ */
+class ArenaJoinTable implements JoinTable{
+    private final JoinRowArena arena;
+    private final ExecRow innerTemplate;
+    private final int[] outerHashKeys;
+    private final DescriptorSerializer[] outerSerializers;
+    private final DescriptorSerializer[] innerSerializers;
+    private final MultiFieldEncoder outerKeyEncoder;
+    private final MultiFieldDecoder rowDecoder=MultiFieldDecoder.create();
+    private final JoinRowArena.RowReader rowReader;
+    private byte[] probeKey=new byte[64];
+
+    public ArenaJoinTable(JoinRowArena arena,ExecRow innerTemplate,int[] outerHashKeys,ExecRow outerTemplateRow){
+        this.arena=arena;
+        this.innerTemplate=innerTemplate;
+        this.outerHashKeys=outerHashKeys;
+        this.outerSerializers=VersionedSerializers.latestVersion(false).getSerializers(outerTemplateRow);
+        this.innerSerializers=innerTemplate==null?null:VersionedSerializers.latestVersion(false).getSerializers(innerTemplate);
+        this.outerKeyEncoder=MultiFieldEncoder.create(ArenaJoinTableLoader.numKeyFields(outerHashKeys));
+        this.rowReader=arena.newReader();
+    }
+
+    @Override
+    public Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException{
+        if(arena.numRows()==0)
+            return Collections.emptyIterator();
+
+        ArenaJoinTableLoader.encodeKey(outerKeyEncoder,outer,outerHashKeys,outerSerializers);
+        int keyLength=outerKeyEncoder.getEncodedLength();
+        if(probeKey.length<keyLength)
+            probeKey=new byte[Math.max(keyLength,2*probeKey.length)];
+        outerKeyEncoder.build(probeKey,0);
+
+        int first=arena.firstRow(probeKey,0,keyLength);
+        if(first<0)
+            return Collections.emptyIterator();
+        else
+            return new MatchIterator(first);
+    }
+
+    //nothing to close
+    @Override public void close(){}
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private ExecRow decode(int row) throws StandardException, IOException{
+        ExecRow destination=innerTemplate.getNewNullRow();
+        rowReader.read(row);
+        rowDecoder.set(rowReader.buffer(),rowReader.offset(),rowReader.length());
+        DataValueDescriptor[] fields=destination.getRowArray();
+        for(int i=0;i<fields.length;i++){
+            innerSerializers[i].decode(rowDecoder,fields[i],false);
+        }
+        return destination;
+    }
+
+    private class MatchIterator implements Iterator<ExecRow>{
+        private int next;
+
+        MatchIterator(int first){
+            this.next=first;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next>=0;
+        }
+
+        @Override
+        public ExecRow next(){
+            if(next<0) throw new NoSuchElementException();
+            int row=next;
+            next=arena.nextRow(row);
+            try{
+                return decode(row);
+            }catch(StandardException | IOException e){
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class Factory implements JoinTable.Factory{
+        private final JoinRowArena arena;
+        private final ExecRow innerTemplate;
+        private final int[] outerHashKeys;
+        private final ExecRow outerTemplateRow;
+
+        public Factory(JoinRowArena arena,ExecRow innerTemplate,int[] outerHashKeys,ExecRow outerTemplateRow){
+            this.arena=arena;
+            this.innerTemplate=innerTemplate;
+            this.outerHashKeys=outerHashKeys;
+            this.outerTemplateRow=outerTemplateRow;
+        }
+
+        @Override
+        public JoinTable newTable(){
+            return new ArenaJoinTable(arena,innerTemplate,outerHashKeys,outerTemplateRow);
+        }
+
+        long heapSize(){
+            return arena.heapSize();
+        }
+
+        boolean isSpilled(){
+            return arena.isSpilled();
+        }
+
+        @Override
+        public void close(){
+            arena.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.stream.Stream;
+import com.splicemachine.stream.StreamException;
+import org.apache.log4j.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads the inner side of a broadcast join into a {@link JoinRowArena}, encoding each row
+ * (and its join key) directly into the arena instead of keeping a clone of every row.
+ *
+ * The memory held by the arena is accounted against the cache's budget as it grows. Once the budget
+ * is exhausted, the rows are spilled to a local file and only the join keys are kept in memory. If even
+ * the keys do not fit, the load fails with a {@link BroadcastJoinCache.MemoryBudgetExceededException}
+ * (unless the reservation allows the table to exceed the budget).
+ */
+@ThreadSafe
+class ArenaJoinTableLoader implements BroadcastJoinCache.JoinTableLoader{
+    private static final Logger LOG=Logger.getLogger(ArenaJoinTableLoader.class);
+    public static BroadcastJoinCache.JoinTableLoader INSTANCE = new ArenaJoinTableLoader();
+
+    private ArenaJoinTableLoader(){} //singleton class
+
+    @Override
+    public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys, ExecRow outerTemplateRow,
+                                 BroadcastJoinCache.MemoryReservation memory) throws ExecutionException{
+        JoinRowArena.Builder arena=new JoinRowArena.Builder();
+        ExecRow innerTemplate=null;
+
+        DescriptorSerializer[] innerSerializers=null;
+        MultiFieldEncoder keyEncoder=null;
+        MultiFieldEncoder rowEncoder=null;
+
+        try(Stream<ExecRow> innerRows=streamLoader.call()){
+            ExecRow right;
+            while((right=innerRows.next())!=null){
+                if(innerSerializers==null){
+                    innerTemplate=right.getNewNullRow();
+                    innerSerializers=VersionedSerializers.latestVersion(false).getSerializers(right);
+                    keyEncoder=MultiFieldEncoder.create(numKeyFields(innerHashKeys));
+                    rowEncoder=MultiFieldEncoder.create(right.nColumns());
+                }
+
+                encodeKey(keyEncoder,right,innerHashKeys,innerSerializers);
+                rowEncoder.reset();
+                DataValueDescriptor[] fields=right.getRowArray();
+                for(int i=0;i<fields.length;i++){
+                    innerSerializers[i].encode(rowEncoder,fields[i],false);
+                }
+                arena.add(keyEncoder,rowEncoder);
+                account(arena,memory);
+            }
+            ArenaJoinTable.Factory factory=new ArenaJoinTable.Factory(arena.build(),innerTemplate,outerHashKeys,outerTemplateRow);
+            memory.resize(factory.heapSize());
+            return factory;
+        }catch(StreamException e){
+            arena.abort();
+            throw new ExecutionException(e.getCause());
+        }catch(Exception e){
+            arena.abort();
+            if(e instanceof ExecutionException) throw (ExecutionException)e;
+            else throw new ExecutionException(e);
+        }
+    }
+
+    /*
+     * The builder's size only changes when one of its arrays is resized, so this mostly costs a
+     * comparison per row.
+     */
+    private static void account(JoinRowArena.Builder arena,BroadcastJoinCache.MemoryReservation memory) throws IOException{
+        long heapSize=arena.heapSize();
+        if(heapSize<=memory.reserved() || memory.tryResize(heapSize)) return;
+        if(!arena.isSpilling()){
+            File spillFile=File.createTempFile("broadcastJoin",".spill");
+            if(LOG.isDebugEnabled())
+                LOG.debug("Broadcast join table exceeds the memory budget at "+heapSize+" bytes, spilling rows to "+spillFile);
+            arena.spillTo(spillFile);
+            memory.markSpilled();
+        }
+        //the keys and the index have to stay in memory
+        heapSize=arena.heapSize();
+        if(memory.tryResize(heapSize)) return;
+        if(!memory.mayExceedBudget())
+            throw new BroadcastJoinCache.MemoryBudgetExceededException("The join keys of the broadcast join table exceed the memory budget at "+heapSize+" bytes");
+        memory.resize(heapSize);
+    }
+
+    /*
+     * Encode the hash key columns of a row in the same way as BareKeyHash, so that inner and
+     * outer keys compare byte-for-byte.
+     */
+    static void encodeKey(MultiFieldEncoder encoder,ExecRow row,int[] hashKeys,DescriptorSerializer[] serializers) throws StandardException{
+        encoder.reset();
+        DataValueDescriptor[] fields=row.getRowArray();
+        for(int hashKey : hashKeys){
+            if(hashKey==-1) continue; //skip columns marked with a -1
+            serializers[hashKey].encode(encoder,fields[hashKey],false);
+        }
+    }
+
+    static int numKeyFields(int[] hashKeys){
+        int numFields=0;
+        for(int hashKey : hashKeys){
+            if(hashKey>=0) numFields++;
+        }
+        return numFields;
+    }
+}
@@ -17,6 +17,10 @@ package com.splicemachine.derby.impl.sql.execute.operations;
 
 import org.spark_project.guava.cache.Cache;
 import org.spark_project.guava.cache.CacheBuilder;
+import org.spark_project.guava.cache.RemovalListener;
+import org.spark_project.guava.cache.RemovalNotification;
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.impl.sql.JoinTable;
@@ -24,62 +28,279 @@ import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.stream.Stream;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a Cache of records for use in a Broadcast Join.
  *
+ * The memory held by the cached tables (and by the tables being loaded) is accounted against a
+ * per-server budget. A table which cannot get the memory it needs while loading spills its rows to
+ * local disk instead of pushing the server out of memory. A table keeps its reservation, and its spill
+ * file, until it has been removed from the cache and the last query using it has closed it.
+ *
+ * The join keys (and the index over them) always stay in memory. If they alone do not fit in the budget,
+ * the table is not cached at all: {@link #get} throws a {@link MemoryBudgetExceededException}, and the
+ * join falls back to a {@link PartitionedBroadcastJoin}.
+ *
  * @author Scott Fines
  *         Date: 10/27/15
  */
-public class BroadcastJoinCache{
+public class BroadcastJoinCache implements BroadcastJoinCacheManagement{
+    private static volatile BroadcastJoinCache INSTANCE;
+
     private final Cache<Long,ReferenceCountingFactory> cache;
     private final JoinTableLoader tableLoader;
+    private final long memoryBudget;
+    private final AtomicLong reservedBytes = new AtomicLong(0l);
+    private final AtomicLong tablesLoaded = new AtomicLong(0l);
+    private final AtomicLong tablesSpilled = new AtomicLong(0l);
+    private final AtomicLong tablesRemoved = new AtomicLong(0l);
+    private final AtomicLong cacheHits = new AtomicLong(0l);
 
     interface JoinTableLoader{
+        /**
+         * @param memory the reservation which the loaded table must account its memory against. When
+         *               the reservation cannot grow any further, the loader is expected to spill.
+         */
         JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
                                int[] innerHashKeys,
                                int[] outerHashKeys,
-                               ExecRow outerTemplateRow) throws ExecutionException;
+                               ExecRow outerTemplateRow,
+                               MemoryReservation memory) throws ExecutionException;
     }
 
-    public BroadcastJoinCache(){
-       this(ByteBufferMapTableLoader.INSTANCE);
+    /**
+     * @return the cache shared by all broadcast joins running in this JVM
+     */
+    public static BroadcastJoinCache getInstance(){
+        BroadcastJoinCache instance=INSTANCE;
+        if(instance==null){
+            synchronized(BroadcastJoinCache.class){
+                instance=INSTANCE;
+                if(instance==null){
+                    EngineDriver driver=EngineDriver.driver();
+                    long budget;
+                    if(driver!=null){
+                        SConfiguration config=driver.getConfiguration();
+                        budget=config.getBroadcastJoinMemoryBudget();
+                    }else{
+                        budget=Runtime.getRuntime().maxMemory()/10;
+                    }
+                    instance=INSTANCE=new BroadcastJoinCache(ArenaJoinTableLoader.INSTANCE,budget);
+                }
+            }
+        }
+        return instance;
     }
 
-    public BroadcastJoinCache(JoinTableLoader tableLoader){
+    public BroadcastJoinCache(long memoryBudget){
+       this(ArenaJoinTableLoader.INSTANCE,memoryBudget);
+    }
+
+    public BroadcastJoinCache(JoinTableLoader tableLoader,long memoryBudget){
         this.tableLoader = tableLoader;
+        this.memoryBudget = memoryBudget;
+        /*
+         * We deliberately do not use soft values here: the budget already keeps us from holding too
+         * much, and a table collected in the middle of a query would just have to be loaded again.
+         */
         this.cache =CacheBuilder.newBuilder()
                 .maximumSize(1000)
                 .expireAfterAccess(2,TimeUnit.SECONDS)
-                .softValues()
+                .removalListener(new RemovalListener<Long, ReferenceCountingFactory>(){
+                    @Override
+                    public void onRemoval(RemovalNotification<Long, ReferenceCountingFactory> notification){
+                        ReferenceCountingFactory factory=notification.getValue();
+                        if(factory!=null)
+                            factory.markEvicted();
+                        tablesRemoved.incrementAndGet();
+                    }
+                })
                 .build();
     }
 
+    @Override public long getMemoryBudget(){ return memoryBudget; }
+    @Override public long getReservedBytes(){ return reservedBytes.get(); }
+    @Override public long getResidentTableCount(){ return cache.size(); }
+    @Override public long getTablesLoaded(){ return tablesLoaded.get(); }
+    @Override public long getTablesSpilled(){ return tablesSpilled.get(); }
+    @Override public long getTablesRemoved(){ return tablesRemoved.get(); }
+    @Override public long getHitCount(){ return cacheHits.get(); }
+
+    @Override
+    public Map<Long, Long> getResidentTableBytes(){
+        Map<Long, Long> sizes=new HashMap<>();
+        for(Map.Entry<Long, ReferenceCountingFactory> entry : cache.asMap().entrySet()){
+            sizes.put(entry.getKey(),entry.getValue().memory.reserved());
+        }
+        return sizes;
+    }
+
+    /**
+     * Thrown when the join keys of a table do not fit in the memory budget, even with its rows spilled.
+     */
+    public static class MemoryBudgetExceededException extends IOException{
+        public MemoryBudgetExceededException(String message){
+            super(message);
+        }
+    }
+
+    /**
+     * @return the number of bytes of the budget which are not currently reserved
+     */
+    long availableBytes(){
+        cache.cleanUp();
+        return Math.max(memoryBudget-reservedBytes.get(),0l);
+    }
+
+    /**
+     * Load a table which is private to the caller instead of being shared through the cache. The table
+     * still holds a reservation against the budget, but may exceed it rather than fail; the caller has
+     * to make sure (as {@link PartitionedBroadcastJoin} does) that it only loads tables which are
+     * expected to fit, and must close the table once it is done with it.
+     */
+    JoinTable.Factory loadUnshared(Callable<Stream<ExecRow>> loader,
+                                   int[] rightHashKeys,
+                                   int[] leftHashKeys,
+                                   ExecRow leftTemplateRow) throws IOException, StandardException{
+        final MemoryReservation memory=new MemoryReservation(true);
+        try{
+            final JoinTable.Factory table=tableLoader.load(loader,rightHashKeys,leftHashKeys,leftTemplateRow,memory);
+            tablesLoaded.incrementAndGet();
+            return new JoinTable.Factory(){
+                @Override
+                public JoinTable newTable(){
+                    return table.newTable();
+                }
+
+                @Override
+                public void close(){
+                    table.close();
+                    memory.release();
+                }
+            };
+        }catch(ExecutionException e){
+            memory.release();
+            throw unwrap(e);
+        }catch(RuntimeException e){
+            memory.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Tracks the memory held by a single table against the budget of the cache.
+     */
+    final class MemoryReservation{
+        private final boolean mayExceedBudget;
+        private long reserved;
+
+        MemoryReservation(){
+            this(false);
+        }
+
+        /**
+         * @param mayExceedBudget if true, the loader may keep the join keys in memory even when they
+         *                        exceed the budget; otherwise it has to give up
+         */
+        MemoryReservation(boolean mayExceedBudget){
+            this.mayExceedBudget=mayExceedBudget;
+        }
+
+        boolean mayExceedBudget(){
+            return mayExceedBudget;
+        }
+
+        /**
+         * Grow (or shrink) the reservation to {@code bytes}, unless that would exceed the budget.
+         *
+         * @return true if the reservation now holds {@code bytes}, false if the budget is exhausted
+         */
+        synchronized boolean tryResize(long bytes){
+            long delta=bytes-reserved;
+            if(delta>0 && !tryReserve(delta)){
+                //expired tables are only cleaned up lazily, so make sure they are gone before giving up
+                cache.cleanUp();
+                if(!tryReserve(delta)) return false;
+            }else if(delta<0){
+                reservedBytes.addAndGet(delta);
+            }
+            reserved=bytes;
+            return true;
+        }
+
+        /**
+         * Set the reservation to {@code bytes}, even if that exceeds the budget.
+         */
+        synchronized void resize(long bytes){
+            reservedBytes.addAndGet(bytes-reserved);
+            reserved=bytes;
+        }
+
+        synchronized long reserved(){
+            return reserved;
+        }
+
+        void release(){
+            resize(0l);
+        }
+
+        /**
+         * Record that the table had to spill to disk.
+         */
+        void markSpilled(){
+            tablesSpilled.incrementAndGet();
+        }
+
+        private boolean tryReserve(long delta){
+            long current;
+            do{
+                current=reservedBytes.get();
+                if(current+delta>memoryBudget) return false;
+            }while(!reservedBytes.compareAndSet(current,current+delta));
+            return true;
+        }
+    }
+
     public JoinTable.Factory get(Long operationId,
                          Callable<Stream<ExecRow>> loader,
                          int[] rightHashKeys,
                          int[] leftHashKeys,
                          ExecRow leftTemplateRow) throws IOException, StandardException{
         try{
-            Loader callable=new Loader(operationId,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader);
-            ReferenceCountingFactory joinTable=cache.get(operationId,callable);
-            joinTable.refCount.incrementAndGet();
-            return joinTable;
+            while(true){
+                Loader callable=new Loader(operationId,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader);
+                ReferenceCountingFactory joinTable=cache.get(operationId,callable);
+                //the table may have been evicted, and released, since we looked it up
+                if(!joinTable.acquire())
+                    continue;
+                if(!callable.loaded)
+                    cacheHits.incrementAndGet();
+                return joinTable;
+            }
         }catch(ExecutionException e){
-            Throwable c = e.getCause();
-            if(c instanceof StandardException)
-                throw (StandardException)c;
-            else if(c instanceof IOException)
-                throw (IOException)c;
-            else throw Exceptions.getIOException(c);
+            throw unwrap(e);
         }
     }
 
+    private static IOException unwrap(ExecutionException e) throws StandardException{
+        Throwable c = e.getCause();
+        //the loader wraps its own errors, and the cache wraps them again
+        while(c instanceof ExecutionException && c.getCause()!=null)
+            c = c.getCause();
+        if(c instanceof StandardException)
+            throw (StandardException)c;
+        else if(c instanceof IOException)
+            return (IOException)c;
+        else return Exceptions.getIOException(c);
+    }
+
     private class Loader implements Callable<ReferenceCountingFactory>{
         private final JoinTableLoader loader;
         private final int[] innerHashKeys;
@@ -88,6 +309,7 @@ public class BroadcastJoinCache{
         private final Callable<Stream<ExecRow>> streamLoader;
 
         private final Long operationId;
+        private boolean loaded;
 
         public Loader(Long operationId,
                       JoinTableLoader loader,
@@ -105,8 +327,16 @@ public class BroadcastJoinCache{
 
         @Override
         public ReferenceCountingFactory call() throws Exception{
-            JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow);
-            return new ReferenceCountingFactory(load,operationId);
+            loaded=true;
+            MemoryReservation memory=new MemoryReservation();
+            try{
+                JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow,memory);
+                tablesLoaded.incrementAndGet();
+                return new ReferenceCountingFactory(load,operationId,memory);
+            }catch(Exception e){
+                memory.release();
+                throw e;
+            }
         }
     }
 
@@ -135,11 +365,16 @@ public class BroadcastJoinCache{
     private class ReferenceCountingFactory implements JoinTable.Factory{
         private final JoinTable.Factory delegate;
         private final Long id;
-        private AtomicInteger refCount = new AtomicInteger(0);
+        private final MemoryReservation memory;
+        //guarded by this
+        private int refCount;
+        private boolean evicted;
+        private boolean released;
 
-        public ReferenceCountingFactory(JoinTable.Factory delegate,Long id){
+        public ReferenceCountingFactory(JoinTable.Factory delegate,Long id,MemoryReservation memory){
             this.delegate=delegate;
             this.id=id;
+            this.memory=memory;
         }
 
         @Override
@@ -147,10 +382,38 @@ public class BroadcastJoinCache{
             return new ReferenceCountedJoinTable(delegate.newTable(),this);
         }
 
+        /**
+         * Closing is up to the cache, once the table has been evicted and is no longer referenced.
+         */
+        @Override
+        public void close(){
+        }
+
+        synchronized boolean acquire(){
+            if(released) return false;
+            refCount++;
+            return true;
+        }
+
         public void markClosed(){
-            int refC=refCount.decrementAndGet();
-            if(refC<=0)
-                cache.invalidate(id);
+            synchronized(this){
+                if(--refCount>0) return;
+                releaseIfUnused();
+            }
+            //only remove this table, a newer one may have been loaded under the same id
+            cache.asMap().remove(id,this);
+        }
+
+        synchronized void markEvicted(){
+            evicted=true;
+            releaseIfUnused();
+        }
+
+        private void releaseIfUnused(){
+            if(!evicted || refCount>0 || released) return;
+            released=true;
+            delegate.close();
+            memory.release();
         }
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import javax.management.MXBean;
+import java.util.Map;
+
+/**
+ * JMX view of the tables held by the {@link BroadcastJoinCache}.
+ */
+@MXBean
+public interface BroadcastJoinCacheManagement{
+
+    /**
+     * @return the number of bytes the cached (and loading) broadcast join tables may hold in memory
+     */
+    long getMemoryBudget();
+
+    /**
+     * @return the number of bytes currently held by cached and loading tables
+     */
+    long getReservedBytes();
+
+    long getResidentTableCount();
+
+    /**
+     * @return the in-memory size of each cached table, keyed by the sequence id of its join operation
+     */
+    Map<Long, Long> getResidentTableBytes();
+
+    long getTablesLoaded();
+
+    /**
+     * @return the number of tables which did not fit in the budget and spilled their rows to disk
+     */
+    long getTablesSpilled();
+
+    long getTablesRemoved();
+
+    /**
+     * @return the number of times a join found its table already loaded
+     */
+    long getHitCount();
+}
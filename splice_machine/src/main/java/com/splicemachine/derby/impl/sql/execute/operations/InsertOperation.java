@@ -18,9 +18,19 @@ package com.splicemachine.derby.impl.sql.execute.operations;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import com.splicemachine.db.catalog.types.ReferencedColumnsDescriptorImpl;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.dictionary.ConglomerateDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.ConstraintDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.IndexRowGenerator;
 import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
+import com.splicemachine.ddl.DDLMessage;
+import com.splicemachine.protobuf.ProtoUtil;
 import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
 import com.splicemachine.derby.stream.iapi.*;
 import com.splicemachine.utils.IntArrays;
@@ -39,6 +49,7 @@ import com.splicemachine.db.impl.sql.compile.InsertNode;
 import com.splicemachine.db.impl.sql.execute.BaseActivation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
+import com.splicemachine.derby.ddl.DDLUtils;
 import com.splicemachine.derby.impl.sql.execute.actions.InsertConstantOperation;
 import com.splicemachine.derby.impl.sql.execute.sequence.SequenceKey;
 import com.splicemachine.derby.impl.sql.execute.sequence.SpliceSequence;
@@ -51,7 +62,16 @@ import com.splicemachine.pipeline.ErrorState;
 import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.storage.DataResultScanner;
+import com.splicemachine.storage.Partition;
 import com.splicemachine.utils.Pair;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.spark_project.guava.base.Optional;
+import org.spark_project.guava.collect.Iterables;
+import org.spark_project.guava.collect.Multimap;
+import org.spark_project.guava.collect.Multimaps;
+
+import static com.splicemachine.pipeline.ConglomerateDescriptors.*;
 
 
 /**
@@ -73,6 +93,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
     public InsertNode.InsertMode insertMode;
     public String statusDirectory;
     private int failBadRecordCount;
+    public String bulkImportDirectory;
     protected String delimited;
     protected String escaped;
     protected String lines;
@@ -100,6 +121,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
                            String insertMode,
                            String statusDirectory,
                            int failBadRecordCount,
+                           String bulkImportDirectory,
                            double optimizerEstimatedRowCount,
                            double optimizerEstimatedCost,
                            String tableVersion,
@@ -114,6 +136,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
         this.insertMode=InsertNode.InsertMode.valueOf(insertMode);
         this.statusDirectory=statusDirectory;
         this.failBadRecordCount = (failBadRecordCount >= 0 ? failBadRecordCount : -1);
+        this.bulkImportDirectory=bulkImportDirectory;
         this.delimited = delimited;
         this.escaped = escaped;
         this.lines = lines;
@@ -246,6 +269,8 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
         if(in.readBoolean())
             statusDirectory=in.readUTF();
         failBadRecordCount=in.readInt();
+        if(in.readBoolean())
+            bulkImportDirectory=in.readUTF();
         delimited = in.readBoolean()?in.readUTF():null;
         escaped = in.readBoolean()?in.readUTF():null;
         lines = in.readBoolean()?in.readUTF():null;
@@ -268,6 +293,9 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
         if(statusDirectory!=null)
             out.writeUTF(statusDirectory);
         out.writeInt(failBadRecordCount);
+        out.writeBoolean(bulkImportDirectory!=null);
+        if(bulkImportDirectory!=null)
+            out.writeUTF(bulkImportDirectory);
         out.writeBoolean(delimited!=null);
         if (delimited!=null)
             out.writeUTF(delimited);
@@ -330,6 +358,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
                     .isUpsert(insertMode.equals(InsertNode.InsertMode.UPSERT))
                     .pkCols(pkCols)
                     .tableVersion(tableVersion)
+                    .bulkImportDirectory(isBulkImport()?bulkImportDirectory:null)
                     .destConglomerate(heapConglom)
                     .operationContext(operationContext)
                     .txn(txn)
@@ -341,6 +370,88 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
 
     }
 
+    /**
+     * @return the indexes of the destination table, which a bulk import writes HFiles for along with the
+     * table itself
+     */
+    public List<DDLMessage.TentativeIndex> getBulkImportIndexes() throws StandardException{
+        LanguageConnectionContext lcc=activation.getLanguageConnectionContext();
+        TableDescriptor td=getTableDescriptor(lcc.getDataDictionary());
+        Multimap<Long, ConglomerateDescriptor> numberToDescriptorMap=Multimaps.index(td.getConglomerateDescriptorList(),numberFunction());
+        List<DDLMessage.TentativeIndex> indexes=new ArrayList<>();
+        for(Long conglomerateNumber : numberToDescriptorMap.keySet()){
+            Collection<ConglomerateDescriptor> currentCongloms=numberToDescriptorMap.get(conglomerateNumber);
+            Optional<ConglomerateDescriptor> indexConglom=Iterables.tryFind(currentCongloms,isIndex());
+            if(!indexConglom.isPresent())
+                continue;
+            // as in the write pipeline, a conglomerate shared with a unique index is encoded as a unique index
+            Optional<ConglomerateDescriptor> uniqueIndexConglom=Iterables.tryFind(currentCongloms,isUniqueIndex());
+            ConglomerateDescriptor srcConglomDesc=uniqueIndexConglom.isPresent()?uniqueIndexConglom.get():currentCongloms.iterator().next();
+            indexes.add(ProtoUtil.createTentativeIndex(lcc,heapConglom,conglomerateNumber,td,
+                    srcConglomDesc.getIndexDescriptor().getIndexDescriptor()));
+        }
+        return indexes;
+    }
+
+    /*
+     * A bulk import writes HFiles and loads them straight into the regions of the table and its indexes, so it
+     * skips the write pipeline. Inserts which need more than their indexes maintained (upserts, triggers and
+     * foreign key checks) go through the pipeline, even when a bulk import directory is given.
+     *
+     * The loaded rows are not checked against the rows already in the table: an existing primary key would be
+     * silently shadowed, and a unique index entry of another row overwritten. A table with a primary key or a
+     * unique index is therefore only bulk imported while it is empty.
+     */
+    private boolean isBulkImport() throws StandardException{
+        if(bulkImportDirectory==null)
+            return false;
+        if(insertMode!=InsertNode.InsertMode.INSERT)
+            return false;
+        if(getTriggerHandler()!=null){
+            SpliceLogUtils.info(LOG,"Importing into %d through the write pipeline: the table has triggers",heapConglom);
+            return false;
+        }
+        DataDictionary dd=activation.getLanguageConnectionContext().getDataDictionary();
+        for(ConstraintDescriptor cd : dd.getConstraintDescriptors(getTableDescriptor(dd))){
+            if(cd.getConstraintType()==DataDictionary.FOREIGNKEY_CONSTRAINT){
+                SpliceLogUtils.info(LOG,"Importing into %d through the write pipeline: the table has foreign keys",heapConglom);
+                return false;
+            }
+        }
+        if((pkCols!=null || hasUniqueIndex(dd)) && !isTableEmpty()){
+            SpliceLogUtils.info(LOG,"Importing into %d through the write pipeline: the table has unique keys and is not empty",heapConglom);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean hasUniqueIndex(DataDictionary dd) throws StandardException{
+        for(ConglomerateDescriptor cd : getTableDescriptor(dd).getConglomerateDescriptorList()){
+            IndexRowGenerator irg=cd.getIndexDescriptor();
+            if(cd.isIndex() && irg!=null && irg.getIndexDescriptor()!=null
+                    && (irg.isUnique() || irg.isUniqueWithDuplicateNulls()))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Looks for any row of the table, whatever its transaction: a deleted row, or one written by a transaction
+     * which has not committed yet, makes the table count as not empty.
+     */
+    private boolean isTableEmpty() throws StandardException{
+        try(Partition table=SIDriver.driver().getTableFactory().getTable(Long.toString(heapConglom));
+            DataResultScanner scanner=table.openResultScanner(DDLUtils.createFullScan())){
+            return scanner.next()==null;
+        }catch(Exception e){
+            throw Exceptions.parseException(e);
+        }
+    }
+
+    private TableDescriptor getTableDescriptor(DataDictionary dd) throws StandardException{
+        return dd.getTableDescriptor(dd.getConglomerateDescriptor(heapConglom).getTableID());
+    }
+
     @Override
     public String getVTIFileName(){
         return getSubOperations().get(0).getVTIFileName();
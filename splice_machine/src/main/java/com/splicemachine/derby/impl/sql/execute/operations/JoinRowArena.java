@@ -0,0 +1,438 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Compact storage for the inner side of a broadcast join.
+ *
+ * Rather than holding a map of boxed keys to lists of row objects, all the distinct join keys are
+ * stored back-to-back in one byte array, and all the encoded rows in another; everything else is
+ * held in {@code int[]}s. Distinct keys are found through an open-addressing (linear probing) index,
+ * and the rows sharing a key are chained together in insertion order. This keeps the number of
+ * objects constant no matter how many rows are loaded, so a large inner table costs the garbage
+ * collector almost nothing.
+ *
+ * When the rows will not fit in memory, the builder can be told to {@link Builder#spillTo(File) spill}
+ * them to a local file. The keys and the index stay in memory, so a lookup still costs no I/O; only
+ * rows which actually match are read back from disk (see {@link RowReader}).
+ *
+ * Instances are built once through a {@link Builder}, and are immutable (and therefore safe to
+ * share between threads) afterwards, until they are {@link #close() closed}.
+ */
+final class JoinRowArena{
+    private static final Hash32 HASH=HashFunctions.murmur3(0);
+    private static final int MAX_ARRAY_SIZE=Integer.MAX_VALUE-8;
+
+    private final byte[] keyBytes;
+    private final int[] keyOffsets; //key of group g is keyBytes[keyOffsets[g],keyOffsets[g+1])
+    private final int[] groupHashes;
+    private final int[] firstRows;
+
+    private final byte[] rowBytes;
+    private final long[] rowOffsets; //row r is rowBytes[rowOffsets[r],rowOffsets[r+1]), or that range of the spill file
+    private final int[] nextRows;
+    private final FileChannel spillChannel; //null unless the rows were spilled
+
+    private final int[] slots; //group+1, or 0 if empty
+    private final int slotMask;
+    private final int numGroups;
+    private final int numRows;
+
+    private JoinRowArena(Builder builder,FileChannel spillChannel){
+        this.keyBytes=builder.keyBytes;
+        this.keyOffsets=builder.keyOffsets;
+        this.groupHashes=builder.groupHashes;
+        this.firstRows=builder.firstRows;
+        this.rowBytes=builder.rowBytes;
+        this.rowOffsets=builder.rowOffsets;
+        this.nextRows=builder.nextRows;
+        this.slots=builder.slots;
+        this.slotMask=builder.slots.length-1;
+        this.numGroups=builder.numGroups;
+        this.numRows=builder.numRows;
+        this.spillChannel=spillChannel;
+    }
+
+    /**
+     * @param key the array holding the encoded key to look for
+     * @param offset the start of the key in {@code key}
+     * @param length the length of the key
+     * @return the first row stored under the key, or {@code -1} if there are no rows with that key
+     */
+    int firstRow(byte[] key,int offset,int length){
+        int group=findGroup(key,offset,length,HASH.hash(key,offset,length));
+        return group<0?-1:firstRows[group];
+    }
+
+    /**
+     * @return the next row with the same key as {@code row}, or {@code -1} if {@code row} was the last one
+     */
+    int nextRow(int row){
+        return nextRows[row];
+    }
+
+    int rowLength(int row){
+        return (int)(rowOffsets[row+1]-rowOffsets[row]);
+    }
+
+    /**
+     * @return a new reader for the rows of this arena. Readers are not thread-safe.
+     */
+    RowReader newReader(){
+        return new RowReader();
+    }
+
+    boolean isSpilled(){
+        return spillChannel!=null;
+    }
+
+    int numRows(){
+        return numRows;
+    }
+
+    int numKeys(){
+        return numGroups;
+    }
+
+    /**
+     * Release the spill file, if any. No rows may be read afterwards.
+     */
+    void close(){
+        if(spillChannel==null) return;
+        try{
+            spillChannel.close();
+        }catch(IOException ignored){
+            //the file is already unlinked, there is nothing left to clean up
+        }
+    }
+
+    /**
+     * @return an estimate of the number of bytes of heap held by this arena
+     */
+    long heapSize(){
+        return (long)keyBytes.length+rowBytes.length+8L*rowOffsets.length
+                +4L*(keyOffsets.length+groupHashes.length+firstRows.length+nextRows.length+slots.length);
+    }
+
+    /**
+     * @return an upper bound on the heap needed to build a spilled arena of {@code numRows} rows whose keys
+     * add up to {@code keyBytes} bytes: as if every row had its own key, and every array had just doubled
+     */
+    static long estimateSpilledHeapSize(long keyBytes,long numRows){
+        //per row an offset and a link; per key an offset, a hash, the first and last rows and two slots
+        return 2*(keyBytes+numRows*(8+4+4*6));
+    }
+
+    /**
+     * Gives access to the bytes of a row. For an in-memory arena this points straight into the arena;
+     * for a spilled one the row is read into a buffer owned by the reader, which is overwritten by
+     * the next call to {@link #read(int)}.
+     */
+    final class RowReader{
+        private byte[] buffer;
+        private int offset;
+        private int length;
+
+        private RowReader(){
+            this.buffer=spillChannel==null?rowBytes:new byte[64];
+        }
+
+        void read(int row) throws IOException{
+            long start=rowOffsets[row];
+            length=(int)(rowOffsets[row+1]-start);
+            if(spillChannel==null){
+                offset=(int)start;
+                return;
+            }
+            if(buffer.length<length)
+                buffer=new byte[Math.max(length,2*buffer.length)];
+            offset=0;
+            //positional reads don't touch the channel's position, so readers can share the channel
+            ByteBuffer dest=ByteBuffer.wrap(buffer,0,length);
+            long position=start;
+            while(dest.hasRemaining()){
+                int read=spillChannel.read(dest,position);
+                if(read<0)
+                    throw new EOFException("Broadcast join spill file is shorter than expected");
+                position+=read;
+            }
+        }
+
+        byte[] buffer(){
+            return buffer;
+        }
+
+        int offset(){
+            return offset;
+        }
+
+        int length(){
+            return length;
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int findGroup(byte[] key,int offset,int length,int hash){
+        int pos=hash & slotMask;
+        int entry;
+        while((entry=slots[pos])!=0){
+            int group=entry-1;
+            if(groupHashes[group]==hash && keyEquals(group,key,offset,length))
+                return group;
+            pos=(pos+1) & slotMask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int group,byte[] key,int offset,int length){
+        int start=keyOffsets[group];
+        if(keyOffsets[group+1]-start!=length) return false;
+        for(int i=0;i<length;i++){
+            if(keyBytes[start+i]!=key[offset+i]) return false;
+        }
+        return true;
+    }
+
+    static final class Builder{
+        private byte[] keyBytes=new byte[1024];
+        private int[] keyOffsets=new int[17];
+        private int[] groupHashes=new int[16];
+        private int[] firstRows=new int[16];
+        private int[] lastRows=new int[16];
+
+        private byte[] rowBytes=new byte[4096];
+        private long[] rowOffsets=new long[17];
+        private int[] nextRows=new int[16];
+
+        private int[] slots=new int[32];
+        private int numGroups;
+        private int numRows;
+
+        private byte[] keyBuffer=new byte[64];
+
+        private File spillFile;
+        private OutputStream spillOut;
+
+        /**
+         * Add a row to the arena.
+         *
+         * @param key an encoder holding the encoded join key of the row
+         * @param row an encoder holding the encoded row
+         */
+        void add(MultiFieldEncoder key,MultiFieldEncoder row) throws IOException{
+            int keyLength=key.getEncodedLength();
+            if(keyBuffer.length<keyLength)
+                keyBuffer=new byte[Math.max(keyLength,2*keyBuffer.length)];
+            key.build(keyBuffer,0);
+            int hash=HASH.hash(keyBuffer,0,keyLength);
+
+            int rowNum=appendRow(row);
+            int group=findGroup(keyBuffer,keyLength,hash);
+            if(group<0){
+                group=appendGroup(keyBuffer,keyLength,hash);
+                firstRows[group]=rowNum;
+            }else{
+                nextRows[lastRows[group]]=rowNum;
+            }
+            lastRows[group]=rowNum;
+        }
+
+        /**
+         * Move the rows added so far, and all rows added from now on, to {@code file}. The file is
+         * removed once the arena has been built (or the build has been {@link #abort() aborted}).
+         */
+        void spillTo(File file) throws IOException{
+            assert spillOut==null: "Already spilling";
+            spillFile=file;
+            spillOut=new BufferedOutputStream(new FileOutputStream(file),1<<16);
+            spillOut.write(rowBytes,0,(int)rowOffsets[numRows]);
+            rowBytes=new byte[64]; //from now on, only a scratch buffer for encoding a single row
+        }
+
+        boolean isSpilling(){
+            return spillOut!=null;
+        }
+
+        /**
+         * @return an estimate of the number of bytes of heap currently held by this builder
+         */
+        long heapSize(){
+            return (long)keyBytes.length+rowBytes.length+keyBuffer.length+8L*rowOffsets.length
+                    +4L*(keyOffsets.length+groupHashes.length+firstRows.length+lastRows.length+nextRows.length+slots.length);
+        }
+
+        JoinRowArena build() throws IOException{
+            //trim the row and key storage down, so that we don't hold onto the slack of the last resize
+            keyBytes=Arrays.copyOf(keyBytes,keyOffsets[numGroups]);
+            keyOffsets=Arrays.copyOf(keyOffsets,numGroups+1);
+            groupHashes=Arrays.copyOf(groupHashes,numGroups);
+            firstRows=Arrays.copyOf(firstRows,numGroups);
+            rowOffsets=Arrays.copyOf(rowOffsets,numRows+1);
+            nextRows=Arrays.copyOf(nextRows,numRows);
+            lastRows=null;
+            keyBuffer=null;
+            if(spillOut==null){
+                rowBytes=Arrays.copyOf(rowBytes,(int)rowOffsets[numRows]);
+                return new JoinRowArena(this,null);
+            }
+
+            rowBytes=new byte[0];
+            FileChannel channel;
+            try{
+                spillOut.close();
+                channel=new FileInputStream(spillFile).getChannel();
+            }finally{
+                spillOut=null;
+                deleteSpillFile();
+            }
+            //the file has already been unlinked, so its space is reclaimed when the arena is closed
+            return new JoinRowArena(this,channel);
+        }
+
+        /**
+         * Discard a partially built arena, removing any spill file.
+         */
+        void abort(){
+            if(spillOut!=null){
+                try{
+                    spillOut.close();
+                }catch(IOException ignored){
+                    //we are throwing the file away anyway
+                }
+                spillOut=null;
+                deleteSpillFile();
+            }
+        }
+
+        private void deleteSpillFile(){
+            if(!spillFile.delete())
+                spillFile.deleteOnExit();
+        }
+
+        private int appendRow(MultiFieldEncoder row) throws IOException{
+            int rowNum=numRows;
+            if(rowNum==nextRows.length){
+                nextRows=Arrays.copyOf(nextRows,grow(nextRows.length,rowNum+1));
+                rowOffsets=Arrays.copyOf(rowOffsets,nextRows.length+1);
+            }
+            long start=rowOffsets[rowNum];
+            int length=row.getEncodedLength();
+            if(spillOut==null){
+                rowBytes=ensureCapacity(rowBytes,start+length);
+                row.build(rowBytes,(int)start);
+            }else{
+                rowBytes=ensureCapacity(rowBytes,length);
+                row.build(rowBytes,0);
+                spillOut.write(rowBytes,0,length);
+            }
+            rowOffsets[rowNum+1]=start+length;
+            nextRows[rowNum]=-1;
+            numRows++;
+            return rowNum;
+        }
+
+        private int appendGroup(byte[] key,int keyLength,int hash){
+            int group=numGroups;
+            if(group==groupHashes.length){
+                int newSize=grow(groupHashes.length,group+1);
+                groupHashes=Arrays.copyOf(groupHashes,newSize);
+                firstRows=Arrays.copyOf(firstRows,newSize);
+                lastRows=Arrays.copyOf(lastRows,newSize);
+                keyOffsets=Arrays.copyOf(keyOffsets,newSize+1);
+            }
+            int start=keyOffsets[group];
+            keyBytes=ensureCapacity(keyBytes,start+keyLength);
+            System.arraycopy(key,0,keyBytes,start,keyLength);
+            keyOffsets[group+1]=start+keyLength;
+            groupHashes[group]=hash;
+            numGroups++;
+
+            //keep the load factor of the index at or below 0.5
+            if(2*numGroups>slots.length)
+                rehash();
+            int pos=hash & (slots.length-1);
+            while(slots[pos]!=0){
+                pos=(pos+1) & (slots.length-1);
+            }
+            slots[pos]=group+1;
+            return group;
+        }
+
+        private int findGroup(byte[] key,int keyLength,int hash){
+            int mask=slots.length-1;
+            int pos=hash & mask;
+            int entry;
+            while((entry=slots[pos])!=0){
+                int group=entry-1;
+                if(groupHashes[group]==hash && keyEquals(group,key,keyLength))
+                    return group;
+                pos=(pos+1) & mask;
+            }
+            return -1;
+        }
+
+        private boolean keyEquals(int group,byte[] key,int length){
+            int start=keyOffsets[group];
+            if(keyOffsets[group+1]-start!=length) return false;
+            for(int i=0;i<length;i++){
+                if(keyBytes[start+i]!=key[i]) return false;
+            }
+            return true;
+        }
+
+        private void rehash(){
+            int[] newSlots=new int[slots.length<<1];
+            int mask=newSlots.length-1;
+            //the group being added is not in the index yet, so leave it out
+            for(int group=0;group<numGroups-1;group++){
+                int pos=groupHashes[group] & mask;
+                while(newSlots[pos]!=0){
+                    pos=(pos+1) & mask;
+                }
+                newSlots[pos]=group+1;
+            }
+            slots=newSlots;
+        }
+
+        private static byte[] ensureCapacity(byte[] bytes,long required){
+            if(required<0 || required>MAX_ARRAY_SIZE)
+                throw new IllegalStateException("Broadcast join table is too large to be held in memory");
+            if(required<=bytes.length) return bytes;
+            return Arrays.copyOf(bytes,grow(bytes.length,(int)required));
+        }
+
+        private static int grow(int current,int required){
+            long newSize=Math.max((long)current<<1,required);
+            return (int)Math.min(newSize,MAX_ARRAY_SIZE);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.stream.control.SpillFile;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+import com.splicemachine.stream.Stream;
+import com.splicemachine.stream.Streams;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.base.Function;
+import org.spark_project.guava.collect.Iterators;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+/**
+ * A broadcast join whose inner table does not fit in the memory budget, not even with its rows spilled
+ * (the join keys, and the index over them, always have to stay in memory).
+ *
+ * Instead of loading the inner table in one piece, the inner rows and the outer rows of the task are
+ * both hash partitioned by their encoded join key into {@link #NUM_PARTITIONS} local spill files. Matching
+ * rows have the same key, so they always land in partitions with the same number, and the partitions are
+ * joined one pair at a time, each through its own (unshared) join table. A partition whose keys still
+ * look too big for the budget is partitioned again with a different hash, up to {@link #MAX_DEPTH} times;
+ * past that (which takes a very skewed key), or once it is too small to be worth splitting, it is loaded
+ * even if it exceeds the budget.
+ *
+ * Unlike a cached broadcast table, the inner side is read again by every task which has to fall back
+ * to this. The spill files are removed as the results are consumed, or when the join is {@link #close()
+ * closed}.
+ */
+public class PartitionedBroadcastJoin<T extends LocatedRow,Out> implements Iterator<Out>, AutoCloseable{
+    private static final Logger LOG=Logger.getLogger(PartitionedBroadcastJoin.class);
+    static final int NUM_PARTITIONS=32;
+    static final int MAX_DEPTH=3;
+    //a partition this small costs little more than an empty arena, so splitting it would only add files
+    static final long MIN_REPARTITION_ROWS=1024;
+    //the arena hashes the keys with a seed of 0, so use a different seed for every level of partitioning
+    private static final Hash32[] PARTITION_HASHES=new Hash32[MAX_DEPTH+1];
+    static{
+        for(int i=0;i<PARTITION_HASHES.length;i++){
+            PARTITION_HASHES[i]=HashFunctions.murmur3(i+1);
+        }
+    }
+
+    /**
+     * Joins the outer rows of a single partition with the inner table of the same partition.
+     */
+    public interface Joiner<T,Out>{
+        Iterator<Out> join(Iterator<T> outerRows,JoinTable innerTable);
+    }
+
+    private final BroadcastJoinCache cache;
+    private final int[] innerHashKeys;
+    private final int[] outerHashKeys;
+    private final ExecRow outerTemplateRow;
+    private final Joiner<T,Out> joiner;
+    private final Deque<Partition<T>> partitions=new ArrayDeque<>();
+    private JoinTable.Factory currentTable;
+    private Iterator<Out> current=Collections.emptyIterator();
+    private boolean closed;
+
+    private PartitionedBroadcastJoin(BroadcastJoinCache cache,
+                                     int[] innerHashKeys,
+                                     int[] outerHashKeys,
+                                     ExecRow outerTemplateRow,
+                                     Joiner<T,Out> joiner){
+        this.cache=cache;
+        this.innerHashKeys=innerHashKeys;
+        this.outerHashKeys=outerHashKeys;
+        this.outerTemplateRow=outerTemplateRow;
+        this.joiner=joiner;
+    }
+
+    /**
+     * Partition both sides of the join, and return the (lazily joined) results.
+     */
+    public static <T extends LocatedRow,Out> PartitionedBroadcastJoin<T,Out> join(BroadcastJoinCache cache,
+                                                                                  Callable<Stream<ExecRow>> innerLoader,
+                                                                                  Iterator<T> outerRows,
+                                                                                  int[] innerHashKeys,
+                                                                                  int[] outerHashKeys,
+                                                                                  ExecRow outerTemplateRow,
+                                                                                  Joiner<T,Out> joiner) throws Exception{
+        PartitionedBroadcastJoin<T,Out> join=new PartitionedBroadcastJoin<>(cache,innerHashKeys,outerHashKeys,outerTemplateRow,joiner);
+        List<Partition<T>> top=createPartitions(0);
+        try{
+            long innerRows=join.partitionInner(innerLoader,top);
+            join.partitionOuter(outerRows,top);
+            if(LOG.isDebugEnabled())
+                LOG.debug("Broadcast join table does not fit in memory, partitioned "+innerRows+" inner rows to disk");
+        }catch(Exception e){
+            discard(top);
+            throw e;
+        }
+        join.partitions.addAll(top);
+        return join;
+    }
+
+    @Override
+    public boolean hasNext(){
+        if(closed) return false;
+        try{
+            while(!current.hasNext()){
+                closeCurrentTable();
+                Partition<T> next=partitions.poll();
+                if(next==null){
+                    close();
+                    return false;
+                }
+                current=joinPartition(next);
+            }
+            return true;
+        }catch(RuntimeException e){
+            close();
+            throw e;
+        }catch(Exception e){
+            close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Out next(){
+        if(!hasNext()) throw new NoSuchElementException();
+        return current.next();
+    }
+
+    @Override
+    public void remove(){
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Release the current partition's table, and remove every partition which has not been joined yet.
+     */
+    @Override
+    public void close(){
+        if(closed) return;
+        closed=true;
+        current=Collections.emptyIterator();
+        closeCurrentTable();
+        discard(partitions);
+        partitions.clear();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private long partitionInner(Callable<Stream<ExecRow>> innerLoader,List<Partition<T>> top) throws Exception{
+        long numRows=0l;
+        try(Stream<ExecRow> rows=innerLoader.call()){
+            DescriptorSerializer[] serializers=null;
+            MultiFieldEncoder keyEncoder=MultiFieldEncoder.create(ArenaJoinTableLoader.numKeyFields(innerHashKeys));
+            ExecRow row;
+            while((row=rows.next())!=null){
+                if(serializers==null)
+                    serializers=VersionedSerializers.latestVersion(false).getSerializers(row);
+                ArenaJoinTableLoader.encodeKey(keyEncoder,row,innerHashKeys,serializers);
+                byte[] key=keyEncoder.build();
+                //the row may be reused by the stream, and the spill file may only write a reference to it
+                top.get(partition(key,0)).appendInner(key,row.getClone());
+                numRows++;
+            }
+        }
+        return numRows;
+    }
+
+    private void partitionOuter(Iterator<T> outerRows,List<Partition<T>> top) throws Exception{
+        DescriptorSerializer[] serializers=VersionedSerializers.latestVersion(false).getSerializers(outerTemplateRow);
+        MultiFieldEncoder keyEncoder=MultiFieldEncoder.create(ArenaJoinTableLoader.numKeyFields(outerHashKeys));
+        while(outerRows.hasNext()){
+            T row=outerRows.next();
+            ArenaJoinTableLoader.encodeKey(keyEncoder,row.getRow(),outerHashKeys,serializers);
+            byte[] key=keyEncoder.build();
+            top.get(partition(key,0)).outer.append(key,row);
+        }
+    }
+
+    private Iterator<Out> joinPartition(Partition<T> partition) throws Exception{
+        if(partition.outer.size()==0){
+            //every result is driven by an outer row, so there is nothing to join
+            partition.discard();
+            return Collections.emptyIterator();
+        }
+        if(partition.depth<MAX_DEPTH && partition.inner.size()>=MIN_REPARTITION_ROWS
+                && JoinRowArena.estimateSpilledHeapSize(partition.innerKeyBytes,partition.inner.size())>cache.availableBytes()){
+            repartition(partition);
+            return Collections.emptyIterator();
+        }
+
+        final Iterator<Tuple2<byte[],ExecRow>> innerRows;
+        try{
+            innerRows=partition.inner.read();
+        }catch(IOException ioe){
+            partition.outer.discard();
+            throw ioe;
+        }
+        try{
+            currentTable=cache.loadUnshared(new Callable<Stream<ExecRow>>(){
+                @Override
+                public Stream<ExecRow> call() throws Exception{
+                    return Streams.wrap(PartitionedBroadcastJoin.<ExecRow>values(innerRows));
+                }
+            },innerHashKeys,outerHashKeys,outerTemplateRow);
+        }catch(Exception e){
+            partition.outer.discard();
+            throw e;
+        }
+        return joiner.join(values(partition.outer.read()),currentTable.newTable());
+    }
+
+    private void repartition(Partition<T> partition) throws IOException{
+        int depth=partition.depth+1;
+        if(LOG.isDebugEnabled())
+            LOG.debug("Partition of "+partition.inner.size()+" inner rows is still too big, partitioning it again at depth "+depth);
+        List<Partition<T>> children;
+        try{
+            children=createPartitions(depth);
+        }catch(IOException ioe){
+            partition.discard();
+            throw ioe;
+        }
+        try{
+            Iterator<Tuple2<byte[],ExecRow>> innerRows=partition.inner.read();
+            while(innerRows.hasNext()){
+                Tuple2<byte[],ExecRow> next=innerRows.next();
+                children.get(partition(next._1(),depth)).appendInner(next._1(),next._2());
+            }
+            Iterator<Tuple2<byte[],T>> outerRows=partition.outer.read();
+            while(outerRows.hasNext()){
+                Tuple2<byte[],T> next=outerRows.next();
+                children.get(partition(next._1(),depth)).outer.append(next._1(),next._2());
+            }
+        }catch(IOException | RuntimeException e){
+            partition.outer.discard();
+            discard(children);
+            throw e;
+        }
+        partitions.addAll(children);
+    }
+
+    private void closeCurrentTable(){
+        if(currentTable!=null){
+            currentTable.close();
+            currentTable=null;
+        }
+    }
+
+    private static <T> List<Partition<T>> createPartitions(int depth) throws IOException{
+        List<Partition<T>> partitions=new ArrayList<>(NUM_PARTITIONS);
+        try{
+            for(int i=0;i<NUM_PARTITIONS;i++){
+                partitions.add(new Partition<T>(depth));
+            }
+        }catch(IOException ioe){
+            discard(partitions);
+            throw ioe;
+        }
+        return partitions;
+    }
+
+    static int partition(byte[] key,int depth){
+        return PARTITION_HASHES[depth].hash(key,0,key.length) & (NUM_PARTITIONS-1);
+    }
+
+    private static <V> Iterator<V> values(Iterator<Tuple2<byte[],V>> pairs){
+        return Iterators.transform(pairs,new Function<Tuple2<byte[],V>, V>(){
+            @Override
+            public V apply(Tuple2<byte[],V> pair){
+                return pair._2();
+            }
+        });
+    }
+
+    private static void discard(Iterable<? extends Partition<?>> partitions){
+        for(Partition<?> partition : partitions){
+            partition.discard();
+        }
+    }
+
+    private static final class Partition<T>{
+        private final int depth;
+        private final SpillFile<byte[],ExecRow> inner;
+        private final SpillFile<byte[],T> outer;
+        private long innerKeyBytes;
+
+        Partition(int depth) throws IOException{
+            this.depth=depth;
+            this.inner=SpillFile.create("broadcastJoinInner");
+            try{
+                this.outer=SpillFile.create("broadcastJoinOuter");
+            }catch(IOException ioe){
+                inner.discard();
+                throw ioe;
+            }
+        }
+
+        void appendInner(byte[] key,ExecRow row) throws IOException{
+            inner.append(key,row);
+            innerKeyBytes+=key.length;
+        }
+
+        void discard(){
+            inner.discard();
+            outer.discard();
+        }
+    }
+}
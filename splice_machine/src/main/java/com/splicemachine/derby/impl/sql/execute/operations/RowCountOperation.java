@@ -196,6 +196,10 @@ public class RowCountOperation extends SpliceBaseOperation {
         }
         final long fetchLimit = getFetchLimit();
         long offset = getTotalOffset();
+        if (fetchLimit > 0 && source instanceof SortOperation && offset < Long.MAX_VALUE - fetchLimit) {
+            // only the top offset+limit rows of the sort will ever be read
+            ((SortOperation) source).setRowLimit(offset + fetchLimit);
+        }
         OperationContext operationContext = dsp.createOperationContext(this);
         DataSet<LocatedRow> sourceSet = source.getDataSet(dsp);
         return sourceSet.zipWithIndex().mapPartitions(new OffsetFunction<SpliceOperation, LocatedRow>(operationContext, offset, fetchLimit));
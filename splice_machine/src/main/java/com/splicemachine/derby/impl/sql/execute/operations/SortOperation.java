@@ -55,6 +55,7 @@ public class SortOperation extends SpliceBaseOperation{
     private int numColumns;
     private ExecRow execRowDefinition=null;
     private Properties sortProperties=new Properties();
+    private long rowLimit=-1l; //set by a RowCountOperation above us; not serialized, it only affects how we sort
     protected static final String NAME=SortOperation.class.getSimpleName().replaceAll("Operation","");
 
     @Override
@@ -106,6 +107,13 @@ public class SortOperation extends SpliceBaseOperation{
         out.writeInt(numColumns);
     }
 
+    /**
+     * Tell the sort that only the first {@code rowLimit} rows of its output will be used.
+     */
+    public void setRowLimit(long rowLimit){
+        this.rowLimit=rowLimit;
+    }
+
     @Override
     public List<SpliceOperation> getSubOperations(){
         List<SpliceOperation> ops=new ArrayList<SpliceOperation>();
@@ -220,7 +228,7 @@ public class SortOperation extends SpliceBaseOperation{
 
         //operationContext.pushScopeForOp(OperationContext.Scope.SHUFFLE);
         PairDataSet sortedByKey=pair.sortByKey(new RowComparator(descColumns,nullsOrderedLow),
-            OperationContext.Scope.SORT.displayName());
+            OperationContext.Scope.SORT.displayName(),rowLimit);
         //operationContext.popScope();
 
         //operationContext.pushScopeForOp(OperationContext.Scope.READ_SORTED);
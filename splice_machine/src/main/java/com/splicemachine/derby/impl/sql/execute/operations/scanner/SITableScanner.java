@@ -31,6 +31,7 @@ import com.splicemachine.derby.utils.marshall.dvd.TypeProvider;
 import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
 import com.splicemachine.encoding.MultiFieldDecoder;
 import com.splicemachine.metrics.*;
+import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.api.filter.SIFilter;
 import com.splicemachine.si.api.server.TransactionalRegion;
 import com.splicemachine.si.api.txn.TxnView;
@@ -46,8 +47,12 @@ import com.splicemachine.utils.SpliceLogUtils;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.log4j.Logger;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 /**
  * TableScanner which applies SI to generate a row
@@ -62,6 +67,13 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         }
     };
     private static Logger LOG = Logger.getLogger(SITableScanner.class);
+    /*
+     * Rows are read ahead from the region scanner in blocks, so that the transactions which wrote
+     * them can be resolved in a single batch before any of them are filtered. The block starts
+     * at a single row and doubles up to this limit, so that short point scans don't read ahead
+     * more than they need to.
+     */
+    private static final int MAX_PREFETCH_BLOCK_SIZE = 64;
     private final Counter filterCounter;
     private DataScanner regionScanner;
     private final TransactionalRegion region;
@@ -89,6 +101,10 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
     private final Counter outputBytesCounter;
     private long demarcationPoint;
     private DataValueDescriptor optionalProbeValue;
+    private final ArrayDeque<List<DataCell>> prefetchedRows = new ArrayDeque<>();
+    private int prefetchBlockSize = 1;
+    private double sampleFraction = 1.0d;
+    private Random sampleRandom;
 
     protected SITableScanner(DataScanner scanner,
                              final TransactionalRegion region,
@@ -187,7 +203,7 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         SIFilter filter = getSIFilter();
         do{
             template.resetRowArray(); //necessary to deal with null entries--maybe make the underlying call faster?
-            List<DataCell> keyValues=regionScanner.next(-1);
+            List<DataCell> keyValues=nextRawRow(filter);
 
             if(keyValues.size()<=0){
                 currentRowLocation = null;
@@ -275,6 +291,7 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
 
     public void setRegionScanner(DataScanner scanner){
         this.regionScanner = scanner;
+        this.prefetchedRows.clear();
     }
 
     public long getBytesVisited() {
@@ -353,6 +370,12 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
             predicateFilter= buildInitialPredicateFilter();
             accumulator = ExecRowAccumulator.newAccumulator(predicateFilter, false, template, rowDecodingMap, tableVersion);
             siFilter = filterFactory.newFilter(predicateFilter,getRowEntryDecoder(),accumulator,isCountStar);
+            byte[] sampleBytes = scan.getAttribute(SIConstants.SAMPLE_FRACTION_ATTRIBUTE_NAME);
+            if(sampleBytes!=null){
+                sampleFraction = Double.longBitsToDouble(Bytes.toLong(sampleBytes));
+                if(sampleFraction<1.0d)
+                    sampleRandom = new Random();
+            }
         }
         return siFilter;
     }
@@ -409,6 +432,37 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         }
     }
 
+    private List<DataCell> nextRawRow(SIFilter filter) throws IOException{
+        if(!prefetchedRows.isEmpty())
+            return prefetchedRows.poll();
+        if(!(filter instanceof TxnFilter))
+            return nextSampledRow();
+
+        for(int i=0;i<prefetchBlockSize;i++){
+            List<DataCell> row = nextSampledRow();
+            if(row.size()<=0) break;
+            prefetchedRows.add(new ArrayList<>(row)); //the region scanner re-uses its list, so we need a copy
+        }
+        if(prefetchedRows.isEmpty())
+            return Collections.emptyList();
+        if(prefetchBlockSize<MAX_PREFETCH_BLOCK_SIZE)
+            prefetchBlockSize<<=1;
+        ((TxnFilter)filter).prefetchTransactions(prefetchedRows);
+        return prefetchedRows.poll();
+    }
+
+    /*
+     * When sampling, rows are dropped here, before we pay for transaction resolution or decoding them.
+     */
+    private List<DataCell> nextSampledRow() throws IOException{
+        List<DataCell> row = regionScanner.next(-1);
+        if(sampleRandom!=null){
+            while(row.size()>0 && sampleRandom.nextDouble()>=sampleFraction)
+                row = regionScanner.next(-1);
+        }
+        return row;
+    }
+
     @SuppressFBWarnings(value = "SF_SWITCH_NO_DEFAULT",justification = "Intentional")
     private boolean filterRow(SIFilter filter,List<DataCell> keyValues) throws IOException {
         filter.nextRow();
@@ -29,6 +29,7 @@ import com.splicemachine.db.iapi.stats.*;
 import com.splicemachine.db.iapi.store.access.StoreCostController;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.iapi.types.RowLocation;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
 import com.splicemachine.db.vti.VTICosting;
 import com.splicemachine.derby.impl.load.ImportUtils;
 import com.splicemachine.primitives.Bytes;
@@ -66,6 +67,12 @@ public class StoreCostControllerImpl implements StoreCostController {
         }
     };
 
+    private static final Comparator<int[]> largestGroupFirst = new Comparator<int[]>(){
+        @Override public int compare(int[] o1, int[] o2) {
+            return Integer.compare(o2.length,o1.length);
+        }
+    };
+
     private final double openLatency;
     private final double closeLatency;
     private final double fallbackNullFraction;
@@ -77,6 +84,7 @@ public class StoreCostControllerImpl implements StoreCostController {
     private final ExecRow baseTableRow;
     private final int conglomerateColumns;
     private boolean noStats;
+    private int[][] columnGroups;
 
 
     public StoreCostControllerImpl(TableDescriptor td, ConglomerateDescriptor conglomerateDescriptor, List<PartitionStatisticsDescriptor> partitionStatistics) throws StandardException {
@@ -286,6 +294,30 @@ public class StoreCostControllerImpl implements StoreCostController {
     }
 
 
+    @Override
+    public int[][] columnGroups() {
+        if (columnGroups == null) {
+            List<ColumnGroupStatisticsImpl> columnGroupStatistics = tableStatistics.getColumnGroupStatistics();
+            columnGroups = new int[columnGroupStatistics.size()][];
+            for (int i = 0; i < columnGroups.length; i++)
+                columnGroups[i] = columnGroupStatistics.get(i).getColumnIds();
+            Arrays.sort(columnGroups, largestGroupFirst);
+        }
+        return columnGroups;
+    }
+
+    @Override
+    public double columnGroupSelectivity(int[] columnNumbers, DataValueDescriptor[] values) {
+        ExecRow row = new ValueRow(values.length);
+        row.setRowArray(values);
+        return tableStatistics.columnGroupSelectivity(columnNumbers,row);
+    }
+
+    @Override
+    public long columnGroupCardinality(int[] columnNumbers) {
+        return tableStatistics.columnGroupCardinality(columnNumbers);
+    }
+
     @Override
     public double baseRowCount() {
         return rowCount();
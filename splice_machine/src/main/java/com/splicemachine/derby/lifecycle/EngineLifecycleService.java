@@ -29,10 +29,13 @@ import com.splicemachine.access.api.DatabaseVersion;
 import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.reference.Property;
 import com.splicemachine.db.impl.jdbc.EmbedConnection;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import com.splicemachine.derby.ddl.DDLDriver;
 import com.splicemachine.derby.ddl.DDLEnvironmentLoader;
 import com.splicemachine.derby.impl.db.SpliceDatabase;
+import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
 import com.splicemachine.derby.impl.store.access.SpliceAccessManager;
+import com.splicemachine.hbase.jmx.JMXUtils;
 import com.splicemachine.lifecycle.DatabaseLifecycleService;
 import com.splicemachine.pipeline.ContextFactoryDriverService;
 import com.splicemachine.pipeline.DerbyContextFactoryLoader;
@@ -40,6 +43,10 @@ import com.splicemachine.pipeline.PipelineDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryLoader;
 import com.splicemachine.pipeline.contextfactory.ReferenceCountingFactoryDriver;
+import com.splicemachine.si.api.readresolve.ReadResolverManagement;
+import com.splicemachine.si.api.txn.KeepAliveSchedulerManagement;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
+import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.tools.EmbedConnectionMaker;
 import com.splicemachine.tools.version.ManifestReader;
@@ -137,6 +144,47 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
              * this exception and don't worry about it too much.
              */
         }
+
+        TxnSupplier txnSupplier=SIDriver.driver().getTxnSupplier();
+        if(txnSupplier instanceof TransactionCacheManagement){
+            try{
+                mbs.registerMBean(txnSupplier,new ObjectName(JMXUtils.TRANSACTION_CACHE_MANAGEMENT));
+            }catch(InstanceAlreadyExistsException ignored){
+                //the SI layer is shared between the master and regionserver in the same JVM, see above
+            }
+        }
+
+        ReadResolverManagement readResolver=SIDriver.driver().getReadResolverManagement();
+        if(readResolver!=null){
+            try{
+                mbs.registerMBean(readResolver,new ObjectName(JMXUtils.READ_RESOLVER_MANAGEMENT));
+            }catch(InstanceAlreadyExistsException ignored){
+                //the SI layer is shared between the master and regionserver in the same JVM, see above
+            }
+        }
+
+        KeepAliveSchedulerManagement keepAliveScheduler=SIDriver.driver().getKeepAliveSchedulerManagement();
+        if(keepAliveScheduler!=null){
+            try{
+                mbs.registerMBean(keepAliveScheduler,new ObjectName(JMXUtils.KEEP_ALIVE_SCHEDULER_MANAGEMENT));
+            }catch(InstanceAlreadyExistsException ignored){
+                //the SI layer is shared between the master and regionserver in the same JVM, see above
+            }
+        }
+
+        try{
+            mbs.registerMBean(BroadcastJoinCache.getInstance(),new ObjectName(JMXUtils.BROADCAST_JOIN_CACHE_MANAGEMENT));
+        }catch(InstanceAlreadyExistsException ignored){
+            //the cache is shared by everything in the JVM, see above
+        }
+
+        try{
+            DataDictionaryCache ddCache=((EmbedConnection)internalConnection).getLanguageConnection()
+                    .getDataDictionary().getDataDictionaryCache();
+            mbs.registerMBean(ddCache,new ObjectName(JMXUtils.DATA_DICTIONARY_CACHE_MANAGEMENT));
+        }catch(InstanceAlreadyExistsException ignored){
+            //the master and regionserver share the JVM, see above
+        }
     }
 
     @Override
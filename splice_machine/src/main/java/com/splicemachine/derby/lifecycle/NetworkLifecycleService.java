@@ -24,6 +24,7 @@ import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.drda.NetworkServerControl;
 import com.splicemachine.derby.logging.DerbyOutputLoggerWriter;
 import com.splicemachine.lifecycle.DatabaseLifecycleService;
+import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.utils.SpliceLogUtils;
 
 /**
@@ -34,6 +35,7 @@ public class NetworkLifecycleService implements DatabaseLifecycleService{
     private static final Logger LOG=Logger.getLogger(NetworkLifecycleService.class);
     private final SConfiguration config;
     private NetworkServerControl server;
+    private StatementCacheWarmer statementCacheWarmer;
 
     public NetworkLifecycleService(SConfiguration config){
         this.config=config;
@@ -45,6 +47,14 @@ public class NetworkLifecycleService implements DatabaseLifecycleService{
 
             String bindAddress = config.getNetworkBindAddress();
             int bindPort = config.getNetworkBindPort();
+            String warmupDirectory = config.getStatementCacheWarmupDirectory();
+            if (warmupDirectory != null) {
+                // compile the hot statements of the cluster while the server starts taking connections
+                statementCacheWarmer = new StatementCacheWarmer(SIDriver.driver().fileSystem(), warmupDirectory,
+                        InetAddress.getLocalHost().getHostName() + "_" + bindPort,
+                        config.getStatementCacheWarmupSize(), config.getStatementCacheSaveInterval());
+                statementCacheWarmer.start();
+            }
             server = new NetworkServerControl(InetAddress.getByName(bindAddress),bindPort);
             server.setLogConnections(true);
             server.start(new DerbyOutputLoggerWriter());
@@ -62,6 +72,8 @@ public class NetworkLifecycleService implements DatabaseLifecycleService{
 
     @Override
     public void shutdown() throws Exception{
+        if(statementCacheWarmer!=null)
+            statementCacheWarmer.shutdown();
         server.shutdown();
     }
 }
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.lifecycle;
+
+import com.splicemachine.access.api.DistributedFileSystem;
+import com.splicemachine.db.iapi.jdbc.EngineConnection;
+import com.splicemachine.db.iapi.util.IdUtil;
+import com.splicemachine.db.impl.jdbc.EmbedConnection;
+import com.splicemachine.db.impl.sql.GenericStatement;
+import com.splicemachine.db.impl.sql.LiteralParameterizer;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
+import com.splicemachine.tools.EmbedConnectionMaker;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the statements in the statement cache of this server to a shared directory, and compiles the
+ * statements saved by all the servers when this one boots.
+ *
+ * Each server periodically (and when it shuts down) overwrites its own file in the directory with the
+ * statements which have a valid plan in its cache. At boot, the files of every server are read and the
+ * statements found on the most servers are compiled first, in the background, through a dedicated
+ * internal connection. The plans go through the normal statement cache, so they register their
+ * dependencies and are invalidated by DDL like any other plan; a statement which no longer compiles
+ * (because its table was dropped, say) is simply skipped and will not be saved again.
+ *
+ * Only the statement texts are saved, along with the compilation schema, isolation level and
+ * concurrency which make up the identity of a cached statement. The directory is shared and the
+ * values in a statement may be sensitive, so only statements without any literals are saved: those
+ * prepared with parameters, and those cached under the text auto-parameterization gave them.
+ */
+public class StatementCacheWarmer{
+    private static final Logger LOG=Logger.getLogger(StatementCacheWarmer.class);
+    static final String FILE_SUFFIX=".statements";
+    private static final int FORMAT_VERSION=1;
+    private static final long SHUTDOWN_WAIT_MS=10000L;
+
+    private final DistributedFileSystem fileSystem;
+    private final String directory;
+    private final String fileName;
+    private final int warmupSize;
+    private final long saveInterval;
+    private final Properties connectionProperties=new Properties();
+    private ScheduledExecutorService executor;
+    private volatile Connection connection;
+
+    /**
+     * @param fileSystem the file system holding the directory
+     * @param directory the directory shared by all servers
+     * @param serverName a name unique to this server, which stays the same across restarts
+     * @param warmupSize the maximum number of statements to compile at boot
+     * @param saveInterval how often (in milliseconds) to save the statement cache
+     */
+    public StatementCacheWarmer(DistributedFileSystem fileSystem,
+                                String directory,
+                                String serverName,
+                                int warmupSize,
+                                long saveInterval){
+        this.fileSystem=fileSystem;
+        this.directory=directory;
+        this.fileName=serverName.replaceAll("[^A-Za-z0-9._-]","_")+FILE_SUFFIX;
+        this.warmupSize=warmupSize;
+        this.saveInterval=saveInterval;
+        connectionProperties.put(EmbedConnection.INTERNAL_CONNECTION,"true");
+    }
+
+    public void start(){
+        executor=Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("StatementCacheWarmer").setDaemon(true).build());
+        executor.execute(new Runnable(){
+            @Override
+            public void run(){
+                warmUp();
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable(){
+            @Override
+            public void run(){
+                save();
+            }
+        },saveInterval,saveInterval,TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown(){
+        if(executor==null)
+            return;
+        executor.shutdownNow();
+        try{
+            executor.awaitTermination(SHUTDOWN_WAIT_MS,TimeUnit.MILLISECONDS);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        save();
+        Connection conn=connection;
+        if(conn!=null){
+            try{
+                conn.close();
+            }catch(SQLException e){
+                LOG.warn("Unable to close the statement cache warmup connection",e);
+            }
+        }
+    }
+
+    private void warmUp(){
+        List<List<CachedStatement>> saved=new ArrayList<>();
+        try{
+            fileSystem.createDirectory(directory,false);
+            Set<String> files=new LinkedHashSet<>();
+            files.add(fileName);
+            Collections.addAll(files,fileSystem.getExistingFiles(directory,"*"+FILE_SUFFIX));
+            for(String file:files){
+                try(InputStream in=fileSystem.newInputStream(fileSystem.getPath(directory,file))){
+                    saved.add(read(in));
+                }catch(IOException e){
+                    // missing, or being written by its server right now
+                    SpliceLogUtils.debug(LOG,"Unable to read saved statements from %s: %s",file,e);
+                }
+            }
+        }catch(IOException e){
+            LOG.warn("Unable to read the saved statements of directory "+directory,e);
+            return;
+        }
+
+        List<CachedStatement> statements=rank(saved,warmupSize);
+        if(statements.isEmpty())
+            return;
+        long start=System.currentTimeMillis();
+        int compiled=0;
+        try{
+            Connection conn=getConnection();
+            String schema=null;
+            for(CachedStatement statement:statements){
+                if(Thread.currentThread().isInterrupted())
+                    break;
+                try{
+                    if(!statement.schema.equals(schema)){
+                        try(Statement s=conn.createStatement()){
+                            s.execute("SET SCHEMA "+IdUtil.normalToDelimited(statement.schema));
+                        }
+                        schema=statement.schema;
+                    }
+                    ((EngineConnection)conn).setPrepareIsolation(statement.isolationLevel);
+                    int concurrency=statement.readOnly?ResultSet.CONCUR_READ_ONLY:ResultSet.CONCUR_UPDATABLE;
+                    try(PreparedStatement ignored=conn.prepareStatement(statement.text,ResultSet.TYPE_FORWARD_ONLY,concurrency)){
+                        compiled++;
+                    }
+                }catch(SQLException e){
+                    SpliceLogUtils.debug(LOG,"Skipping saved statement %s: %s",statement.text,e.getMessage());
+                }
+            }
+        }catch(SQLException e){
+            LOG.warn("Unable to warm up the statement cache",e);
+        }
+        SpliceLogUtils.info(LOG,"Compiled %d of %d saved statements in %d ms",
+                compiled,statements.size(),System.currentTimeMillis()-start);
+    }
+
+    private void save(){
+        try{
+            DataDictionaryCache cache=((EmbedConnection)getConnection()).getLanguageConnection()
+                    .getDataDictionary().getDataDictionaryCache();
+            List<CachedStatement> statements=new ArrayList<>();
+            for(GenericStatement gs:cache.getCachedStatements()){
+                // metadata queries are compiled with internal syntax, and cannot be prepared by a user
+                if("SYS".equals(gs.getCompilationSchema()))
+                    continue;
+                // the literals could be data a user typed in, which must not end up in the shared directory
+                if(LiteralParameterizer.hasLiterals(gs.getSource()))
+                    continue;
+                statements.add(new CachedStatement(gs.getCompilationSchema(),gs.isForReadOnly(),
+                        gs.getPrepareIsolationLevel(),gs.getSource()));
+                if(statements.size()>=warmupSize)
+                    break;
+            }
+            try(OutputStream out=fileSystem.newOutputStream(directory,fileName)){
+                write(out,statements);
+            }
+        }catch(Exception e){
+            LOG.warn("Unable to save the statement cache to "+directory,e);
+        }
+    }
+
+    private Connection getConnection() throws SQLException{
+        Connection conn=connection;
+        if(conn==null){
+            synchronized(this){
+                conn=connection;
+                if(conn==null)
+                    connection=conn=new EmbedConnectionMaker().createNew(connectionProperties);
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Merges the statements saved by each server, ordered by the number of servers which had them
+     * cached (and by their order in the first file for equal counts).
+     */
+    static List<CachedStatement> rank(List<List<CachedStatement>> saved,int limit){
+        final Map<CachedStatement,Integer> counts=new LinkedHashMap<>();
+        for(List<CachedStatement> statements:saved){
+            for(CachedStatement statement:new LinkedHashSet<>(statements)){
+                Integer count=counts.get(statement);
+                counts.put(statement,count==null?1:count+1);
+            }
+        }
+        List<CachedStatement> ranked=new ArrayList<>(counts.keySet());
+        Collections.sort(ranked,new Comparator<CachedStatement>(){
+            @Override
+            public int compare(CachedStatement o1,CachedStatement o2){
+                return Integer.compare(counts.get(o2),counts.get(o1));
+            }
+        });
+        return ranked.size()>limit?ranked.subList(0,limit):ranked;
+    }
+
+    static void write(OutputStream out,List<CachedStatement> statements) throws IOException{
+        DataOutputStream dos=new DataOutputStream(new BufferedOutputStream(out));
+        dos.writeInt(FORMAT_VERSION);
+        dos.writeInt(statements.size());
+        for(CachedStatement statement:statements){
+            dos.writeUTF(statement.schema);
+            dos.writeBoolean(statement.readOnly);
+            dos.writeInt(statement.isolationLevel);
+            byte[] text=statement.text.getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(text.length);
+            dos.write(text);
+        }
+        dos.flush();
+    }
+
+    static List<CachedStatement> read(InputStream in) throws IOException{
+        DataInputStream dis=new DataInputStream(new BufferedInputStream(in));
+        int version=dis.readInt();
+        if(version!=FORMAT_VERSION)
+            throw new IOException("Unknown saved statement format "+version);
+        int size=dis.readInt();
+        List<CachedStatement> statements=new ArrayList<>(size);
+        for(int i=0;i<size;i++){
+            String schema=dis.readUTF();
+            boolean readOnly=dis.readBoolean();
+            int isolationLevel=dis.readInt();
+            byte[] text=new byte[dis.readInt()];
+            dis.readFully(text);
+            statements.add(new CachedStatement(schema,readOnly,isolationLevel,new String(text,StandardCharsets.UTF_8)));
+        }
+        return statements;
+    }
+
+    static final class CachedStatement{
+        final String schema;
+        final boolean readOnly;
+        final int isolationLevel;
+        final String text;
+
+        CachedStatement(String schema,boolean readOnly,int isolationLevel,String text){
+            this.schema=schema;
+            this.readOnly=readOnly;
+            this.isolationLevel=isolationLevel;
+            this.text=text;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this==o) return true;
+            if(!(o instanceof CachedStatement)) return false;
+            CachedStatement that=(CachedStatement)o;
+            return readOnly==that.readOnly
+                    && isolationLevel==that.isolationLevel
+                    && schema.equals(that.schema)
+                    && text.equals(that.text);
+        }
+
+        @Override
+        public int hashCode(){
+            return 31*text.hashCode()+schema.hashCode();
+        }
+    }
+}
@@ -268,7 +268,14 @@ public class ControlDataSet<V> implements DataSet<V> {
 
     @Override
     public void close() {
-
+        // e.g. the partitions of an aggregation which spilled, and was not read to the end
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) iterator).close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     @Override
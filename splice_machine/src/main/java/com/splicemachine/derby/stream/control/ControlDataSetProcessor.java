@@ -24,8 +24,10 @@ import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.zip.GZIPInputStream;
 
@@ -206,6 +208,16 @@ public class ControlDataSetProcessor implements DataSetProcessor{
         return readTextFile(s);
     }
 
+    @Override
+    public DataSet<byte[]> readTextFileBytes(String s,SpliceOperation op){
+        try{
+            InputStream is=getFileStream(s);
+            return new ControlDataSet<>(new TextFileBytesIterator(is));
+        }catch(IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public <K,V> PairDataSet<K, V> getEmptyPair(){
         return new ControlPairDataSet<>(Collections.<Tuple2<K, V>>emptyList().iterator());
@@ -251,6 +263,74 @@ public class ControlDataSetProcessor implements DataSetProcessor{
 
     }
 
+    /**
+     * Splits a stream into lines at \n, \r or \r\n, the way Hadoop's LineRecordReader does.
+     */
+    private static class TextFileBytesIterator implements Iterator<byte[]>{
+        private final InputStream inputStream;
+        private final byte[] buffer=new byte[64*1024];
+        private int position;
+        private int limit;
+        private byte[] line=new byte[1024];
+        private byte[] next;
+        private boolean skipLineFeed;
+
+        public TextFileBytesIterator(InputStream inputStream){
+            this.inputStream=inputStream;
+        }
+
+        @Override
+        public void remove(){
+        }
+
+        @Override
+        public byte[] next(){
+            if(!hasNext())
+                throw new NoSuchElementException();
+            byte[] n=next;
+            next=null;
+            return n;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if(next==null)
+                next=readLine();
+            return next!=null;
+        }
+
+        private byte[] readLine(){
+            try{
+                int length=0;
+                while(true){
+                    if(position==limit){
+                        limit=inputStream.read(buffer);
+                        position=0;
+                        if(limit<=0){
+                            limit=0;
+                            return length>0?Arrays.copyOf(line,length):null;
+                        }
+                    }
+                    byte b=buffer[position++];
+                    if(skipLineFeed){
+                        skipLineFeed=false;
+                        if(b=='\n')
+                            continue;
+                    }
+                    if(b=='\n' || b=='\r'){
+                        skipLineFeed=b=='\r';
+                        return Arrays.copyOf(line,length);
+                    }
+                    if(length==line.length)
+                        line=Arrays.copyOf(line,length*2);
+                    line[length++]=b;
+                }
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     @Override
     public void setPermissive(String statusDirectory, String importFileName, long badRecordThreshold){
         this.permissive = true;
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import org.apache.log4j.Logger;
+import org.apache.spark.api.java.Optional;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Build/probe hash join for the control side.
+ *
+ * The right (build) side is loaded into a {@link BuildTable}, which chains the rows of each key
+ * through {@code int[]}s instead of allocating a collection per key, and summarised in a bloom
+ * filter so that most probes for keys which aren't there never touch the table. The left (probe)
+ * side is streamed through a single iterator, which walks the matches of the current row in place.
+ *
+ * If the build side grows past the spill threshold, the join turns into a grace hash join: both
+ * sides are partitioned by the hash of the key into {@link #NUM_PARTITIONS} local spill files (probe
+ * rows which the bloom filter rules out are dealt with straight away instead of being spilled),
+ * and the partitions are then joined one pair at a time. A build partition which still looks too big
+ * for the threshold is partitioned again (together with its probe partition) with a different hash,
+ * up to {@link #MAX_DEPTH} times; past that, which takes a very skewed key, it is loaded even if it
+ * exceeds the threshold.
+ *
+ * The spill files are removed as the results are consumed, or when the (spilled) results are closed.
+ */
+class ControlHashJoin<K,V,W>{
+    private static final Logger LOG=Logger.getLogger(ControlHashJoin.class);
+    static final int NUM_PARTITIONS=32;
+    static final int MAX_DEPTH=3;
+    private static final long ENTRY_OVERHEAD=32l;
+    private static final int SPILLED_FILTER_BITS=1<<23;
+
+    private final boolean outer;
+    private final long spillThreshold;
+    private boolean spilled;
+    private int repartitionCount;
+
+    /**
+     * @param outer if true, a left outer join (every probe row is returned at least once, with an
+     *              absent {@link Optional} when nothing matches); otherwise an inner join
+     */
+    ControlHashJoin(boolean outer,long spillThreshold){
+        this.outer=outer;
+        this.spillThreshold=spillThreshold;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K,V,W> Iterator<Tuple2<K,Tuple2<V,W>>> innerJoin(Iterator<Tuple2<K,V>> left,
+                                                           Iterator<Tuple2<K,W>> right,
+                                                           long spillThreshold) throws IOException{
+        Iterator results=new ControlHashJoin<K,V,W>(false,spillThreshold).join(left,right);
+        return (Iterator<Tuple2<K,Tuple2<V,W>>>)results;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K,V,W> Iterator<Tuple2<K,Tuple2<V,Optional<W>>>> leftOuterJoin(Iterator<Tuple2<K,V>> left,
+                                                                         Iterator<Tuple2<K,W>> right,
+                                                                         long spillThreshold) throws IOException{
+        Iterator results=new ControlHashJoin<K,V,W>(true,spillThreshold).join(left,right);
+        return (Iterator<Tuple2<K,Tuple2<V,Optional<W>>>>)results;
+    }
+
+    /**
+     * Consume the build side, and return the (lazily probed) join results. The second element of
+     * each result is a {@code W} for an inner join, and an {@code Optional<W>} for an outer join.
+     * If the build side had to be spilled, the results are also {@link AutoCloseable}, and closing
+     * them removes the partitions which have not been joined.
+     */
+    Iterator<Tuple2<K,Tuple2<V,Object>>> join(Iterator<Tuple2<K,V>> probe,Iterator<Tuple2<K,W>> build) throws IOException{
+        BuildTable<K,W> table=new BuildTable<>();
+        long size=0l;
+        while(build.hasNext()){
+            Tuple2<K,W> next=build.next();
+            table.add(next._1(),next._2());
+            size+=ENTRY_OVERHEAD+ControlUtils.estimateSize(next._1())+ControlUtils.estimateSize(next._2());
+            if(size>spillThreshold)
+                return graceJoin(probe,table,build);
+        }
+        return new ProbeIterator(probe,table,table.filter());
+    }
+
+    boolean isSpilled(){
+        return spilled;
+    }
+
+    /**
+     * @return the number of spilled partitions which had to be partitioned again
+     */
+    int getRepartitionCount(){
+        return repartitionCount;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private Iterator<Tuple2<K,Tuple2<V,Object>>> graceJoin(Iterator<Tuple2<K,V>> probe,BuildTable<K,W> table,Iterator<Tuple2<K,W>> build) throws IOException{
+        spilled=true;
+        KeyFilter filter=new KeyFilter(SPILLED_FILTER_BITS);
+        List<Partition<K,V,W>> partitions=ControlHashJoin.createPartitions(0);
+        try{
+            for(int row=0;row<table.numRows();row++){
+                K key=table.keyOf(row);
+                int hash=key.hashCode();
+                filter.add(hash);
+                partitions.get(partition(hash,0)).appendBuild(key,table.row(row));
+            }
+            while(build.hasNext()){
+                Tuple2<K,W> next=build.next();
+                int hash=next._1().hashCode();
+                filter.add(hash);
+                partitions.get(partition(hash,0)).appendBuild(next._1(),next._2());
+            }
+        }catch(IOException | RuntimeException e){
+            discard(partitions);
+            throw e;
+        }
+        if(LOG.isDebugEnabled())
+            LOG.debug("Hash join build side exceeded "+spillThreshold+" bytes, partitioned to disk");
+        return new GraceIterator(probe,filter,partitions);
+    }
+
+    private static <K,V,W> List<Partition<K,V,W>> createPartitions(int depth) throws IOException{
+        List<Partition<K,V,W>> partitions=new ArrayList<>(NUM_PARTITIONS);
+        try{
+            for(int i=0;i<NUM_PARTITIONS;i++){
+                partitions.add(new Partition<K,V,W>(depth));
+            }
+        }catch(IOException ioe){
+            discard(partitions);
+            throw ioe;
+        }
+        return partitions;
+    }
+
+    private Tuple2<K,Tuple2<V,Object>> result(Tuple2<K,V> probeRow,W match){
+        Object value;
+        if(outer)
+            value=match==null?Optional.<W>empty():Optional.of(match);
+        else
+            value=match;
+        return new Tuple2<K,Tuple2<V,Object>>(probeRow._1(),new Tuple2<>(probeRow._2(),value));
+    }
+
+    static int partition(int hash,int depth){
+        //the table and the filter use the low bits of a different mix, so take the high bits here,
+        //and mix in the depth, so that a partition which is partitioned again splits differently
+        return (mix(hash+depth*0x9E3779B9)>>>27) & (NUM_PARTITIONS-1);
+    }
+
+    private static int mix(int h){
+        h^=h>>>16;
+        h*=0x85EBCA6B;
+        h^=h>>>13;
+        h*=0xC2B2AE35;
+        h^=h>>>16;
+        return h;
+    }
+
+    private static void discard(Iterable<? extends Partition<?,?,?>> partitions){
+        for(Partition<?,?,?> partition : partitions){
+            partition.discard();
+        }
+    }
+
+    /*
+     * Walks the probe side against an in-memory table. Only the results themselves are allocated.
+     */
+    private class ProbeIterator implements Iterator<Tuple2<K,Tuple2<V,Object>>>{
+        private final Iterator<Tuple2<K,V>> probe;
+        private final BuildTable<K,W> table;
+        private final KeyFilter filter;
+        private Tuple2<K,V> current;
+        private int nextMatch=-1;
+        private Tuple2<K,Tuple2<V,Object>> pending;
+
+        ProbeIterator(Iterator<Tuple2<K,V>> probe,BuildTable<K,W> table,KeyFilter filter){
+            this.probe=probe;
+            this.table=table;
+            this.filter=filter;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if(pending!=null) return true;
+            while(true){
+                if(nextMatch>=0){
+                    pending=result(current,table.row(nextMatch));
+                    nextMatch=table.nextRow(nextMatch);
+                    return true;
+                }
+                if(!probe.hasNext()) return false;
+                current=probe.next();
+                int hash=current._1().hashCode();
+                if(filter.mightContain(hash))
+                    nextMatch=table.firstRow(current._1(),hash);
+                if(nextMatch<0 && outer){
+                    pending=result(current,null);
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public Tuple2<K,Tuple2<V,Object>> next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            Tuple2<K,Tuple2<V,Object>> next=pending;
+            pending=null;
+            return next;
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+     * First streams the probe side into partitions (emitting outer rows which can't match right
+     * away), then joins each pair of partitions in memory.
+     */
+    private class GraceIterator implements Iterator<Tuple2<K,Tuple2<V,Object>>>, AutoCloseable{
+        private final Iterator<Tuple2<K,V>> probe;
+        private final KeyFilter filter;
+        private final List<Partition<K,V,W>> topPartitions;
+        private final Deque<Partition<K,V,W>> partitions=new ArrayDeque<>(); //filled once the probe side is fully partitioned
+        private boolean probePartitioned;
+        private boolean closed;
+        private Iterator<Tuple2<K,Tuple2<V,Object>>> current=Collections.emptyIterator();
+        private Tuple2<K,Tuple2<V,Object>> pending;
+
+        GraceIterator(Iterator<Tuple2<K,V>> probe,KeyFilter filter,List<Partition<K,V,W>> topPartitions){
+            this.probe=probe;
+            this.filter=filter;
+            this.topPartitions=topPartitions;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if(pending!=null) return true;
+            if(closed) return false;
+            try{
+                if(!probePartitioned){
+                    //still partitioning the probe side
+                    if(partitionProbeSide()) return true;
+                }
+                while(!current.hasNext()){
+                    Partition<K,V,W> next=partitions.poll();
+                    if(next==null) return false;
+                    current=joinPartition(next);
+                }
+                return true;
+            }catch(IOException ioe){
+                close();
+                throw new RuntimeException(ioe);
+            }
+        }
+
+        @Override
+        public Tuple2<K,Tuple2<V,Object>> next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            if(pending!=null){
+                Tuple2<K,Tuple2<V,Object>> next=pending;
+                pending=null;
+                return next;
+            }
+            return current.next();
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Remove every partition which has not been joined yet.
+         */
+        @Override
+        public void close(){
+            if(closed) return;
+            closed=true;
+            pending=null;
+            current=Collections.emptyIterator();
+            discard(topPartitions);
+            topPartitions.clear();
+            discard(partitions);
+            partitions.clear();
+        }
+
+        /*
+         * Returns true (with pending set) when it finds an outer row which can be returned right away,
+         * false once the probe side has been fully partitioned.
+         */
+        private boolean partitionProbeSide() throws IOException{
+            while(probe.hasNext()){
+                Tuple2<K,V> next=probe.next();
+                int hash=next._1().hashCode();
+                if(filter.mightContain(hash))
+                    topPartitions.get(partition(hash,0)).probe.append(next._1(),next._2());
+                else if(outer){
+                    pending=result(next,null);
+                    return true;
+                }
+            }
+            probePartitioned=true;
+            partitions.addAll(topPartitions);
+            topPartitions.clear();
+            return false;
+        }
+
+        private Iterator<Tuple2<K,Tuple2<V,Object>>> joinPartition(Partition<K,V,W> partition) throws IOException{
+            if(partition.probe.size()==0){
+                partition.discard();
+                return Collections.emptyIterator();
+            }
+            if(partition.depth<MAX_DEPTH && partition.buildSize>spillThreshold){
+                repartition(partition);
+                return Collections.emptyIterator();
+            }
+            BuildTable<K,W> table=new BuildTable<>();
+            try{
+                Iterator<Tuple2<K,W>> rows=partition.build.read();
+                while(rows.hasNext()){
+                    Tuple2<K,W> next=rows.next();
+                    table.add(next._1(),next._2());
+                }
+            }catch(IOException | RuntimeException e){
+                partition.probe.discard();
+                throw e;
+            }
+            return new ProbeIterator(partition.probe.read(),table,table.filter());
+        }
+
+        private void repartition(Partition<K,V,W> partition) throws IOException{
+            int depth=partition.depth+1;
+            if(LOG.isDebugEnabled())
+                LOG.debug("Hash join build partition of ~"+partition.buildSize+" bytes is still too big, partitioning it again at depth "+depth);
+            List<Partition<K,V,W>> children;
+            try{
+                children=ControlHashJoin.createPartitions(depth);
+            }catch(IOException ioe){
+                partition.discard();
+                throw ioe;
+            }
+            try{
+                Iterator<Tuple2<K,W>> buildRows=partition.build.read();
+                while(buildRows.hasNext()){
+                    Tuple2<K,W> next=buildRows.next();
+                    children.get(partition(next._1().hashCode(),depth)).appendBuild(next._1(),next._2());
+                }
+                Iterator<Tuple2<K,V>> probeRows=partition.probe.read();
+                while(probeRows.hasNext()){
+                    Tuple2<K,V> next=probeRows.next();
+                    children.get(partition(next._1().hashCode(),depth)).probe.append(next._1(),next._2());
+                }
+            }catch(IOException | RuntimeException e){
+                partition.probe.discard();
+                discard(children);
+                throw e;
+            }
+            partitions.addAll(children);
+            repartitionCount++;
+        }
+    }
+
+    /*
+     * A build partition, and the probe partition which has to be joined with it.
+     */
+    private static final class Partition<K,V,W>{
+        private final int depth;
+        private final SpillFile<K,W> build;
+        private final SpillFile<K,V> probe;
+        private long buildSize;
+
+        Partition(int depth) throws IOException{
+            this.depth=depth;
+            this.build=SpillFile.create("controlJoinBuild");
+            try{
+                this.probe=SpillFile.create("controlJoinProbe");
+            }catch(IOException ioe){
+                build.discard();
+                throw ioe;
+            }
+        }
+
+        void appendBuild(K key,W row) throws IOException{
+            build.append(key,row);
+            buildSize+=ENTRY_OVERHEAD+ControlUtils.estimateSize(key)+ControlUtils.estimateSize(row);
+        }
+
+        void discard(){
+            build.discard();
+            probe.discard();
+        }
+    }
+
+    /**
+     * Hash table from key to the rows with that key. Distinct keys are found through an open-addressing
+     * index; the rows of each key are chained together (in insertion order) through {@code nextRows}.
+     */
+    static final class BuildTable<K,W>{
+        private Object[] keys=new Object[16];
+        private int[] keyHashes=new int[16];
+        private int[] firstRows=new int[16];
+        private int[] lastRows=new int[16];
+        private int numKeys;
+
+        private Object[] rows=new Object[16];
+        private int[] rowKeys=new int[16];
+        private int[] nextRows=new int[16];
+        private int numRows;
+
+        private int[] slots=new int[32]; //key+1, or 0 if empty
+
+        void add(K key,W row){
+            int hash=key.hashCode();
+            int k=findKey(key,hash);
+            if(k<0)
+                k=addKey(key,hash);
+
+            if(numRows==rows.length){
+                int newSize=numRows<<1;
+                rows=Arrays.copyOf(rows,newSize);
+                rowKeys=Arrays.copyOf(rowKeys,newSize);
+                nextRows=Arrays.copyOf(nextRows,newSize);
+            }
+            int r=numRows++;
+            rows[r]=row;
+            rowKeys[r]=k;
+            nextRows[r]=-1;
+            if(firstRows[k]<0)
+                firstRows[k]=r;
+            else
+                nextRows[lastRows[k]]=r;
+            lastRows[k]=r;
+        }
+
+        /**
+         * @return the first row with {@code key}, or -1 if there are none
+         */
+        int firstRow(Object key,int hash){
+            int k=findKey(key,hash);
+            return k<0?-1:firstRows[k];
+        }
+
+        int nextRow(int row){
+            return nextRows[row];
+        }
+
+        @SuppressWarnings("unchecked")
+        W row(int row){
+            return (W)rows[row];
+        }
+
+        @SuppressWarnings("unchecked")
+        K keyOf(int row){
+            return (K)keys[rowKeys[row]];
+        }
+
+        int numRows(){
+            return numRows;
+        }
+
+        /**
+         * @return a bloom filter holding every key in the table
+         */
+        KeyFilter filter(){
+            //~10 bits per key gives a false positive rate of about 1% with 3 probes
+            int bits=Integer.highestOneBit(Math.max(numKeys*10,64)-1)<<1;
+            KeyFilter filter=new KeyFilter(bits);
+            for(int k=0;k<numKeys;k++){
+                filter.add(keyHashes[k]);
+            }
+            return filter;
+        }
+
+        private int findKey(Object key,int hash){
+            int mask=slots.length-1;
+            int entry;
+            for(int pos=mix(hash) & mask;(entry=slots[pos])!=0;pos=(pos+1) & mask){
+                int k=entry-1;
+                if(keyHashes[k]==hash && keys[k].equals(key))
+                    return k;
+            }
+            return -1;
+        }
+
+        private int addKey(Object key,int hash){
+            if(numKeys==keys.length){
+                int newSize=numKeys<<1;
+                keys=Arrays.copyOf(keys,newSize);
+                keyHashes=Arrays.copyOf(keyHashes,newSize);
+                firstRows=Arrays.copyOf(firstRows,newSize);
+                lastRows=Arrays.copyOf(lastRows,newSize);
+            }
+            int k=numKeys++;
+            keys[k]=key;
+            keyHashes[k]=hash;
+            firstRows[k]=-1;
+            //keep the load factor of the index at or below 0.5
+            if(2*numKeys>slots.length)
+                slots=new int[slots.length<<1];
+            else{
+                insert(k);
+                return k;
+            }
+            for(int i=0;i<numKeys;i++){
+                insert(i);
+            }
+            return k;
+        }
+
+        private void insert(int k){
+            int mask=slots.length-1;
+            int pos=mix(keyHashes[k]) & mask;
+            while(slots[pos]!=0){
+                pos=(pos+1) & mask;
+            }
+            slots[pos]=k+1;
+        }
+    }
+
+    /**
+     * A bloom filter over key hash codes, using 3 probes derived from a single 32-bit hash.
+     */
+    static final class KeyFilter{
+        private final long[] bits;
+        private final int mask;
+
+        KeyFilter(int numBits){
+            assert Integer.bitCount(numBits)==1: "Number of bits must be a power of 2";
+            this.bits=new long[Math.max(numBits>>>6,1)];
+            this.mask=(bits.length<<6)-1;
+        }
+
+        void add(int hash){
+            int h1=mix(hash);
+            int h2=(h1>>>16)|(h1<<16)|1;
+            for(int i=0;i<3;i++){
+                int bit=(h1+i*h2) & mask;
+                bits[bit>>>6]|=1l<<bit;
+            }
+        }
+
+        boolean mightContain(int hash){
+            int h1=mix(hash);
+            int h2=(h1>>>16)|(h1<<16)|1;
+            for(int i=0;i<3;i++){
+                int bit=(h1+i*h2) & mask;
+                if((bits[bit>>>6] & (1l<<bit))==0) return false;
+            }
+            return true;
+        }
+    }
+}
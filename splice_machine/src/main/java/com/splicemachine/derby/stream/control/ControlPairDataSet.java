@@ -43,11 +43,10 @@ import org.spark_project.guava.base.Predicate;
 import org.spark_project.guava.collect.*;
 import scala.Tuple2;
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.*;
 
-import static com.splicemachine.derby.stream.control.ControlUtils.entryToTuple;
 import static com.splicemachine.derby.stream.control.ControlUtils.multimapFromIterator;
-import static org.spark_project.guava.collect.Maps.*;
 
 /**
  *
@@ -63,11 +62,42 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
         this.source = source;
     }
 
+    /*
+     * Spilled results (of an aggregation or a hash join) are closeable, so that their spill files are
+     * removed when the operation closes, even if they were not read to the end
+     */
+    private static void closeWithOperation(Iterator<?> iterator, AbstractSpliceFunction<?> function) throws StandardException {
+        if (iterator instanceof AutoCloseable && function.operationContext != null) {
+            SpliceOperation op = function.getOperation();
+            if (op != null)
+                op.registerCloseable((AutoCloseable) iterator);
+        }
+    }
+
+    /*
+     * A data set over a transformation of the source, which closes the source when it is closed
+     */
+    private <U> DataSet<U> transformed(Iterator<U> iterator) {
+        if (!(source instanceof AutoCloseable))
+            return new ControlDataSet<>(iterator);
+        final AutoCloseable closeable = (AutoCloseable) source;
+        return new ControlDataSet<U>(iterator) {
+            @Override
+            public void close() {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
 
 
     @Override
     public DataSet<V> values() {
-        return new ControlDataSet<>(Iterators.transform(source,new Function<Tuple2<K,V>, V>() {
+        return transformed(Iterators.transform(source,new Function<Tuple2<K,V>, V>() {
             @Nullable @Override
             public V apply(@Nullable Tuple2<K,V>t) {
                 assert t!=null;
@@ -88,7 +118,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public DataSet<K> keys() {
-        return new ControlDataSet<>(Iterators.transform(source,new Function<Tuple2<K, V>, K>() {
+        return transformed(Iterators.transform(source,new Function<Tuple2<K, V>, K>() {
             @Nullable
             @Override
             public K apply(@Nullable Tuple2<K, V> t) {
@@ -100,22 +130,35 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public <Op extends SpliceOperation> PairDataSet<K, V> reduceByKey(final SpliceFunction2<Op,V, V, V> function2) {
-        Multimap<K,V> newMap = multimapFromIterator(source);
-        return new ControlPairDataSet<>(entryToTuple(Multimaps.<K,V>forMap(transformValues(newMap.asMap(),
-                new Function<Collection<V>, V>() {
+        // Reduces as the rows arrive, spilling to disk if there are too many keys to hold
+        SpillableHashAggregator<K,V,V> aggregator = new SpillableHashAggregator<>(new SpillableHashAggregator.Combiner<V, V>() {
             @Override
-            public V apply(@Nullable Collection<V> vs) {
-                try {
-                    V returnValue = null;
-                    for (V v : vs) {
-                        returnValue = function2.call(returnValue, v);
-                    }
-                    return returnValue;
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+            public V create(V value) throws Exception {
+                return function2.call(null, value);
             }
-        })).entries()));
+
+            @Override
+            public V mergeValue(V combined, V value) throws Exception {
+                return function2.call(combined, value);
+            }
+
+            @Override
+            public V mergeCombiners(V first, V second) throws Exception {
+                return function2.call(first, second);
+            }
+
+            @Override
+            public boolean accumulates() {
+                return false;
+            }
+        }, ControlUtils.spillThreshold());
+        try {
+            Iterator<Tuple2<K, V>> reduced = aggregator.aggregate(source);
+            closeWithOperation(reduced, function2);
+            return new ControlPairDataSet<>(reduced);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -125,23 +168,17 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     
     @Override
     public <Op extends SpliceOperation, U> DataSet<U> map(final SpliceFunction<Op,Tuple2<K, V>, U> function) {
-        return new ControlDataSet<U>(Iterators.transform(source,function));
+        try {
+            closeWithOperation(source, function);
+        } catch (StandardException e) {
+            throw new RuntimeException(e);
+        }
+        return transformed(Iterators.transform(source,function));
     }
 
     @Override
     public PairDataSet<K, V> sortByKey(final Comparator<K> comparator) {
-        /*
-         * -sf- this is done a bit goofily, so that we can support multiple versions of guava.
-         *
-         * This is essentially copying out FluentIterable.from(source).toSortedList(comparator) logic
-         * directly into the method, so that we can support the same code line from 12.0.1 on.
-         */
-        return new ControlPairDataSet<>(Ordering.from(new Comparator<Tuple2<K, V>>() {
-            @Override
-            public int compare(Tuple2<K, V> o1, Tuple2<K, V> o2) {
-                return comparator.compare(o1._1(), o2._1());
-            }
-        }).immutableSortedCopy(() -> source).iterator());
+        return sortByKey(comparator, null, -1);
     }
 
     @Override
@@ -150,6 +187,17 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
         return sortByKey(comparator);
     }
 
+    @Override
+    public PairDataSet<K, V> sortByKey(Comparator<K> comparator, String name, long limit) {
+        // Sorts in bounded memory, spilling sorted runs to disk if needed
+        ExternalSorter<K,V> sorter = new ExternalSorter<>(comparator, ControlUtils.spillThreshold());
+        try {
+            return new ControlPairDataSet<>(limit > 0 ? sorter.sortTopN(source, limit) : sorter.sort(source));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public PairDataSet<K, V> partitionBy(Partitioner<K> partitioner, Comparator<K> comparator) {
         // we don't need to partition
@@ -157,16 +205,40 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public PairDataSet<K, Iterable<V>> groupByKey() {
-        Multimap<K,V> newMap = multimapFromIterator(source);
-        return new ControlPairDataSet<>(FluentIterable.from(newMap.asMap().entrySet()).transform(new Function<Map.Entry<K, Collection<V>>, Tuple2<K, Iterable<V>>>() {
-            @Nullable
+        // Groups as the rows arrive, spilling to disk if the groups don't fit in memory together
+        SpillableHashAggregator<K,V,List<V>> aggregator = new SpillableHashAggregator<>(new SpillableHashAggregator.Combiner<V, List<V>>() {
+            @Override
+            public List<V> create(V value) {
+                List<V> values = new ArrayList<>(2);
+                values.add(value);
+                return values;
+            }
+
+            @Override
+            public List<V> mergeValue(List<V> combined, V value) {
+                combined.add(value);
+                return combined;
+            }
+
             @Override
-            public Tuple2<K, Iterable<V>> apply(@Nullable Map.Entry<K, Collection<V>> e) {
-                assert e!=null: "E cannot be null";
-                return new Tuple2<K, Iterable<V>>(e.getKey(), e.getValue());
+            public List<V> mergeCombiners(List<V> first, List<V> second) {
+                first.addAll(second);
+                return first;
             }
-        }).iterator());
+
+            @Override
+            public boolean accumulates() {
+                return true;
+            }
+        }, ControlUtils.spillThreshold());
+        try {
+            Iterator groups = aggregator.aggregate(source);
+            return new ControlPairDataSet<>((Iterator<Tuple2<K, Iterable<V>>>) groups);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -177,25 +249,12 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     @Override
     public <W> PairDataSet< K, Tuple2<V, Optional<W>>> hashLeftOuterJoin(final PairDataSet< K, W> rightDataSet) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet) rightDataSet).source);
-        return new ControlPairDataSet(Iterators.concat(Iterators.transform(source,new Function<Tuple2<K, V>, Iterable<Tuple2<K, Tuple2<V, Optional<W>>>>>() {
-            @Nullable
-            @Override
-            public Iterable<Tuple2<K, Tuple2<V, Optional<W>>>> apply(@Nullable Tuple2<K, V> t) {
-                assert t!=null: "T cannot be null";
-                List<Tuple2<K,Tuple2<V,Optional<W>>>> result = new ArrayList<>();
-                K key = t._1();
-                V value = t._2();
-                if (rightSide.containsKey(key)) {
-                    for (W rightValue : rightSide.get(key)) {
-                        result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.of(rightValue))));
-                    }
-                } else
-                    result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.<W>empty())));
-                return result;
-            }
-        })));
-
+        try {
+            return new ControlPairDataSet<>(ControlHashJoin.<K,V,W>leftOuterJoin(source,
+                    ((ControlPairDataSet<K,W>) rightDataSet).source, ControlUtils.spillThreshold()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -224,21 +283,12 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     @Override
     public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source);
-        return new ControlPairDataSet(Iterators.concat(Iterators.transform(source,new Function<Tuple2<K, V>, Iterator<Tuple2<K, Tuple2<V, W>>>>() {
-            @Nullable
-            @Override
-            public Iterator<Tuple2<K, Tuple2<V, W>>> apply(@Nullable Tuple2<K, V> t) {
-                assert t!=null: "Tuple cannot be null";
-                List<Tuple2<K,Tuple2<V,W>>> result = new ArrayList<>();
-                K key = t._1();
-                V value = t._2();
-                for (W rightValue : rightSide.get(key)) {
-                    result.add(new Tuple2<>(key,new Tuple2<>(value,rightValue)));
-                }
-                return result.iterator();
-            }
-        })));
+        try {
+            return new ControlPairDataSet<>(ControlHashJoin.<K,V,W>innerJoin(source,
+                    ((ControlPairDataSet<K,W>) rightDataSet).source, ControlUtils.spillThreshold()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -15,6 +15,10 @@
 
 package com.splicemachine.derby.stream.control;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
 import org.spark_project.guava.base.Function;
 import org.spark_project.guava.collect.*;
 import scala.Tuple2;
@@ -48,4 +52,35 @@ public class ControlUtils {
         }
         return newMap;
     }
+
+    /**
+     * @return the estimated number of bytes which the control side may hold in memory for a single
+     * aggregation, sort or join before spilling to disk
+     */
+    public static long spillThreshold(){
+        EngineDriver driver=EngineDriver.driver();
+        if(driver==null)
+            return Runtime.getRuntime().maxMemory()/20;
+        return driver.getConfiguration().getControlSideSpillThreshold();
+    }
+
+    /**
+     * Rough estimate of the heap held by a row (or any other object the control side keeps around).
+     */
+    public static long estimateSize(Object o){
+        if(o instanceof LocatedRow)
+            return 24l+estimateSize(((LocatedRow)o).getRow());
+        if(o instanceof ExecRow){
+            DataValueDescriptor[] fields=((ExecRow)o).getRowArray();
+            long size=32l+8l*fields.length;
+            for(DataValueDescriptor dvd : fields){
+                if(dvd!=null)
+                    size+=dvd.estimateMemoryUsage();
+            }
+            return size;
+        }
+        if(o instanceof Collection)
+            return 32l+8l*((Collection)o).size();
+        return 32l;
+    }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.primitives.Bytes;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.collect.Iterators;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts key-value pairs by key for the control side, using a bounded amount of memory.
+ *
+ * Input which fits under the spill threshold is simply sorted in memory. Otherwise sorted runs are
+ * generated by replacement selection (so that each run is, on average, twice the size of memory)
+ * and written, compressed, to local disk, and then combined with a k-way merge (in several passes,
+ * if there are more than {@link #MAX_FAN_IN} runs).
+ *
+ * Where it can, the sorter compares keys through a {@link SortKeyEncoder} rather than the comparator.
+ *
+ * When only the first N pairs are wanted, {@link #sortTopN} keeps just those in a heap.
+ */
+class ExternalSorter<K,V>{
+    private static final Logger LOG=Logger.getLogger(ExternalSorter.class);
+    static final int MAX_FAN_IN=64;
+    private static final long ENTRY_OVERHEAD=64l;
+
+    private final Comparator<K> comparator;
+    private final long spillThreshold;
+    private final Comparator<Entry<K,V>> entryOrder=new Comparator<Entry<K,V>>(){
+        @Override
+        public int compare(Entry<K,V> o1,Entry<K,V> o2){
+            return compareEntries(o1,o2);
+        }
+    };
+    private SortKeyEncoder keyEncoder;
+    private boolean encoderChosen;
+    private int runCount;
+
+    ExternalSorter(Comparator<K> comparator,long spillThreshold){
+        this.comparator=comparator;
+        this.spillThreshold=spillThreshold;
+    }
+
+    Iterator<Tuple2<K,V>> sort(Iterator<Tuple2<K,V>> source) throws IOException, StandardException{
+        List<Entry<K,V>> buffer=new ArrayList<>();
+        long size=0l;
+        while(source.hasNext()){
+            Entry<K,V> entry=entry(source.next());
+            buffer.add(entry);
+            size+=entry.size;
+            if(size>spillThreshold)
+                return merge(generateRuns(buffer,size,source));
+        }
+        Collections.sort(buffer,entryOrder);
+        return tuples(buffer.iterator());
+    }
+
+    /**
+     * Sort, returning only the first {@code limit} pairs.
+     */
+    Iterator<Tuple2<K,V>> sortTopN(Iterator<Tuple2<K,V>> source,long limit) throws IOException, StandardException{
+        if(limit<=0 || limit>=Integer.MAX_VALUE)
+            return sort(source);
+
+        //a max-heap, so that the head is the first entry to drop
+        PriorityQueue<Entry<K,V>> heap=new PriorityQueue<>((int)Math.min(limit,1024)+1,Collections.reverseOrder(entryOrder));
+        long size=0l;
+        while(source.hasNext()){
+            Entry<K,V> entry=entry(source.next());
+            if(heap.size()<limit){
+                heap.add(entry);
+                size+=entry.size;
+                if(size>spillThreshold){
+                    //the top N don't fit in memory, so sort everything and cut it off afterwards
+                    Iterator<Tuple2<K,V>> rest=Iterators.concat(tuples(heap.iterator()),source);
+                    return Iterators.limit(sort(rest),(int)limit);
+                }
+            }else if(compareEntries(entry,heap.peek())<0){
+                size-=heap.poll().size;
+                heap.add(entry);
+                size+=entry.size;
+            }
+        }
+        List<Entry<K,V>> result=new ArrayList<>(heap);
+        Collections.sort(result,entryOrder);
+        return tuples(result.iterator());
+    }
+
+    /**
+     * @return the number of sorted runs written to disk (including those of intermediate merges)
+     */
+    int getRunCount(){
+        return runCount;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /*
+     * Replacement selection: the heap holds as much as fits in memory. The smallest entry is written
+     * to the current run, and replaced by the next input entry, which joins the current run if it is
+     * not smaller than the one just written, and the next run otherwise.
+     */
+    private List<SpillFile<K,V>> generateRuns(List<Entry<K,V>> buffer,long size,Iterator<Tuple2<K,V>> source) throws IOException, StandardException{
+        PriorityQueue<Entry<K,V>> heap=new PriorityQueue<>(buffer.size(),new Comparator<Entry<K,V>>(){
+            @Override
+            public int compare(Entry<K,V> o1,Entry<K,V> o2){
+                if(o1.run!=o2.run) return o1.run<o2.run?-1:1;
+                return compareEntries(o1,o2);
+            }
+        });
+        heap.addAll(buffer);
+        buffer.clear();
+
+        List<SpillFile<K,V>> runs=new ArrayList<>();
+        try{
+            int currentRun=0;
+            SpillFile<K,V> run=newRun(runs);
+            while(!heap.isEmpty()){
+                Entry<K,V> last=heap.poll();
+                size-=last.size;
+                if(last.run!=currentRun){
+                    currentRun=last.run;
+                    run=newRun(runs);
+                }
+                run.append(last.key,last.value);
+
+                while(size<=spillThreshold && source.hasNext()){
+                    Entry<K,V> next=entry(source.next());
+                    next.run=compareEntries(next,last)<0?currentRun+1:currentRun;
+                    heap.add(next);
+                    size+=next.size;
+                }
+            }
+        }catch(IOException | RuntimeException e){
+            discard(runs);
+            throw e;
+        }
+        if(LOG.isDebugEnabled())
+            LOG.debug("Sorted input into "+runs.size()+" runs");
+        return runs;
+    }
+
+    private Iterator<Tuple2<K,V>> merge(List<SpillFile<K,V>> runs) throws IOException, StandardException{
+        try{
+            //reduce the number of runs until we can merge them all at once
+            while(runs.size()>MAX_FAN_IN){
+                List<SpillFile<K,V>> merged=new ArrayList<>(runs.size()/MAX_FAN_IN+1);
+                for(int start=0;start<runs.size();start+=MAX_FAN_IN){
+                    List<SpillFile<K,V>> group=runs.subList(start,Math.min(start+MAX_FAN_IN,runs.size()));
+                    SpillFile<K,V> run=newRun(merged);
+                    Iterator<Tuple2<K,V>> groupMerge=new MergeIterator(group);
+                    while(groupMerge.hasNext()){
+                        Tuple2<K,V> next=groupMerge.next();
+                        run.append(next._1(),next._2());
+                    }
+                }
+                runs=merged;
+            }
+            return new MergeIterator(runs);
+        }catch(IOException | StandardException | RuntimeException e){
+            discard(runs);
+            throw e;
+        }
+    }
+
+    private SpillFile<K,V> newRun(List<SpillFile<K,V>> runs) throws IOException{
+        SpillFile<K,V> run=SpillFile.create("controlSort",true);
+        runs.add(run);
+        runCount++;
+        return run;
+    }
+
+    private Entry<K,V> entry(Tuple2<K,V> tuple) throws StandardException{
+        K key=tuple._1();
+        if(!encoderChosen){
+            keyEncoder=SortKeyEncoder.create(comparator,key);
+            encoderChosen=true;
+        }
+        byte[] sortKey=keyEncoder==null?null:keyEncoder.encode(key);
+        long size=ENTRY_OVERHEAD+ControlUtils.estimateSize(key)+ControlUtils.estimateSize(tuple._2());
+        if(sortKey!=null) size+=sortKey.length;
+        return new Entry<>(key,tuple._2(),sortKey,size);
+    }
+
+    private int compareEntries(Entry<K,V> o1,Entry<K,V> o2){
+        if(o1.sortKey!=null && o2.sortKey!=null){
+            int c=Bytes.BASE_COMPARATOR.compare(o1.sortKey,o2.sortKey);
+            if(c!=0 || keyEncoder.isComplete()) return c;
+        }
+        return comparator.compare(o1.key,o2.key);
+    }
+
+    private static <K,V> Iterator<Tuple2<K,V>> tuples(final Iterator<Entry<K,V>> entries){
+        return new Iterator<Tuple2<K,V>>(){
+            @Override public boolean hasNext(){ return entries.hasNext(); }
+
+            @Override
+            public Tuple2<K,V> next(){
+                Entry<K,V> next=entries.next();
+                return new Tuple2<>(next.key,next.value);
+            }
+
+            @Override public void remove(){ throw new UnsupportedOperationException(); }
+        };
+    }
+
+    private static void discard(List<? extends SpillFile<?,?>> runs){
+        for(SpillFile<?,?> run : runs){
+            run.discard();
+        }
+    }
+
+    private static final class Entry<K,V>{
+        private final K key;
+        private final V value;
+        private final byte[] sortKey;
+        private final long size;
+        private int run;
+
+        Entry(K key,V value,byte[] sortKey,long size){
+            this.key=key;
+            this.value=value;
+            this.sortKey=sortKey;
+            this.size=size;
+        }
+    }
+
+    /*
+     * Merges sorted runs, holding the head of each run in a heap.
+     */
+    private class MergeIterator implements Iterator<Tuple2<K,V>>{
+        private final PriorityQueue<Cursor> heap;
+
+        MergeIterator(List<SpillFile<K,V>> runs) throws IOException, StandardException{
+            heap=new PriorityQueue<>(Math.max(runs.size(),1),new Comparator<Cursor>(){
+                @Override
+                public int compare(Cursor o1,Cursor o2){
+                    return compareEntries(o1.head,o2.head);
+                }
+            });
+            for(SpillFile<K,V> run : runs){
+                Cursor cursor=new Cursor(run.read());
+                if(cursor.advance())
+                    heap.add(cursor);
+            }
+        }
+
+        @Override
+        public boolean hasNext(){
+            return !heap.isEmpty();
+        }
+
+        @Override
+        public Tuple2<K,V> next(){
+            Cursor cursor=heap.poll();
+            if(cursor==null) throw new NoSuchElementException();
+            Entry<K,V> head=cursor.head;
+            try{
+                if(cursor.advance())
+                    heap.add(cursor);
+            }catch(StandardException se){
+                throw new RuntimeException(se);
+            }
+            return new Tuple2<>(head.key,head.value);
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class Cursor{
+        private final Iterator<Tuple2<K,V>> run;
+        private Entry<K,V> head;
+
+        Cursor(Iterator<Tuple2<K,V>> run){
+            this.run=run;
+        }
+
+        boolean advance() throws StandardException{
+            if(!run.hasNext()) return false;
+            head=entry(run.next());
+            return true;
+        }
+    }
+}
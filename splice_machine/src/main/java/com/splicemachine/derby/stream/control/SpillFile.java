@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import scala.Tuple2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local temporary file holding key-value pairs which the control side could not keep in memory.
+ *
+ * Pairs are appended with Java serialization, and read back exactly once, in the order in which
+ * they were written. The file is unlinked as soon as it is opened for reading (or {@link #discard()
+ * discarded}), so an abandoned reader leaves nothing behind once it is collected.
+ *
+ * Files which are written once and read once in full (such as sorted runs) can be compressed,
+ * trading a little CPU for a lot less disk I/O.
+ */
+public final class SpillFile<K,V>{
+    /*
+     * ObjectOutputStream holds on to every object it has written (so that it can write back-references),
+     * so every so often we have to make it forget.
+     */
+    private static final int RESET_INTERVAL=1024;
+
+    private final File file;
+    private final boolean compressed;
+    private ObjectOutputStream out;
+    private long numPairs;
+
+    private SpillFile(File file,boolean compressed) throws IOException{
+        this.file=file;
+        this.compressed=compressed;
+        OutputStream fileOut=new FileOutputStream(file);
+        try{
+            if(compressed){
+                fileOut=new GZIPOutputStream(fileOut,1<<16){
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+            }
+            this.out=new ObjectOutputStream(new BufferedOutputStream(fileOut,1<<16));
+        }catch(IOException ioe){
+            fileOut.close();
+            delete();
+            throw ioe;
+        }
+    }
+
+    public static <K,V> SpillFile<K,V> create(String prefix) throws IOException{
+        return create(prefix,false);
+    }
+
+    public static <K,V> SpillFile<K,V> create(String prefix,boolean compressed) throws IOException{
+        return new SpillFile<>(File.createTempFile(prefix,".spill"),compressed);
+    }
+
+    public void append(K key,V value) throws IOException{
+        assert out!=null: "Spill file has already been read";
+        out.writeObject(key);
+        out.writeObject(value);
+        numPairs++;
+        if(numPairs%RESET_INTERVAL==0)
+            out.reset();
+    }
+
+    public long size(){
+        return numPairs;
+    }
+
+    /**
+     * Finish writing, and read back all the pairs. May only be called once.
+     */
+    public Iterator<Tuple2<K,V>> read() throws IOException{
+        out.close();
+        out=null;
+        final ObjectInputStream in;
+        InputStream fileIn=new FileInputStream(file);
+        try{
+            if(compressed)
+                fileIn=new GZIPInputStream(fileIn,1<<16);
+            in=new ObjectInputStream(new BufferedInputStream(fileIn,1<<16));
+        }catch(IOException ioe){
+            fileIn.close();
+            throw ioe;
+        }finally{
+            delete();
+        }
+        return new Iterator<Tuple2<K,V>>(){
+            private long remaining=numPairs;
+
+            @Override
+            public boolean hasNext(){
+                if(remaining>0) return true;
+                close();
+                return false;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Tuple2<K,V> next(){
+                if(remaining<=0) throw new NoSuchElementException();
+                try{
+                    K key=(K)in.readObject();
+                    V value=(V)in.readObject();
+                    remaining--;
+                    return new Tuple2<>(key,value);
+                }catch(EOFException eofe){
+                    throw new IllegalStateException("Spill file ended after "+(numPairs-remaining)+" of "+numPairs+" pairs",eofe);
+                }catch(IOException | ClassNotFoundException e){
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void remove(){
+                throw new UnsupportedOperationException();
+            }
+
+            private void close(){
+                try{
+                    in.close();
+                }catch(IOException ignored){
+                    //the file is already gone, nothing else to clean up
+                }
+            }
+        };
+    }
+
+    /**
+     * Throw the file away without reading it.
+     */
+    public void discard(){
+        if(out!=null){
+            try{
+                out.close();
+            }catch(IOException ignored){
+                //we are deleting it anyway
+            }
+            out=null;
+        }
+        delete();
+    }
+
+    private void delete(){
+        if(!file.delete())
+            file.deleteOnExit();
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLSmallint;
+import com.splicemachine.db.iapi.types.SQLTinyint;
+import org.apache.log4j.Logger;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash aggregation for the control side, which reduces rows as they arrive and spills to local disk
+ * once its (estimated) memory use crosses a threshold.
+ *
+ * Values are folded into a per-key combined value by a {@link Combiner}, in the manner of Spark's
+ * {@code combineByKey}. While everything fits, the result comes straight out of the in-memory table.
+ * Otherwise the table is flushed into one of {@link #NUM_PARTITIONS} spill files by the hash of the key,
+ * and each partition is then aggregated on its own (a partition which still does not fit is partitioned
+ * again, with a different hash, up to {@link #MAX_DEPTH} times).
+ *
+ * When the keys are rows with a single integral column, the in-memory table is keyed by the primitive
+ * value instead of the row, which avoids hashing and comparing the rows.
+ */
+class SpillableHashAggregator<K,V,C>{
+    private static final Logger LOG=Logger.getLogger(SpillableHashAggregator.class);
+    static final int NUM_PARTITIONS=16;
+    static final int MAX_DEPTH=3;
+    private static final long ENTRY_OVERHEAD=48l;
+
+    /**
+     * How values are combined for a single key. Combined values must be associative: values
+     * combined before a spill are merged with those combined after it.
+     */
+    interface Combiner<V,C>{
+        C create(V value) throws Exception;
+
+        C mergeValue(C combined,V value) throws Exception;
+
+        C mergeCombiners(C first,C second) throws Exception;
+
+        /**
+         * @return true if a combined value grows with each value merged into it (e.g. a list), false
+         * if it stays the same size (e.g. a running aggregate)
+         */
+        boolean accumulates();
+    }
+
+    private final Combiner<V,C> combiner;
+    private final long spillThreshold;
+    private int spillCount;
+
+    SpillableHashAggregator(Combiner<V,C> combiner,long spillThreshold){
+        this.combiner=combiner;
+        this.spillThreshold=spillThreshold;
+    }
+
+    /**
+     * Consume {@code source}, and return the combined value for each key. Any partitions which had to
+     * be spilled are aggregated lazily, as the result is iterated; in that case the result is also
+     * {@link AutoCloseable}, and closing it removes the partitions which have not been read.
+     */
+    Iterator<Tuple2<K,C>> aggregate(Iterator<Tuple2<K,V>> source) throws Exception{
+        return new Pass(0).run(source,false);
+    }
+
+    /**
+     * @return the number of times the in-memory table was spilled to disk
+     */
+    int getSpillCount(){
+        return spillCount;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /*
+     * A single level of aggregation. The top level consumes raw values; the levels below it consume
+     * the combined values spilled by the level above.
+     */
+    private class Pass{
+        private final int depth;
+        private Table<K,C> table;
+        private long estimatedSize;
+        private List<SpillFile<K,C>> partitions;
+
+        Pass(int depth){
+            this.depth=depth;
+        }
+
+        @SuppressWarnings("unchecked")
+        Iterator<Tuple2<K,C>> run(Iterator<? extends Tuple2<K,?>> source,boolean combined) throws Exception{
+            while(source.hasNext()){
+                Tuple2<K,?> next=source.next();
+                K key=next._1();
+                if(table==null)
+                    table=Table.create(key);
+                C existing=table.get(key);
+                if(combined){
+                    C value=(C)next._2();
+                    if(existing==null){
+                        table=table.put(key,value);
+                        estimatedSize+=ENTRY_OVERHEAD+ControlUtils.estimateSize(key)+ControlUtils.estimateSize(value);
+                    }else{
+                        table=table.put(key,combiner.mergeCombiners(existing,value));
+                        if(combiner.accumulates())
+                            estimatedSize+=ControlUtils.estimateSize(value);
+                    }
+                }else{
+                    V value=(V)next._2();
+                    if(existing==null){
+                        table=table.put(key,combiner.create(value));
+                        estimatedSize+=ENTRY_OVERHEAD+ControlUtils.estimateSize(key)+ControlUtils.estimateSize(value);
+                    }else{
+                        table=table.put(key,combiner.mergeValue(existing,value));
+                        if(combiner.accumulates())
+                            estimatedSize+=ControlUtils.estimateSize(value);
+                    }
+                }
+                if(estimatedSize>spillThreshold && depth<MAX_DEPTH)
+                    spill();
+            }
+            if(table==null)
+                return Collections.emptyIterator();
+            if(partitions==null)
+                return table.iterator();
+
+            spill();
+            return new PartitionIterator(partitions,depth+1);
+        }
+
+        private void spill() throws IOException{
+            if(partitions==null){
+                partitions=new ArrayList<>(NUM_PARTITIONS);
+                try{
+                    for(int i=0;i<NUM_PARTITIONS;i++){
+                        partitions.add(SpillFile.<K,C>create("controlAggregate"));
+                    }
+                }catch(IOException ioe){
+                    discard(partitions);
+                    throw ioe;
+                }
+            }
+            if(LOG.isDebugEnabled())
+                LOG.debug("Spilling "+table.size()+" keys (~"+estimatedSize+" bytes) at depth "+depth);
+            try{
+                Iterator<Tuple2<K,C>> entries=table.iterator();
+                while(entries.hasNext()){
+                    Tuple2<K,C> entry=entries.next();
+                    partitions.get(partition(entry._1(),depth)).append(entry._1(),entry._2());
+                }
+            }catch(IOException ioe){
+                discard(partitions);
+                throw ioe;
+            }
+            spillCount++;
+            table=table.empty();
+            estimatedSize=0;
+        }
+    }
+
+    private class PartitionIterator implements Iterator<Tuple2<K,C>>, AutoCloseable{
+        private final List<SpillFile<K,C>> partitions;
+        private final int depth;
+        private int nextPartition;
+        private Iterator<Tuple2<K,C>> current=Collections.emptyIterator();
+
+        PartitionIterator(List<SpillFile<K,C>> partitions,int depth){
+            this.partitions=partitions;
+            this.depth=depth;
+        }
+
+        @Override
+        public boolean hasNext(){
+            while(!current.hasNext()){
+                if(nextPartition>=partitions.size()) return false;
+                SpillFile<K,C> partition=partitions.get(nextPartition);
+                partitions.set(nextPartition++,null); //let go of it once read
+                if(partition.size()==0){
+                    partition.discard();
+                    continue;
+                }
+                try{
+                    current=new Pass(depth).run(partition.read(),true);
+                }catch(RuntimeException re){
+                    throw re;
+                }catch(Exception e){
+                    throw new RuntimeException(e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Tuple2<K,C> next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Remove the partitions which have not been aggregated yet, including those spilled again
+         * by the partition being read.
+         */
+        @Override
+        public void close(){
+            if(current instanceof SpillableHashAggregator.PartitionIterator)
+                ((PartitionIterator)current).close();
+            current=Collections.emptyIterator();
+            discard(partitions);
+            Collections.fill(partitions,null);
+            nextPartition=partitions.size();
+        }
+    }
+
+    static int partition(Object key,int depth){
+        //mix in the depth, so that a partition which is spilled again splits differently
+        int h=key.hashCode()+depth*0x9E3779B9;
+        h^=h>>>16;
+        h*=0x85EBCA6B;
+        h^=h>>>13;
+        h*=0xC2B2AE35;
+        h^=h>>>16;
+        return h & (NUM_PARTITIONS-1);
+    }
+
+    private static void discard(List<? extends SpillFile<?,?>> files){
+        for(SpillFile<?,?> file : files){
+            if(file!=null)
+                file.discard();
+        }
+    }
+
+    /**
+     * The in-memory table of a single pass. {@link #put} may return a different table, if the
+     * table cannot hold the key it is given.
+     */
+    private static abstract class Table<K,C>{
+        static <K,C> Table<K,C> create(K firstKey) throws StandardException{
+            if(IntegralKeyTable.accepts(firstKey))
+                return new IntegralKeyTable<>();
+            return new ObjectTable<>();
+        }
+
+        abstract C get(K key) throws StandardException;
+
+        abstract Table<K,C> put(K key,C value) throws StandardException;
+
+        abstract int size();
+
+        abstract Iterator<Tuple2<K,C>> iterator();
+
+        /**
+         * @return an empty table of the same kind
+         */
+        abstract Table<K,C> empty();
+    }
+
+    private static final class ObjectTable<K,C> extends Table<K,C>{
+        private final Map<K,C> map=new HashMap<>();
+
+        @Override C get(K key){ return map.get(key); }
+
+        @Override
+        Table<K,C> put(K key,C value){
+            map.put(key,value);
+            return this;
+        }
+
+        @Override int size(){ return map.size(); }
+
+        @Override
+        Iterator<Tuple2<K,C>> iterator(){
+            return ControlUtils.entryToTuple(map.entrySet());
+        }
+
+        @Override Table<K,C> empty(){ return new ObjectTable<>(); }
+    }
+
+    /**
+     * Open-addressing table for rows with a single integral column, keyed by the column's value. The
+     * first row seen for each value is kept, so that it can be handed back as the key.
+     */
+    private static final class IntegralKeyTable<K,C> extends Table<K,C>{
+        private long[] keys=new long[64];
+        private Object[] rows=new Object[64]; //null if the slot is empty
+        private Object[] values=new Object[64];
+        private int size;
+        private K nullKey; //the row whose column is null, if any
+        private C nullValue;
+
+        static boolean accepts(Object key) throws StandardException{
+            if(!(key instanceof ExecRow)) return false;
+            ExecRow row=(ExecRow)key;
+            if(row.nColumns()!=1) return false;
+            DataValueDescriptor dvd=row.getColumn(1);
+            return dvd instanceof SQLLongint
+                    || dvd instanceof SQLInteger
+                    || dvd instanceof SQLSmallint
+                    || dvd instanceof SQLTinyint;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        C get(K key) throws StandardException{
+            if(!accepts(key)) return null;
+            DataValueDescriptor dvd=((ExecRow)key).getColumn(1);
+            if(dvd.isNull()) return nullValue;
+            long k=dvd.getLong();
+            int mask=keys.length-1;
+            for(int pos=slot(k,mask);rows[pos]!=null;pos=(pos+1) & mask){
+                if(keys[pos]==k) return (C)values[pos];
+            }
+            return null;
+        }
+
+        @Override
+        Table<K,C> put(K key,C value) throws StandardException{
+            if(!accepts(key)){
+                //not the kind of key we thought we'd see, so fall back to a general table
+                Table<K,C> table=new ObjectTable<>();
+                Iterator<Tuple2<K,C>> entries=iterator();
+                while(entries.hasNext()){
+                    Tuple2<K,C> entry=entries.next();
+                    table.put(entry._1(),entry._2());
+                }
+                return table.put(key,value);
+            }
+            DataValueDescriptor dvd=((ExecRow)key).getColumn(1);
+            if(dvd.isNull()){
+                if(nullKey==null) nullKey=key;
+                nullValue=value;
+                return this;
+            }
+            long k=dvd.getLong();
+            int mask=keys.length-1;
+            int pos=slot(k,mask);
+            while(rows[pos]!=null){
+                if(keys[pos]==k){
+                    values[pos]=value;
+                    return this;
+                }
+                pos=(pos+1) & mask;
+            }
+            keys[pos]=k;
+            rows[pos]=key;
+            values[pos]=value;
+            if(2*(++size)>keys.length)
+                resize();
+            return this;
+        }
+
+        @Override int size(){ return nullKey==null?size:size+1; }
+
+        @Override
+        Iterator<Tuple2<K,C>> iterator(){
+            return new Iterator<Tuple2<K,C>>(){
+                private int pos=-1;
+
+                @Override
+                public boolean hasNext(){
+                    if(pos<0 && nullKey!=null) return true;
+                    return advance()<rows.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Tuple2<K,C> next(){
+                    if(pos<0){
+                        pos=0;
+                        if(nullKey!=null)
+                            return new Tuple2<>(nullKey,nullValue);
+                    }
+                    int p=advance();
+                    if(p>=rows.length) throw new NoSuchElementException();
+                    pos=p+1;
+                    return new Tuple2<>((K)rows[p],(C)values[p]);
+                }
+
+                private int advance(){
+                    int p=Math.max(pos,0);
+                    while(p<rows.length && rows[p]==null) p++;
+                    return p;
+                }
+
+                @Override
+                public void remove(){
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override Table<K,C> empty(){ return new IntegralKeyTable<>(); }
+
+        private void resize(){
+            long[] oldKeys=keys;
+            Object[] oldRows=rows;
+            Object[] oldValues=values;
+            keys=new long[oldKeys.length<<1];
+            rows=new Object[keys.length];
+            values=new Object[keys.length];
+            int mask=keys.length-1;
+            for(int i=0;i<oldKeys.length;i++){
+                if(oldRows[i]==null) continue;
+                int pos=slot(oldKeys[i],mask);
+                while(rows[pos]!=null){
+                    pos=(pos+1) & mask;
+                }
+                keys[pos]=oldKeys[i];
+                rows[pos]=oldRows[i];
+                values[pos]=oldValues[i];
+            }
+        }
+
+        private static int slot(long key,int mask){
+            long h=key*0x9E3779B97F4A7C15L;
+            return (int)(h^(h>>>32)) & mask;
+        }
+    }
+}
@@ -50,6 +50,7 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
     CsvPreference preference = null;
     private static final char DEFAULT_COLUMN_DELIMITTER = ",".charAt(0);
     private static final char DEFAULT_STRIP_STRING = "\"".charAt(0);
+    private static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
     private String characterDelimiter;
     private String columnDelimiter;
     protected ExecRow execRow;
@@ -139,34 +140,7 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
                 String value = values.get(i - 1);
                 if (shouldBeNull(value,quotedColumns.valueAt(i-1)))
                     value = null;
-                switch(type){
-                    case StoredFormatIds.SQL_TIME_ID:
-                        if(calendar==null)
-                            calendar = new GregorianCalendar();
-                        if (timeFormat == null || value==null){
-                            ((DateTimeDataValue)dvd).setValue(value,calendar);
-                        }else
-                            dvd.setValue(SpliceDateFunctions.TO_TIME(value, timeFormat),calendar);
-                        break;
-                    case StoredFormatIds.SQL_DATE_ID:
-                        if(calendar==null)
-                            calendar = new GregorianCalendar();
-                        if (dateTimeFormat == null || value == null)
-                            ((DateTimeDataValue)dvd).setValue(value,calendar);
-                        else
-                            dvd.setValue(SpliceDateFunctions.TO_DATE(value, dateTimeFormat),calendar);
-                        break;
-                    case StoredFormatIds.SQL_TIMESTAMP_ID:
-                        if(calendar==null)
-                            calendar = new GregorianCalendar();
-                        if (timestampFormat == null || value==null)
-                            ((DateTimeDataValue)dvd).setValue(value,calendar);
-                        else
-                            dvd.setValue(SpliceDateFunctions.TO_TIMESTAMP(value, timestampFormat),calendar);
-                        break;
-                    default:
-                        dvd.setValue(value);
-                }
+                setValue(dvd, type, value);
             }
             return new LocatedRow(returnRow);
         } catch (Exception e) {
@@ -179,6 +153,77 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
     }
 
 
+    /**
+     * Same as {@link #call(List, BooleanList)}, for a line tokenized by a {@link ByteCSVTokenizer}. Numbers, and
+     * dates in the default format, are parsed straight from the bytes of their column; other columns (and numbers
+     * or dates the tokenizer cannot parse) are decoded and parsed like in {@link #call(List, BooleanList)}.
+     */
+    @SuppressFBWarnings(value = "REC_CATCH_EXCEPTION",justification = "Intentional")
+    public LocatedRow call(ByteCSVTokenizer tokens) throws Exception {
+        operationContext.recordRead();
+        try {
+            ExecRow returnRow = execRow.getClone();
+            for (int i = 1; i <= returnRow.nColumns(); i++) {
+                DataValueDescriptor dvd = returnRow.getColumn(i);
+                int type = dvd.getTypeFormatId();
+                if (tokens.getColumnCount()<=i-1) {
+                    throw StandardException.newException(SQLState.COLUMN_NUMBER_MISMATCH, execRow.nColumns(),tokens.getColumnCount());
+                }
+                int column = i - 1;
+                if (tokens.isNull(column)) {
+                    setValue(dvd, type, null);
+                    continue;
+                }
+                try {
+                    switch (type) {
+                        case StoredFormatIds.SQL_TINYINT_ID:
+                            setValue(dvd, tokens.parseLong(column), Byte.MIN_VALUE, Byte.MAX_VALUE);
+                            continue;
+                        case StoredFormatIds.SQL_SMALLINT_ID:
+                            setValue(dvd, tokens.parseLong(column), Short.MIN_VALUE, Short.MAX_VALUE);
+                            continue;
+                        case StoredFormatIds.SQL_INTEGER_ID:
+                            setValue(dvd, tokens.parseLong(column), Integer.MIN_VALUE, Integer.MAX_VALUE);
+                            continue;
+                        case StoredFormatIds.SQL_LONGINT_ID:
+                            dvd.setValue(tokens.parseLong(column));
+                            continue;
+                        case StoredFormatIds.SQL_DOUBLE_ID:
+                            dvd.setValue(tokens.parseDouble(column));
+                            continue;
+                        case StoredFormatIds.SQL_DECIMAL_ID:
+                            dvd.setBigDecimal(tokens.parseDecimal(column));
+                            continue;
+                        case StoredFormatIds.SQL_DATE_ID:
+                            if (dateTimeFormat == null || DEFAULT_DATE_FORMAT.equals(dateTimeFormat)) {
+                                dvd.setValue(tokens.parseDate(column));
+                                continue;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // not a value the tokenizer parses, let the type parse it
+                }
+                setValue(dvd, type, tokens.getString(column));
+            }
+            return new LocatedRow(returnRow);
+        } catch (Exception e) {
+            if (operationContext.isPermissive()) {
+                operationContext.recordBadRecord(e.getLocalizedMessage() + tokens, e);
+                return null;
+            }
+            throw e; // Not Permissive of errors
+        }
+    }
+
+    ByteCSVTokenizer newByteTokenizer() {
+        return new ByteCSVTokenizer(
+                characterDelimiter!=null && characterDelimiter.length()>0?characterDelimiter.charAt(0):DEFAULT_STRIP_STRING,
+                columnDelimiter!=null && columnDelimiter.length()>0?columnDelimiter.charAt(0):DEFAULT_COLUMN_DELIMITTER);
+    }
+
     void checkPreference() {
         if (preference==null){
             SConfiguration config =EngineDriver.driver().getConfiguration();
@@ -192,6 +237,44 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
 
     /* ****************************************************************************************************************/
     /*private helper methods*/
+    private void setValue(DataValueDescriptor dvd, int type, String value) throws Exception {
+        switch(type){
+            case StoredFormatIds.SQL_TIME_ID:
+                if(calendar==null)
+                    calendar = new GregorianCalendar();
+                if (timeFormat == null || value==null){
+                    ((DateTimeDataValue)dvd).setValue(value,calendar);
+                }else
+                    dvd.setValue(SpliceDateFunctions.TO_TIME(value, timeFormat),calendar);
+                break;
+            case StoredFormatIds.SQL_DATE_ID:
+                if(calendar==null)
+                    calendar = new GregorianCalendar();
+                if (dateTimeFormat == null || value == null)
+                    ((DateTimeDataValue)dvd).setValue(value,calendar);
+                else
+                    dvd.setValue(SpliceDateFunctions.TO_DATE(value, dateTimeFormat),calendar);
+                break;
+            case StoredFormatIds.SQL_TIMESTAMP_ID:
+                if(calendar==null)
+                    calendar = new GregorianCalendar();
+                if (timestampFormat == null || value==null)
+                    ((DateTimeDataValue)dvd).setValue(value,calendar);
+                else
+                    dvd.setValue(SpliceDateFunctions.TO_TIMESTAMP(value, timestampFormat),calendar);
+                break;
+            default:
+                dvd.setValue(value);
+        }
+    }
+
+    /* out of range values are left to the type, which knows how to report them */
+    private static void setValue(DataValueDescriptor dvd, long value, long min, long max) throws StandardException {
+        if (value<min || value>max)
+            throw new NumberFormatException();
+        dvd.setValue(value);
+    }
+
     @SuppressWarnings("SimplifiableIfStatement") //the logic is clearer this way, without a performance penalty
     private boolean shouldBeNull(String value,boolean wasQuoted){
         if(value==null) return true;
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.SQLDate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tokenizes a single line of UTF-8 encoded CSV without decoding it, following the rules of
+ * {@link QuoteTrackingTokenizer}: quotes may start anywhere in a column and are removed, a doubled quote
+ * within quotes stands for a single quote, spaces are kept, and an empty column is null.
+ *
+ * Columns are slices of the line itself. When a column holds quotes, the line is compacted in place to
+ * remove them, so the line must not be used afterwards. Since the delimiter and quote are ASCII, they can
+ * never be mistaken for a byte of a multi-byte character.
+ *
+ * The parse methods read a column straight from its bytes, and throw a {@link NumberFormatException} for
+ * anything they do not handle, in which case the caller falls back to parsing {@link #getString(int)}.
+ */
+@NotThreadSafe
+public class ByteCSVTokenizer{
+    private static final double[] POWERS_OF_TEN={
+            1e0,1e1,1e2,1e3,1e4,1e5,1e6,1e7,1e8,1e9,1e10,1e11,
+            1e12,1e13,1e14,1e15,1e16,1e17,1e18,1e19,1e20,1e21,1e22};
+    /* doubles whose digits fit in this many are parsed exactly by a single division */
+    private static final int MAX_DOUBLE_DIGITS=15;
+    private static final int MAX_LONG_DIGITS=18;
+
+    private final byte quoteChar;
+    private final byte delimiterChar;
+    private byte[] line;
+    private int[] offsets=new int[16];
+    private int[] lengths=new int[16];
+    private boolean[] quoted=new boolean[16];
+    private int columnCount;
+
+    public ByteCSVTokenizer(char quoteChar,char delimiterChar){
+        assert quoteChar<0x80 && delimiterChar<0x80:"Only ASCII quotes and delimiters can be matched on bytes";
+        this.quoteChar=(byte)quoteChar;
+        this.delimiterChar=(byte)delimiterChar;
+    }
+
+    /**
+     * Splits {@code line[offset, offset+length)} into columns.
+     *
+     * @throws IOException if a quoted column is not closed by the end of the line
+     */
+    public void tokenize(byte[] line,int offset,int length) throws IOException{
+        this.line=line;
+        columnCount=0;
+        int end=offset+length;
+        int write=offset;
+        int columnStart=offset;
+        boolean inQuotes=false;
+        boolean wasQuoted=false;
+        for(int read=offset;read<end;read++){
+            byte b=line[read];
+            if(inQuotes){
+                if(b==quoteChar){
+                    if(read+1<end && line[read+1]==quoteChar)
+                        read++;
+                    else{
+                        inQuotes=false;
+                        continue;
+                    }
+                }
+            }else if(b==delimiterChar){
+                addColumn(columnStart,write-columnStart,wasQuoted);
+                columnStart=write;
+                wasQuoted=false;
+                continue;
+            }else if(b==quoteChar){
+                inQuotes=true;
+                wasQuoted=true;
+                continue;
+            }
+            if(write!=read)
+                line[write]=b;
+            write++;
+        }
+        if(inQuotes)
+            throw new IOException("unexpected end of line while reading quoted column "+(columnCount+1));
+        addColumn(columnStart,write-columnStart,wasQuoted);
+    }
+
+    public int getColumnCount(){
+        return columnCount;
+    }
+
+    public boolean isQuoted(int column){
+        return quoted[column];
+    }
+
+    /**
+     * @return true if the column is null, which is the case when it is empty, or is an unquoted {@code null}
+     * (in any case)
+     */
+    public boolean isNull(int column){
+        int length=lengths[column];
+        if(length==0)
+            return true;
+        if(quoted[column] || length!=4)
+            return false;
+        int offset=offsets[column];
+        return (line[offset]|0x20)=='n' && (line[offset+1]|0x20)=='u'
+                && (line[offset+2]|0x20)=='l' && (line[offset+3]|0x20)=='l';
+    }
+
+    public String getString(int column){
+        return new String(line,offsets[column],lengths[column],StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses an integer made of an optional sign and up to 18 digits, surrounded by optional white space.
+     */
+    public long parseLong(int column){
+        int offset=offsets[column];
+        int end=trimEnd(offset,offset+lengths[column]);
+        offset=trimStart(offset,end);
+        boolean negative=false;
+        if(offset<end && (line[offset]=='-' || line[offset]=='+')){
+            negative=line[offset]=='-';
+            offset++;
+        }
+        if(offset==end || end-offset>MAX_LONG_DIGITS)
+            throw new NumberFormatException();
+        long value=0;
+        for(int i=offset;i<end;i++)
+            value=value*10+digit(line[i]);
+        return negative?-value:value;
+    }
+
+    /**
+     * Parses a plain decimal number (without exponent) of at most 15 digits, of which at most 22 follow the
+     * decimal point, surrounded by optional white space. Such a number is exactly the quotient of two
+     * doubles, so a single division gives the same correctly rounded value as {@link Double#parseDouble}.
+     */
+    public double parseDouble(int column){
+        int offset=offsets[column];
+        int end=trimEnd(offset,offset+lengths[column]);
+        offset=trimStart(offset,end);
+        boolean negative=false;
+        if(offset<end && (line[offset]=='-' || line[offset]=='+')){
+            negative=line[offset]=='-';
+            offset++;
+        }
+        long mantissa=0;
+        int digits=0;
+        int scale=-1;
+        for(int i=offset;i<end;i++){
+            byte b=line[i];
+            if(b=='.' && scale<0){
+                scale=0;
+                continue;
+            }
+            mantissa=mantissa*10+digit(b);
+            if(mantissa!=0)
+                digits++;
+            if(scale>=0)
+                scale++;
+        }
+        if(offset==end || (scale>=0 && end-offset==1) || digits>MAX_DOUBLE_DIGITS || scale>=POWERS_OF_TEN.length)
+            throw new NumberFormatException();
+        double value=scale>0?mantissa/POWERS_OF_TEN[scale]:mantissa;
+        return negative?-value:value;
+    }
+
+    /**
+     * Parses a plain decimal number (without exponent) of at most 18 digits, surrounded by optional white
+     * space, keeping the scale it is written with, as {@link BigDecimal#BigDecimal(String)} does.
+     */
+    public BigDecimal parseDecimal(int column){
+        int offset=offsets[column];
+        int end=trimEnd(offset,offset+lengths[column]);
+        offset=trimStart(offset,end);
+        boolean negative=false;
+        if(offset<end && (line[offset]=='-' || line[offset]=='+')){
+            negative=line[offset]=='-';
+            offset++;
+        }
+        long unscaled=0;
+        int digits=0;
+        int scale=-1;
+        for(int i=offset;i<end;i++){
+            byte b=line[i];
+            if(b=='.' && scale<0){
+                scale=0;
+                continue;
+            }
+            unscaled=unscaled*10+digit(b);
+            digits++;
+            if(scale>=0)
+                scale++;
+        }
+        if(digits==0 || digits>MAX_LONG_DIGITS)
+            throw new NumberFormatException();
+        return BigDecimal.valueOf(negative?-unscaled:unscaled,Math.max(scale,0));
+    }
+
+    /**
+     * Parses a {@code yyyy-MM-dd} date, with no surrounding white space, into the encoding of {@link SQLDate}.
+     * Only years from 1583 on are handled, since earlier dates are shifted by the Julian calendar when parsed
+     * through a {@link java.util.GregorianCalendar}.
+     */
+    public int parseDate(int column) throws StandardException{
+        int offset=offsets[column];
+        if(lengths[column]!=10 || line[offset+4]!='-' || line[offset+7]!='-')
+            throw new NumberFormatException();
+        int year=digit(line[offset])*1000+digit(line[offset+1])*100+digit(line[offset+2])*10+digit(line[offset+3]);
+        int month=digit(line[offset+5])*10+digit(line[offset+6]);
+        int day=digit(line[offset+8])*10+digit(line[offset+9]);
+        if(year<1583 || month<1 || month>12 || day<1 || day>daysInMonth(year,month))
+            throw new NumberFormatException();
+        return SQLDate.computeEncodedDate(year,month,day);
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder sb=new StringBuilder("[");
+        for(int i=0;i<columnCount;i++){
+            if(i>0)
+                sb.append(", ");
+            sb.append(lengths[i]==0?null:getString(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void addColumn(int offset,int length,boolean wasQuoted){
+        if(columnCount==offsets.length){
+            offsets=Arrays.copyOf(offsets,columnCount*2);
+            lengths=Arrays.copyOf(lengths,columnCount*2);
+            quoted=Arrays.copyOf(quoted,columnCount*2);
+        }
+        offsets[columnCount]=offset;
+        lengths[columnCount]=length;
+        quoted[columnCount]=wasQuoted;
+        columnCount++;
+    }
+
+    /* white space as String.trim() sees it */
+    private int trimStart(int offset,int end){
+        while(offset<end && (line[offset]&0xff)<=' ')
+            offset++;
+        return offset;
+    }
+
+    private int trimEnd(int offset,int end){
+        while(end>offset && (line[end-1]&0xff)<=' ')
+            end--;
+        return end;
+    }
+
+    private static int digit(byte b){
+        int digit=b-'0';
+        if(digit<0 || digit>9)
+            throw new NumberFormatException();
+        return digit;
+    }
+
+    private static int daysInMonth(int year,int month){
+        switch(month){
+            case 4: case 6: case 9: case 11:
+                return 30;
+            case 2:
+                return (year%4==0 && (year%100!=0 || year%400==0))?29:28;
+            default:
+                return 31;
+        }
+    }
+}
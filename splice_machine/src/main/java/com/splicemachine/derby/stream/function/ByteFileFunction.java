@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import org.apache.commons.collections.iterators.SingletonIterator;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Function for parsing the lines of a UTF-8 encoded CSV file, like {@link FileFunction}, but working on the raw
+ * bytes of each line: the line is tokenized in place and numbers and dates are parsed straight from its bytes,
+ * so only the character columns are ever decoded to Strings.
+ *
+ * Can only be used when the character and column delimiters are ASCII, see {@link #isSupported(String, String)}.
+ */
+@NotThreadSafe
+public class ByteFileFunction extends AbstractFileFunction<byte[]> {
+    private transient ByteCSVTokenizer tokenizer;
+
+    public ByteFileFunction() {
+        super();
+    }
+
+    public ByteFileFunction(String characterDelimiter, String columnDelimiter, ExecRow execRow, int[] columnIndex, String timeFormat,
+                            String dateTimeFormat, String timestampFormat, OperationContext operationContext) {
+        super(characterDelimiter, columnDelimiter, execRow, columnIndex, timeFormat,
+                dateTimeFormat, timestampFormat, operationContext);
+    }
+
+    /**
+     * @return true if lines delimited with these delimiters can be tokenized on bytes
+     */
+    public static boolean isSupported(String characterDelimiter, String columnDelimiter) {
+        return (characterDelimiter == null || characterDelimiter.isEmpty() || characterDelimiter.charAt(0) < 0x80)
+                && (columnDelimiter == null || columnDelimiter.isEmpty() || columnDelimiter.charAt(0) < 0x80);
+    }
+
+    @Override
+    public Iterator<LocatedRow> call(final byte[] line) throws Exception {
+        if (operationContext.isFailed())
+            return Collections.<LocatedRow>emptyList().iterator();
+        if (tokenizer == null)
+            tokenizer = newByteTokenizer();
+        try {
+            tokenizer.tokenize(line, 0, line.length);
+            LocatedRow lr = call(tokenizer);
+            return lr==null?Collections.<LocatedRow>emptyList().iterator():new SingletonIterator(lr);
+        } catch (Exception e) {
+            if (operationContext.isPermissive()) {
+                operationContext.recordBadRecord(e.getLocalizedMessage(), e);
+                return Collections.<LocatedRow>emptyList().iterator();
+            }
+            throw StandardException.plainWrapException(e);
+        }
+    }
+}
@@ -51,6 +51,20 @@ public class RowComparator implements Comparator<ExecRow>, Serializable, Externa
         this.nullsOrderedLow = nullsOrderedLow;
     }
 
+    /**
+     * @return for each column, true if it is sorted in descending order, or null if all columns are ascending
+     */
+    public boolean[] getDescColumns() {
+        return descColumns;
+    }
+
+    /**
+     * @return for each column, true if nulls compare lower than any value, or null if they always do
+     */
+    public boolean[] getNullsOrderedLow() {
+        return nullsOrderedLow;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeBoolean(descColumns!=null);
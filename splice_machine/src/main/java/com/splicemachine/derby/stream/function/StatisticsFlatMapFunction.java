@@ -17,6 +17,7 @@ package com.splicemachine.derby.stream.function;
 
 import com.splicemachine.db.iapi.services.io.ArrayUtil;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ItemStatistics;
 import com.splicemachine.db.impl.sql.execute.StatisticsRow;
@@ -39,15 +40,36 @@ public class StatisticsFlatMapFunction
     protected long conglomId;
     protected int[] columnPositionMap;
     protected ExecRow template;
+    protected double sampleFraction = 1.0d;
+    protected int[][] columnGroups = new int[0][];
 
     public StatisticsFlatMapFunction() {
     }
 
     public StatisticsFlatMapFunction(long conglomId, int[] columnPositionMap, ExecRow template) {
+        this(conglomId,columnPositionMap,template,1.0d);
+    }
+
+    /**
+     * @param sampleFraction the fraction of rows the underlying scan returns; row counts and sizes are scaled
+     *                       back up by its inverse.
+     */
+    public StatisticsFlatMapFunction(long conglomId, int[] columnPositionMap, ExecRow template, double sampleFraction) {
+        this(conglomId,columnPositionMap,template,sampleFraction,new int[0][]);
+    }
+
+    /**
+     * @param columnGroups the column positions of each group of columns to collect joint statistics for
+     */
+    public StatisticsFlatMapFunction(long conglomId, int[] columnPositionMap, ExecRow template, double sampleFraction,
+                                     int[][] columnGroups) {
         assert columnPositionMap != null:"columnPositionMap is null";
+        assert sampleFraction>0d && sampleFraction<=1.0d:"sampleFraction must be in (0,1]";
         this.conglomId = conglomId;
         this.columnPositionMap = columnPositionMap;
         this.template = template;
+        this.sampleFraction = sampleFraction;
+        this.columnGroups = columnGroups;
     }
 
     @Override
@@ -55,6 +77,10 @@ public class StatisticsFlatMapFunction
         out.writeLong(conglomId);
         ArrayUtil.writeIntArray(out,columnPositionMap);
         out.writeObject(template);
+        out.writeDouble(sampleFraction);
+        out.writeInt(columnGroups.length);
+        for (int[] columnGroup : columnGroups)
+            ArrayUtil.writeIntArray(out,columnGroup);
     }
 
     @Override
@@ -63,6 +89,10 @@ public class StatisticsFlatMapFunction
         conglomId = in.readLong();
         columnPositionMap = ArrayUtil.readIntArray(in);
         template = (ExecRow) in.readObject();
+        sampleFraction = in.readDouble();
+        columnGroups = new int[in.readInt()][];
+        for (int i = 0; i < columnGroups.length; i++)
+            columnGroups[i] = ArrayUtil.readIntArray(in);
     }
 
     @SuppressWarnings("unchecked")
@@ -74,7 +104,7 @@ public class StatisticsFlatMapFunction
         while (locatedRows.hasNext()) {
             LocatedRow locatedRow = locatedRows.next();
             if (!initialized) {
-                statisticsRow = new StatisticsRow(locatedRow.getRow());
+                statisticsRow = new StatisticsRow(locatedRow.getRow(),columnGroups,columnPositionMap);
                 initialized = true;
             }
             rowWidth += locatedRow.getRow().getRowSize();
@@ -90,7 +120,14 @@ public class StatisticsFlatMapFunction
                     continue;
                 rows.add(new LocatedRow(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),columnPositionMap[i],itemStatistics[i])));
             }
-            rows.add(new LocatedRow(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),rowCount,rowCount*((long)meanRowWidth),meanRowWidth)));
+            ColumnGroupStatisticsImpl[] columnGroupStatistics = statisticsRow.getColumnGroupStatistics();
+            for(int i=0;i<columnGroupStatistics.length;i++){
+                rows.add(new LocatedRow(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),
+                        StatisticsAdmin.columnGroupId(i),columnGroupStatistics[i])));
+            }
+            long estimatedRowCount = sampleFraction<1.0d ? Math.round(rowCount/sampleFraction) : rowCount;
+            rows.add(new LocatedRow(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),
+                    estimatedRowCount,estimatedRowCount*((long)meanRowWidth),meanRowWidth,sampleFraction)));
             return rows.iterator();
         } else {
             rows = new ArrayList<>(columnPositionMap.length);
@@ -99,7 +136,7 @@ public class StatisticsFlatMapFunction
                 rows.add(new LocatedRow(StatisticsAdmin.generateRowFromStats(conglomId, SITableScanner.regionId.get(), columnPositionMap[i], new ColumnStatisticsImpl(template.getColumn(columnPositionMap[i])) )));
             }
             rows.add(new LocatedRow(
-                    StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),0,0,0)));
+                    StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),0,0,0,sampleFraction)));
             return rows.iterator();
         }
     }
@@ -26,6 +26,7 @@ import com.splicemachine.derby.iapi.sql.execute.DataSetProcessorFactory;
 import com.splicemachine.derby.impl.sql.JoinTable;
 import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
 import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.PartitionedBroadcastJoin;
 import com.splicemachine.derby.stream.function.SpliceFlatMapFunction;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
 import com.splicemachine.derby.stream.iapi.OperationContext;
@@ -38,8 +39,7 @@ import java.util.concurrent.Callable;
 /**
  * Created by dgomezferro on 11/4/15.
  */
-public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends SpliceFlatMapFunction<JoinOperation, Iterator<In>, Out> {
-    private static final BroadcastJoinCache broadcastJoinCache = new BroadcastJoinCache();
+public abstract class AbstractBroadcastJoinFlatMapFunction<In extends LocatedRow, Out> extends SpliceFlatMapFunction<JoinOperation, Iterator<In>, Out> {
     private JoinOperation operation;
 
     public AbstractBroadcastJoinFlatMapFunction() {
@@ -79,7 +79,19 @@ public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends Spli
             }
         };
         ExecRow leftTemplate = operation.getLeftOperation().getExecRowDefinition();
-        joinTable = broadcastJoinCache.get(operation.getSequenceId(), rhsLoader, operation.getRightHashKeys(), operation.getLeftHashKeys(), leftTemplate).newTable();
+        BroadcastJoinCache cache = BroadcastJoinCache.getInstance();
+        try {
+            joinTable = cache.get(operation.getSequenceId(), rhsLoader, operation.getRightHashKeys(), operation.getLeftHashKeys(), leftTemplate).newTable();
+        } catch (BroadcastJoinCache.MemoryBudgetExceededException e) {
+            // the right side is too big to broadcast, so join it with our rows one hash partition at a time
+            return PartitionedBroadcastJoin.join(cache, rhsLoader, locatedRows, operation.getRightHashKeys(), operation.getLeftHashKeys(), leftTemplate,
+                    new PartitionedBroadcastJoin.Joiner<In, Out>() {
+                        @Override
+                        public Iterator<Out> join(Iterator<In> leftRows, JoinTable rightTable) {
+                            return call(leftRows, rightTable).iterator();
+                        }
+                    });
+        }
 
         return call(locatedRows, joinTable).iterator();
     }
@@ -93,6 +93,12 @@ public interface DataSetProcessor {
 
     DataSet<String> readTextFile(String path, SpliceOperation op) throws StandardException;
 
+    /**
+     * Reads a text file like {@link #readTextFile(String, SpliceOperation)}, but returns the raw bytes of each
+     * line (without its line terminator) rather than decoding them.
+     */
+    DataSet<byte[]> readTextFileBytes(String path, SpliceOperation op) throws StandardException;
+
     /**
      * Gets an empty PairDataSet
      */
@@ -141,6 +141,20 @@ public interface PairDataSet<K,V> {
      * @return
      */
     PairDataSet<K,V> sortByKey(Comparator<K> comparator,String name);
+    /**
+     *
+     * Sort by key utilizing the comparator provided, when only the first {@code limit}
+     * pairs will be used. The limit is a hint: implementations may return more pairs than that,
+     * so the caller still has to apply it.
+     *
+     * @see Comparator
+     *
+     * @param comparator
+     * @param name
+     * @param limit the number of pairs which will be used, or a value &lt;= 0 if all of them are
+     * @return
+     */
+    PairDataSet<K,V> sortByKey(Comparator<K> comparator,String name,long limit);
     /**
      *
      * Partition the pair DataSet via a custom partitioner and comparator.
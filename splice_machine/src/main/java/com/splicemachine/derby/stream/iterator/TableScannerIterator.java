@@ -24,6 +24,7 @@ import com.splicemachine.derby.impl.sql.execute.operations.ScanOperation;
 import com.splicemachine.derby.impl.sql.execute.operations.scanner.SITableScanner;
 import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
 import com.splicemachine.derby.stream.utils.StreamLogUtils;
+import com.splicemachine.derby.utils.PreparedQualifiers;
 import com.splicemachine.derby.utils.Scans;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.Closeable;
@@ -31,7 +32,11 @@ import java.io.IOException;
 import java.util.Iterator;
 
 /**
+ * Iterates over the rows of a table scan, applying the scan qualifiers.
  *
+ * Rows are qualified against the scanner's re-used row, and only those which qualify are copied. When
+ * the qualifiers can be resolved once for the whole scan (see {@link PreparedQualifiers}), they are not
+ * re-evaluated for every row.
  */
 @NotThreadSafe
 public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<LocatedRow>, Closeable {
@@ -46,6 +51,7 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
     protected Qualifier[][] qualifiers;
     protected int[] baseColumnMap;
     protected boolean rowIdKey; // HACK Row ID Qualifiers point to the projection above them ?  TODO JL
+    private PreparedQualifiers preparedQualifiers; //null if the qualifiers are resolved for every row
 
     public TableScannerIterator(TableScannerBuilder siTableBuilder, SpliceOperation operation) throws StandardException {
         this.siTableBuilder = siTableBuilder;
@@ -55,6 +61,8 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
             this.baseColumnMap = ((ScanOperation) operation).getOperationInformation().getBaseColumnMap();
             this.rowIdKey = ((ScanOperation) operation).getRowIdKey();
         }
+        if (!rowIdKey && PreparedQualifiers.canEvaluate(qualifiers))
+            this.preparedQualifiers = new PreparedQualifiers(qualifiers, baseColumnMap, siTableBuilder.getOptionalProbeValue());
     }
 
     @Override
@@ -72,6 +80,8 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
                 initialized = true;
                 tableScanner = siTableBuilder.build();
                 tableScanner.open();
+                if (preparedQualifiers != null)
+                    preparedQualifiers.prepare();
                 if (operation!= null) {
                     operation.registerCloseable(new Closeable() {
                         @Override
@@ -95,7 +105,10 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
                     return hasNext;
                 } else {
                     hasNext = true;
-                    if (qualifiers == null || rowIdKey || Scans.qualifyRecordFromRow(execRow.getRowArray(), qualifiers,baseColumnMap,siTableBuilder.getOptionalProbeValue() ))
+                    if (qualifiers == null || rowIdKey)
+                        break;
+                    if (preparedQualifiers != null ? preparedQualifiers.qualify(execRow) :
+                            Scans.qualifyRecordFromRow(execRow.getRowArray(), qualifiers,baseColumnMap,siTableBuilder.getOptionalProbeValue() ))
                         break;
                 }
             }
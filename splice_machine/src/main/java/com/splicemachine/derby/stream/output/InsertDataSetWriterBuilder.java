@@ -38,4 +38,10 @@ public interface InsertDataSetWriterBuilder extends DataSetWriterBuilder{
     InsertDataSetWriterBuilder pkCols(int[] keyCols);
 
     InsertDataSetWriterBuilder tableVersion(String tableVersion);
+
+    /**
+     * @param bulkImportDirectory the directory in which to write HFiles which are then bulk loaded into the
+     *                            table and its indexes, or null to write through the write pipeline
+     */
+    InsertDataSetWriterBuilder bulkImportDirectory(String bulkImportDirectory);
 }
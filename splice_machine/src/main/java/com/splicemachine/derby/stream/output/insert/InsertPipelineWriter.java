@@ -127,6 +127,21 @@ public class InsertPipelineWriter extends AbstractPipelineWriter<ExecRow>{
         }
     }
 
+    /**
+     * Encodes a row the way {@link #insert(ExecRow)} writes it, without writing it anywhere. Used by bulk
+     * imports, which write the rows to HFiles rather than through the write pipeline.
+     */
+    public KVPair encode(ExecRow execRow) throws StandardException {
+        if (encoder == null)
+            encoder = new PairEncoder(getKeyEncoder(), getRowHash(), dataType);
+        beforeRow(execRow);
+        try {
+            return encoder.encode(execRow);
+        } catch (IOException e) {
+            throw Exceptions.parseException(e);
+        }
+    }
+
     public void insert(Iterator<ExecRow> execRows) throws StandardException {
         while (execRows.hasNext())
             insert(execRows.next());
@@ -142,6 +157,14 @@ public class InsertPipelineWriter extends AbstractPipelineWriter<ExecRow>{
 
 
     public KeyEncoder getKeyEncoder() throws StandardException {
+        return getKeyEncoder(pkCols,tableVersion,execRowDefinition);
+    }
+
+    /**
+     * @return the encoder of the row keys of a table with the given primary key columns (1-based), or of
+     * salted unique keys when the table has no primary key
+     */
+    public static KeyEncoder getKeyEncoder(int[] pkCols, String tableVersion, ExecRow execRowDefinition) throws StandardException {
         HashPrefix prefix;
         DataHash dataHash;
         KeyPostfix postfix = NoOpPostfix.INSTANCE;
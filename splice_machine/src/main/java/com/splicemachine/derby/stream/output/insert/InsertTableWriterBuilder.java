@@ -52,6 +52,7 @@ public abstract class InsertTableWriterBuilder implements Externalizable,InsertD
     protected TxnView txn;
     protected OperationContext operationContext;
     protected boolean isUpsert;
+    protected String bulkImportDirectory;
 
     @Override
     @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
@@ -83,6 +84,12 @@ public abstract class InsertTableWriterBuilder implements Externalizable,InsertD
         return this;
     }
 
+    @Override
+    public InsertDataSetWriterBuilder bulkImportDirectory(String bulkImportDirectory) {
+        this.bulkImportDirectory = bulkImportDirectory;
+        return this;
+    }
+
     @Override
     public InsertDataSetWriterBuilder txn(TxnView txn) {
         this.txn = txn;
@@ -164,6 +171,9 @@ public abstract class InsertTableWriterBuilder implements Externalizable,InsertD
                 out.writeObject(spliceSequences[i]);
             }
             out.writeLong(heapConglom);
+            out.writeBoolean(bulkImportDirectory!=null);
+            if (bulkImportDirectory!=null)
+                out.writeUTF(bulkImportDirectory);
         } catch (Exception e) {
             throw new IOException(e);
         }
@@ -187,6 +197,8 @@ public abstract class InsertTableWriterBuilder implements Externalizable,InsertD
         for (int i =0; i< spliceSequences.length; i++)
             spliceSequences[i] = (SpliceSequence) in.readObject();
         heapConglom = in.readLong();
+        if (in.readBoolean())
+            bulkImportDirectory = in.readUTF();
     }
 
     @Override
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.utils;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataType;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Applies scan qualifiers to the rows of a scan, with the same semantics as
+ * {@link Scans#qualifyRecordFromRow(Object[], Qualifier[][], int[], DataValueDescriptor)}.
+ *
+ * The qualifier values are resolved once by {@link #prepare()} rather than for every row, and numeric
+ * constants are kept as primitives, so that a numeric column is compared with a primitive comparison
+ * instead of a virtual compare through the DataValueDescriptor. Other types are compared through the
+ * DataValueDescriptor as usual.
+ *
+ * Nothing of a qualified row is kept, so the scanner's re-used row can be qualified directly, and only
+ * the rows which qualify need to be copied.
+ *
+ * Only qualifiers whose value cannot change from row to row can be evaluated this way; see
+ * {@link #canEvaluate(Qualifier[][])}.
+ */
+@NotThreadSafe
+public class PreparedQualifiers{
+    private static final int OTHER=0;
+    private static final int INTEGRAL=1;
+    private static final int FLOATING=2;
+
+    private final Qualifier[][] qualifiers;
+    private final int[] baseColumnMap;
+    private final DataValueDescriptor probeValue;
+
+    private final int[][] columns;
+    private final DataValueDescriptor[][] orderables;
+    private final int[][] orderableTypes; //OTHER if the column has to be compared through the DataValueDescriptor
+    private final long[][] longValues;
+    private final double[][] doubleValues;
+    private final boolean[][] nullValues;
+    private boolean rejectAll;
+
+    public PreparedQualifiers(Qualifier[][] qualifiers,int[] baseColumnMap,DataValueDescriptor probeValue){
+        assert qualifiers!=null:"qualifier[][] passed in is null";
+        this.qualifiers=qualifiers;
+        this.baseColumnMap=baseColumnMap;
+        this.probeValue=probeValue;
+        this.columns=new int[qualifiers.length][];
+        this.orderables=new DataValueDescriptor[qualifiers.length][];
+        this.orderableTypes=new int[qualifiers.length][];
+        this.longValues=new long[qualifiers.length][];
+        this.doubleValues=new double[qualifiers.length][];
+        this.nullValues=new boolean[qualifiers.length][];
+        for(int i=0;i<qualifiers.length;i++){
+            int length=qualifiers[i].length;
+            columns[i]=new int[length];
+            for(int j=0;j<length;j++){
+                columns[i][j]=column(qualifiers[i][j]);
+            }
+            orderables[i]=new DataValueDescriptor[length];
+            orderableTypes[i]=new int[length];
+            longValues[i]=new long[length];
+            doubleValues[i]=new double[length];
+            nullValues[i]=new boolean[length];
+        }
+    }
+
+    /**
+     * @return true if every qualifier can be evaluated once per scan. Variant qualifiers have
+     * to be re-evaluated for each row, so they must go through
+     * {@link Scans#qualifyRecordFromRow(Object[], Qualifier[][], int[], DataValueDescriptor)}.
+     */
+    public static boolean canEvaluate(Qualifier[][] qualifiers){
+        if(qualifiers==null) return false;
+        for(Qualifier[] clause : qualifiers){
+            for(Qualifier q : clause){
+                if(q.getVariantType()==Qualifier.VARIANT) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolve the values of the qualifiers. Must be called before rows are qualified, and again
+     * whenever the values may have changed (when the scan is re-opened).
+     *
+     * @throws StandardException if a value cannot be read
+     */
+    public void prepare() throws StandardException{
+        rejectAll=false;
+        for(int i=0;i<qualifiers.length;i++){
+            for(int j=0;j<qualifiers[i].length;j++){
+                Qualifier q=qualifiers[i][j];
+                q.clearOrderableCache();
+                DataValueDescriptor orderable=probeValue==null || i!=0 || j!=0?q.getOrderable():probeValue;
+                boolean isNull=filterNull(q.getOperator(),orderable,q.getVariantType());
+                if(isNull && i==0)
+                    rejectAll=true; //a null in the AND clause rejects every row
+                orderables[i][j]=orderable;
+                nullValues[i][j]=isNull;
+                int type=orderable==null || isNull || orderable.isNull() || q.getOrderedNulls()?OTHER:typeOf(orderable);
+                orderableTypes[i][j]=type;
+                if(type==INTEGRAL)
+                    longValues[i][j]=orderable.getLong();
+                if(type!=OTHER)
+                    doubleValues[i][j]=orderable.getDouble();
+            }
+        }
+    }
+
+    /**
+     * Qualify a single row. The row is only read, so it may be one which the scanner re-uses.
+     *
+     * @param row the row to qualify
+     * @return true if the row qualifies
+     * @throws StandardException if a comparison fails
+     */
+    public boolean qualify(ExecRow row) throws StandardException{
+        if(rejectAll) return false;
+        DataValueDescriptor[] rowArray=row.getRowArray();
+
+        // process each AND clause
+        for(int j=0;j<qualifiers[0].length;j++){
+            if(!matches(0,j,rowArray)) return false;
+        }
+
+        // all the qual[0] and terms passed, now process the OR clauses
+        for(int and_idx=1;and_idx<qualifiers.length;and_idx++){
+            boolean passed=false;
+            for(int or_idx=0;or_idx<qualifiers[and_idx].length;or_idx++){
+                if(nullValues[and_idx][or_idx]){
+                    //Scans.qualifyRecordFromRow rejects every row which reaches this qualifier
+                    return false;
+                }
+                if(matches(and_idx,or_idx,rowArray)){
+                    passed=true;
+                    break;
+                }
+            }
+            if(!passed) return false;
+        }
+        return true;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private boolean matches(int clause,int position,DataValueDescriptor[] rowArray) throws StandardException{
+        Qualifier q=qualifiers[clause][position];
+        DataValueDescriptor columnValue=rowArray[columns[clause][position]];
+        int orderableType=orderableTypes[clause][position];
+        int columnType=orderableType==OTHER?OTHER:typeOf(columnValue);
+        boolean match;
+        if(columnType==OTHER){
+            match=columnValue.compare(q.getOperator(),orderables[clause][position],q.getOrderedNulls(),q.getUnknownRV());
+        }else if(columnValue.isNull()){
+            match=q.getUnknownRV();
+        }else if(columnType==INTEGRAL && orderableType==INTEGRAL){
+            match=compare(q.getOperator(),columnValue.getLong(),longValues[clause][position]);
+        }else{
+            match=compare(q.getOperator(),columnValue.getDouble(),doubleValues[clause][position]);
+        }
+        return q.negateCompareResult()?!match:match;
+    }
+
+    private static boolean compare(int operator,long value,long constant){
+        switch(operator){
+            case DataType.ORDER_OP_LESSTHAN: return value<constant;
+            case DataType.ORDER_OP_LESSOREQUALS: return value<=constant;
+            case DataType.ORDER_OP_EQUALS: return value==constant;
+            case DataType.ORDER_OP_GREATERTHAN: return value>constant;
+            case DataType.ORDER_OP_GREATEROREQUALS: return value>=constant;
+            default:
+                throw new IllegalArgumentException("Unknown operator "+operator);
+        }
+    }
+
+    private static boolean compare(int operator,double value,double constant){
+        switch(operator){
+            case DataType.ORDER_OP_LESSTHAN: return value<constant;
+            case DataType.ORDER_OP_LESSOREQUALS: return value<=constant;
+            case DataType.ORDER_OP_EQUALS: return value==constant;
+            case DataType.ORDER_OP_GREATERTHAN: return value>constant;
+            case DataType.ORDER_OP_GREATEROREQUALS: return value>=constant;
+            default:
+                throw new IllegalArgumentException("Unknown operator "+operator);
+        }
+    }
+
+    private int column(Qualifier q){
+        return baseColumnMap!=null?baseColumnMap[q.getStoragePosition()]:q.getStoragePosition();
+    }
+
+    private static int typeOf(DataValueDescriptor dvd){
+        switch(dvd.getTypeFormatId()){
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return INTEGRAL;
+            case StoredFormatIds.SQL_REAL_ID:
+            case StoredFormatIds.SQL_DOUBLE_ID:
+                return FLOATING;
+            default:
+                return OTHER;
+        }
+    }
+
+    /*
+     * Same as Scans.filterNull, for a qualifier whose value is known for the whole scan.
+     */
+    private static boolean filterNull(int operator,DataValueDescriptor orderable,int variantType){
+        if(orderable==null || orderable.isNull()){
+            switch(operator){
+                case DataType.ORDER_OP_LESSTHAN:
+                case DataType.ORDER_OP_LESSOREQUALS:
+                case DataType.ORDER_OP_GREATERTHAN:
+                case DataType.ORDER_OP_GREATEROREQUALS:
+                    return true;
+                case DataType.ORDER_OP_EQUALS:
+                    return variantType!=1;
+            }
+        }
+        return false;
+    }
+}
@@ -22,6 +22,7 @@ import com.splicemachine.derby.utils.stats.StatsResult;
 import org.spark_project.guava.collect.FluentIterable;
 import org.spark_project.guava.collect.Lists;
 import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.PublicAPI;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.FormatableBitSet;
@@ -57,7 +58,10 @@ import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.protobuf.ProtoUtil;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.storage.DataScan;
+import com.splicemachine.storage.PartitionLoad;
 import com.splicemachine.utils.Pair;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
@@ -195,7 +199,8 @@ public class StatisticsAdmin extends BaseAdminProcedures {
                 if (td.getStoredAs() != null)
                     continue; // Cannot run stats currently on external tables.
                 display.put(td.getHeapConglomerateId(),Pair.newPair(schema,td.getName()));
-                futures.add(collectTableStatistics(td, txn, conn));
+                double sampleFraction = staleOnly ? chooseSampleFraction(td) : 1.0d;
+                futures.add(collectTableStatistics(td, txn, conn, sampleFraction));
             }
             IteratorNoPutResultSet resultsToWrap = wrapResults(conn,
             displayTableStatistics(futures,dd,transactionExecute,display));
@@ -248,11 +253,35 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         }
     }
 
-    @SuppressWarnings({"unchecked"})
     public static void COLLECT_TABLE_STATISTICS(String schema,
                                                 String table,
                                                 boolean staleOnly,
                                                 ResultSet[] outputResults) throws SQLException {
+        collectTableStatistics(schema,table,1.0d,outputResults);
+    }
+
+    /**
+     * Collect statistics for a table from a random sample of its rows. Row counts and partition sizes are
+     * scaled back up to the whole table, and the sample rate is recorded in SYS.SYSTABLESTATS so that the
+     * optimizer can scale the column statistics in the same way.
+     *
+     * @param samplePercentage the percentage of rows to read, in (0,100]
+     */
+    public static void COLLECT_TABLE_SAMPLE_STATISTICS(String schema,
+                                                       String table,
+                                                       double samplePercentage,
+                                                       ResultSet[] outputResults) throws SQLException {
+        if (!(samplePercentage > 0d && samplePercentage <= 100d))
+            throw PublicAPI.wrapStandardException(ErrorState.LANG_INVALID_FUNCTION_ARGUMENT.newException(
+                    Double.toString(samplePercentage), "COLLECT_TABLE_SAMPLE_STATISTICS"));
+        collectTableStatistics(schema,table,samplePercentage/100d,outputResults);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static void collectTableStatistics(String schema,
+                                               String table,
+                                               double sampleFraction,
+                                               ResultSet[] outputResults) throws SQLException {
         EmbedConnection conn = (EmbedConnection) SpliceAdmin.getDefaultConn();
         try {
             schema = EngineUtils.validateSchema(schema);
@@ -277,7 +306,7 @@ public class StatisticsAdmin extends BaseAdminProcedures {
             IteratorNoPutResultSet resultsToWrap = wrapResults(
                 conn,
                 displayTableStatistics(Lists.newArrayList(
-                    collectTableStatistics(tableDesc, txn, conn)
+                    collectTableStatistics(tableDesc, txn, conn, sampleFraction)
                 ),
                 dd, tc, display));
             outputResults[0] = new EmbedResultSet40(conn, resultsToWrap, false, null, true);
@@ -340,27 +369,32 @@ public class StatisticsAdmin extends BaseAdminProcedures {
     /*private helper methods*/
     private static Future<StatsResult> collectTableStatistics(TableDescriptor table,
                                                              TxnView txn,
-                                                             EmbedConnection conn) throws StandardException, ExecutionException {
+                                                             EmbedConnection conn,
+                                                             double sampleFraction) throws StandardException, ExecutionException {
 
-       return collectBaseTableStatistics(table, txn, conn);
+       return collectBaseTableStatistics(table, txn, conn, sampleFraction);
     }
 
     private static Future<StatsResult> collectBaseTableStatistics(TableDescriptor table,
                                                                  TxnView txn,
-                                                                 EmbedConnection conn) throws StandardException, ExecutionException {
+                                                                 EmbedConnection conn,
+                                                                 double sampleFraction) throws StandardException, ExecutionException {
+        if (table.getStoredAs() != null)
+            sampleFraction = 1.0d; // external tables are not read through the sampling scanner
         long heapConglomerateId = table.getHeapConglomerateId();
         Activation activation = conn.getLanguageConnection().getLastActivation();
         DistributedDataSetProcessor dsp = EngineDriver.driver().processorFactory().distributedProcessor();
 
         ScanSetBuilder ssb = dsp.newScanSet(null,Long.toString(heapConglomerateId));
-        ScanSetBuilder scanSetBuilder = createTableScanner(ssb,conn,table,txn);
+        ScanSetBuilder scanSetBuilder = createTableScanner(ssb,conn.getLanguageConnection(),table,txn,sampleFraction);
+        int[][] columnGroups = getColumnGroups(table, EngineDriver.driver().getConfiguration().getColumnGroupMaxColumns());
         String scope = getScopeName(table);
 
         String userId = activation.getLanguageConnectionContext().getCurrentUserId(activation);
         String jobGroup = userId;
 
         try {
-            return EngineDriver.driver().getOlapClient().submit(new DistributedStatsCollection(scanSetBuilder, scope, jobGroup));
+            return EngineDriver.driver().getOlapClient().submit(new DistributedStatsCollection(scanSetBuilder, scope, jobGroup, sampleFraction, columnGroups));
         } catch (Exception e) {
             throw Exceptions.parseException(e);
         }
@@ -370,12 +404,35 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         return String.format(OperationContext.Scope.COLLECT_STATS.displayName(), td.getName());
     }
 
-    private static DataScan createScan (TxnView txn) {
+    private static DataScan createScan (TxnView txn, double sampleFraction) {
         DataScan scan=SIDriver.driver().getOperationFactory().newDataScan(txn);
         scan.returnAllVersions(); //make sure that we read all versions of the data
+        if (sampleFraction < 1.0d)
+            scan.addAttribute(SIConstants.SAMPLE_FRACTION_ATTRIBUTE_NAME,
+                    Bytes.toBytes(Double.doubleToLongBits(sampleFraction)));
         return scan.startKey(new byte[0]).stopKey(new byte[0]);
     }
 
+    /*
+     * Pick a sample rate which reads roughly splice.statistics.autoSampleTargetSize worth of the table, but
+     * never less than splice.statistics.minimumSampleFraction of it. Small tables are read in full.
+     */
+    private static double chooseSampleFraction(TableDescriptor td) {
+        SConfiguration config = EngineDriver.driver().getConfiguration();
+        Collection<PartitionLoad> loads = EngineDriver.driver().partitionLoadWatcher()
+                .tableLoad(Long.toString(td.getHeapConglomerateId()), false);
+        if (loads == null)
+            return 1.0d;
+        long tableSizeMB = 0l;
+        for (PartitionLoad load : loads) {
+            tableSizeMB += load.getStorefileSizeMB() + load.getMemStoreSizeMB();
+        }
+        long targetSizeMB = config.getAutoSampleTargetSize();
+        if (tableSizeMB <= targetSizeMB)
+            return 1.0d;
+        return Math.max(config.getMinimumSampleFraction(), ((double) targetSizeMB) / tableSizeMB);
+    }
+
     public static int[] getFormatIds(EmbedConnection conn, long columnStatsConglomId) throws StandardException{
         TransactionController transactionExecute = conn.getLanguageConnection().getTransactionExecute();
         SpliceConglomerate conglomerate = (SpliceConglomerate) ((SpliceTransactionManager) transactionExecute)
@@ -383,10 +440,14 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         return conglomerate.getFormat_ids();
     }
 
-    private static ScanSetBuilder createTableScanner(ScanSetBuilder builder,
-                                                     EmbedConnection conn,
-                                                     TableDescriptor table,
-                                                     TxnView txn) throws StandardException{
+    /**
+     * Configures {@code builder} to read the columns whose statistics are collected for {@code table}.
+     */
+    public static ScanSetBuilder createTableScanner(ScanSetBuilder builder,
+                                                    LanguageConnectionContext lcc,
+                                                    TableDescriptor table,
+                                                    TxnView txn,
+                                                    double sampleFraction) throws StandardException{
 
         List<ColumnDescriptor> colsToCollect = getCollectedColumns(table);
         ExecRow row = new ValueRow(colsToCollect.size());
@@ -414,7 +475,7 @@ public class StatisticsAdmin extends BaseAdminProcedures {
             fieldLengths[outputCol] = allColumnLengths[i];
             outputCol++;
         }
-        TransactionController transactionExecute = conn.getLanguageConnection().getTransactionExecute();
+        TransactionController transactionExecute = lcc.getTransactionExecute();
         SpliceConglomerate conglomerate = (SpliceConglomerate) ((SpliceTransactionManager) transactionExecute)
                 .findConglomerate(table.getHeapConglomerateId());
         boolean[] keyColumnSortOrder = conglomerate.getAscDescInfo();
@@ -438,10 +499,10 @@ public class StatisticsAdmin extends BaseAdminProcedures {
                 }
             }
         }
-        DataScan scan = createScan(txn);
+        DataScan scan = createScan(txn, sampleFraction);
         ExecRow rowTemplate = new ValueRow(execRowFormatIds.length);
         DataValueDescriptor[] dvds = rowTemplate.getRowArray();
-        DataValueFactory dataValueFactory=conn.getLanguageConnection().getDataValueFactory();
+        DataValueFactory dataValueFactory=lcc.getDataValueFactory();
         for(int i=0;i<execRowFormatIds.length;i++){
             dvds[i] = dataValueFactory.getNull(execRowFormatIds[i],-1);
         }
@@ -583,6 +644,46 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         return toCollect;
     }
 
+    /**
+     * The column groups to collect joint statistics for: the leading columns (at least two, at most
+     * {@code maxColumns}) of the primary key and of every index on the table.
+     *
+     * @return the column positions of each group, in ascending order
+     */
+    public static int[][] getColumnGroups(TableDescriptor td, int maxColumns) throws StandardException {
+        if (maxColumns < 2)
+            return new int[0][];
+        List<int[]> keys = new ArrayList<>();
+        ConglomerateDescriptor heapConglom = td.getConglomerateDescriptor(td.getHeapConglomerateId());
+        IndexRowGenerator pkDescriptor = heapConglom.getIndexDescriptor();
+        if (pkDescriptor != null && pkDescriptor.getIndexDescriptor() != null)
+            keys.add(pkDescriptor.baseColumnPositions());
+        IndexLister indexLister = td.getIndexLister();
+        if (indexLister != null) {
+            for (IndexRowGenerator irg : indexLister.getDistinctIndexRowGenerators()) {
+                if (irg.getIndexDescriptor() != null)
+                    keys.add(irg.baseColumnPositions());
+            }
+        }
+        List<int[]> columnGroups = new ArrayList<>();
+        for (int[] keyColumns : keys) {
+            for (int length = 2; length <= Math.min(keyColumns.length, maxColumns); length++) {
+                int[] columnGroup = Arrays.copyOf(keyColumns, length);
+                Arrays.sort(columnGroup);
+                boolean known = false;
+                for (int[] other : columnGroups) {
+                    if (Arrays.equals(other, columnGroup)) {
+                        known = true;
+                        break;
+                    }
+                }
+                if (!known)
+                    columnGroups.add(columnGroup);
+            }
+        }
+        return columnGroups.toArray(new int[columnGroups.size()][]);
+    }
+
     private static void ensureNotKeyed(ColumnDescriptor descriptor, TableDescriptor td) throws StandardException {
         ConglomerateDescriptor heapConglom = td.getConglomerateDescriptor(td.getHeapConglomerateId());
         IndexRowGenerator pkDescriptor = heapConglom.getIndexDescriptor();
@@ -606,6 +707,10 @@ public class StatisticsAdmin extends BaseAdminProcedures {
     }
 
     public static ExecRow generateRowFromStats(long conglomId, String partitionId, long rowCount, long partitionSize, int meanRowWidth) throws StandardException {
+        return generateRowFromStats(conglomId, partitionId, rowCount, partitionSize, meanRowWidth, 1.0d);
+    }
+
+    public static ExecRow generateRowFromStats(long conglomId, String partitionId, long rowCount, long partitionSize, int meanRowWidth, double sampleFraction) throws StandardException {
         ExecRow row = new ValueRow(SYSTABLESTATISTICSRowFactory.SYSTABLESTATISTICS_COLUMN_COUNT);
         row.setColumn(SYSTABLESTATISTICSRowFactory.CONGLOMID,new SQLLongint(conglomId));
         row.setColumn(SYSTABLESTATISTICSRowFactory.PARTITIONID,new SQLVarchar(partitionId));
@@ -615,9 +720,18 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         row.setColumn(SYSTABLESTATISTICSRowFactory.ROWCOUNT,new SQLLongint(rowCount));
         row.setColumn(SYSTABLESTATISTICSRowFactory.PARTITION_SIZE,new SQLLongint(partitionSize));
         row.setColumn(SYSTABLESTATISTICSRowFactory.MEANROWWIDTH,new SQLInteger(meanRowWidth));
+        row.setColumn(SYSTABLESTATISTICSRowFactory.SAMPLEFRACTION,new SQLDouble(sampleFraction));
         return row;
     }
 
+    /**
+     * Column groups are stored in SYS.SYSCOLUMNSTATS next to the columns, under negative column ids which do not
+     * clash with any column; the statistics themselves record which columns they cover.
+     */
+    public static int columnGroupId(int groupNumber) {
+        return -(groupNumber+1);
+    }
+
     public static ExecRow generateRowFromStats(long conglomId, String regionId, int columnId, ItemStatistics columnStatistics) throws StandardException {
         ExecRow row = new ValueRow(SYSCOLUMNSTATISTICSRowFactory.SYSCOLUMNSTATISTICS_COLUMN_COUNT);
         row.setColumn(SYSCOLUMNSTATISTICSRowFactory.CONGLOMID,new SQLLongint(conglomId));
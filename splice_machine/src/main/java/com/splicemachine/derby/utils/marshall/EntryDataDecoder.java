@@ -74,26 +74,46 @@ public class EntryDataDecoder extends BareKeyHash implements KeyHashDecoder{
 						throw Exceptions.parseException(e);
 				}
 				DataValueDescriptor[] fields = destination.getRowArray();
+				/*
+				 * With a field directory, the fields we don't want cost nothing: we just seek
+				 * to the next field that we do want.
+				 */
+				boolean directory = entryDecoder.hasFieldDirectory();
+				boolean seek = false;
+				int field = 0;
 				if(keyColumns!=null){
-						for(int i=index.nextSetBit(0);i>=0 && i<keyColumns.length;i=index.nextSetBit(i+1)){
+						for(int i=index.nextSetBit(0);i>=0 && i<keyColumns.length;i=index.nextSetBit(i+1),field++){
 								int pos = keyColumns[i];
-								if(pos<0) continue;
+								if(pos<0){
+										seek|=directory;
+										continue;
+								}
 								DataValueDescriptor dvd = fields[pos];
 								if(dvd==null){
-										entryDecoder.seekForward(decoder, i);
+										if(directory) seek=true;
+										else entryDecoder.seekForward(decoder, i);
 										continue;
 								}
+								if(seek){
+										entryDecoder.seekToField(decoder,field);
+										seek=false;
+								}
 								DescriptorSerializer serializer = serializers[pos];
 								boolean sortOrder = keySortOrder != null && !keySortOrder[i];
 								serializer.decode(decoder,dvd,sortOrder);
 						}
 				}else{
-						for(int i=index.nextSetBit(0);i>=0 && i<fields.length;i=index.nextSetBit(i+1)){
+						for(int i=index.nextSetBit(0);i>=0 && i<fields.length;i=index.nextSetBit(i+1),field++){
 								DataValueDescriptor dvd = fields[i];
 								if(dvd==null){
-										entryDecoder.seekForward(decoder,i);
+										if(directory) seek=true;
+										else entryDecoder.seekForward(decoder,i);
 										continue;
 								}
+								if(seek){
+										entryDecoder.seekToField(decoder,field);
+										seek=false;
+								}
 								boolean sortOrder = keySortOrder != null && !keySortOrder[i];
 								DescriptorSerializer serializer = serializers[i];
 								serializer.decode(decoder,dvd,sortOrder);
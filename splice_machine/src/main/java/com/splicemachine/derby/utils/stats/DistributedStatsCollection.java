@@ -29,13 +29,29 @@ public class DistributedStatsCollection extends DistributedJob {
     String jobGroup;
     ScanSetBuilder scanSetBuilder;
     String scope;
+    double sampleFraction = 1.0d;
+    int[][] columnGroups = new int[0][];
 
     public DistributedStatsCollection() {}
 
     public DistributedStatsCollection(ScanSetBuilder scanSetBuilder, String scope, String jobGroup) {
+        this(scanSetBuilder,scope,jobGroup,1.0d);
+    }
+
+    public DistributedStatsCollection(ScanSetBuilder scanSetBuilder, String scope, String jobGroup, double sampleFraction) {
+        this(scanSetBuilder,scope,jobGroup,sampleFraction,new int[0][]);
+    }
+
+    /**
+     * @param columnGroups the column positions of each group of columns to collect joint statistics for
+     */
+    public DistributedStatsCollection(ScanSetBuilder scanSetBuilder, String scope, String jobGroup, double sampleFraction,
+                                      int[][] columnGroups) {
         this.scanSetBuilder = scanSetBuilder;
         this.scope = scope;
         this.jobGroup = jobGroup;
+        this.sampleFraction = sampleFraction;
+        this.columnGroups = columnGroups;
     }
 
     @Override
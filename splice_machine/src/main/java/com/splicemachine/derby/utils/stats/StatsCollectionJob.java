@@ -73,7 +73,8 @@ public class StatsCollectionJob implements Callable<Void> {
 
             List<LocatedRow> result = statsDataSet
                     .mapPartitions(
-                    new StatisticsFlatMapFunction(request.scanSetBuilder.getBaseTableConglomId(),request.scanSetBuilder.getColumnPositionMap(), request.scanSetBuilder.getTemplate())).collect();
+                    new StatisticsFlatMapFunction(request.scanSetBuilder.getBaseTableConglomId(),request.scanSetBuilder.getColumnPositionMap(),
+                            request.scanSetBuilder.getTemplate(),request.sampleFraction,request.columnGroups)).collect();
             jobStatus.markCompleted(new StatsResult(result));
             return null;
         } catch (Exception e) {
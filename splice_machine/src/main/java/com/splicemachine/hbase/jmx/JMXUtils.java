@@ -50,6 +50,11 @@ public class JMXUtils {
     public static final String TIMESTAMP_MASTER_MANAGEMENT = "com.splicemachine.si.client.timestamp.generator:type=TimestampMasterManagement";
     public static final String TIMESTAMP_REGION_MANAGEMENT = "com.splicemachine.si.client.timestamp.request:type=TimestampRegionManagement";
 	public static final String DATABASE_PROPERTY_MANAGEMENT = "com.splicemachine.derby.utils:type=DatabasePropertyManagement";
+    public static final String TRANSACTION_CACHE_MANAGEMENT = "com.splicemachine.si.txn:type=TransactionCacheManagement";
+    public static final String READ_RESOLVER_MANAGEMENT = "com.splicemachine.si.txn:type=ReadResolverManagement";
+    public static final String KEEP_ALIVE_SCHEDULER_MANAGEMENT = "com.splicemachine.si.txn:type=KeepAliveSchedulerManagement";
+    public static final String BROADCAST_JOIN_CACHE_MANAGEMENT = "com.splicemachine.derby.execute:type=BroadcastJoinCacheManagement";
+    public static final String DATA_DICTIONARY_CACHE_MANAGEMENT = "com.splicemachine.derby.catalog:type=DataDictionaryCacheManagement";
 
     public static List<Pair<String,JMXConnector>> getMBeanServerConnections(Collection<Pair<String,String>> serverConnections) throws IOException {
         List<Pair<String,JMXConnector>> mbscArray =new ArrayList<>(serverConnections.size());
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.encoding.MultiFieldDecoder;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the storage underneath broadcast join tables.
+ */
+@Category(ArchitectureIndependent.class)
+public class JoinRowArenaTest{
+
+    @Test
+    public void testFindsAllRowsForKeyInInsertionOrder() throws Exception{
+        JoinRowArena.Builder builder=new JoinRowArena.Builder();
+        MultiFieldEncoder key=MultiFieldEncoder.create(1);
+        MultiFieldEncoder row=MultiFieldEncoder.create(2);
+        for(int i=0;i<10000;i++){
+            add(builder,key,row,i%100,i);
+        }
+        JoinRowArena arena=builder.build();
+
+        Assert.assertEquals(10000,arena.numRows());
+        Assert.assertEquals(100,arena.numKeys());
+        for(int k=0;k<100;k++){
+            List<Integer> values=fetch(arena,k);
+            Assert.assertEquals("Incorrect number of rows for key "+k,100,values.size());
+            for(int i=0;i<values.size();i++){
+                Assert.assertEquals("Incorrect row order for key "+k,k+100*i,(int)values.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingKeyReturnsNoRows() throws Exception{
+        JoinRowArena.Builder builder=new JoinRowArena.Builder();
+        MultiFieldEncoder key=MultiFieldEncoder.create(1);
+        MultiFieldEncoder row=MultiFieldEncoder.create(2);
+        for(int i=0;i<1000;i++){
+            add(builder,key,row,2*i,i);
+        }
+        JoinRowArena arena=builder.build();
+
+        for(int i=0;i<1000;i++){
+            Assert.assertTrue("Found rows for missing key "+(2*i+1),fetch(arena,2*i+1).isEmpty());
+        }
+    }
+
+    @Test
+    public void testEmptyArena() throws Exception{
+        JoinRowArena arena=new JoinRowArena.Builder().build();
+        Assert.assertEquals(0,arena.numRows());
+        Assert.assertTrue(fetch(arena,1).isEmpty());
+    }
+
+    @Test
+    public void testLargeRowsGrowStorage() throws Exception{
+        JoinRowArena.Builder builder=new JoinRowArena.Builder();
+        MultiFieldEncoder key=MultiFieldEncoder.create(1);
+        MultiFieldEncoder row=MultiFieldEncoder.create(1);
+        StringBuilder sb=new StringBuilder();
+        for(int i=0;i<10000;i++){
+            sb.append('a');
+        }
+        String value=sb.toString();
+        for(int i=0;i<100;i++){
+            key.reset();
+            key.encodeNext(value+i);
+            row.reset();
+            row.encodeNext(value);
+            builder.add(key,row);
+        }
+        JoinRowArena arena=builder.build();
+
+        JoinRowArena.RowReader reader=arena.newReader();
+        for(int i=0;i<100;i++){
+            key.reset();
+            key.encodeNext(value+i);
+            byte[] probe=key.build();
+            int first=arena.firstRow(probe,0,probe.length);
+            Assert.assertTrue("Missing row for key "+i,first>=0);
+            Assert.assertEquals(-1,arena.nextRow(first));
+            reader.read(first);
+            MultiFieldDecoder decoder=MultiFieldDecoder.wrap(reader.buffer(),reader.offset(),reader.length());
+            Assert.assertEquals(value,decoder.decodeNextString());
+        }
+    }
+
+    @Test
+    public void testSpilledRowsAreReadFromDisk() throws Exception{
+        JoinRowArena.Builder builder=new JoinRowArena.Builder();
+        MultiFieldEncoder key=MultiFieldEncoder.create(1);
+        MultiFieldEncoder row=MultiFieldEncoder.create(2);
+        for(int i=0;i<5000;i++){
+            add(builder,key,row,i%100,i);
+        }
+        long inMemorySize=builder.heapSize();
+        File spillFile=File.createTempFile("joinRowArenaTest",".spill");
+        builder.spillTo(spillFile);
+        Assert.assertTrue("Spilling should release the row storage",builder.heapSize()<inMemorySize);
+        for(int i=5000;i<10000;i++){
+            add(builder,key,row,i%100,i);
+        }
+        JoinRowArena arena=builder.build();
+
+        Assert.assertTrue(arena.isSpilled());
+        Assert.assertFalse("Spill file should be removed once the arena is built",spillFile.exists());
+        Assert.assertEquals(10000,arena.numRows());
+        for(int k=0;k<100;k++){
+            List<Integer> values=fetch(arena,k);
+            Assert.assertEquals("Incorrect number of rows for key "+k,100,values.size());
+            for(int i=0;i<values.size();i++){
+                Assert.assertEquals("Incorrect row order for key "+k,k+100*i,(int)values.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testAbortRemovesSpillFile() throws Exception{
+        JoinRowArena.Builder builder=new JoinRowArena.Builder();
+        MultiFieldEncoder key=MultiFieldEncoder.create(1);
+        MultiFieldEncoder row=MultiFieldEncoder.create(2);
+        File spillFile=File.createTempFile("joinRowArenaTest",".spill");
+        builder.spillTo(spillFile);
+        add(builder,key,row,1,1);
+        builder.abort();
+
+        Assert.assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void testCloseReleasesSpillFile() throws Exception{
+        JoinRowArena.Builder builder=new JoinRowArena.Builder();
+        MultiFieldEncoder key=MultiFieldEncoder.create(1);
+        MultiFieldEncoder row=MultiFieldEncoder.create(2);
+        builder.spillTo(File.createTempFile("joinRowArenaTest",".spill"));
+        add(builder,key,row,1,1);
+        JoinRowArena arena=builder.build();
+        Assert.assertEquals(1,fetch(arena,1).size());
+
+        arena.close();
+        try{
+            fetch(arena,1);
+            Assert.fail("Rows should not be readable once the arena is closed");
+        }catch(ClosedChannelException expected){
+            //the spill file has been released
+        }
+        arena.close(); //closing twice is harmless
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static void add(JoinRowArena.Builder builder,MultiFieldEncoder key,MultiFieldEncoder row,int k,int value) throws IOException{
+        key.reset();
+        key.encodeNext(k);
+        row.reset();
+        row.encodeNext(k).encodeNext(value);
+        builder.add(key,row);
+    }
+
+    private static List<Integer> fetch(JoinRowArena arena,int k) throws IOException{
+        byte[] probe=MultiFieldEncoder.create(1).encodeNext(k).build();
+        List<Integer> values=new ArrayList<>();
+        JoinRowArena.RowReader reader=arena.newReader();
+        for(int r=arena.firstRow(probe,0,probe.length);r>=0;r=arena.nextRow(r)){
+            reader.read(r);
+            MultiFieldDecoder decoder=MultiFieldDecoder.wrap(reader.buffer(),reader.offset(),reader.length());
+            Assert.assertEquals("Row stored under the wrong key",k,decoder.decodeNextInt());
+            values.add(decoder.decodeNextInt());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.stream.Stream;
+import com.splicemachine.stream.Streams;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests for the fallback of a broadcast join whose keys do not fit in the memory budget.
+ */
+@Category(ArchitectureIndependent.class)
+public class PartitionedBroadcastJoinTest{
+    private static final int[] HASH_KEYS=new int[]{0};
+
+    @Test
+    public void testCacheRefusesTableWhoseKeysExceedTheBudget() throws Exception{
+        BroadcastJoinCache cache=new BroadcastJoinCache(1024);
+        try{
+            cache.get(1l,inner(10000,1),HASH_KEYS,HASH_KEYS,row(0,0));
+            Assert.fail("Table should not fit in the budget");
+        }catch(BroadcastJoinCache.MemoryBudgetExceededException expected){
+            //the join has to partition the table instead
+        }
+        Assert.assertEquals("Failed load should release its reservation",0l,cache.getReservedBytes());
+        Assert.assertEquals(0l,cache.getResidentTableCount());
+    }
+
+    @Test
+    public void testJoinsEveryOuterRowWithItsInnerRows() throws Exception{
+        //small enough that the first level of partitions has to be partitioned again
+        BroadcastJoinCache cache=new BroadcastJoinCache(64*1024);
+        int numKeys=50000;
+        List<LocatedRow> outer=new ArrayList<>();
+        for(int i=0;i<2*numKeys;i++){
+            outer.add(new LocatedRow(row(i,-i)));
+        }
+
+        PartitionedBroadcastJoin<LocatedRow,int[]> join=PartitionedBroadcastJoin.join(cache,inner(numKeys,2),outer.iterator(),
+                HASH_KEYS,HASH_KEYS,row(0,0),new OuterJoiner());
+        int[] matches=new int[2*numKeys];
+        while(join.hasNext()){
+            int[] result=join.next();
+            int key=result[0];
+            if(key<numKeys)
+                Assert.assertEquals("Outer row joined with the inner row of another key",key,result[1]/2);
+            else
+                Assert.assertEquals("Outer row without inner rows should not match",-1,result[1]);
+            matches[key]++;
+        }
+
+        //every outer row with an inner key matches both inner rows of its key, the rest match nothing
+        for(int key=0;key<matches.length;key++){
+            Assert.assertEquals("Incorrect number of results for key "+key,key<numKeys?2:1,matches[key]);
+        }
+        Assert.assertEquals("Partition tables should be released once consumed",0l,cache.getReservedBytes());
+    }
+
+    @Test
+    public void testUnmatchedPartitionsProduceNothing() throws Exception{
+        BroadcastJoinCache cache=new BroadcastJoinCache(0);
+        PartitionedBroadcastJoin<LocatedRow,int[]> join=PartitionedBroadcastJoin.join(cache,inner(1000,1),
+                Collections.<LocatedRow>emptyIterator(),HASH_KEYS,HASH_KEYS,row(0,0),new OuterJoiner());
+        Assert.assertFalse(join.hasNext());
+        Assert.assertEquals(0l,cache.getReservedBytes());
+    }
+
+    @Test
+    public void testCloseReleasesPartitions() throws Exception{
+        BroadcastJoinCache cache=new BroadcastJoinCache(1<<20);
+        List<LocatedRow> outer=new ArrayList<>();
+        for(int i=0;i<1000;i++){
+            outer.add(new LocatedRow(row(i,-i)));
+        }
+        PartitionedBroadcastJoin<LocatedRow,int[]> join=PartitionedBroadcastJoin.join(cache,inner(1000,1),outer.iterator(),
+                HASH_KEYS,HASH_KEYS,row(0,0),new OuterJoiner());
+        Assert.assertTrue(join.hasNext());
+        Assert.assertTrue("The first partition's table should hold a reservation",cache.getReservedBytes()>0);
+
+        join.close();
+        Assert.assertEquals(0l,cache.getReservedBytes());
+        Assert.assertFalse(join.hasNext());
+        join.close(); //closing twice is harmless
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static ExecRow row(int key,int value){
+        ExecRow row=new ValueRow(2);
+        row.setRowArray(new DataValueDescriptor[]{new SQLInteger(key),new SQLInteger(value)});
+        return row;
+    }
+
+    /*
+     * rowsPerKey rows for each of numKeys keys, the value of the n-th row of key k being rowsPerKey*k+n
+     */
+    private static Callable<Stream<ExecRow>> inner(final int numKeys,final int rowsPerKey){
+        return new Callable<Stream<ExecRow>>(){
+            @Override
+            public Stream<ExecRow> call() throws Exception{
+                List<ExecRow> rows=new ArrayList<>(numKeys*rowsPerKey);
+                for(int n=0;n<rowsPerKey;n++){
+                    for(int k=0;k<numKeys;k++){
+                        rows.add(row(k,rowsPerKey*k+n));
+                    }
+                }
+                return Streams.wrap(rows);
+            }
+        };
+    }
+
+    /*
+     * Emits (outer key, inner value) for every match, and (outer key, -1) for an outer row without matches
+     */
+    private static class OuterJoiner implements PartitionedBroadcastJoin.Joiner<LocatedRow,int[]>{
+        @Override
+        public Iterator<int[]> join(Iterator<LocatedRow> outerRows,JoinTable innerTable){
+            List<int[]> results=new ArrayList<>();
+            try{
+                while(outerRows.hasNext()){
+                    ExecRow outer=outerRows.next().getRow();
+                    int key=outer.getColumn(1).getInt();
+                    Iterator<ExecRow> inner=innerTable.fetchInner(outer);
+                    if(!inner.hasNext())
+                        results.add(new int[]{key,-1});
+                    while(inner.hasNext()){
+                        results.add(new int[]{key,inner.next().getColumn(2).getInt()});
+                    }
+                }
+            }catch(Exception e){
+                throw new RuntimeException(e);
+            }
+            return results.iterator();
+        }
+    }
+}
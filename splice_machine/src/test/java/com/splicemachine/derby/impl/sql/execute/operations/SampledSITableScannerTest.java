@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.SIFilterFactory;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.SITableScanner;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.derby.utils.marshall.EntryDataHash;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.OperationFactory;
+import com.splicemachine.si.api.filter.RowAccumulator;
+import com.splicemachine.si.api.filter.SIFilter;
+import com.splicemachine.si.api.server.TransactionalRegion;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.filter.HRowAccumulator;
+import com.splicemachine.si.testenv.ArchitectureSpecific;
+import com.splicemachine.si.testenv.SITestDataEnv;
+import com.splicemachine.si.testenv.SITestEnvironment;
+import com.splicemachine.storage.*;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for sampling the rows of a table scan when collecting statistics.
+ */
+@Category(ArchitectureSpecific.class)
+public class SampledSITableScannerTest{
+    private static final int NUM_ROWS=10000;
+    private static final long COMMITTED_TXN=1l;
+    private static final long ROLLED_BACK_TXN=2l;
+
+    private OperationFactory opFactory;
+
+    @Before
+    public void setUp() throws Exception{
+        SITestDataEnv testDataEnv=SITestEnvironment.loadTestDataEnvironment();
+        opFactory=testDataEnv.getBaseOperationFactory();
+    }
+
+    @Test
+    public void testReadsAllRowsWithoutSampleFraction() throws Exception{
+        VisibilityFilter filter=new VisibilityFilter();
+        int returned=scan(null,filter);
+
+        Assert.assertEquals("Every row should reach the SI filter",NUM_ROWS,filter.rowsSeen);
+        Assert.assertEquals(numVisibleRows(),returned);
+    }
+
+    @Test
+    public void testReadsSampleFractionOfRows() throws Exception{
+        double fraction=0.1d;
+        VisibilityFilter filter=new VisibilityFilter();
+        int returned=scan(fraction,filter);
+
+        //the expected number of rows is 1000, give or take 30, so this only fails if sampling is broken
+        assertAbout("Rows which reached the SI filter",fraction*NUM_ROWS,filter.rowsSeen);
+        assertAbout("Rows which were returned",fraction*numVisibleRows(),returned);
+    }
+
+    @Test
+    public void testSampledRowsAreStillFilteredForVisibility() throws Exception{
+        VisibilityFilter filter=new VisibilityFilter();
+        //scan() fails if a row written by the rolled back transaction is returned
+        int returned=scan(0.5d,filter);
+
+        Assert.assertTrue("Some rows should be returned",returned>0);
+        Assert.assertTrue("Some sampled rows should have been invisible",filter.rowsSeen>returned);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static boolean isVisible(int row){
+        return row%3!=0; //every third row was written by a transaction which rolled back
+    }
+
+    private static int numVisibleRows(){
+        int visible=0;
+        for(int i=0;i<NUM_ROWS;i++){
+            if(isVisible(i)) visible++;
+        }
+        return visible;
+    }
+
+    private static void assertAbout(String message,double expected,int actual){
+        Assert.assertTrue(message+": expected about "+expected+", but was "+actual,
+                Math.abs(actual-expected)<0.3d*expected);
+    }
+
+    /*
+     * Scans the table with the given sample fraction (null for no sampling), and returns the number of
+     * rows which were returned
+     */
+    private int scan(Double sampleFraction,VisibilityFilter filter) throws Exception{
+        final List<List<DataCell>> rows=new ArrayList<>(NUM_ROWS);
+        DescriptorSerializer[] serializers=VersionedSerializers.latestVersion(true).getSerializers(row(0));
+        for(int i=0;i<NUM_ROWS;i++){
+            EntryDataHash hash=new EntryDataHash(new int[]{0},null,serializers);
+            hash.setRow(row(i));
+            byte[] key=Bytes.toBytes(i);
+            long txnId=isVisible(i)?COMMITTED_TXN:ROLLED_BACK_TXN;
+            DataCell siKv=opFactory.newCell(key,SIConstants.DEFAULT_FAMILY_BYTES,
+                    SIConstants.SNAPSHOT_ISOLATION_COMMIT_TIMESTAMP_COLUMN_BYTES,txnId,SIConstants.EMPTY_BYTE_ARRAY);
+            DataCell dataKv=opFactory.newCell(key,SIConstants.DEFAULT_FAMILY_BYTES,SIConstants.PACKED_COLUMN_BYTES,txnId,hash.encode());
+            rows.add(Arrays.asList(siKv,dataKv));
+        }
+        DataScanner scanner=mock(DataScanner.class);
+        final int[] position=new int[]{0};
+        when(scanner.next(anyInt())).thenAnswer(new Answer<List<DataCell>>(){
+            @Override
+            public List<DataCell> answer(InvocationOnMock invocation) throws Throwable{
+                if(position[0]>=rows.size())
+                    return Collections.emptyList();
+                return rows.get(position[0]++);
+            }
+        });
+
+        DataScan scan=opFactory.newScan();
+        if(sampleFraction!=null)
+            scan.addAttribute(SIConstants.SAMPLE_FRACTION_ATTRIBUTE_NAME,Bytes.toBytes(Double.doubleToLongBits(sampleFraction)));
+        final VisibilityFilter siFilter=filter;
+        TableScannerBuilder builder=(TableScannerBuilder)new TableScannerBuilder(){
+            @Override
+            public DataSet buildDataSet(){
+                throw new UnsupportedOperationException("improper access path for test");
+            }
+        }
+                .scan(scan)
+                .scanner(scanner)
+                .region(mock(TransactionalRegion.class))
+                .tableVersion("2.0")
+                .rowDecodingMap(new int[]{0})
+                .template(row(0).getNewNullRow());
+        builder.filterFactory(new SIFilterFactory(){
+            @Override
+            public SIFilter newFilter(EntryPredicateFilter predicateFilter,
+                                      EntryDecoder rowEntryDecoder,
+                                      EntryAccumulator accumulator,
+                                      boolean isCountStar) throws IOException{
+                siFilter.accumulator=new HRowAccumulator(predicateFilter,rowEntryDecoder,accumulator,isCountStar);
+                return siFilter;
+            }
+        });
+
+        int returned=0;
+        try(SITableScanner tableScanner=builder.build()){
+            ExecRow next;
+            while((next=tableScanner.next())!=null){
+                int value=next.getColumn(1).getInt();
+                Assert.assertTrue("Returned row "+value+" which is not visible",isVisible(value));
+                returned++;
+            }
+        }
+        Assert.assertEquals("The scanner should read through to the end of the region",NUM_ROWS,position[0]);
+        return returned;
+    }
+
+    private static ExecRow row(int value){
+        ExecRow row=new ValueRow(1);
+        row.setRowArray(new DataValueDescriptor[]{new SQLInteger(value)});
+        return row;
+    }
+
+    /*
+     * Stands in for the transactional filter: cells written by the rolled back transaction are skipped,
+     * so that a row which only has those is not returned.
+     */
+    private static class VisibilityFilter implements SIFilter{
+        private RowAccumulator accumulator;
+        private int rowsSeen;
+
+        @Override
+        public void nextRow(){
+            rowsSeen++;
+            accumulator.reset();
+        }
+
+        @Override
+        public RowAccumulator getAccumulator(){
+            return accumulator;
+        }
+
+        @Override
+        public DataFilter.ReturnCode filterCell(DataCell kv) throws IOException{
+            if(kv.dataType()!=CellType.USER_DATA || kv.version()==ROLLED_BACK_TXN)
+                return DataFilter.ReturnCode.SKIP;
+            if(!accumulator.isFinished() && accumulator.isInteresting(kv)){
+                if(!accumulator.accumulateCell(kv))
+                    return DataFilter.ReturnCode.NEXT_ROW;
+            }
+            return DataFilter.ReturnCode.INCLUDE;
+        }
+    }
+}
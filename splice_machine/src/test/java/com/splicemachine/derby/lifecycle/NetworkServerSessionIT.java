@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.lifecycle;
+
+import com.splicemachine.derby.test.framework.SpliceNetConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ITs for idle network server sessions. A session is parked once each of its request chains has been
+ * answered, and picked up again by whichever connection thread is free when its client sends the next
+ * request. That thread has to restore what was negotiated with the client (UTF-8, SQLAM level, ...).
+ */
+public class NetworkServerSessionIT{
+    private static final int NUM_CONNECTIONS=10;
+    private static final int NUM_ROUNDS=20;
+    //has no EBCDIC representation, so it only makes the round trip if the session is back in UTF-8 mode
+    private static final String NON_ASCII="\u4f60\u597d\u4e16\u754c \u00e9t\u00e9";
+
+    @Test
+    public void testSessionsAreServedAgainAfterParking() throws Exception{
+        try(Connection conn=SpliceNetConnection.getConnection()){
+            for(int round=0;round<NUM_ROUNDS;round++){
+                assertRoundTrip(conn,NON_ASCII+round);
+                //let the session be parked on the selector, so that the next request has to wake it up
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void testSessionsKeepTheirRequesterStateOnOtherThreads() throws Exception{
+        //clients which send their requests at the same time make the server start more threads, so
+        //that the sessions are moved between threads as they are parked and woken up
+        final CyclicBarrier barrier=new CyclicBarrier(NUM_CONNECTIONS);
+        ExecutorService clients=Executors.newFixedThreadPool(NUM_CONNECTIONS);
+        try{
+            List<Future<Void>> results=new ArrayList<>(NUM_CONNECTIONS);
+            for(int i=0;i<NUM_CONNECTIONS;i++){
+                final int client=i;
+                results.add(clients.submit(new Callable<Void>(){
+                    @Override
+                    public Void call() throws Exception{
+                        Random random=new Random(client);
+                        try(Connection conn=SpliceNetConnection.getConnection()){
+                            List<String> columns=columnNames(conn);
+                            for(int round=0;round<NUM_ROUNDS;round++){
+                                barrier.await(1,TimeUnit.MINUTES);
+                                Thread.sleep(random.nextInt(20));
+                                assertRoundTrip(conn,NON_ASCII+client+"_"+round);
+                                Assert.assertEquals(columns,columnNames(conn));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> result : results){
+                result.get(5,TimeUnit.MINUTES);
+            }
+        }finally{
+            clients.shutdownNow();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static void assertRoundTrip(Connection conn,String value) throws Exception{
+        try(PreparedStatement ps=conn.prepareStatement("values (cast(? as varchar(64)), ucase(cast(? as varchar(64))))")){
+            ps.setString(1,value);
+            ps.setString(2,value);
+            try(ResultSet rs=ps.executeQuery()){
+                Assert.assertTrue("No row returned",rs.next());
+                Assert.assertEquals("Incorrect string returned",value,rs.getString(1));
+                Assert.assertEquals("Incorrect upper case string returned",value.toUpperCase(),rs.getString(2));
+                Assert.assertFalse("Too many rows returned",rs.next());
+            }
+        }
+    }
+
+    private static List<String> columnNames(Connection conn) throws Exception{
+        try(PreparedStatement ps=conn.prepareStatement("select c.columnname from sys.syscolumns c, sys.systables t "+
+                "where c.referenceid=t.tableid and t.tablename='SYSTABLES' order by c.columnnumber")){
+            List<String> names=new ArrayList<>();
+            try(ResultSet rs=ps.executeQuery()){
+                while(rs.next()){
+                    names.add(rs.getString(1));
+                }
+            }
+            Assert.assertFalse("No columns returned",names.isEmpty());
+            return names;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.lifecycle;
+
+import com.splicemachine.derby.lifecycle.StatementCacheWarmer.CachedStatement;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Category(ArchitectureIndependent.class)
+public class StatementCacheWarmerTest{
+
+    private static final CachedStatement A=new CachedStatement("SPLICE",true,0,"select * from a where id = ?");
+    private static final CachedStatement B=new CachedStatement("SPLICE",false,0,"update b set v = ? where id = ?");
+    private static final CachedStatement C=new CachedStatement("APP",true,2,"select\n'été' from c");
+
+    @Test
+    public void testSavedStatementsRoundTrip() throws Exception{
+        ByteArrayOutputStream out=new ByteArrayOutputStream();
+        StatementCacheWarmer.write(out,Arrays.asList(A,B,C));
+        List<CachedStatement> read=StatementCacheWarmer.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(Arrays.asList(A,B,C),read);
+        Assert.assertEquals(C.text,read.get(2).text);
+        Assert.assertEquals(2,read.get(2).isolationLevel);
+        Assert.assertFalse(read.get(1).readOnly);
+    }
+
+    @Test
+    public void testStatementsCachedOnMoreServersComeFirst() throws Exception{
+        List<CachedStatement> ranked=StatementCacheWarmer.rank(Arrays.asList(
+                Arrays.asList(A,B),
+                Arrays.asList(C,B),
+                Arrays.asList(B,C,C)),10);
+        Assert.assertEquals(Arrays.asList(B,C,A),ranked);
+    }
+
+    @Test
+    public void testRankIsLimited() throws Exception{
+        Assert.assertEquals(Collections.singletonList(A),
+                StatementCacheWarmer.rank(Collections.singletonList(Arrays.asList(A,B,C)),1));
+    }
+
+    @Test
+    public void testStatementIdentityIncludesSchemaAndConcurrency() throws Exception{
+        Assert.assertNotEquals(A,new CachedStatement("APP",true,0,A.text));
+        Assert.assertNotEquals(A,new CachedStatement("SPLICE",false,0,A.text));
+        Assert.assertEquals(A,new CachedStatement("SPLICE",true,0,A.text));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.apache.spark.api.java.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the control side's build/probe hash join.
+ */
+@Category(ArchitectureIndependent.class)
+public class ControlHashJoinTest{
+
+    @Test
+    public void testInnerJoinInMemory() throws Exception{
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(false,Long.MAX_VALUE);
+        List<String> results=toStrings(join.join(rows("l",1000,100),rows("r",300,50)));
+
+        Assert.assertFalse(join.isSpilled());
+        Assert.assertEquals(expected(false,1000,100,300,50),results);
+    }
+
+    @Test
+    public void testLeftOuterJoinInMemory() throws Exception{
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(true,Long.MAX_VALUE);
+        List<String> results=toStrings(join.join(rows("l",1000,100),rows("r",300,50)));
+
+        Assert.assertFalse(join.isSpilled());
+        Assert.assertEquals(expected(true,1000,100,300,50),results);
+    }
+
+    @Test
+    public void testInnerJoinAfterSpilling() throws Exception{
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(false,4*1024);
+        List<String> results=toStrings(join.join(rows("l",20000,2000),rows("r",6000,1000)));
+
+        Assert.assertTrue("Should have spilled",join.isSpilled());
+        Assert.assertEquals(expected(false,20000,2000,6000,1000),results);
+    }
+
+    @Test
+    public void testLeftOuterJoinAfterSpilling() throws Exception{
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(true,4*1024);
+        List<String> results=toStrings(join.join(rows("l",20000,2000),rows("r",6000,1000)));
+
+        Assert.assertTrue("Should have spilled",join.isSpilled());
+        Assert.assertEquals(expected(true,20000,2000,6000,1000),results);
+    }
+
+    @Test
+    public void testRepartitionsBuildPartitionsWhichDoNotFit() throws Exception{
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(false,4*1024);
+        List<String> results=toStrings(join.join(rows("l",40000,20000),rows("r",20000,20000)));
+
+        Assert.assertTrue("Should have partitioned again",join.getRepartitionCount()>0);
+        Assert.assertEquals(expected(false,40000,20000,20000,20000),results);
+    }
+
+    @Test
+    public void testStopsRepartitioningASkewedKey() throws Exception{
+        //every build row has the same key, so partitioning again never makes it any smaller
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(true,4*1024);
+        List<String> results=toStrings(join.join(rows("l",20,2),rows("r",2000,1)));
+
+        Assert.assertEquals("Should give up at the maximum depth",ControlHashJoin.MAX_DEPTH,join.getRepartitionCount());
+        Assert.assertEquals(expected(true,20,2,2000,1),results);
+    }
+
+    @Test
+    public void testCloseRemovesUnjoinedPartitions() throws Exception{
+        Set<String> before=spillFiles();
+        ControlHashJoin<Integer,String,String> join=new ControlHashJoin<>(false,4*1024);
+        Iterator<Tuple2<Integer,Tuple2<String,Object>>> results=join.join(rows("l",20000,2000),rows("r",6000,1000));
+        Assert.assertTrue("Should have spilled",join.isSpilled());
+        Assert.assertTrue(results.hasNext());
+        results.next();
+        Assert.assertTrue("Spilled results should be closeable",results instanceof AutoCloseable);
+
+        ((AutoCloseable)results).close();
+        Assert.assertFalse(results.hasNext());
+        Set<String> left=spillFiles();
+        left.removeAll(before);
+        Assert.assertTrue("Spill files were not removed: "+left,left.isEmpty());
+        ((AutoCloseable)results).close(); //closing twice is harmless
+    }
+
+    @Test
+    public void testEmptyBuildSide() throws Exception{
+        List<Tuple2<Integer,String>> none=Collections.emptyList();
+        Assert.assertTrue(toStrings(new ControlHashJoin<Integer,String,String>(false,Long.MAX_VALUE)
+                .join(rows("l",100,10),none.iterator())).isEmpty());
+        Assert.assertEquals(expected(true,100,10,0,1),
+                toStrings(new ControlHashJoin<Integer,String,String>(true,Long.MAX_VALUE).join(rows("l",100,10),none.iterator())));
+    }
+
+    @Test
+    public void testBuildTableChainsRowsInInsertionOrder() throws Exception{
+        ControlHashJoin.BuildTable<Integer,Integer> table=new ControlHashJoin.BuildTable<>();
+        for(int i=0;i<10000;i++){
+            table.add(i%100,i);
+        }
+        ControlHashJoin.KeyFilter filter=table.filter();
+        for(int k=0;k<100;k++){
+            Assert.assertTrue(filter.mightContain(Integer.valueOf(k).hashCode()));
+            int i=0;
+            for(int r=table.firstRow(k,Integer.valueOf(k).hashCode());r>=0;r=table.nextRow(r),i++){
+                Assert.assertEquals(k+100*i,(int)table.row(r));
+            }
+            Assert.assertEquals("Incorrect number of rows for key "+k,100,i);
+        }
+        Assert.assertEquals(-1,table.firstRow(100,Integer.valueOf(100).hashCode()));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static Iterator<Tuple2<Integer,String>> rows(String prefix,int numRows,int numKeys){
+        List<Tuple2<Integer,String>> rows=new ArrayList<>(numRows);
+        for(int i=0;i<numRows;i++){
+            rows.add(new Tuple2<>(i%numKeys,prefix+i));
+        }
+        return rows.iterator();
+    }
+
+    /*
+     * Left keys are 0..leftKeys-1, right keys 0..rightKeys-1, so every left key below rightKeys matches.
+     */
+    private static List<String> expected(boolean outer,int leftRows,int leftKeys,int rightRows,int rightKeys){
+        List<String> results=new ArrayList<>();
+        for(int l=0;l<leftRows;l++){
+            int key=l%leftKeys;
+            boolean matched=false;
+            for(int r=key;r<rightRows && key<rightKeys;r+=rightKeys){
+                results.add(key+":l"+l+":r"+r);
+                matched=true;
+            }
+            if(outer && !matched)
+                results.add(key+":l"+l+":null");
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    private static Set<String> spillFiles(){
+        Set<String> names=new HashSet<>();
+        String[] files=new File(System.getProperty("java.io.tmpdir")).list();
+        if(files!=null){
+            for(String name : files){
+                if(name.startsWith("controlJoin") && name.endsWith(".spill"))
+                    names.add(name);
+            }
+        }
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> toStrings(Iterator<Tuple2<Integer,Tuple2<String,Object>>> results){
+        List<String> strings=new ArrayList<>();
+        while(results.hasNext()){
+            Tuple2<Integer,Tuple2<String,Object>> next=results.next();
+            Object right=next._2()._2();
+            if(right instanceof Optional)
+                right=((Optional<String>)right).isPresent()?((Optional<String>)right).get():null;
+            strings.add(next._1()+":"+next._2()._1()+":"+right);
+        }
+        Collections.sort(strings);
+        return strings;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.stream.function.RowComparator;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the control side's external sort.
+ */
+@Category(ArchitectureIndependent.class)
+public class ExternalSorterTest{
+    private static final Comparator<Integer> NATURAL=new Comparator<Integer>(){
+        @Override
+        public int compare(Integer o1,Integer o2){
+            return o1.compareTo(o2);
+        }
+    };
+
+    @Test
+    public void testSortsInMemory() throws Exception{
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,Long.MAX_VALUE);
+        List<Tuple2<Integer,Integer>> input=randomInts(10000,new Random(0));
+        assertSorted(input,sorter.sort(input.iterator()),NATURAL,input.size());
+        Assert.assertEquals(0,sorter.getRunCount());
+    }
+
+    @Test
+    public void testSortsWithRuns() throws Exception{
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,64*1024);
+        List<Tuple2<Integer,Integer>> input=randomInts(100000,new Random(1));
+        assertSorted(input,sorter.sort(input.iterator()),NATURAL,input.size());
+        Assert.assertTrue("Should have spilled",sorter.getRunCount()>0);
+    }
+
+    @Test
+    public void testMergesInSeveralPasses() throws Exception{
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,1024);
+        List<Tuple2<Integer,Integer>> input=randomInts(20000,new Random(2));
+        assertSorted(input,sorter.sort(input.iterator()),NATURAL,input.size());
+        Assert.assertTrue("Should have needed an intermediate merge",sorter.getRunCount()>ExternalSorter.MAX_FAN_IN);
+    }
+
+    @Test
+    public void testTopN() throws Exception{
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,Long.MAX_VALUE);
+        List<Tuple2<Integer,Integer>> input=randomInts(10000,new Random(3));
+        assertSorted(input,sorter.sortTopN(input.iterator(),10),NATURAL,10);
+        Assert.assertEquals(0,sorter.getRunCount());
+    }
+
+    @Test
+    public void testTopNLargerThanMemory() throws Exception{
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,16*1024);
+        List<Tuple2<Integer,Integer>> input=randomInts(10000,new Random(4));
+        assertSorted(input,sorter.sortTopN(input.iterator(),5000),NATURAL,5000);
+    }
+
+    @Test
+    public void testEncodedKeysSortLikeComparator() throws Exception{
+        Random random=new Random(5);
+        List<Tuple2<ExecRow,Integer>> input=new ArrayList<>();
+        for(int i=0;i<5000;i++){
+            ValueRow key=new ValueRow(3);
+            key.setColumn(1,random.nextInt(10)==0?new SQLInteger():new SQLInteger(random.nextInt(20)-10));
+            key.setColumn(2,random.nextInt(10)==0?new SQLInteger():new SQLInteger(random.nextInt()));
+            key.setColumn(3,new SQLVarchar(Integer.toString(random.nextInt(100))));
+            input.add(new Tuple2<ExecRow,Integer>(key,i));
+        }
+        boolean[][] orders={{false,false,false},{true,false,true},{false,true,false},{true,true,true}};
+        for(boolean[] desc : orders){
+            for(boolean[] nullsLow : orders){
+                RowComparator comparator=new RowComparator(desc,nullsLow);
+                ExternalSorter<ExecRow,Integer> sorter=new ExternalSorter<>(comparator,32*1024);
+                assertSorted(input,sorter.sort(input.iterator()),comparator,input.size());
+            }
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static List<Tuple2<Integer,Integer>> randomInts(int size,Random random){
+        List<Tuple2<Integer,Integer>> input=new ArrayList<>(size);
+        for(int i=0;i<size;i++){
+            input.add(new Tuple2<>(random.nextInt(size),i));
+        }
+        return input;
+    }
+
+    private static <K,V> void assertSorted(List<Tuple2<K,V>> input,Iterator<Tuple2<K,V>> sorted,Comparator<K> comparator,int expectedSize){
+        List<K> expected=new ArrayList<>(input.size());
+        for(Tuple2<K,V> t : input){
+            expected.add(t._1());
+        }
+        Collections.sort(expected,comparator);
+
+        int count=0;
+        while(sorted.hasNext()){
+            Tuple2<K,V> next=sorted.next();
+            Assert.assertTrue("Too many rows returned",count<expectedSize);
+            Assert.assertEquals("Row "+count+" out of order",0,comparator.compare(expected.get(count),next._1()));
+            count++;
+        }
+        Assert.assertEquals("Incorrect number of rows",expectedSize,count);
+    }
+}
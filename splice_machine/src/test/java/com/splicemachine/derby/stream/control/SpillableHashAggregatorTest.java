@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the control side's spilling hash aggregation.
+ */
+@Category(ArchitectureIndependent.class)
+public class SpillableHashAggregatorTest{
+    private static final SpillableHashAggregator.Combiner<Long,Long> SUM=new SpillableHashAggregator.Combiner<Long, Long>(){
+        @Override public Long create(Long value){ return value; }
+        @Override public Long mergeValue(Long combined,Long value){ return combined+value; }
+        @Override public Long mergeCombiners(Long first,Long second){ return first+second; }
+        @Override public boolean accumulates(){ return false; }
+    };
+
+    private static final SpillableHashAggregator.Combiner<Long,List<Long>> GROUP=new SpillableHashAggregator.Combiner<Long, List<Long>>(){
+        @Override public List<Long> create(Long value){
+            List<Long> values=new ArrayList<>();
+            values.add(value);
+            return values;
+        }
+        @Override public List<Long> mergeValue(List<Long> combined,Long value){
+            combined.add(value);
+            return combined;
+        }
+        @Override public List<Long> mergeCombiners(List<Long> first,List<Long> second){
+            first.addAll(second);
+            return first;
+        }
+        @Override public boolean accumulates(){ return true; }
+    };
+
+    @Test
+    public void testReducesInMemory() throws Exception{
+        SpillableHashAggregator<Integer,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,Long.MAX_VALUE);
+        Map<Integer,Long> result=toMap(aggregator.aggregate(rows(10000,100)));
+
+        Assert.assertEquals(0,aggregator.getSpillCount());
+        assertSums(result,10000,100);
+    }
+
+    @Test
+    public void testReducesAfterSpilling() throws Exception{
+        SpillableHashAggregator<Integer,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,10*1024);
+        Map<Integer,Long> result=toMap(aggregator.aggregate(rows(100000,5000)));
+
+        Assert.assertTrue("Should have spilled",aggregator.getSpillCount()>0);
+        assertSums(result,100000,5000);
+    }
+
+    @Test
+    public void testGroupsAfterSpilling() throws Exception{
+        SpillableHashAggregator<Integer,Long,List<Long>> aggregator=new SpillableHashAggregator<>(GROUP,10*1024);
+        Iterator<Tuple2<Integer,List<Long>>> groups=aggregator.aggregate(rows(20000,1000));
+
+        Assert.assertTrue("Should have spilled",aggregator.getSpillCount()>0);
+        int numGroups=0;
+        while(groups.hasNext()){
+            Tuple2<Integer,List<Long>> group=groups.next();
+            List<Long> values=group._2();
+            Collections.sort(values);
+            Assert.assertEquals("Incorrect group size for key "+group._1(),20,values.size());
+            for(int i=0;i<values.size();i++){
+                Assert.assertEquals(group._1()+1000L*i,(long)values.get(i));
+            }
+            numGroups++;
+        }
+        Assert.assertEquals(1000,numGroups);
+    }
+
+    @Test
+    public void testCloseRemovesUnreadPartitions() throws Exception{
+        Set<String> before=spillFiles();
+        SpillableHashAggregator<Integer,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,10*1024);
+        Iterator<Tuple2<Integer,Long>> result=aggregator.aggregate(rows(100000,5000));
+        Assert.assertTrue("Should have spilled",aggregator.getSpillCount()>0);
+        Assert.assertTrue(result.hasNext());
+        result.next();
+        Assert.assertTrue("A spilled result should be closeable",result instanceof AutoCloseable);
+
+        ((AutoCloseable)result).close();
+        Assert.assertFalse(result.hasNext());
+        Set<String> left=spillFiles();
+        left.removeAll(before);
+        Assert.assertTrue("Spill files were not removed: "+left,left.isEmpty());
+        ((AutoCloseable)result).close(); //closing twice is harmless
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception{
+        SpillableHashAggregator<Integer,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,1024);
+        Assert.assertFalse(aggregator.aggregate(Collections.<Tuple2<Integer,Long>>emptyIterator()).hasNext());
+    }
+
+    @Test
+    public void testIntegralKeys() throws Exception{
+        List<Tuple2<ExecRow,Long>> input=new ArrayList<>();
+        for(int i=0;i<10000;i++){
+            input.add(new Tuple2<>(intRow(i%100),(long)i));
+        }
+        input.add(new Tuple2<>(intRow(null),7L));
+        input.add(new Tuple2<>(intRow(null),8L));
+
+        SpillableHashAggregator<ExecRow,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,Long.MAX_VALUE);
+        Iterator<Tuple2<ExecRow,Long>> result=aggregator.aggregate(input.iterator());
+        Map<Integer,Long> sums=new HashMap<>();
+        Long nullSum=null;
+        while(result.hasNext()){
+            Tuple2<ExecRow,Long> next=result.next();
+            DataValueDescriptor key=next._1().getColumn(1);
+            if(key.isNull()){
+                Assert.assertNull("Null key returned twice",nullSum);
+                nullSum=next._2();
+            }else
+                Assert.assertNull("Key returned twice",sums.put(key.getInt(),next._2()));
+        }
+        Assert.assertEquals(15L,(long)nullSum);
+        assertSums(sums,10000,100);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static Iterator<Tuple2<Integer,Long>> rows(int numRows,int numKeys){
+        List<Tuple2<Integer,Long>> rows=new ArrayList<>(numRows);
+        for(int i=0;i<numRows;i++){
+            rows.add(new Tuple2<>(i%numKeys,(long)i));
+        }
+        return rows.iterator();
+    }
+
+    private static void assertSums(Map<Integer,Long> sums,int numRows,int numKeys){
+        Assert.assertEquals(numKeys,sums.size());
+        for(int k=0;k<numKeys;k++){
+            long expected=0;
+            for(int i=k;i<numRows;i+=numKeys){
+                expected+=i;
+            }
+            Assert.assertEquals("Incorrect sum for key "+k,expected,(long)sums.get(k));
+        }
+    }
+
+    private static <K,V> Map<K,V> toMap(Iterator<Tuple2<K,V>> entries){
+        Map<K,V> map=new HashMap<>();
+        while(entries.hasNext()){
+            Tuple2<K,V> next=entries.next();
+            Assert.assertNull("Key returned twice: "+next._1(),map.put(next._1(),next._2()));
+        }
+        return map;
+    }
+
+    private static Set<String> spillFiles(){
+        Set<String> names=new HashSet<>();
+        String[] files=new File(System.getProperty("java.io.tmpdir")).list();
+        if(files!=null){
+            for(String name : files){
+                if(name.startsWith("controlAggregate") && name.endsWith(".spill"))
+                    names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static ExecRow intRow(Integer value){
+        ValueRow row=new ValueRow(1);
+        row.setColumn(1,value==null?new SQLInteger():new SQLInteger(value));
+        return row;
+    }
+}
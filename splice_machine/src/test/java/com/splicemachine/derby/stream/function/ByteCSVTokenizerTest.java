@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.types.SQLDate;
+import com.splicemachine.derby.stream.utils.BooleanList;
+import org.junit.Assert;
+import org.junit.Test;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ByteCSVTokenizerTest{
+
+    @Test
+    public void tokenizesLikeQuoteTrackingTokenizer() throws Exception{
+        String[] lines={
+                "hello,goodbye,parseThis!,boots",
+                "\"hello\",goodbye,,\"\"",
+                "a \"quoted, with comma\" b,\"escaped \"\"quote\"\"\",end",
+                "  spaces  , kept ,",
+                "été,\"日本語\",ü",
+                ","
+        };
+        for(String line : lines){
+            checkSameAsQuoteTracking(line);
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void failsOnUnterminatedQuote() throws Exception{
+        tokenize("a,\"b,c");
+    }
+
+    @Test
+    public void detectsNulls() throws Exception{
+        ByteCSVTokenizer tokens=tokenize("null,NuLl,\"null\",,\"\",nulls");
+        Assert.assertTrue(tokens.isNull(0));
+        Assert.assertTrue(tokens.isNull(1));
+        Assert.assertFalse("A quoted null is a string",tokens.isNull(2));
+        Assert.assertTrue(tokens.isNull(3));
+        Assert.assertTrue(tokens.isNull(4));
+        Assert.assertFalse(tokens.isNull(5));
+    }
+
+    @Test
+    public void parsesNumbersLikeTheirTypes() throws Exception{
+        ByteCSVTokenizer tokens=tokenize("42, -17 ,+5,0.1,-3.25,123456789012345,1.,.5,00012.500,-0");
+        Assert.assertEquals(42L,tokens.parseLong(0));
+        Assert.assertEquals(-17L,tokens.parseLong(1));
+        Assert.assertEquals(5L,tokens.parseLong(2));
+        for(int i=0;i<tokens.getColumnCount();i++){
+            String value=tokens.getString(i).trim();
+            Assert.assertEquals(value,Double.parseDouble(value),tokens.parseDouble(i),0d);
+            Assert.assertEquals(value,new BigDecimal(value),tokens.parseDecimal(i));
+        }
+    }
+
+    @Test
+    public void leavesUnusualNumbersToTheirTypes() throws Exception{
+        ByteCSVTokenizer tokens=tokenize("1e5,1234567890123456789,0.1234567890123456,abc,-,.,1 2");
+        for(int i=0;i<tokens.getColumnCount();i++){
+            assertUnparsedLong(tokens,i);
+            assertUnparsedDouble(tokens,i);
+        }
+    }
+
+    @Test
+    public void parsesDefaultFormatDates() throws Exception{
+        ByteCSVTokenizer tokens=tokenize("2016-10-18,2016-02-29,2015-02-29,1582-01-01,2016-1-05, 2016-10-18,2016/10/18");
+        Assert.assertEquals(SQLDate.computeEncodedDate(2016,10,18),tokens.parseDate(0));
+        Assert.assertEquals(SQLDate.computeEncodedDate(2016,2,29),tokens.parseDate(1));
+        for(int i=2;i<tokens.getColumnCount();i++){
+            try{
+                tokens.parseDate(i);
+                Assert.fail("Should not parse "+tokens.getString(i));
+            }catch(NumberFormatException expected){
+            }
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static ByteCSVTokenizer tokenize(String line) throws IOException{
+        ByteCSVTokenizer tokens=new ByteCSVTokenizer('"',',');
+        byte[] bytes=line.getBytes(StandardCharsets.UTF_8);
+        tokens.tokenize(bytes,0,bytes.length);
+        return tokens;
+    }
+
+    private static void checkSameAsQuoteTracking(String line) throws IOException{
+        QuoteTrackingTokenizer qtt=new QuoteTrackingTokenizer(new StringReader(line+"\n"),CsvPreference.STANDARD_PREFERENCE);
+        List<String> cols=new ArrayList<>();
+        BooleanList quoteCols=new BooleanList(4);
+        Assert.assertTrue(qtt.readColumns(cols,quoteCols));
+
+        ByteCSVTokenizer tokens=tokenize(line);
+        Assert.assertEquals(line,cols.size(),tokens.getColumnCount());
+        for(int i=0;i<cols.size();i++){
+            Assert.assertEquals(line,cols.get(i),tokens.isNull(i)?null:tokens.getString(i));
+            Assert.assertEquals(line,quoteCols.valueAt(i),tokens.isQuoted(i));
+        }
+    }
+
+    private static void assertUnparsedLong(ByteCSVTokenizer tokens,int column){
+        try{
+            tokens.parseLong(column);
+            Assert.fail("Should not parse "+tokens.getString(column));
+        }catch(NumberFormatException expected){
+        }
+    }
+
+    private static void assertUnparsedDouble(ByteCSVTokenizer tokens,int column){
+        try{
+            tokens.parseDouble(column);
+            Assert.fail("Should not parse "+tokens.getString(column));
+        }catch(NumberFormatException expected){
+        }
+    }
+}
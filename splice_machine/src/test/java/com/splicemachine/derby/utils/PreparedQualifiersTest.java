@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.derby.utils;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataType;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+/**
+ * Checks that qualifying rows with qualifiers resolved once per scan gives the same answer as
+ * {@link Scans#qualifyRecordFromRow}.
+ */
+@Category(ArchitectureIndependent.class)
+public class PreparedQualifiersTest{
+    private static final int NUM_ROWS=500;
+    private static final int[] OPERATORS={
+            DataType.ORDER_OP_LESSTHAN,
+            DataType.ORDER_OP_LESSOREQUALS,
+            DataType.ORDER_OP_EQUALS,
+            DataType.ORDER_OP_GREATERTHAN,
+            DataType.ORDER_OP_GREATEROREQUALS
+    };
+
+    @Test
+    public void testIntegerComparisons() throws Exception{
+        ExecRow[] rows=randomRows(new Random(0L));
+        for(int op : OPERATORS){
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(0,op,new SQLInteger(25),false)}});
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(0,op,new SQLInteger(25),true)}});
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(1,op,new SQLInteger(25),false)}});
+        }
+    }
+
+    @Test
+    public void testMixedNumericComparisons() throws Exception{
+        ExecRow[] rows=randomRows(new Random(1L));
+        for(int op : OPERATORS){
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(0,op,new SQLDouble(24.5d),false)}});
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(2,op,new SQLInteger(50),false)}});
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(2,op,new SQLDouble(50.25d),false)}});
+        }
+    }
+
+    @Test
+    public void testNonNumericComparisons() throws Exception{
+        ExecRow[] rows=randomRows(new Random(2L));
+        for(int op : OPERATORS){
+            assertMatchesRowAtATime(rows,new Qualifier[][]{{new TestQualifier(3,op,new SQLVarchar("v5"),false)}});
+        }
+    }
+
+    @Test
+    public void testRangeAndInList() throws Exception{
+        ExecRow[] rows=randomRows(new Random(3L));
+        //col0 >= 10 and col0 < 40 and (col1 = 3 or col1 = 7 or col1 = 11)
+        Qualifier[][] qualifiers={
+                {
+                        new TestQualifier(0,DataType.ORDER_OP_GREATEROREQUALS,new SQLInteger(10),false),
+                        new TestQualifier(0,DataType.ORDER_OP_LESSTHAN,new SQLInteger(40),false)
+                },
+                {
+                        new TestQualifier(1,DataType.ORDER_OP_EQUALS,new SQLLongint(3),false),
+                        new TestQualifier(1,DataType.ORDER_OP_EQUALS,new SQLLongint(7),false),
+                        new TestQualifier(1,DataType.ORDER_OP_EQUALS,new SQLLongint(11),false)
+                }
+        };
+        assertMatchesRowAtATime(rows,qualifiers);
+    }
+
+    @Test
+    public void testOrClausesWithNullValue() throws Exception{
+        ExecRow[] rows=randomRows(new Random(4L));
+        //a null in an OR clause rejects every row which doesn't match an earlier term
+        Qualifier[][] qualifiers={
+                {},
+                {
+                        new TestQualifier(0,DataType.ORDER_OP_LESSTHAN,new SQLInteger(20),false),
+                        new TestQualifier(1,DataType.ORDER_OP_GREATERTHAN,new SQLLongint(),false),
+                        new TestQualifier(2,DataType.ORDER_OP_GREATERTHAN,new SQLDouble(10d),false)
+                }
+        };
+        assertMatchesRowAtATime(rows,qualifiers);
+    }
+
+    @Test
+    public void testNullValueInAndClauseRejectsEverything() throws Exception{
+        ExecRow[] rows=randomRows(new Random(5L));
+        PreparedQualifiers preparedQualifiers=new PreparedQualifiers(
+                new Qualifier[][]{{new TestQualifier(0,DataType.ORDER_OP_LESSTHAN,new SQLInteger(),false)}},null,null);
+        preparedQualifiers.prepare();
+        for(ExecRow row : rows){
+            Assert.assertFalse(preparedQualifiers.qualify(row));
+        }
+    }
+
+    @Test
+    public void testQualifiesReusedRow() throws Exception{
+        ExecRow[] rows=randomRows(new Random(6L));
+        Qualifier[][] qualifiers={{new TestQualifier(0,DataType.ORDER_OP_LESSTHAN,new SQLInteger(25),false)}};
+        PreparedQualifiers preparedQualifiers=new PreparedQualifiers(qualifiers,null,null);
+        preparedQualifiers.prepare();
+        //the scanner hands out the same row each time, with new values
+        ExecRow reused=rows[0].getClone();
+        for(ExecRow row : rows){
+            for(int i=1;i<=row.nColumns();i++){
+                reused.getColumn(i).setValue(row.getColumn(i));
+            }
+            Assert.assertEquals("Incorrect qualification for row "+row,
+                    Scans.qualifyRecordFromRow(row.getRowArray(),qualifiers,null,null),preparedQualifiers.qualify(reused));
+        }
+    }
+
+    @Test
+    public void testVariantQualifiersCannotBeBatched() throws Exception{
+        TestQualifier variant=new TestQualifier(0,DataType.ORDER_OP_EQUALS,new SQLInteger(1),false);
+        variant.variantType=Qualifier.VARIANT;
+        Assert.assertFalse(PreparedQualifiers.canEvaluate(new Qualifier[][]{{variant}}));
+        Assert.assertTrue(PreparedQualifiers.canEvaluate(
+                new Qualifier[][]{{new TestQualifier(0,DataType.ORDER_OP_EQUALS,new SQLInteger(1),false)}}));
+        Assert.assertFalse(PreparedQualifiers.canEvaluate(null));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static void assertMatchesRowAtATime(ExecRow[] rows,Qualifier[][] qualifiers) throws StandardException{
+        PreparedQualifiers preparedQualifiers=new PreparedQualifiers(qualifiers,null,null);
+        //resolve the qualifiers again part way through, as when the scan is re-opened
+        for(int i=0;i<rows.length;i++){
+            if(i%100==0)
+                preparedQualifiers.prepare();
+            boolean expected=Scans.qualifyRecordFromRow(rows[i].getRowArray(),qualifiers,null,null);
+            Assert.assertEquals("Incorrect qualification for row "+rows[i],expected,preparedQualifiers.qualify(rows[i]));
+        }
+    }
+
+    private static ExecRow[] randomRows(Random random) throws StandardException{
+        ExecRow[] rows=new ExecRow[NUM_ROWS];
+        for(int i=0;i<rows.length;i++){
+            ExecRow row=new ValueRow(4);
+            row.setColumn(1,random.nextInt(10)==0?new SQLInteger():new SQLInteger(random.nextInt(50)));
+            row.setColumn(2,random.nextInt(10)==0?new SQLLongint():new SQLLongint(random.nextInt(15)));
+            row.setColumn(3,random.nextInt(10)==0?new SQLDouble():new SQLDouble(random.nextDouble()*100));
+            row.setColumn(4,random.nextInt(10)==0?new SQLVarchar():new SQLVarchar("v"+random.nextInt(10)));
+            rows[i]=row;
+        }
+        return rows;
+    }
+
+    private static class TestQualifier implements Qualifier{
+        private final int column;
+        private final int operator;
+        private final DataValueDescriptor orderable;
+        private final boolean negate;
+        private int variantType=Qualifier.CONSTANT;
+
+        TestQualifier(int column,int operator,DataValueDescriptor orderable,boolean negate){
+            this.column=column;
+            this.operator=operator;
+            this.orderable=orderable;
+            this.negate=negate;
+        }
+
+        @Override public int getColumnId(){ return column; }
+        @Override public int getStoragePosition(){ return column; }
+        @Override public DataValueDescriptor getOrderable(){ return orderable; }
+        @Override public int getOperator(){ return operator; }
+        @Override public boolean negateCompareResult(){ return negate; }
+        @Override public boolean getOrderedNulls(){ return false; }
+        @Override public boolean getUnknownRV(){ return false; }
+        @Override public void clearOrderableCache(){ }
+        @Override public void reinitialize(){ }
+        @Override public String getText(){ return "column "+column+" op "+operator+" "+orderable; }
+        @Override public int getVariantType(){ return variantType; }
+    }
+}
@@ -18,6 +18,9 @@ package com.splicemachine.si.api.filter;
 import com.splicemachine.storage.DataCell;
 import com.splicemachine.storage.DataFilter;
 
+import java.io.IOException;
+import java.util.List;
+
 public interface TxnFilter extends DataFilter{
     void nextRow();
 
@@ -25,4 +28,16 @@ public interface TxnFilter extends DataFilter{
     boolean getExcludeRow();
 
     RowAccumulator getAccumulator();
+
+    /**
+     * Resolve, in as few lookups as possible, the transactions which wrote the cells in {@code rows}. This
+     * allows a scanner to look ahead over a block of rows before filtering them, so that
+     * {@link #filterCell(DataCell)} does not need to fetch each unseen transaction individually.
+     *
+     * This is purely an optimization--filtering is correct whether or not this method is called.
+     *
+     * @param rows the rows which are about to be filtered
+     * @throws IOException if something goes wrong fetching the transactions
+     */
+    void prefetchTransactions(Iterable<? extends List<DataCell>> rows) throws IOException;
 }
@@ -26,9 +26,13 @@ import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.TrafficControl;
 import org.apache.log4j.Logger;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Read-Resolver which asynchronously submits regions for execution, discarding
@@ -36,13 +40,22 @@ import java.util.concurrent.TimeUnit;
  * <p/>
  * This implementation uses an LMAX disruptor to asynchronously pass Read-resolve events
  * to a background thread, which in turn uses a SynchronousReadResolver to actually perform the resolution.
+ * <p/>
+ * The background thread groups the events that it finds waiting in the queue by region and transaction,
+ * so that each group is resolved with one transaction lookup and a single batched write. Rows which
+ * were recently resolved are not submitted again (see {@link RecentResolutions}).
  *
  * @author Scott Fines
  *         Date: 7/1/14
  */
 @ThreadSafe
-public class AsyncReadResolver{
+public class AsyncReadResolver implements ReadResolverManagement{
     private static final Logger LOG=Logger.getLogger(AsyncReadResolver.class);
+    /*
+     * The largest number of events to group together before writing them out, even if more
+     * events are immediately available
+     */
+    static final int MAX_BATCH_SIZE=1024;
     private final RingBuffer<ResolveEvent> ringBuffer;
     private final Disruptor<ResolveEvent> disruptor;
 
@@ -52,6 +65,15 @@ public class AsyncReadResolver{
     private final RollForwardStatus status;
     private final TrafficControl trafficControl;
     private final KeyedReadResolver synchronousResolver;
+    private final RecentResolutions recentResolutions;
+
+    private final AtomicLong submitted=new AtomicLong(0l);
+    private final AtomicLong dropped=new AtomicLong(0l);
+    private final AtomicLong duplicates=new AtomicLong(0l);
+    private final AtomicLong resolvedRows=new AtomicLong(0l);
+    private final AtomicLong batches=new AtomicLong(0l);
+    private final AtomicLong batchedRows=new AtomicLong(0l);
+    private volatile int largestBatch; //only written by the event handler
 
     public AsyncReadResolver(int maxThreads,int bufferSize,
                              TxnSupplier txnSupplier,
@@ -70,6 +92,7 @@ public class AsyncReadResolver{
         int bSize=1;
         while(bSize<bufferSize)
             bSize<<=1;
+        recentResolutions=new RecentResolutions(bSize);
         disruptor=new Disruptor<>(new ResolveEventFactory(),bSize,consumerThreads,
                 ProducerType.MULTI,
                 new BlockingWaitStrategy()); //we want low latency here, but it might cost too much in CPU
@@ -92,6 +115,21 @@ public class AsyncReadResolver{
         return new PartitionReadResolver(region,rollForward);
     }
 
+    @Override public int getQueueCapacity(){ return ringBuffer.getBufferSize(); }
+    @Override public long getQueueDepth(){ return ringBuffer.getBufferSize()-ringBuffer.remainingCapacity(); }
+    @Override public long getSubmittedCount(){ return submitted.get(); }
+    @Override public long getDroppedCount(){ return dropped.get(); }
+    @Override public long getDuplicateCount(){ return duplicates.get(); }
+    @Override public long getResolvedRowCount(){ return resolvedRows.get(); }
+    @Override public long getBatchCount(){ return batches.get(); }
+    @Override public int getLargestBatchSize(){ return largestBatch; }
+
+    @Override
+    public double getAverageBatchSize(){
+        long b=batches.get();
+        return b==0?0d:((double)batchedRows.get())/b;
+    }
+
     private static class ResolveEvent{
         Partition region;
         long txnId;
@@ -107,25 +145,111 @@ public class AsyncReadResolver{
         }
     }
 
+    /*
+     * The rows of one transaction in one region, waiting to be resolved
+     */
+    private static class ResolveBatch{
+        final Partition region;
+        final long txnId;
+        final RollForward rollForward;
+        ByteSlice[] rowKeys=new ByteSlice[4];
+        int size;
+
+        ResolveBatch(Partition region,long txnId,RollForward rollForward){
+            this.region=region;
+            this.txnId=txnId;
+            this.rollForward=rollForward;
+        }
+
+        void add(ByteSlice rowKey){
+            if(size==rowKeys.length)
+                rowKeys=Arrays.copyOf(rowKeys,size<<1);
+            rowKeys[size++]=rowKey;
+        }
+    }
+
+    private static final class BatchKey{
+        Partition region;
+        long txnId;
+
+        BatchKey(Partition region,long txnId){
+            this.region=region;
+            this.txnId=txnId;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this==o) return true;
+            if(!(o instanceof BatchKey)) return false;
+            BatchKey other=(BatchKey)o;
+            return region==other.region && txnId==other.txnId;
+        }
+
+        @Override
+        public int hashCode(){
+            return 31*System.identityHashCode(region)+(int)(txnId^(txnId>>>32));
+        }
+    }
+
     private class ResolveEventHandler implements EventHandler<ResolveEvent>{
+        private final Map<BatchKey,ResolveBatch> batches=new HashMap<>();
+        private final BatchKey probe=new BatchKey(null,0l);
+        private int pending;
 
         @Override
         public void onEvent(ResolveEvent event,long sequence,boolean endOfBatch) throws Exception{
+            probe.region=event.region;
+            probe.txnId=event.txnId;
+            ResolveBatch batch=batches.get(probe);
+            if(batch==null){
+                batch=new ResolveBatch(event.region,event.txnId,event.rollForward);
+                batches.put(new BatchKey(event.region,event.txnId),batch);
+            }
+            //the event is reused once we return, but its row key array is not
+            batch.add(ByteSlice.wrap(event.rowKey.array(),event.rowKey.offset(),event.rowKey.length()));
+            event.region=null;
+            event.rollForward=null;
+            pending++;
+            if(endOfBatch || pending>=MAX_BATCH_SIZE)
+                flush();
+        }
+
+        private void flush() throws Exception{
             try{
-                if(synchronousResolver.resolve(event.region,
-                        event.rowKey,
-                        event.txnId,
-                        txnSupplier,
-                        status,
-                        false,
-                        trafficControl)){
-                    event.rollForward.recordResolved(event.rowKey,event.txnId);
+                for(ResolveBatch batch : batches.values()){
+                    resolve(batch);
                 }
             }catch(Exception e){
                 LOG.info("Error during read resolution",e);
                 throw e;
+            }finally{
+                batches.clear();
+                pending=0;
             }
         }
+
+        private void resolve(ResolveBatch batch){
+            int resolved=synchronousResolver.resolve(batch.region,
+                    batch.rowKeys,
+                    batch.size,
+                    batch.txnId,
+                    txnSupplier,
+                    status,
+                    false,
+                    trafficControl);
+            if(resolved>0){
+                //only the rows whose resolution was written, which the resolver moves to the front
+                for(int i=0;i<resolved;i++){
+                    recentResolutions.add(batch.rowKeys[i],batch.txnId);
+                    batch.rollForward.recordResolved(batch.rowKeys[i],batch.txnId);
+                }
+                resolvedRows.addAndGet(resolved);
+            }
+            AsyncReadResolver.this.batches.incrementAndGet();
+            batchedRows.addAndGet(batch.size);
+            if(batch.size>largestBatch)
+                largestBatch=batch.size;
+        }
     }
 
     private class PartitionReadResolver implements ReadResolver{
@@ -140,14 +264,20 @@ public class AsyncReadResolver{
         @Override
         public void resolve(ByteSlice rowKey,long txnId){
             if(stopped) return; //we aren't running, so do nothing
+            if(recentResolutions.contains(rowKey,txnId)){
+                duplicates.incrementAndGet();
+                return;
+            }
             long sequence;
             try{
                 sequence=ringBuffer.tryNext();
             }catch(InsufficientCapacityException e){
+                dropped.incrementAndGet();
                 if(LOG.isTraceEnabled())
                     LOG.trace("Unable to submit for read resolution");
                 return;
             }
+            submitted.incrementAndGet();
 
             try{
                 ResolveEvent event=ringBuffer.get(sequence);
@@ -33,4 +33,21 @@ public interface KeyedReadResolver{
                     RollForwardStatus status,
                     boolean failOnError,
                     TrafficControl trafficControl);
+
+    /**
+     * Resolve a batch of rows which were all written by the same transaction, writing the resolutions
+     * for the entire batch as a single mutation where the region allows it.
+     *
+     * @param rowKeys the rows to resolve. Only the first {@code numRows} entries are used. The rows
+     *                which were resolved are moved to the front of the array
+     * @return the number of rows whose resolution was written, which are the first entries of {@code rowKeys}
+     */
+    int resolve(Partition region,
+                ByteSlice[] rowKeys,
+                int numRows,
+                long txnId,
+                TxnSupplier txnSupplier,
+                RollForwardStatus status,
+                boolean failOnError,
+                TrafficControl trafficControl);
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.api.readresolve;
+
+import javax.management.MXBean;
+
+/**
+ * Statistics about asynchronous read resolution.
+ */
+@MXBean
+public interface ReadResolverManagement{
+
+    /**
+     * @return the number of resolutions the queue can hold
+     */
+    int getQueueCapacity();
+
+    /**
+     * @return the number of resolutions waiting in the queue
+     */
+    long getQueueDepth();
+
+    /**
+     * @return the number of resolutions which were submitted to the queue
+     */
+    long getSubmittedCount();
+
+    /**
+     * @return the number of resolutions which were discarded because the queue was full
+     */
+    long getDroppedCount();
+
+    /**
+     * @return the number of resolutions which were discarded because the same row and transaction
+     * were recently resolved
+     */
+    long getDuplicateCount();
+
+    /**
+     * @return the number of rows which were resolved
+     */
+    long getResolvedRowCount();
+
+    /**
+     * @return the number of batched writes used to resolve rows
+     */
+    long getBatchCount();
+
+    /**
+     * @return the average number of rows per batched write
+     */
+    double getAverageBatchSize();
+
+    /**
+     * @return the largest number of rows in one batched write
+     */
+    int getLargestBatchSize();
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.api.readresolve;
+
+import com.splicemachine.annotations.ThreadSafe;
+import com.splicemachine.utils.ByteSlice;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lossy record of the (row, transaction) pairs which were recently resolved.
+ *
+ * Scans which started before a resolution was written keep seeing the unresolved cells, so this
+ * keeps them from submitting the same row again. Rows are only recorded once their resolution has
+ * been written: a row whose transaction could not be resolved yet must be submitted again later.
+ * It is a direct-mapped table of fingerprints: a newer entry simply overwrites whatever was in its
+ * slot, so a row may occasionally be resolved twice (which is harmless), but is never considered
+ * resolved unless it actually was.
+ */
+@ThreadSafe
+class RecentResolutions{
+    private final AtomicLongArray fingerprints;
+    private final int mask;
+
+    RecentResolutions(int size){
+        int s=1;
+        while(s<size)
+            s<<=1;
+        this.fingerprints=new AtomicLongArray(s);
+        this.mask=s-1;
+    }
+
+    /**
+     * @return true if the row was recently resolved with this transaction
+     */
+    boolean contains(ByteSlice rowKey,long txnId){
+        long fingerprint=fingerprint(rowKey,txnId);
+        return fingerprints.get(slot(fingerprint))==fingerprint;
+    }
+
+    void add(ByteSlice rowKey,long txnId){
+        long fingerprint=fingerprint(rowKey,txnId);
+        fingerprints.lazySet(slot(fingerprint),fingerprint);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int slot(long fingerprint){
+        return (int)(fingerprint>>>32) & mask;
+    }
+
+    private static long fingerprint(ByteSlice rowKey,long txnId){
+        long h=((long)rowKey.hashCode()<<32)^txnId;
+        //murmur3 finalizer, so that the slot depends on all the bits of both the row and the transaction
+        h^=h>>>33;
+        h*=0xff51afd7ed558ccdL;
+        h^=h>>>33;
+        h*=0xc4ceb9fe1a85ec53L;
+        h^=h>>>33;
+        return h==0?1:h; //0 marks an empty slot
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.api.txn;
+
+import javax.management.MXBean;
+
+/**
+ * Statistics about batched transaction keep alives.
+ */
+@MXBean
+public interface KeepAliveSchedulerManagement{
+
+    /**
+     * @return the number of transactions which are currently being kept alive
+     */
+    int getTrackedTransactionCount();
+
+    /**
+     * @return the number of batched keep alive calls made
+     */
+    long getBatchCount();
+
+    /**
+     * @return the number of batched keep alive calls which failed, and were retried with the next batch
+     */
+    long getFailedBatchCount();
+
+    /**
+     * @return the number of transaction keep alives which were sent in batches
+     */
+    long getKeepAliveCount();
+
+    /**
+     * @return the number of transactions which were rolled back because they had timed out
+     */
+    long getTimedOutCount();
+
+    /**
+     * @return the average number of transactions per batched keep alive call
+     */
+    double getAverageBatchSize();
+
+    /**
+     * @return the largest number of transactions in one batched keep alive call
+     */
+    int getLargestBatchSize();
+
+    /**
+     * @return the average time taken by a batched keep alive call, in milliseconds
+     */
+    double getAverageBatchTimeMs();
+
+    /**
+     * @return the time taken by the most recent batched keep alive call, in milliseconds
+     */
+    long getLastBatchTimeMs();
+}
@@ -26,4 +26,40 @@ import javax.management.MXBean;
 @MXBean
 public interface TransactionCacheManagement {
 
+    /**
+     * @return the total number (since the cache was created) of requests which
+     * could be served from cache.
+     */
+    long getTotalHits();
+
+    /**
+     * @return the total number (since the cache was created) of requests which
+     * could <em>not</em> be served from cache.
+     */
+    long getTotalMisses();
+
+    /**
+     * @return the total number of requests made against the cache since it was created
+     */
+    long getTotalRequests();
+
+    /**
+     * @return the total number of entries which were evicted since the cache was created
+     */
+    long getTotalEvictedEntries();
+
+    /**
+     * @return the percentage of requests which were hits--i.e. totalHits/totalRequests
+     */
+    float getHitPercentage();
+
+    /**
+     * @return an <em>estimate</em> of the number of entries currently in the cache
+     */
+    int getCurrentSize();
+
+    /**
+     * @return the maximum number of entries which can be contained before an eviction is forced.
+     */
+    int getMaxSize();
 }
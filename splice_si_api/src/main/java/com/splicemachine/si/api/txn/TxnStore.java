@@ -38,6 +38,19 @@ public interface TxnStore extends TxnSupplier{
 
     boolean keepAlive(long txnId) throws IOException;
 
+    /**
+     * Keep several transactions alive at once.
+     *
+     * @param txnIds the transactions to keep alive
+     * @return the state of each transaction, in the same order as {@code txnIds}: {@link Txn.State#ACTIVE}
+     * if it was kept alive, {@link Txn.State#ROLLEDBACK} if it has been rolled back or has timed out (and so
+     * should be rolled back by its owner), and any other state (or {@code null}) if keep alives should
+     * simply stop.
+     * @throws IOException if something goes wrong. None, some, or all of the transactions may have been
+     * kept alive.
+     */
+    Txn.State[] keepAlive(long[] txnIds) throws IOException;
+
     void elevateTransaction(Txn txn,byte[] newDestinationTable) throws IOException;
 
     /**
@@ -43,6 +43,20 @@ public interface TxnSupplier {
 		 */
 		TxnView getTransaction(long txnId,boolean getDestinationTables) throws IOException;
 
+		/**
+		 * Get the transactions associated with each of {@code txnIds}.
+		 *
+		 * This is functionally equivalent to calling {@link #getTransaction(long)} for
+		 * each element of {@code txnIds}, but allows implementations which perform remote
+		 * lookups to resolve all of the transactions which are not locally available in
+		 * as few network calls as possible.
+		 *
+		 * @param txnIds the transaction ids to fetch. May contain duplicates.
+		 * @return an array of the same length as {@code txnIds}, where the i-th entry is
+		 * the transaction for {@code txnIds[i]} (or {@code null} if that transaction cannot be found).
+		 */
+		TxnView[] getTransactions(long[] txnIds) throws IOException;
+
 		/**
 		 * Determines whether this Store has the transaction in its local cache
 		 * or not.
@@ -15,10 +15,12 @@
 
 package com.splicemachine.si.api.txn.lifecycle;
 
+import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.coprocessor.TxnMessage;
 import com.splicemachine.utils.Source;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * @author Scott Fines
@@ -36,8 +38,12 @@ public interface TxnLifecycleStore{
 
     boolean keepAlive(long txnId) throws IOException;
 
+    Txn.State[] keepAlive(long[] txnIds) throws IOException;
+
     TxnMessage.Txn getTransaction(long txnId) throws IOException;
 
+    List<TxnMessage.Txn> getTransactions(long[] txnIds) throws IOException;
+
     long[] getActiveTransactionIds(byte[] destTable, long startId, long endId) throws IOException;
 
     Source<TxnMessage.Txn> getActiveTransactions(byte[] destTable, long startId, long endId) throws IOException;
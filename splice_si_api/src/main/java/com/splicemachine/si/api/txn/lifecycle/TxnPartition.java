@@ -21,6 +21,7 @@ import com.splicemachine.utils.Source;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Represents a Partition of the Transaction table. This is mainly for internal usage of the
@@ -61,6 +62,20 @@ public interface TxnPartition{
      */
     TxnMessage.Txn getTransaction(long txnId) throws IOException;
 
+    /**
+     * Fetch all information about several transactions at once.
+     * <p/>
+     * Only transactions which are physically stored in this partition are returned; ids which
+     * belong to a different partition, or which do not have a transaction record (e.g. read-only
+     * transactions), are silently omitted. Callers which need to know about missing transactions
+     * should compare the returned transaction ids against those requested.
+     *
+     * @param txnIds the transaction ids to fetch
+     * @return all recorded transaction information for those of {@code txnIds} which are held in this partition.
+     * @throws IOException if something goes wrong when fetching transactions
+     */
+    List<TxnMessage.Txn> getTransactions(long[] txnIds) throws IOException;
+
     /**
      * Get a list of transaction ids which are considered ACTIVE <em>at the time that they are visited</em>.
      * <p/>
@@ -180,5 +195,20 @@ public interface TxnPartition{
      */
     boolean keepAlive(long txnId) throws IOException;
 
+    /**
+     * Keep several transactions alive at once, with a single write to this partition.
+     * <p/>
+     * As with {@link #getTransactions(long[])}, only transactions which are physically stored in this
+     * partition are considered. The same locking requirements as {@link #keepAlive(long)} apply to each
+     * transaction.
+     *
+     * @param txnIds the transaction ids to keep alive
+     * @return the state of each transaction, in the same order as {@code txnIds}: {@link Txn.State#ACTIVE}
+     * if it was kept alive, {@link Txn.State#ROLLEDBACK} if it was rolled back or has timed out, the
+     * stored state if it has otherwise finished, and {@code null} if it is not held in this partition.
+     * @throws IOException if something goes wrong during the write
+     */
+    Txn.State[] keepAlive(long[] txnIds) throws IOException;
+
     void rollbackTransactionsAfter(long txnId) throws IOException;
 }
@@ -89,6 +89,8 @@ public class SIConstants {
     public static final String CHECK_BLOOM_ATTRIBUTE_NAME = "cb";
 
     public static final String ENTRY_PREDICATE_LABEL= "p";
+    //fraction of rows (encoded as the bits of a double) which a statistics scan should sample
+    public static final String SAMPLE_FRACTION_ATTRIBUTE_NAME = "sf";
 
     public static final int DEFAULT_CACHE_SIZE=1<<10;
 
@@ -22,7 +22,9 @@ import com.splicemachine.si.api.filter.TxnFilter;
 import com.splicemachine.si.api.readresolve.ReadResolver;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.store.ActiveTxnCacheSupplier;
+import com.splicemachine.si.impl.store.SharedActiveTxnCache;
 import com.splicemachine.si.impl.txn.CommittedTxn;
 import com.splicemachine.storage.CellType;
 import com.splicemachine.storage.DataCell;
@@ -30,6 +32,7 @@ import com.splicemachine.storage.DataFilter;
 import com.splicemachine.utils.ByteSlice;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Transaction filter which performs basic transactional filtering (i.e. row visibility, tombstones,
@@ -39,6 +42,14 @@ import java.io.IOException;
  *         Date: 6/23/14
  */
 public class SimpleTxnFilter implements TxnFilter{
+    /*
+     * When there is a shared cache behind us, the per-filter cache only needs to hold the
+     * handful of transactions a single scan touches repeatedly, so we can keep it small
+     * (it is allocated for every scan).
+     */
+    private static final int LOCAL_CACHE_SIZE=1024;
+    private static final int LOCAL_CACHE_SIZE_WITH_SHARED=64;
+
     private final TxnSupplier transactionStore;
     private final TxnView myTxn;
     private final ReadResolver readResolver;
@@ -66,8 +77,19 @@ public class SimpleTxnFilter implements TxnFilter{
                            TxnView myTxn,
                            ReadResolver readResolver,
                            TxnSupplier baseSupplier){
+        this(tableName,myTxn,readResolver,baseSupplier,sharedActiveTxnCache());
+    }
+
+    public SimpleTxnFilter(String tableName,
+                           TxnView myTxn,
+                           ReadResolver readResolver,
+                           TxnSupplier baseSupplier,
+                           SharedActiveTxnCache sharedActiveTxnCache){
         assert readResolver!=null;
-        this.transactionStore = new ActiveTxnCacheSupplier(baseSupplier,1024); //TODO -sf- configure
+        if(sharedActiveTxnCache!=null)
+            this.transactionStore = new ActiveTxnCacheSupplier(baseSupplier,LOCAL_CACHE_SIZE_WITH_SHARED,sharedActiveTxnCache,myTxn);
+        else
+            this.transactionStore = new ActiveTxnCacheSupplier(baseSupplier,LOCAL_CACHE_SIZE);
         this.tableName=tableName;
         this.myTxn=myTxn;
         this.readResolver=readResolver;
@@ -111,6 +133,40 @@ public class SimpleTxnFilter implements TxnFilter{
         }
     }
 
+    @Override
+    public void prefetchTransactions(Iterable<? extends List<DataCell>> rows) throws IOException{
+        LongOpenHashSet toFetch=null;
+        for(List<DataCell> row:rows){
+            for(DataCell cell:row){
+                long txnId=cell.version();
+                switch(cell.dataType()){
+                    case COMMIT_TIMESTAMP:
+                        /*
+                         * The commit timestamp column sorts first, so this will usually be seen before
+                         * the data it covers; caching it here means we won't fetch it below.
+                         */
+                        if(!transactionStore.transactionCached(txnId))
+                            transactionStore.cache(new CommittedTxn(txnId,cell.valueAsLong()));
+                        if(toFetch!=null)
+                            toFetch.remove(txnId);
+                        break;
+                    case TOMBSTONE:
+                    case ANTI_TOMBSTONE:
+                    case USER_DATA:
+                        if(!transactionStore.transactionCached(txnId)){
+                            if(toFetch==null) toFetch=new LongOpenHashSet();
+                            toFetch.add(txnId);
+                        }
+                        break;
+                    default:
+                        //these cells don't require transactional information
+                }
+            }
+        }
+        if(toFetch!=null && toFetch.size()>0)
+            transactionStore.getTransactions(toFetch.toArray());
+    }
+
     @Override
     public DataCell produceAccumulatedResult(){
         return null;
@@ -246,6 +302,11 @@ public class SimpleTxnFilter implements TxnFilter{
         }
     }
 
+    private static SharedActiveTxnCache sharedActiveTxnCache(){
+        SIDriver driver=SIDriver.driver();
+        return driver==null?null:driver.getSharedActiveTxnCache();
+    }
+
     private void ensureTransactionIsCached(DataCell data) throws IOException{
         long txnId=data.version();//this.dataStore.getOpFactory().getTimestamp(data);
         visitedTxnIds.add(txnId);
@@ -15,6 +15,7 @@
 
 package com.splicemachine.si.impl.data;
 
+import com.carrotsearch.hppc.LongArrayList;
 import com.splicemachine.concurrent.LongStripedSynchronizer;
 import com.splicemachine.si.api.txn.lifecycle.TxnLifecycleStore;
 import com.splicemachine.access.api.ServerControl;
@@ -27,6 +28,11 @@ import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -146,6 +152,32 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
         }
     }
 
+    @Override
+    public Txn.State[] keepAlive(long[] txnIds) throws IOException{
+        /*
+         * The keep alives are written with a single mutation, so we must hold the write lock of every
+         * stripe involved at the same time. To avoid deadlocking against another batch, the stripes are
+         * always acquired in the order of their position. The stripe of every id we are given is locked,
+         * so callers should leave out the transactions which the partition does not hold.
+         */
+        BitSet stripes=new BitSet();
+        for(long txnId:txnIds){
+            stripes.set(lockStriper.stripeOf(txnId));
+        }
+        List<Lock> locks=new ArrayList<>(stripes.cardinality());
+        try{
+            for(int i=stripes.nextSetBit(0);i>=0;i=stripes.nextSetBit(i+1)){
+                Lock lock=lockStriper.getStripe(i).writeLock();
+                acquireLock(lock);
+                locks.add(lock);
+            }
+            return baseStore.keepAlive(txnIds);
+        }finally{
+            for(int i=locks.size()-1;i>=0;i--){
+                unlock(locks.get(i));
+            }
+        }
+    }
 
     @Override
     public TxnMessage.Txn getTransaction(long txnId) throws IOException{
@@ -162,6 +194,37 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
         }
     }
 
+    @Override
+    public List<TxnMessage.Txn> getTransactions(long[] txnIds) throws IOException{
+        /*
+         * Group the transactions by the lock which protects them, so that we can read
+         * all the transactions under the same stripe with a single lock acquisition. We only
+         * hold one stripe at a time, so there's no risk of deadlocking against a concurrent batch.
+         */
+        Map<ReadWriteLock,LongArrayList> stripes=new IdentityHashMap<>();
+        for(long txnId:txnIds){
+            ReadWriteLock stripe=lockStriper.get(txnId);
+            LongArrayList ids=stripes.get(stripe);
+            if(ids==null){
+                ids=new LongArrayList();
+                stripes.put(stripe,ids);
+            }
+            ids.add(txnId);
+        }
+
+        List<TxnMessage.Txn> txns=new ArrayList<>(txnIds.length);
+        for(Map.Entry<ReadWriteLock,LongArrayList> stripe:stripes.entrySet()){
+            Lock lock=stripe.getKey().readLock();
+            acquireLock(lock);
+            try{
+                txns.addAll(baseStore.getTransactions(stripe.getValue().toArray()));
+            }finally{
+                unlock(lock);
+            }
+        }
+        return txns;
+    }
+
     @Override
     public long[] getActiveTransactionIds(byte[] destTable,long startId,long endId) throws IOException{
         if(endId<0)
@@ -28,9 +28,12 @@ import com.splicemachine.si.api.filter.TransactionReadController;
 import com.splicemachine.si.api.readresolve.AsyncReadResolver;
 import com.splicemachine.si.api.readresolve.KeyedReadResolver;
 import com.splicemachine.si.api.readresolve.ReadResolver;
+import com.splicemachine.si.api.readresolve.ReadResolverManagement;
 import com.splicemachine.si.api.readresolve.RollForward;
 import com.splicemachine.si.api.server.TransactionalRegion;
 import com.splicemachine.si.api.server.Transactor;
+import com.splicemachine.si.api.txn.KeepAliveScheduler;
+import com.splicemachine.si.api.txn.KeepAliveSchedulerManagement;
 import com.splicemachine.si.api.txn.TxnLifecycleManager;
 import com.splicemachine.si.api.txn.TxnStore;
 import com.splicemachine.si.api.txn.TxnSupplier;
@@ -40,6 +43,7 @@ import com.splicemachine.si.impl.readresolve.NoOpReadResolver;
 import com.splicemachine.si.impl.rollforward.NoopRollForward;
 import com.splicemachine.si.impl.rollforward.RollForwardStatus;
 import com.splicemachine.si.impl.server.SITransactor;
+import com.splicemachine.si.impl.store.SharedActiveTxnCache;
 import com.splicemachine.si.impl.txn.SITransactionReadController;
 import com.splicemachine.storage.DataFilterFactory;
 import com.splicemachine.storage.Partition;
@@ -90,6 +94,7 @@ public class SIDriver {
     private final PartitionInfoCache partitionInfoCache;
     private final SnowflakeFactory snowflakeFactory;
     private final SIEnvironment env;
+    private final SharedActiveTxnCache sharedActiveTxnCache;
 
     public SIDriver(SIEnvironment env){
         this.tableFactory = env.tableFactory();
@@ -105,6 +110,7 @@ public class SIDriver {
         this.clock = env.systemClock();
         this.partitionInfoCache = env.partitionInfoCache();
         this.snowflakeFactory = env.snowflakeFactory();
+        this.sharedActiveTxnCache = initializeSharedActiveTxnCache(config,clock);
 
         //noinspection unchecked
         this.transactor = new SITransactor(
@@ -156,6 +162,14 @@ public class SIDriver {
         return txnSupplier;
     }
 
+    /**
+     * @return the cache of active transactions which is shared by all scans on this server, or {@code null}
+     * if the shared cache is disabled.
+     */
+    public SharedActiveTxnCache getSharedActiveTxnCache(){
+        return sharedActiveTxnCache;
+    }
+
     public OperationStatusFactory getOperationStatusLib() {
         return operationStatusFactory;
     }
@@ -188,6 +202,23 @@ public class SIDriver {
         return readResolver.getResolver(basePartition,getRollForward());
     }
 
+    /**
+     * @return statistics for asynchronous read resolution, or {@code null} if it is disabled
+     */
+    public ReadResolverManagement getReadResolverManagement(){
+        return readResolver;
+    }
+
+    /**
+     * @return statistics for batched keep alives, or {@code null} if the environment does not batch them
+     */
+    public KeepAliveSchedulerManagement getKeepAliveSchedulerManagement(){
+        KeepAliveScheduler keepAliveScheduler=env.keepAliveScheduler();
+        if(keepAliveScheduler instanceof KeepAliveSchedulerManagement)
+            return (KeepAliveSchedulerManagement)keepAliveScheduler;
+        return null;
+    }
+
     public TxnLifecycleManager lifecycleManager(){
         return lifecycleManager;
     }
@@ -246,4 +277,13 @@ public class SIDriver {
         asyncReadResolver.start();
         return asyncReadResolver;
     }
+
+    private SharedActiveTxnCache initializeSharedActiveTxnCache(SConfiguration config,Clock clock){
+        int size = config.getSharedActiveTransactionCacheSize();
+        if(size<=0) return null;
+        return new SharedActiveTxnCache(size,
+                config.getCompletedTxnConcurrency(),
+                config.getSharedActiveTransactionCacheExpiration(),
+                clock);
+    }
 }
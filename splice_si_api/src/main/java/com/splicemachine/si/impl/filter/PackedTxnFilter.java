@@ -23,6 +23,7 @@ import com.splicemachine.storage.DataCell;
 import com.splicemachine.storage.DataFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 public class PackedTxnFilter implements TxnFilter, SIFilter{
     private final TxnFilter simpleFilter;
@@ -39,6 +40,11 @@ public class PackedTxnFilter implements TxnFilter, SIFilter{
         return accumulator;
     }
 
+    @Override
+    public void prefetchTransactions(Iterable<? extends List<DataCell>> rows) throws IOException{
+        simpleFilter.prefetchTransactions(rows);
+    }
+
     @Override
     public void reset(){
        nextRow();
@@ -205,9 +205,9 @@ public class SITransactor implements Transactor{
                 finalStatus[write.key]=status.next().getClone(); //TODO -sf- is clone needed here?
                 //resolve child conflicts
                 try{
-                    resolveChildConflicts(table,write.value,conflictingChildren[i]);
+                    resolveChildConflicts(table,write.value,conflictingChildren[write.key]);
                 }catch(Exception e){
-                    finalStatus[i] = operationStatusLib.failure(e);
+                    finalStatus[write.key] = operationStatusLib.failure(e);
                 }
                 i++;
             }
@@ -235,27 +235,53 @@ public class SITransactor implements Transactor{
                                                                    TxnFilter constraintStateFilter,
                                                                    MutationStatus[] finalStatus) throws IOException {
         IntObjectOpenHashMap<DataPut> finalMutationsToWrite = IntObjectOpenHashMap.newInstance(dataAndLocks.length, 0.9f);
-        DataResult possibleConflicts = null;
         BitSet bloomInMemoryCheck  = table.getBloomInMemoryCheck(constraintChecker!=null,dataAndLocks);
+
+        /*
+         * The rows are visited in key order, so that the latest versions of all the rows which need them can be
+         * read in a single forward pass over the partition, rather than with a separate read for each row. Since
+         * the rows are locked and none of them is written until every row has been checked, reading them up front
+         * sees exactly what reading them one at a time would.
+         */
+        final byte[][] rowKeys=new byte[dataAndLocks.length][];
+        List<Integer> positions=new ArrayList<>(dataAndLocks.length);
         for(int i=0;i<dataAndLocks.length;i++){
-            Pair<KVPair, Lock> baseDataAndLock=dataAndLocks[i];
-            if(baseDataAndLock==null) continue;
+            if(dataAndLocks[i]==null) continue;
+            rowKeys[i]=dataAndLocks[i].getFirst().getRowKey();
+            positions.add(i);
+        }
+        Collections.sort(positions,new Comparator<Integer>(){
+            @Override
+            public int compare(Integer o1,Integer o2){
+                return Bytes.BASE_COMPARATOR.compare(rowKeys[o1],rowKeys[o2]);
+            }
+        });
+        BitSet toRead=new BitSet(dataAndLocks.length);
+        List<byte[]> keysToRead=new ArrayList<>(positions.size());
+        for(int i : positions){
+            /*
+             *
+             * If the table has no keys, then the hbase row key is a randomly generated UUID, so it's not
+             * going to incur a write/write penalty, because there isn't any other row there (as long as we are inserting).
+             * Therefore, we do not need to perform a write/write conflict check or a constraint check
+             *
+             * We know that this is the case because there is no constraint checker (constraint checkers are only
+             * applied on key elements.
+             */
+            if((constraintChecker!=null || !KVPair.Type.INSERT.equals(dataAndLocks[i].getFirst().getType()))
+                    && (bloomInMemoryCheck==null || bloomInMemoryCheck.get(i))){
+                toRead.set(i);
+                keysToRead.add(rowKeys[i]);
+            }
+        }
+        Iterator<DataResult> latestRows=keysToRead.isEmpty()?Collections.<DataResult>emptyIterator():table.getLatest(keysToRead,null);
 
+        for(int i : positions){
             ConflictResults conflictResults=ConflictResults.NO_CONFLICT;
-            KVPair kvPair=baseDataAndLock.getFirst();
+            KVPair kvPair=dataAndLocks[i].getFirst();
             KVPair.Type writeType=kvPair.getType();
             if(constraintChecker!=null || !KVPair.Type.INSERT.equals(writeType)){
-                /*
-                 *
-                 * If the table has no keys, then the hbase row key is a randomly generated UUID, so it's not
-                 * going to incur a write/write penalty, because there isn't any other row there (as long as we are inserting).
-                 * Therefore, we do not need to perform a write/write conflict check or a constraint check
-                 *
-                 * We know that this is the case because there is no constraint checker (constraint checkers are only
-                 * applied on key elements.
-                 */
-                //todo -sf remove the Row key copy here
-                possibleConflicts=bloomInMemoryCheck==null||bloomInMemoryCheck.get(i)?table.getLatest(kvPair.getRowKey(),possibleConflicts):null;
+                DataResult possibleConflicts=toRead.get(i)?latestRows.next():null;
                 if(possibleConflicts!=null){
                     //we need to check for write conflicts
                     try {
@@ -15,6 +15,7 @@
 
 package com.splicemachine.si.impl.store;
 
+import com.carrotsearch.hppc.LongArrayList;
 import com.splicemachine.collections.LongKeyedCache;
 import com.splicemachine.hash.HashFunctions;
 import com.splicemachine.si.api.txn.Txn;
@@ -31,17 +32,29 @@ import java.io.IOException;
  * external synchronization. However, as a single transaction should be represented using a single thread
  * anyway, this class doesn't make sense to be thread safe anyway.
  *
+ * When constructed with a {@link SharedActiveTxnCache}, transactions which are not found locally are
+ * first looked for in the shared cache (on behalf of the reading transaction), and active transactions
+ * which had to be fetched from the delegate are published to it for the benefit of other scans.
+ *
  * @author Scott Fines
  * Date: 6/18/14
  */
 public class ActiveTxnCacheSupplier implements TxnSupplier {
     private final LongKeyedCache<TxnView> cache;
 		private final TxnSupplier delegate;
+    private final SharedActiveTxnCache sharedCache;
+    private final TxnView reader;
 
 		public ActiveTxnCacheSupplier(TxnSupplier delegate, int maxSize) {
+        this(delegate,maxSize,null,null);
+    }
+
+    public ActiveTxnCacheSupplier(TxnSupplier delegate,int maxSize,SharedActiveTxnCache sharedCache,TxnView reader){
         this.cache = LongKeyedCache.<TxnView>newBuilder().maxEntries(maxSize)
                 .withHashFunction(HashFunctions.murmur3(0)).build();
 				this.delegate = delegate;
+        this.sharedCache = sharedCache;
+        this.reader = reader;
     }
 
 		@Override
@@ -53,15 +66,58 @@ public class ActiveTxnCacheSupplier implements TxnSupplier {
 		public TxnView getTransaction(long txnId, boolean getDestinationTables) throws IOException {
         TxnView txn = this.cache.get(txnId);
 				if(txn!=null) return txn;
+        if(sharedCache!=null && !getDestinationTables){
+            txn = sharedCache.get(txnId,reader);
+            if(txn!=null){
+                this.cache.put(txnId,txn);
+                return txn;
+            }
+        }
 				//bummer, not cached. try delegate
 				txn = delegate.getTransaction(txnId,getDestinationTables);
 				if(txn==null) return null;
 
 				if(txn.getEffectiveState()== Txn.State.ACTIVE)
-            this.cache.put(txnId,txn);
+            cacheActive(txn);
 				return txn;
 		}
 
+    @Override
+    public TxnView[] getTransactions(long[] txnIds) throws IOException{
+        TxnView[] txns=new TxnView[txnIds.length];
+        LongArrayList toFetch=null;
+        for(int i=0;i<txnIds.length;i++){
+            TxnView txn=cache.get(txnIds[i]);
+            if(txn==null && sharedCache!=null){
+                txn=sharedCache.get(txnIds[i],reader);
+                if(txn!=null)
+                    cache.put(txnIds[i],txn);
+            }
+            if(txn!=null)
+                txns[i]=txn;
+            else{
+                if(toFetch==null) toFetch=new LongArrayList(txnIds.length-i);
+                toFetch.add(txnIds[i]);
+            }
+        }
+        if(toFetch==null) return txns; //everything was cached
+
+        /*
+         * The missing entries are exactly those which are still null, in the same order
+         * as we requested them from the delegate, so we can just fill in the gaps
+         */
+        TxnView[] fetched=delegate.getTransactions(toFetch.toArray());
+        int pos=0;
+        for(int i=0;i<txns.length;i++){
+            if(txns[i]!=null) continue;
+            TxnView txn=fetched[pos++];
+            if(txn!=null && txn.getEffectiveState()==Txn.State.ACTIVE)
+                cacheActive(txn);
+            txns[i]=txn;
+        }
+        return txns;
+    }
+
 		@Override
 		public boolean transactionCached(long txnId) {
         return cache.get(txnId) !=null;
@@ -80,4 +136,12 @@ public class ActiveTxnCacheSupplier implements TxnSupplier {
     public int getSize(){
         return cache.size();
     }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void cacheActive(TxnView txn){
+        this.cache.put(txn.getTxnId(),txn);
+        if(sharedCache!=null)
+            sharedCache.publish(txn,reader);
+    }
 }
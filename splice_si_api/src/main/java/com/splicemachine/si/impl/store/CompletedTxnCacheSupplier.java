@@ -15,42 +15,35 @@
 
 package com.splicemachine.si.impl.store;
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.carrotsearch.hppc.LongArrayList;
+import com.splicemachine.collections.ConcurrentLongKeyedCache;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
 import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TxnSupplier which caches transaction which have "Completed"--i.e. which have entered the COMMITTED or ROLLEDBACK
  * state.
  * <p/>
- * This class is thread-safe, and safe to be shared between many threads.
+ * This class is thread-safe, and safe to be shared between many threads. Lookups are keyed by the
+ * primitive transaction id, so a cache hit does not allocate.
  *
  * @author Scott Fines
  *         Date: 6/18/14
  */
-public class CompletedTxnCacheSupplier implements TxnSupplier{
-    private ConcurrentLinkedHashMap<Long, TxnView> cache; // autobox for now
+public class CompletedTxnCacheSupplier implements TxnSupplier,TransactionCacheManagement{
+    private final ConcurrentLongKeyedCache<TxnView> cache;
     private final TxnSupplier delegate;
-    private final AtomicLong hits=new AtomicLong();
-    private final AtomicLong requests=new AtomicLong();
 
     public CompletedTxnCacheSupplier(TxnSupplier delegate,int maxSize,int concurrencyLevel){
-        cache=new ConcurrentLinkedHashMap.Builder<Long, TxnView>()
-                .maximumWeightedCapacity(maxSize)
-                .concurrencyLevel(concurrencyLevel)
-                .build();
+        this.cache=new ConcurrentLongKeyedCache<>(maxSize,concurrencyLevel);
         this.delegate=delegate;
     }
 
-    public int getMaxSize(){
-        return cache.size();
-    }
-
     @Override
     public TxnView getTransaction(long txnId) throws IOException{
         if(txnId==-1)
@@ -63,10 +56,8 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
     public TxnView getTransaction(long txnId,boolean getDestinationTables) throws IOException{
         if(txnId==-1)
             return Txn.ROOT_TRANSACTION;
-        requests.incrementAndGet();
-        TxnView txn=cache.get(txnId); // autobox until Cliff C merge
+        TxnView txn=cache.get(txnId);
         if(txn!=null){
-            hits.incrementAndGet();
             return txn;
         }
         //bummer, we aren't in the cache, need to check the delegate
@@ -82,9 +73,43 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
         return transaction;
     }
 
+    @Override
+    @SuppressFBWarnings("SF_SWITCH_NO_DEFAULT") //intentional
+    public TxnView[] getTransactions(long[] txnIds) throws IOException{
+        TxnView[] txns=new TxnView[txnIds.length];
+        LongArrayList toFetch=null;
+        for(int i=0;i<txnIds.length;i++){
+            long txnId=txnIds[i];
+            TxnView txn=txnId==-1?Txn.ROOT_TRANSACTION:cache.get(txnId);
+            if(txn!=null){
+                txns[i]=txn;
+            }else{
+                if(toFetch==null) toFetch=new LongArrayList(txnIds.length-i);
+                toFetch.add(txnId);
+            }
+        }
+        if(toFetch==null) return txns; //everything was cached
+
+        //the misses are the null entries, in the same order that we ask the delegate for them
+        TxnView[] fetched=delegate.getTransactions(toFetch.toArray());
+        int pos=0;
+        for(int i=0;i<txns.length;i++){
+            if(txns[i]!=null) continue;
+            TxnView transaction=fetched[pos++];
+            txns[i]=transaction;
+            if(transaction==null) continue; //don't cache read-only transactions
+            switch(transaction.getEffectiveState()){
+                case COMMITTED:
+                case ROLLEDBACK:
+                    cache.put(transaction.getTxnId(),transaction);
+            }
+        }
+        return txns;
+    }
+
     @Override
     public boolean transactionCached(long txnId){
-        return cache.get(txnId)!=null;
+        return cache.contains(txnId);
     }
 
     @Override
@@ -95,10 +120,20 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
 
     @Override
     public TxnView getTransactionFromCache(long txnId){
-        requests.incrementAndGet();
-        TxnView txn=cache.get(txnId);
-        if(txn!=null)
-            hits.incrementAndGet();
-        return txn;
+        return cache.get(txnId);
+    }
+
+    /*JMX monitoring methods*/
+    @Override public long getTotalHits(){ return cache.hitCount(); }
+    @Override public long getTotalMisses(){ return cache.missCount(); }
+    @Override public long getTotalRequests(){ return cache.requestCount(); }
+    @Override public long getTotalEvictedEntries(){ return cache.evictionCount(); }
+    @Override public int getCurrentSize(){ return cache.size(); }
+    @Override public int getMaxSize(){ return cache.maxSize(); }
+
+    @Override
+    public float getHitPercentage(){
+        long requests=cache.requestCount();
+        return requests==0?0f:((float)cache.hitCount())/requests;
     }
 }
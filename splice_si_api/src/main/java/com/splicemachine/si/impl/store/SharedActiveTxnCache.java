@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl.store;
+
+import com.splicemachine.collections.ConcurrentLongKeyedCache;
+import com.splicemachine.concurrent.Clock;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
+
+/**
+ * A server-wide cache of transactions which were observed to be active, shared between
+ * all the scans running on this server.
+ *
+ * Unlike a completed transaction, an active transaction can change state at any time, so
+ * it is not generally safe to hand out an old view of it. However, when a transaction is
+ * observed to be active, we know that it had not committed when the observing reader began;
+ * therefore, if it commits later, its commit timestamp must be larger than the begin timestamp
+ * of that reader. We record the largest such begin timestamp as the <em>watermark</em> of the entry.
+ *
+ * A snapshot isolation reader whose begin timestamp is at or below the watermark cannot see the
+ * writes of the transaction no matter what happens to it afterwards, so for that reader the cached
+ * (active) view gives exactly the same answer as a fresh one would. Any other reader (read committed,
+ * read uncommitted, a newer reader, or one which is part of the same transaction tree) must go to the
+ * transaction store as before; when it does, it refreshes the entry and moves the watermark forward.
+ *
+ * Entries also expire after a short time (by default, the transaction keep-alive interval),
+ * and are removed when this server learns that the transaction has committed or rolled back,
+ * so that the cache does not fill up with transactions which are long gone.
+ *
+ * This class is thread-safe.
+ */
+public class SharedActiveTxnCache{
+    private final ConcurrentLongKeyedCache<Entry> cache;
+    private final long expirationMs;
+    private final Clock clock;
+
+    public SharedActiveTxnCache(int maxSize,int concurrencyLevel,long expirationMs,Clock clock){
+        this.cache=new ConcurrentLongKeyedCache<>(maxSize,concurrencyLevel);
+        this.expirationMs=expirationMs;
+        this.clock=clock;
+    }
+
+    /**
+     * @param txnId the id of the transaction to look for
+     * @param reader the transaction which will use the returned view to determine visibility
+     * @return a cached view of {@code txnId} which is safe for {@code reader} to use,
+     * or {@code null} if there is no such view.
+     */
+    public TxnView get(long txnId,TxnView reader){
+        if(reader==null || reader.getIsolationLevel()!=Txn.IsolationLevel.SNAPSHOT_ISOLATION)
+            return null; //only snapshot isolation has a fixed point in time which we can compare against
+
+        Entry entry=cache.get(txnId);
+        if(entry==null) return null;
+        if(entry.expirationTime<clock.currentTimeMillis()){
+            cache.remove(txnId);
+            return null;
+        }
+        if(reader.getBeginTimestamp()>entry.watermark) return null;
+        /*
+         * Transactions in the same tree as the reader can see each other's writes
+         * independently of the reader's begin timestamp, so the watermark tells us nothing about them
+         */
+        if(topLevelId(reader)==topLevelId(entry.txn)) return null;
+        return entry.txn;
+    }
+
+    /**
+     * Make {@code txn} available to other readers.
+     *
+     * @param txn the transaction, which was just read from the transaction store
+     * @param reader the transaction which read it. The reader's begin timestamp must have been
+     *               acquired before {@code txn} was read
+     */
+    public void publish(TxnView txn,TxnView reader){
+        if(reader==null || txn.getEffectiveState()!=Txn.State.ACTIVE) return;
+
+        long watermark=reader.getBeginTimestamp();
+        Entry existing=cache.getIfPresent(txn.getTxnId());
+        if(existing!=null && existing.watermark>watermark)
+            watermark=existing.watermark;
+        cache.put(txn.getTxnId(),new Entry(txn,watermark,clock.currentTimeMillis()+expirationMs));
+    }
+
+    /**
+     * Remove any entry for the specified transaction, because it has been committed or rolled back.
+     *
+     * @param txnId the id of the transaction to remove
+     */
+    public void invalidate(long txnId){
+        cache.remove(txnId);
+    }
+
+    public int size(){
+        return cache.size();
+    }
+
+    public long hitCount(){
+        return cache.hitCount();
+    }
+
+    public long missCount(){
+        return cache.missCount();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static long topLevelId(TxnView txn){
+        TxnView parent=txn.getParentTxnView();
+        while(parent!=null && !Txn.ROOT_TRANSACTION.equals(parent)){
+            txn=parent;
+            parent=txn.getParentTxnView();
+        }
+        return txn.getTxnId();
+    }
+
+    private static class Entry{
+        private final TxnView txn;
+        private final long watermark;
+        private final long expirationTime;
+
+        Entry(TxnView txn,long watermark,long expirationTime){
+            this.txn=txn;
+            this.watermark=watermark;
+            this.expirationTime=expirationTime;
+        }
+    }
+}
@@ -1992,6 +1992,28 @@ public class SITransactorTest {
         Assert.assertEquals("bob144 age=30 job=null", testUtility.read(t2, "bob144"));
     }
 
+    @Test
+    public void batchWriteOverExistingRowsOutOfOrder() throws IOException {
+        Txn t1 = control.beginTransaction(DESTINATION_TABLE);
+        testUtility.insertAge(t1, "joe146", 10);
+        testUtility.insertAge(t1, "amy146", 11);
+        t1.commit();
+
+        Txn t2 = control.beginTransaction(DESTINATION_TABLE);
+        testUtility.deleteRow(t2, "amy146");
+        testUtility.insertAgeBatch(new Object[]{t2, "zed146", 30}, new Object[]{t2, "joe146", 20},
+                new Object[]{t2, "bob146", 40}, new Object[]{t2, "amy146", 21});
+        Assert.assertEquals("zed146 age=30 job=null", testUtility.read(t2, "zed146"));
+        Assert.assertEquals("joe146 age=20 job=null", testUtility.read(t2, "joe146"));
+        Assert.assertEquals("bob146 age=40 job=null", testUtility.read(t2, "bob146"));
+        Assert.assertEquals("amy146 age=21 job=null", testUtility.read(t2, "amy146"));
+        t2.commit();
+
+        Txn t3 = control.beginTransaction();
+        Assert.assertEquals("joe146 age=20 job=null", testUtility.read(t3, "joe146"));
+        Assert.assertEquals("amy146 age=21 job=null", testUtility.read(t3, "amy146"));
+    }
+
     @Test
     public void testDeleteThenInsertWithinChildTransactions() throws Exception {
         Txn t1 = control.beginTransaction(DESTINATION_TABLE);
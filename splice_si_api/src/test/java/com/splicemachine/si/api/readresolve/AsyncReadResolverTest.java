@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.api.readresolve;
+
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.impl.rollforward.RollForwardStatus;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.utils.ByteSlice;
+import com.splicemachine.utils.GreenLight;
+import com.splicemachine.utils.TrafficControl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the batching, deduplication and accounting of the AsyncReadResolver.
+ */
+@Category(ArchitectureIndependent.class)
+public class AsyncReadResolverTest{
+
+    @Test
+    public void testGroupsRowsByRegionAndTransaction() throws Exception{
+        RecordingResolver recorder=new RecordingResolver();
+        AsyncReadResolver resolver=new AsyncReadResolver(1,1024,mock(TxnSupplier.class),new RollForwardStatus(),GreenLight.INSTANCE,recorder);
+        Partition region1=mock(Partition.class);
+        Partition region2=mock(Partition.class);
+        ReadResolver first=resolver.getResolver(region1,mock(RollForward.class));
+        ReadResolver second=resolver.getResolver(region2,mock(RollForward.class));
+        //submitted before the resolver starts, so that the handler sees them all in one batch
+        for(int i=0;i<100;i++){
+            first.resolve(row(i),1l);
+            first.resolve(row(i),2l);
+            second.resolve(row(i),1l);
+        }
+        try{
+            resolver.start();
+            waitForResolution(resolver,300);
+        }finally{
+            resolver.shutdown();
+        }
+
+        Assert.assertEquals(3,recorder.batches.size());
+        for(Batch batch : recorder.batches){
+            Assert.assertEquals(100,batch.rowKeys.size());
+        }
+        Assert.assertEquals(3l,resolver.getBatchCount());
+        Assert.assertEquals(100d,resolver.getAverageBatchSize(),0d);
+    }
+
+    @Test
+    public void testDuplicateRowsAreNotSubmitted() throws Exception{
+        RecordingResolver recorder=new RecordingResolver();
+        AsyncReadResolver resolver=new AsyncReadResolver(1,1024,mock(TxnSupplier.class),new RollForwardStatus(),GreenLight.INSTANCE,recorder);
+        ReadResolver partitionResolver=resolver.getResolver(mock(Partition.class),mock(RollForward.class));
+        try{
+            resolver.start();
+            partitionResolver.resolve(row(1),1l);
+            waitForResolution(resolver,1);
+            for(int i=0;i<9;i++){
+                partitionResolver.resolve(row(1),1l);
+            }
+        }finally{
+            resolver.shutdown();
+        }
+
+        Assert.assertEquals(1l,resolver.getSubmittedCount());
+        Assert.assertEquals(9l,resolver.getDuplicateCount());
+        Assert.assertEquals(1,recorder.batches.size());
+    }
+
+    @Test
+    public void testDropsRowsWhenQueueIsFull() throws Exception{
+        AsyncReadResolver resolver=new AsyncReadResolver(1,16,mock(TxnSupplier.class),new RollForwardStatus(),GreenLight.INSTANCE,new RecordingResolver());
+        ReadResolver partitionResolver=resolver.getResolver(mock(Partition.class),mock(RollForward.class));
+        for(int i=0;i<20;i++){
+            partitionResolver.resolve(row(i),1l);
+        }
+
+        Assert.assertEquals(16,resolver.getQueueCapacity());
+        Assert.assertEquals(16l,resolver.getQueueDepth());
+        Assert.assertEquals(16l,resolver.getSubmittedCount());
+        Assert.assertEquals(4l,resolver.getDroppedCount());
+        resolver.start();
+        resolver.shutdown();
+    }
+
+    @Test
+    public void testRemembersOnlyRowsWhoseResolutionWasWritten() throws Exception{
+        //writes the resolution of the even rows only, moving them to the front as resolvers do
+        KeyedReadResolver evenRows=new RecordingResolver(){
+            @Override
+            public int resolve(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,TxnSupplier txnSupplier,
+                               RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
+                int resolved=0;
+                for(int i=0;i<numRows;i++){
+                    if(rowKeys[i].getByteCopy()[3]%2==0){
+                        ByteSlice rowKey=rowKeys[i];
+                        rowKeys[i]=rowKeys[resolved];
+                        rowKeys[resolved++]=rowKey;
+                    }
+                }
+                return resolved;
+            }
+        };
+        AsyncReadResolver resolver=new AsyncReadResolver(1,1024,mock(TxnSupplier.class),new RollForwardStatus(),GreenLight.INSTANCE,evenRows);
+        RollForward rollForward=mock(RollForward.class);
+        ReadResolver partitionResolver=resolver.getResolver(mock(Partition.class),rollForward);
+        for(int i=0;i<10;i++){
+            partitionResolver.resolve(row(i),1l);
+        }
+        try{
+            resolver.start();
+            waitForResolution(resolver,5);
+
+            for(int i=0;i<10;i++){
+                if(i%2==0)
+                    verify(rollForward).recordResolved(row(i),1l);
+                else
+                    verify(rollForward,never()).recordResolved(row(i),1l);
+            }
+            //rows which were not resolved have to be submitted again the next time they are read
+            for(int i=0;i<10;i++){
+                partitionResolver.resolve(row(i),1l);
+            }
+            Assert.assertEquals(15l,resolver.getSubmittedCount());
+            Assert.assertEquals(5l,resolver.getDuplicateCount());
+        }finally{
+            resolver.shutdown();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static ByteSlice row(int i){
+        return ByteSlice.wrap(new byte[]{(byte)(i>>>24),(byte)(i>>>16),(byte)(i>>>8),(byte)i});
+    }
+
+    private static void waitForResolution(AsyncReadResolver resolver,long rows) throws InterruptedException{
+        long deadline=System.currentTimeMillis()+10000;
+        while(resolver.getResolvedRowCount()<rows){
+            Assert.assertTrue("Timed out waiting for read resolution",System.currentTimeMillis()<deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Batch{
+        final Partition region;
+        final long txnId;
+        final List<ByteSlice> rowKeys=new ArrayList<>();
+
+        Batch(Partition region,long txnId){
+            this.region=region;
+            this.txnId=txnId;
+        }
+    }
+
+    private static class RecordingResolver implements KeyedReadResolver{
+        final List<Batch> batches=Collections.synchronizedList(new ArrayList<Batch>());
+
+        @Override
+        public boolean resolve(Partition region,ByteSlice rowKey,long txnId,TxnSupplier txnSupplier,
+                               RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
+            return resolve(region,new ByteSlice[]{rowKey},1,txnId,txnSupplier,status,failOnError,trafficControl)>0;
+        }
+
+        @Override
+        public int resolve(Partition region,ByteSlice[] rowKeys,int numRows,long txnId,TxnSupplier txnSupplier,
+                           RollForwardStatus status,boolean failOnError,TrafficControl trafficControl){
+            Batch batch=new Batch(region,txnId);
+            for(int i=0;i<numRows;i++){
+                batch.rowKeys.add(rowKeys[i]);
+            }
+            batches.add(batch);
+            return numRows;
+        }
+    }
+}
@@ -160,4 +160,46 @@ public class CompletedTxnCacheSupplierTest{
         TxnView fromCache=store.getTransaction(txn.getTxnId());
         assertTxnsMatch("Transaction from store is not correct!",txn,fromCache);
     }
+
+    @Test
+    public void testGetTransactionsOnlyFetchesUncachedTransactions() throws Exception{
+        final AtomicLong al=new AtomicLong(0l);
+        TxnLifecycleManager tc=mock(TxnLifecycleManager.class);
+        when(tc.commit(anyLong())).thenAnswer(new Answer<Long>(){
+
+            @Override
+            public Long answer(InvocationOnMock invocationOnMock) throws Throwable{
+                return al.incrementAndGet();
+            }
+        });
+        Txn committed=new WritableTxn(1,1,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.ROOT_TRANSACTION,tc,false,null);
+        committed.commit();
+        Txn active=new WritableTxn(2,2,Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.ROOT_TRANSACTION,tc,false,null);
+
+        final AtomicLong fetched=new AtomicLong(0l);
+        TxnStore backStore=new TestingTxnStore(new IncrementingClock(),new TestingTimestampSource(),null,Long.MAX_VALUE){
+            @Override
+            public TxnView[] getTransactions(long[] txnIds) throws IOException{
+                fetched.addAndGet(txnIds.length);
+                return super.getTransactions(txnIds);
+            }
+        };
+        backStore.recordNewTransaction(committed);
+        backStore.recordNewTransaction(active);
+
+        TxnSupplier store=new CompletedTxnCacheSupplier(backStore,10,16);
+
+        TxnView[] txns=store.getTransactions(new long[]{committed.getTxnId(),active.getTxnId(),3});
+        Assert.assertEquals("Incorrect number of transactions fetched!",3,fetched.get());
+        assertTxnsMatch("Transaction from store is not correct!",committed,txns[0]);
+        assertTxnsMatch("Transaction from store is not correct!",active,txns[1]);
+        Assert.assertNull("Found a transaction which does not exist!",txns[2]);
+
+        //the committed transaction should now be cached, but the others should still be fetched
+        txns=store.getTransactions(new long[]{committed.getTxnId(),active.getTxnId(),3});
+        Assert.assertEquals("Incorrect number of transactions fetched!",5,fetched.get());
+        assertTxnsMatch("Transaction from cache is not correct!",committed,txns[0]);
+        assertTxnsMatch("Transaction from store is not correct!",active,txns[1]);
+        Assert.assertNull("Found a transaction which does not exist!",txns[2]);
+    }
 }
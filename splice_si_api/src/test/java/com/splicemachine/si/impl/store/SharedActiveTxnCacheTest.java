@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.si.impl.store;
+
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.txn.InheritingTxnView;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests for the visibility rules of the SharedActiveTxnCache.
+ */
+@Category(ArchitectureIndependent.class)
+public class SharedActiveTxnCacheTest{
+    private static final long EXPIRATION=1000L;
+
+    @Test
+    public void testOlderSnapshotReaderCanUsePublishedTransaction() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        Assert.assertSame("Reader at the watermark should see the cached view",
+                writer,cache.get(1,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION)));
+        Assert.assertSame("Older reader should see the cached view",
+                writer,cache.get(1,active(3,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION)));
+    }
+
+    @Test
+    public void testPublishDoesNotCountTowardsStatistics() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+        cache.publish(writer,active(7,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        Assert.assertEquals("Publishing should not count as a hit",0l,cache.hitCount());
+        Assert.assertEquals("Publishing should not count as a miss",0l,cache.missCount());
+    }
+
+    @Test
+    public void testNewerReaderCannotUsePublishedTransaction() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        Assert.assertNull("Newer reader may see a commit which happened after publication",
+                cache.get(1,active(7,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION)));
+
+        //once the newer reader publishes, the watermark moves forward
+        cache.publish(writer,active(7,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+        Assert.assertSame(writer,cache.get(1,active(7,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION)));
+    }
+
+    @Test
+    public void testWatermarkDoesNotMoveBackwards() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,active(7,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+        cache.publish(writer,active(3,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        Assert.assertSame(writer,cache.get(1,active(7,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION)));
+    }
+
+    @Test
+    public void testReadCommittedReaderCannotUsePublishedTransaction() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        Assert.assertNull(cache.get(1,active(3,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.READ_COMMITTED)));
+        Assert.assertNull(cache.get(1,active(3,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.READ_UNCOMMITTED)));
+    }
+
+    @Test
+    public void testReaderInSameTransactionTreeCannotUsePublishedTransaction() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView parent=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        TxnView child=active(2,parent,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(child,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        TxnView sibling=active(3,parent,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        Assert.assertNull(cache.get(2,sibling));
+        Assert.assertSame(child,cache.get(2,active(4,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION)));
+    }
+
+    @Test
+    public void testDoesNotPublishCompletedTransactions() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView rolledBack=new InheritingTxnView(Txn.ROOT_TRANSACTION,1,1,
+                Txn.IsolationLevel.SNAPSHOT_ISOLATION,Txn.State.ROLLEDBACK);
+        cache.publish(rolledBack,active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION));
+
+        Assert.assertEquals(0,cache.size());
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception{
+        IncrementingClock clock=new IncrementingClock();
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,clock);
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        TxnView reader=active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,reader);
+
+        clock.increment((EXPIRATION+1)*1000000L);
+        Assert.assertNull("Entry should have expired",cache.get(1,reader));
+        Assert.assertEquals(0,cache.size());
+    }
+
+    @Test
+    public void testInvalidateRemovesEntry() throws Exception{
+        SharedActiveTxnCache cache=new SharedActiveTxnCache(64,1,EXPIRATION,new IncrementingClock());
+        TxnView writer=active(1,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        TxnView reader=active(5,Txn.ROOT_TRANSACTION,Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        cache.publish(writer,reader);
+
+        cache.invalidate(1);
+        Assert.assertNull(cache.get(1,reader));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static TxnView active(long txnId,TxnView parent,Txn.IsolationLevel isolationLevel){
+        return new InheritingTxnView(parent,txnId,txnId,isolationLevel,Txn.State.ACTIVE);
+    }
+}
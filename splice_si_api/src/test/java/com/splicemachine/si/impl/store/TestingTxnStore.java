@@ -70,6 +70,14 @@ public class TestingTxnStore implements TxnStore{
         return getTransaction(txnId);
     }
 
+    @Override
+    public TxnView[] getTransactions(long[] txnIds) throws IOException{
+        TxnView[] txns=new TxnView[txnIds.length];
+        for(int i=0;i<txnIds.length;i++){
+            txns[i]=getTransaction(txnIds[i]);
+        }
+        return txns;
+    }
 
     @Override
     public boolean transactionCached(long txnId){
@@ -204,6 +212,25 @@ public class TestingTxnStore implements TxnStore{
         return true;
     }
 
+    @Override
+    public Txn.State[] keepAlive(long[] txnIds) throws IOException{
+        Txn.State[] states=new Txn.State[txnIds.length];
+        for(int i=0;i<txnIds.length;i++){
+            TxnHolder holder=txnMap.get(txnIds[i]);
+            if(holder==null) continue;
+
+            Txn.State state=holder.txn.getState();
+            if(state==Txn.State.ACTIVE){
+                if(isTimedOut(holder))
+                    state=Txn.State.ROLLEDBACK;
+                else
+                    holder.keepAliveTs=clock.currentTimeMillis();
+            }
+            states[i]=state;
+        }
+        return states;
+    }
+
     //		@Override
     public void timeout(long txnId) throws IOException{
         rollback(txnId);
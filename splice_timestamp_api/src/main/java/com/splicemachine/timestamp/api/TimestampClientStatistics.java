@@ -30,5 +30,16 @@ public interface TimestampClientStatistics{
 	long getNumberTimestampRequests();
 	
  	double getAvgTimestampRequestDuration();
+
+	/**
+	 * @return the number of requests actually sent to the timestamp server. Concurrent
+	 * timestamp requests are coalesced, so this may be much smaller than {@link #getNumberTimestampRequests()}
+	 */
+	long getNumberTimestampRoundTrips();
+
+	/**
+	 * @return the average number of timestamp requests served by a single round trip to the server
+	 */
+	double getAvgTimestampBatchSize();
 	
 }
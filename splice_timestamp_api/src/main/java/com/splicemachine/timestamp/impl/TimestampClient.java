@@ -17,6 +17,8 @@ package com.splicemachine.timestamp.impl;
 
 import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -40,7 +42,6 @@ import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.handler.codec.frame.FixedLengthFrameDecoder;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import com.splicemachine.concurrent.CountDownLatches;
-import com.splicemachine.timestamp.api.Callback;
 import com.splicemachine.timestamp.api.TimestampClientStatistics;
 import com.splicemachine.timestamp.api.TimestampHostProvider;
 import com.splicemachine.timestamp.api.TimestampIOException;
@@ -53,6 +54,16 @@ import org.apache.log4j.Logger;
  * For the caller, the invocation of {@link #getNextTimestamp()}
  * is synchronous.
  * <p>
+ * Concurrent callers are coalesced, in the same way as a group commit: while a request is
+ * outstanding, new callers join a pending batch, and when the response arrives the whole batch is
+ * sent as a single request for a contiguous range of timestamps. Because every caller in a batch
+ * asked before the batch was sent, each timestamp is still issued after its caller asked for it.
+ * A lone caller sends its request immediately, so there is no added latency when the load is light.
+ * <p>
+ * Whether the server takes batched requests is negotiated at the start of every connection (see
+ * {@link TimestampServer#BATCH_HANDSHAKE_ID}), and nothing else is sent until it answers. An older server
+ * is asked for one timestamp per caller, as before, so client and server can be upgraded separately.
+ * <p>
  * This class should generally not be constructed directly.
  *
  * @author Walt Koetke
@@ -64,6 +75,11 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
     private static final short CLIENT_COUNTER_INIT = 100; // actual value doesn't matter
 
+    /**
+     * The largest number of timestamps we can ask for in a single request (it is sent as an unsigned short).
+     */
+    private static final int MAX_BATCH_SIZE = 0xFFFF;
+
     /**
      * Fixed number of bytes in the message we expect to receive back from the server.
      */
@@ -74,10 +90,21 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     }
 
     /**
-     * A map representing all currently active callers to this TimestampClient
-     * waiting for their response.
+     * A map representing all batches of callers to this TimestampClient
+     * which have been sent to the server, and are waiting for their response.
+     */
+    private ConcurrentMap<Short, Batch> clientCallbacks = null;
+
+    /**
+     * Callers which are waiting for the outstanding request(s) to complete before they
+     * are sent to the server, the number of outstanding requests, and whether the server
+     * takes batched requests (or is yet to say so). Guarded by {@code batchLock}.
      */
-    private ConcurrentMap<Short, Callback> clientCallbacks = null;
+    private final Object batchLock = new Object();
+    private Batch pendingBatch;
+    private int requestsInFlight;
+    private boolean negotiating = true;
+    private boolean batchRequests;
 
     private final AtomicReference<State> state = new AtomicReference<>(State.DISCONNECTED);
 
@@ -102,6 +129,7 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     // for solid definitions of each metric.
     private AtomicLong numRequests = new AtomicLong(0);
     private AtomicLong totalRequestDuration = new AtomicLong(0);
+    private AtomicLong numRoundTrips = new AtomicLong(0);
     private TimestampHostProvider timestampHostProvider;
 
 
@@ -206,6 +234,7 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         // Can only assume connecting (not connected) until channelConnected method is invoked
         state.set(State.CONNECTING);
+        negotiate();
     }
 
     public long getNextTimestamp() throws TimestampIOException {
@@ -215,45 +244,38 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         connectIfNeeded();
 
-        short clientCallId = (short) clientCallCounter.getAndIncrement();
-        final ClientCallback callback = new ClientCallback(clientCallId);
-        SpliceLogUtils.debug(LOG, "Starting new client call with id %s", clientCallId);
-
-        // Add this caller (id and callback) to the map of current clients.
-        // If an entry was already present for this caller id, that is a bug,
-        // so throw an exception.
-        if (clientCallbacks.putIfAbsent(clientCallId, callback) != null) {
-            doClientErrorThrow(LOG, "Found existing client callback with caller id %s, so unable to handle new call.", null, clientCallId);
+        final ClientCallback callback;
+        Batch toSend = null;
+        synchronized (batchLock) {
+            if (pendingBatch == null) {
+                pendingBatch = new Batch((short) clientCallCounter.getAndIncrement());
+            }
+            callback = pendingBatch.join();
+            toSend = takePendingBatch();
         }
-
-        try {
-            ChannelBuffer buffer = ChannelBuffers.buffer(2);
-            buffer.writeShort(clientCallId);
-            SpliceLogUtils.trace(LOG, "Writing request message to server for client: %s", callback);
-            ChannelFuture futureWrite = channel.write(buffer);
-            futureWrite.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    if (!future.isSuccess()) {
-                        doClientErrorThrow(LOG, "Error writing message from timestamp client to server", future.getCause());
-                    } else {
-                        SpliceLogUtils.trace(LOG, "Request sent. Waiting for response for client: %s", callback);
-                    }
-                }
-            });
-        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can remove client call
-            clientCallbacks.remove(clientCallId);
-            callback.error(e);
-            doClientErrorThrow(LOG, "Exception writing message to timestamp server for client: %s", e, callback);
+        SpliceLogUtils.debug(LOG, "Starting new client call in batch %s", callback.getCallerId());
+        if (toSend != null) {
+            send(toSend);
         }
 
-        // If we get here, request was successfully sent without exception.
-        // However, we might not have received response yet, so we need to
-        // wait for that now.
+        // The request may not have been sent yet, and even if it has been
+        // we might not have received the response, so we need to wait for that now.
 
         try {
             boolean success = callback.await(timeoutMillis);
             if (!success) {
+                /*
+                 * If the batch is still outstanding, give up on it (everyone in it will time out as well),
+                 * so that the callers waiting behind it are not stuck forever.
+                 */
+                Batch batch = clientCallbacks.get(callback.getCallerId());
+                if (batch != null && clientCallbacks.remove(callback.getCallerId(), batch)) {
+                    batch.error(new TimestampIOException("Timed out waiting for timestamp server"));
+                    requestComplete();
+                } else {
+                    // It was never sent, which means the server has not answered the handshake either
+                    abandonNegotiation();
+                }
                 doClientErrorThrow(LOG, "Client timed out after %s ms waiting for new timestamp: %s", null, timeoutMillis, callback);
             }
         } catch (InterruptedException e) {
@@ -265,7 +287,7 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         long timestamp = callback.getNewTimestamp();
         if (timestamp < 0) {
-            doClientErrorThrow(LOG, "Invalid timestamp found for client: %s", null, callback);
+            doClientErrorThrow(LOG, "Invalid timestamp found for client: %s", callback.getException(), callback);
         }
 
         SpliceLogUtils.debug(LOG, "Client call complete: %s", callback);
@@ -287,19 +309,28 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         ensureReadableBytes(buf, 8);
 
         long timestamp = buf.readLong();
-        assert (timestamp > 0);
         ensureReadableBytes(buf, 0);
 
+        if ((clientCallerId == TimestampServer.BATCH_HANDSHAKE_ID || clientCallerId == TimestampServer.BATCH_PROTOCOL_VERSION)
+                && isNegotiating()) {
+            negotiated(clientCallerId, timestamp);
+            super.messageReceived(ctx, e);
+            return;
+        }
+        assert (timestamp > 0);
+
         SpliceLogUtils.debug(LOG, "Response from server: clientCallerId = %s, timestamp = %s", clientCallerId, timestamp);
-        Callback cb = clientCallbacks.remove(clientCallerId);
-        if (cb == null) {
+        Batch batch = clientCallbacks.get(clientCallerId);
+        if (batch == null) {
             doClientErrorThrow(LOG, "Client callback with id %s not found, so unable to deliver timestamp %s", null, clientCallerId, timestamp);
         }
 
-        // This releases the latch the original client thread is waiting for
-        // (to provide the synchronous behavior for that caller) and also
-        // provides the timestamp.
-        cb.complete(timestamp);
+        // This releases the latches the original client threads are waiting for
+        // (to provide the synchronous behavior for those callers) and also
+        // provides their timestamps. An old server answers each caller separately.
+        if (batch.complete(timestamp) && clientCallbacks.remove(clientCallerId, batch)) {
+            requestComplete();
+        }
 
         super.messageReceived(ctx, e);
     }
@@ -322,6 +353,17 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
             channel=null;
             shouldContinue = !state.compareAndSet(s,State.DISCONNECTED);
         }while(shouldContinue);
+        synchronized (batchLock) {
+            negotiating = true; //don't send anything until the next connection has been negotiated
+        }
+        // Whatever was outstanding is never going to be answered, so let its callers know now
+        for (Short id : clientCallbacks.keySet()) {
+            Batch batch = clientCallbacks.get(id);
+            if (batch != null && clientCallbacks.remove(id, batch)) {
+                batch.error(new TimestampIOException("Disconnected from the timestamp server"));
+                requestComplete();
+            }
+        }
         connectIfNeeded();
     }
 
@@ -353,6 +395,18 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         return a / b;
     }
 
+    @Override
+    public long getNumberTimestampRoundTrips() {
+        return numRoundTrips.get();
+    }
+
+    @Override
+    public double getAvgTimestampBatchSize() {
+        double a = (double) numRequests.get();
+        double b = (double) numRoundTrips.get();
+        return a / b;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         if(state.get() != State.SHUTDOWN) {
@@ -365,4 +419,197 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         TimestampIOException t1 = t != null ? new TimestampIOException(message, t) : new TimestampIOException(message);
         SpliceLogUtils.logAndThrow(logger, String.format(message, args), t1);
     }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void send(final Batch batch) throws TimestampIOException {
+        // Add this batch (id and callbacks) to the map of outstanding requests.
+        // If an entry was already present for this id, that is a bug,
+        // so throw an exception.
+        if (clientCallbacks.putIfAbsent(batch.id, batch) != null) {
+            TimestampIOException error = new TimestampIOException("Found existing client callback with caller id " + batch.id);
+            batch.error(error);
+            requestComplete();
+            doClientErrorThrow(LOG, "Found existing client callback with caller id %s, so unable to handle new call.", null, batch.id);
+        }
+
+        try {
+            ChannelBuffer buffer;
+            if (batch.ranged) {
+                buffer = ChannelBuffers.buffer(4);
+                buffer.writeShort(batch.id);
+                buffer.writeShort(batch.size());
+            } else {
+                // An old server, which takes one request per timestamp
+                buffer = ChannelBuffers.buffer(2 * batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    buffer.writeShort(batch.id);
+                }
+            }
+            SpliceLogUtils.trace(LOG, "Writing request message to server for batch %s of %s callers", batch.id, batch.size());
+            ChannelFuture futureWrite = channel.write(buffer);
+            futureWrite.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        doClientErrorThrow(LOG, "Error writing message from timestamp client to server", future.getCause());
+                    } else {
+                        SpliceLogUtils.trace(LOG, "Request sent. Waiting for response for batch: %s", batch.id);
+                    }
+                }
+            });
+            numRoundTrips.incrementAndGet();
+        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can remove client call
+            if (clientCallbacks.remove(batch.id, batch)) {
+                batch.error(e);
+                requestComplete();
+            }
+            doClientErrorThrow(LOG, "Exception writing message to timestamp server for batch: %s", e, batch.id);
+        }
+    }
+
+    /**
+     * Called once an outstanding request has been resolved (successfully or not). If nothing else
+     * is outstanding and callers have piled up in the meantime, they are sent off as the next batch.
+     */
+    private void requestComplete() throws TimestampIOException {
+        Batch toSend;
+        synchronized (batchLock) {
+            requestsInFlight--;
+            toSend = takePendingBatch();
+        }
+        if (toSend != null) {
+            send(toSend);
+        }
+    }
+
+    /**
+     * Called with {@code batchLock} held. Returns the pending batch (counted as outstanding) if it should be
+     * sent now: if nothing is outstanding, or the server answers every caller separately anyway. Otherwise
+     * it waits for the outstanding request to come back, to be sent along with everyone else who has arrived
+     * in the meantime--unless it is as large as we can ask for, in which case it has to go now.
+     */
+    private Batch takePendingBatch() {
+        if (pendingBatch == null || negotiating) {
+            return null;
+        }
+        if (requestsInFlight > 0 && batchRequests && pendingBatch.size() < MAX_BATCH_SIZE) {
+            return null;
+        }
+        Batch toSend = pendingBatch;
+        toSend.ranged = batchRequests;
+        pendingBatch = null;
+        requestsInFlight++;
+        return toSend;
+    }
+
+    /**
+     * Ask the server whether it takes batched requests. Nothing else is sent over the new connection
+     * until it answers, so callers wait in the pending batch meanwhile.
+     */
+    private void negotiate() {
+        synchronized (batchLock) {
+            negotiating = true;
+            batchRequests = false;
+        }
+        ChannelBuffer buffer = ChannelBuffers.buffer(4);
+        buffer.writeShort(TimestampServer.BATCH_HANDSHAKE_ID);
+        buffer.writeShort(TimestampServer.BATCH_PROTOCOL_VERSION);
+        channel.write(buffer).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    doClientErrorThrow(LOG, "Error writing handshake from timestamp client to server", future.getCause());
+                }
+            }
+        });
+    }
+
+    private boolean isNegotiating() {
+        synchronized (batchLock) {
+            return negotiating;
+        }
+    }
+
+    private void negotiated(short clientCallerId, long response) throws TimestampIOException {
+        if (clientCallerId == TimestampServer.BATCH_HANDSHAKE_ID) {
+            return; // a timestamp for the first half of the handshake, which nobody is waiting for
+        }
+        boolean batched = response == TimestampServer.BATCH_HANDSHAKE_ACK;
+        Batch toSend;
+        synchronized (batchLock) {
+            negotiating = false;
+            batchRequests = batched;
+            toSend = takePendingBatch();
+        }
+        SpliceLogUtils.info(LOG, batched ? "Timestamp server takes batched requests"
+                : "Timestamp server does not take batched requests, asking for one timestamp at a time");
+        if (toSend != null) {
+            send(toSend);
+        }
+    }
+
+    /**
+     * The server has not answered the handshake in time: drop the connection, and negotiate
+     * again over a new one.
+     */
+    private void abandonNegotiation() {
+        synchronized (batchLock) {
+            if (!negotiating) {
+                return;
+            }
+        }
+        Channel c = channel;
+        if (c != null) {
+            LOG.warn("Timestamp server did not answer the handshake, reconnecting");
+            c.close();
+        }
+    }
+
+    /**
+     * A group of callers which are sent to the server in a single request. The server responds
+     * with the first timestamp of a contiguous range, which is handed out in the order the callers joined
+     * (or, if it is an old server, with a timestamp for each of them in turn).
+     */
+    private static class Batch {
+        private final short id;
+        private final List<ClientCallback> callbacks = new ArrayList<>(1);
+        private boolean ranged; // answered with a range, rather than a timestamp per caller
+        private int completed;
+
+        Batch(short id) {
+            this.id = id;
+        }
+
+        ClientCallback join() {
+            ClientCallback callback = new ClientCallback(id);
+            callbacks.add(callback);
+            return callback;
+        }
+
+        int size() {
+            return callbacks.size();
+        }
+
+        /**
+         * @return true once every caller has its timestamp
+         */
+        boolean complete(long timestamp) {
+            if (ranged) {
+                for (int i = 0; i < callbacks.size(); i++) {
+                    callbacks.get(i).complete(timestamp + i);
+                }
+                completed = callbacks.size();
+            } else if (completed < callbacks.size()) {
+                callbacks.get(completed++).complete(timestamp);
+            }
+            return completed == callbacks.size();
+        }
+
+        void error(Exception e) {
+            for (ClientCallback callback : callbacks) {
+                callback.error(e);
+            }
+        }
+    }
 }
@@ -88,22 +88,40 @@ public class TimestampOracle implements TimestampOracleStatistics{
     }
 
 	public long getNextTimestamp() throws TimestampIOException {
-		long nextTS = _timestampCounter.getAndIncrement();
-		long maxTS = _maxReservedTimestamp; // avoid the double volatile read
-		if (nextTS > maxTS) {
-			reserveNextBlock(maxTS);
-		}
-		_numTimestampsCreated.incrementAndGet(); // JMX metric
-		return nextTS;
+		return getNextTimestamps(1);
 	}
 
-    private void reserveNextBlock(long priorMaxReservedTimestamp) throws TimestampIOException {
+    /**
+     * Hand out a contiguous range of timestamps.
+     *
+     * @param count the number of timestamps to hand out. Must be positive
+     * @return the first timestamp in the range; the caller owns {@code [first, first+count)}
+     * @throws TimestampIOException if a new block had to be reserved, and the reservation failed
+     */
+    public long getNextTimestamps(int count) throws TimestampIOException {
+        assert count>0: "Cannot hand out a non-positive number of timestamps";
+        long firstTS = _timestampCounter.getAndAdd(count);
+        long lastTS = firstTS+count-1;
+        if (lastTS > _maxReservedTimestamp) {
+            reserveThrough(lastTS);
+        }
+        _numTimestampsCreated.addAndGet(count); // JMX metric
+        return firstTS;
+    }
+
+    private void reserveThrough(long timestamp) throws TimestampIOException {
         synchronized(this)  {
-            if (_maxReservedTimestamp > priorMaxReservedTimestamp) return; // some other thread got there first
-            long nextMax = _maxReservedTimestamp + blockSize;
+            if (_maxReservedTimestamp >= timestamp) return; // some other thread got there first
+            /*
+             * Callers may race well past the end of the current block (particularly when asking
+             * for ranges), so reserve as many blocks as it takes to cover the requested timestamp,
+             * with a single write.
+             */
+            long blocks = (timestamp-_maxReservedTimestamp+blockSize-1)/blockSize;
+            long nextMax = _maxReservedTimestamp + blocks*blockSize;
             timestampBlockManager.reserveNextBlock(nextMax);
             _maxReservedTimestamp = nextMax;
-            _numBlocksReserved.incrementAndGet(); // JMX metric
+            _numBlocksReserved.addAndGet(blocks); // JMX metric
             SpliceLogUtils.debug(LOG, "Next timestamp block reserved with max = %s", _maxReservedTimestamp);
         }
 	}
@@ -34,12 +34,28 @@ public class TimestampServer {
     /**
      * Fixed number of bytes in the message we expect to receive from the client.
      */
-    static final int FIXED_MSG_RECEIVED_LENGTH = 2; // 2 byte client id
+    static final int FIXED_MSG_RECEIVED_LENGTH = 2; // 2 byte client id, or the (unsigned) number of timestamps of a batched request
 
     /**
      * Fixed number of bytes in the message we expect to send back to the client.
      */
-    static final int FIXED_MSG_SENT_LENGTH = 10; // 2 byte client id + 8 byte timestamp
+    static final int FIXED_MSG_SENT_LENGTH = 10; // 2 byte client id + 8 byte timestamp (the first of the range, for a batched request)
+
+    /**
+     * A client which can ask for a range of timestamps in a single request opens every connection with two
+     * messages: {@link #BATCH_HANDSHAKE_ID}, then {@link #BATCH_PROTOCOL_VERSION}. A server which does not
+     * know about batched requests answers both with a timestamp, like any other request, and the client
+     * goes on asking for one timestamp at a time. Otherwise the server answers the version with
+     * {@link #BATCH_HANDSHAKE_ACK}, and from then on every request on the connection is a client id followed
+     * by the number of timestamps, and is answered with the first of them.
+     * <p>
+     * The handshake is only looked for at the start of a connection. Old clients number their requests
+     * sequentially, so they never send these two in a row, and the first one is answered as a regular
+     * request anyway.
+     */
+    static final short BATCH_HANDSHAKE_ID = Short.MIN_VALUE;
+    static final short BATCH_PROTOCOL_VERSION = 2;
+    static final long BATCH_HANDSHAKE_ACK = 0l; // never a valid timestamp
 
     private int port;
     private ChannelFactory factory;
@@ -21,6 +21,7 @@ import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -59,23 +60,72 @@ public class TimestampServerHandler extends TimestampBaseHandler {
         assert buf != null;
         ensureReadableBytes(buf, TimestampServer.FIXED_MSG_RECEIVED_LENGTH);
 
-        final short callerId = buf.readShort();
+        final short value = buf.readShort();
         ensureReadableBytes(buf, 0);
 
-        SpliceLogUtils.trace(LOG, "Received timestamp request from client. Caller id = %s", callerId);
-        long nextTimestamp = oracle.getNextTimestamp();
-        assert nextTimestamp > 0;
+        // The handler is shared, so what a connection has negotiated is kept in its own context
+        Connection connection = (Connection) ctx.getAttachment();
+        if (connection == null) {
+            connection = new Connection();
+            ctx.setAttachment(connection);
+        }
+
+        switch (connection.expecting) {
+            case FIRST_REQUEST:
+                // Answered like any other request, in case it comes from an old client which happens to use this id
+                connection.expecting = value == TimestampServer.BATCH_HANDSHAKE_ID ? Expecting.HANDSHAKE_VERSION : Expecting.REQUEST;
+                respond(e.getChannel(), value, 1);
+                break;
+            case HANDSHAKE_VERSION:
+                if (value == TimestampServer.BATCH_PROTOCOL_VERSION) {
+                    SpliceLogUtils.debug(LOG, "Client on %s asks for batches of timestamps", e.getChannel().getRemoteAddress());
+                    connection.expecting = Expecting.BATCH_ID;
+                    write(e.getChannel(), value, TimestampServer.BATCH_HANDSHAKE_ACK);
+                } else {
+                    connection.expecting = Expecting.REQUEST;
+                    respond(e.getChannel(), value, 1);
+                }
+                break;
+            case REQUEST:
+                respond(e.getChannel(), value, 1);
+                break;
+            case BATCH_ID:
+                connection.batchId = value;
+                connection.expecting = Expecting.BATCH_COUNT;
+                break;
+            case BATCH_COUNT:
+                connection.expecting = Expecting.BATCH_ID;
+                int count = value & 0xFFFF;
+                if (count == 0) {
+                    doError("Received request for no timestamps from caller %s", null, connection.batchId);
+                    return;
+                }
+                respond(e.getChannel(), connection.batchId, count);
+                break;
+        }
+
+        super.messageReceived(ctx, e);
+    }
 
+    protected void doError(String message, Throwable t, Object... args) {
+        SpliceLogUtils.error(LOG, message, t, args);
+    }
 
-        //
-        // Respond to the client
-        //
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void respond(Channel channel, short callerId, int count) throws TimestampIOException {
+        SpliceLogUtils.trace(LOG, "Received request for %s timestamps from client. Caller id = %s", count, callerId);
+        long nextTimestamp = oracle.getNextTimestamps(count);
+        assert nextTimestamp > 0;
+        SpliceLogUtils.debug(LOG, "Responding to caller %s with %s timestamps starting at %s", callerId, count, nextTimestamp);
+        write(channel, callerId, nextTimestamp);
+    }
 
+    private void write(Channel channel, final short callerId, long value) {
         ChannelBuffer writeBuf = ChannelBuffers.buffer(TimestampServer.FIXED_MSG_SENT_LENGTH);
         writeBuf.writeShort(callerId);
-        writeBuf.writeLong(nextTimestamp);
-        SpliceLogUtils.debug(LOG, "Responding to caller %s with timestamp %s", callerId, nextTimestamp);
-        ChannelFuture futureResponse = e.getChannel().write(writeBuf); // Could also use Channels.write
+        writeBuf.writeLong(value);
+        ChannelFuture futureResponse = channel.write(writeBuf); // Could also use Channels.write
         futureResponse.addListener(new ChannelFutureListener() {
                                        @Override
                                        public void operationComplete(ChannelFuture cf) throws Exception {
@@ -86,12 +136,18 @@ public class TimestampServerHandler extends TimestampBaseHandler {
                                        }
                                    }
         );
+    }
 
-        super.messageReceived(ctx, e);
+    private enum Expecting {
+        FIRST_REQUEST, HANDSHAKE_VERSION, REQUEST, BATCH_ID, BATCH_COUNT
     }
 
-    protected void doError(String message, Throwable t, Object... args) {
-        SpliceLogUtils.error(LOG, message, t, args);
+    /**
+     * What the next message on a connection is, and the id of the batched request being read.
+     */
+    private static class Connection {
+        private Expecting expecting = Expecting.FIRST_REQUEST;
+        private short batchId;
     }
 
 }
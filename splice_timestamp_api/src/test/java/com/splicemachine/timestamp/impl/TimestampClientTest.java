@@ -0,0 +1,294 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampHostProvider;
+import com.splicemachine.timestamp.api.TimestampIOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for batching timestamp requests, against a server which speaks the wire protocol over a plain socket.
+ */
+public class TimestampClientTest{
+    private static final int TIMEOUT_MS=1000;
+    private static final int NUM_CALLERS=20;
+
+    @Test
+    public void testBatchesCallersWhichArriveWhileARequestIsOutstanding() throws Exception{
+        FakeTimestampServer server=new FakeTimestampServer(true);
+        server.holdFirstRequest();
+        TimestampClient client=new TimestampClient(10*TIMEOUT_MS,server);
+        ExecutorService callers=Executors.newFixedThreadPool(NUM_CALLERS+1);
+        try{
+            List<Future<Long>> timestamps=new ArrayList<>();
+            timestamps.add(callers.submit(nextTimestamp(client)));
+            server.awaitRequests(1);
+            for(int i=0;i<NUM_CALLERS;i++){
+                timestamps.add(callers.submit(nextTimestamp(client)));
+            }
+            //everyone who arrived while the first request was outstanding goes in the next one
+            awaitCallersWaiting(NUM_CALLERS+1);
+            server.releaseFirstRequest();
+
+            assertDistinct(timestamps);
+            Assert.assertEquals(Arrays.asList(1,NUM_CALLERS),server.requests());
+            Assert.assertEquals(2l,client.getNumberTimestampRoundTrips());
+            Assert.assertEquals(NUM_CALLERS+1,client.getNumberTimestampRequests());
+        }finally{
+            callers.shutdownNow();
+            client.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testAsksAnOldServerForOneTimestampAtATime() throws Exception{
+        FakeTimestampServer server=new FakeTimestampServer(false);
+        TimestampClient client=new TimestampClient(10*TIMEOUT_MS,server);
+        ExecutorService callers=Executors.newFixedThreadPool(NUM_CALLERS);
+        try{
+            long first=client.getNextTimestamp();
+            Assert.assertTrue("Timestamps should increase",client.getNextTimestamp()>first);
+
+            List<Future<Long>> timestamps=new ArrayList<>();
+            for(int i=0;i<NUM_CALLERS;i++){
+                timestamps.add(callers.submit(nextTimestamp(client)));
+            }
+            assertDistinct(timestamps);
+            Assert.assertEquals(Collections.nCopies(NUM_CALLERS+2,1),server.requests());
+        }finally{
+            callers.shutdownNow();
+            client.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testAbandonsARequestWhichTimesOut() throws Exception{
+        FakeTimestampServer server=new FakeTimestampServer(true);
+        server.dropFirstRequest();
+        TimestampClient client=new TimestampClient(TIMEOUT_MS,server);
+        try{
+            try{
+                client.getNextTimestamp();
+                Assert.fail("The request was never answered, so the caller should have timed out");
+            }catch(TimestampIOException expected){
+                //the batch is given up on, so that the next caller is not stuck behind it
+            }
+
+            long timestamp=client.getNextTimestamp();
+            Assert.assertTrue(timestamp>0);
+            //by now the server has also answered the abandoned request, which nobody is waiting for any more
+            Assert.assertTrue("Timestamps should increase",client.getNextTimestamp()>timestamp);
+            Assert.assertEquals(Arrays.asList(1,1,1),server.requests());
+        }finally{
+            client.shutdown();
+            server.close();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static Callable<Long> nextTimestamp(final TimestampClient client){
+        return new Callable<Long>(){
+            @Override
+            public Long call() throws Exception{
+                return client.getNextTimestamp();
+            }
+        };
+    }
+
+    private static void assertDistinct(List<Future<Long>> timestamps) throws Exception{
+        Set<Long> seen=new HashSet<>();
+        for(Future<Long> timestamp : timestamps){
+            long ts=timestamp.get(10*TIMEOUT_MS,TimeUnit.MILLISECONDS);
+            Assert.assertTrue("Invalid timestamp "+ts,ts>0);
+            Assert.assertTrue("Timestamp "+ts+" was handed out twice",seen.add(ts));
+        }
+    }
+
+    /*
+     * Waits until the callers are all blocked waiting for their timestamps
+     */
+    private static void awaitCallersWaiting(int numCallers) throws InterruptedException{
+        long deadline=System.currentTimeMillis()+10*TIMEOUT_MS;
+        while(waitingCallers()<numCallers){
+            Assert.assertTrue("Callers never started waiting",System.currentTimeMillis()<deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static int waitingCallers(){
+        int waiting=0;
+        for(Thread thread : Thread.getAllStackTraces().keySet()){
+            if(thread.getState()!=Thread.State.TIMED_WAITING) continue;
+            for(StackTraceElement frame : thread.getStackTrace()){
+                if(frame.getClassName().equals(ClientCallback.class.getName())){
+                    waiting++;
+                    break;
+                }
+            }
+        }
+        return waiting;
+    }
+
+    /*
+     * Speaks the server side of the protocol for a single connection. An old server answers every
+     * two bytes with a timestamp, including the handshake.
+     */
+    private static class FakeTimestampServer implements TimestampHostProvider, Runnable{
+        private final boolean takesBatches;
+        private final ServerSocket serverSocket;
+        private final Thread thread;
+        private final List<Integer> requests=Collections.synchronizedList(new ArrayList<Integer>());
+        private final CountDownLatch firstRequestReleased=new CountDownLatch(1);
+        private volatile boolean holdFirstRequest;
+        private volatile boolean dropFirstRequest;
+        private long nextTimestamp=1000l;
+        private DataOutputStream out;
+        private short droppedId;
+        private long droppedTimestamp;
+
+        FakeTimestampServer(boolean takesBatches) throws IOException{
+            this.takesBatches=takesBatches;
+            this.serverSocket=new ServerSocket(0);
+            this.thread=new Thread(this,"fakeTimestampServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void holdFirstRequest(){
+            holdFirstRequest=true;
+        }
+
+        void releaseFirstRequest(){
+            firstRequestReleased.countDown();
+        }
+
+        void dropFirstRequest(){
+            dropFirstRequest=true;
+        }
+
+        /*
+         * The number of timestamps asked for by each request, not counting the handshake
+         */
+        List<Integer> requests(){
+            synchronized(requests){
+                return new ArrayList<>(requests);
+            }
+        }
+
+        void awaitRequests(int numRequests) throws InterruptedException{
+            long deadline=System.currentTimeMillis()+10*TIMEOUT_MS;
+            while(requests.size()<numRequests){
+                Assert.assertTrue("Server never received the request",System.currentTimeMillis()<deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        @Override
+        public String getHost(){
+            return "localhost";
+        }
+
+        @Override
+        public int getPort(){
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run(){
+            try(Socket socket=serverSocket.accept()){
+                DataInputStream in=new DataInputStream(socket.getInputStream());
+                out=new DataOutputStream(socket.getOutputStream());
+                short first=in.readShort();
+                if(!takesBatches){
+                    respond(first,1,false);
+                    while(true){
+                        short id=in.readShort();
+                        respond(id,1,id!=TimestampServer.BATCH_PROTOCOL_VERSION);
+                    }
+                }
+                Assert.assertEquals(TimestampServer.BATCH_HANDSHAKE_ID,first);
+                respond(first,1,false);
+                Assert.assertEquals(TimestampServer.BATCH_PROTOCOL_VERSION,in.readShort());
+                write(TimestampServer.BATCH_PROTOCOL_VERSION,TimestampServer.BATCH_HANDSHAKE_ACK);
+                while(true){
+                    short id=in.readShort();
+                    respond(id,in.readUnsignedShort(),true);
+                }
+            }catch(EOFException | SocketException closed){
+                //the client has gone away
+            }catch(Exception e){
+                throw new RuntimeException(e);
+            }
+        }
+
+        void close() throws IOException{
+            serverSocket.close();
+        }
+
+        private void respond(short id,int count,boolean isRequest) throws Exception{
+            long timestamp=nextTimestamp;
+            nextTimestamp+=count;
+            if(!isRequest){
+                write(id,timestamp);
+                return;
+            }
+            boolean first=requests.isEmpty();
+            requests.add(count);
+            if(first && holdFirstRequest)
+                Assert.assertTrue(firstRequestReleased.await(10*TIMEOUT_MS,TimeUnit.MILLISECONDS));
+            if(first && dropFirstRequest){
+                droppedId=id;
+                droppedTimestamp=timestamp;
+                return;
+            }
+            write(id,timestamp);
+            if(dropFirstRequest && requests.size()==2){
+                //answer the dropped request late, after the client has given up on it
+                write(droppedId,droppedTimestamp);
+            }
+        }
+
+        private void write(short id,long timestamp) throws IOException{
+            out.writeShort(id);
+            out.writeLong(timestamp);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.collections;
+
+import org.spark_project.guava.base.Preconditions;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe, bounded cache which is keyed by a primitive long.
+ *
+ * The cache is split into a power-of-2 number of stripes, each of which is an open-addressing (linear probing)
+ * hash table over primitive arrays, so a lookup does not allocate (no boxed keys, no linked nodes). Each
+ * stripe is guarded by its own {@link StampedLock}; reads are optimistic, and only fall back to taking the
+ * read lock if a writer modified the stripe while the read was in progress.
+ *
+ * When a stripe is full, an entry is evicted using the CLOCK algorithm: each entry has a reference bit which
+ * is set when it is read, and the clock hand sweeps the stripe, clearing reference bits until it finds an entry
+ * which has not been read since the last sweep. This approximates LRU without having to maintain an access-ordered
+ * list on every read.
+ *
+ * Hit, miss and eviction counts are maintained using {@link LongAdder}s, so that tracking them
+ * does not introduce a shared point of contention.
+ */
+public class ConcurrentLongKeyedCache<T>{
+    /*
+     * A stripe smaller than this doesn't give CLOCK enough room to make good eviction choices,
+     * so we reduce the number of stripes for small caches rather than going below it.
+     */
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe<T>[] stripes;
+    private final int stripeMask;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongKeyedCache(int maxSize,int concurrencyLevel){
+        Preconditions.checkArgument(maxSize>0,"Cannot create a cache with a non-positive size!");
+        int numStripes = nextPowerOf2(Math.max(1,concurrencyLevel));
+        while(numStripes>1 && maxSize/numStripes<MIN_STRIPE_CAPACITY){
+            numStripes>>=1;
+        }
+        int stripeCapacity = (maxSize+numStripes-1)/numStripes;
+
+        this.stripes = new Stripe[numStripes];
+        for(int i=0;i<numStripes;i++){
+            stripes[i] = new Stripe<>(stripeCapacity);
+        }
+        this.stripeMask = numStripes-1;
+        this.maxSize = stripeCapacity*numStripes;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the element attached to the specified key, or {@code null} if no element with
+     * {@code key} is present in the cache
+     */
+    public T get(long key){
+        long h = spread(key);
+        T value = stripeFor(h).get(key,slotHash(h));
+        if(value!=null)
+            hits.increment();
+        else
+            misses.increment();
+        return value;
+    }
+
+    /**
+     * Look up the key without counting towards the hit statistics, for callers which only
+     * want to update an existing entry.
+     *
+     * @param key the key to look up
+     * @return the element attached to the specified key, or {@code null} if no element with
+     * {@code key} is present in the cache
+     */
+    public T getIfPresent(long key){
+        long h = spread(key);
+        return stripeFor(h).get(key,slotHash(h));
+    }
+
+    /**
+     * Determine whether or not the key is present in the cache, without affecting
+     * either the hit statistics or the eviction order.
+     *
+     * @param key the key to look for
+     * @return true if the key is currently present in the cache
+     */
+    public boolean contains(long key){
+        long h = spread(key);
+        return stripeFor(h).contains(key,slotHash(h));
+    }
+
+    /**
+     * Put the specified element in the cache, replacing any element which is already
+     * stored under the same key. If the cache is full, another element will be evicted
+     * to make room.
+     *
+     * @param key the key for the element
+     * @param value the value for the element. Cannot be null
+     */
+    public void put(long key,T value){
+        assert value!=null: "Cannot insert a null value!";
+        long h = spread(key);
+        if(stripeFor(h).put(key,slotHash(h),value))
+            evictions.increment();
+    }
+
+    /**
+     * Remove the element stored under {@code key}, if one exists.
+     *
+     * @param key the key to remove
+     * @return true if an element was removed
+     */
+    public boolean remove(long key){
+        long h = spread(key);
+        return stripeFor(h).remove(key,slotHash(h));
+    }
+
+    /**
+     * Remove all elements from the cache.
+     */
+    public void clear(){
+        for(Stripe<T> stripe:stripes){
+            stripe.clear();
+        }
+    }
+
+    /**
+     * @return an <em>estimate</em> of the number of elements currently held in the cache.
+     */
+    public int size(){
+        int size = 0;
+        for(Stripe<T> stripe:stripes){
+            size+=stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the maximum number of elements which this cache can hold
+     */
+    public int maxSize(){ return maxSize; }
+
+    public long hitCount(){ return hits.sum(); }
+    public long missCount(){ return misses.sum(); }
+    public long requestCount(){ return hits.sum()+misses.sum(); }
+    public long evictionCount(){ return evictions.sum(); }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private Stripe<T> stripeFor(long spreadHash){
+        return stripes[(int)(spreadHash>>>48) & stripeMask];
+    }
+
+    private static long spread(long key){
+        //Fibonacci hashing, so that sequential ids (like timestamps) are scattered
+        return key*0x9E3779B97F4A7C15L;
+    }
+
+    private static int slotHash(long spreadHash){
+        return (int)(spreadHash^(spreadHash>>>29));
+    }
+
+    private static int nextPowerOf2(int value){
+        int s = 1;
+        while(s<value){
+            s<<=1;
+        }
+        return s;
+    }
+
+    private static final class Stripe<T>{
+        private final StampedLock lock = new StampedLock();
+        private final long[] keys;
+        private final Object[] values;
+        private final boolean[] referenced;
+        private final int mask;
+        private final int capacity;
+
+        private volatile int size;
+        private int clockHand;
+
+        Stripe(int capacity){
+            /*
+             * Keep the load factor at or below 0.5, so that probe sequences stay short
+             */
+            int tableSize = nextPowerOf2(capacity*2);
+            this.keys = new long[tableSize];
+            this.values = new Object[tableSize];
+            this.referenced = new boolean[tableSize];
+            this.mask = tableSize-1;
+            this.capacity = capacity;
+        }
+
+        T get(long key,int hash){
+            long stamp = lock.tryOptimisticRead();
+            if(stamp!=0L){
+                T value = find(key,hash,true);
+                if(lock.validate(stamp))
+                    return value;
+            }
+            //a writer got in our way, so read under the lock
+            stamp = lock.readLock();
+            try{
+                return find(key,hash,true);
+            }finally{
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean contains(long key,int hash){
+            long stamp = lock.readLock();
+            try{
+                return find(key,hash,false)!=null;
+            }finally{
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * @return true if an entry had to be evicted to make room
+         */
+        boolean put(long key,int hash,T value){
+            long stamp = lock.writeLock();
+            try{
+                int pos = hash & mask;
+                while(values[pos]!=null){
+                    if(keys[pos]==key){
+                        values[pos] = value;
+                        return false;
+                    }
+                    pos = (pos+1) & mask;
+                }
+                boolean evicted = false;
+                if(size>=capacity){
+                    evict();
+                    evicted = true;
+                    //the eviction may have shifted entries around, so find the free slot again
+                    pos = hash & mask;
+                    while(values[pos]!=null){
+                        pos = (pos+1) & mask;
+                    }
+                }
+                keys[pos] = key;
+                values[pos] = value;
+                referenced[pos] = false;
+                size++;
+                return evicted;
+            }finally{
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long key,int hash){
+            long stamp = lock.writeLock();
+            try{
+                int pos = hash & mask;
+                while(values[pos]!=null){
+                    if(keys[pos]==key){
+                        deleteAt(pos);
+                        return true;
+                    }
+                    pos = (pos+1) & mask;
+                }
+                return false;
+            }finally{
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void clear(){
+            long stamp = lock.writeLock();
+            try{
+                for(int i=0;i<values.length;i++){
+                    values[i] = null;
+                    referenced[i] = false;
+                }
+                size = 0;
+            }finally{
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T find(long key,int hash,boolean markReferenced){
+            long[] k = keys;
+            Object[] v = values;
+            int pos = hash & mask;
+            for(int i=0;i<=mask;i++){
+                Object value = v[pos];
+                if(value==null) return null;
+                if(k[pos]==key){
+                    /*
+                     * This is racy when we are reading optimistically, but the worst case is that
+                     * we give a second chance to the wrong entry, which is harmless.
+                     */
+                    if(markReferenced)
+                        referenced[pos] = true;
+                    return (T)value;
+                }
+                pos = (pos+1) & mask;
+            }
+            return null;
+        }
+
+        private void evict(){
+            /*
+             * Sweep the clock hand until we find an entry which has not been referenced
+             * since we last passed it. This terminates within two sweeps of the table.
+             */
+            while(true){
+                int pos = clockHand;
+                clockHand = (clockHand+1) & mask;
+                if(values[pos]==null) continue;
+                if(referenced[pos]){
+                    referenced[pos] = false;
+                }else{
+                    deleteAt(pos);
+                    return;
+                }
+            }
+        }
+
+        private void deleteAt(int pos){
+            /*
+             * Backward-shift deletion: move any following entries of the same probe
+             * sequence into the hole, so that lookups never need tombstones.
+             */
+            int hole = pos;
+            int next = (pos+1) & mask;
+            while(values[next]!=null){
+                int home = slotHash(spread(keys[next])) & mask;
+                if(((next-home) & mask)>=((next-hole) & mask)){
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    referenced[hole] = referenced[next];
+                    hole = next;
+                }
+                next = (next+1) & mask;
+            }
+            values[hole] = null;
+            referenced[hole] = false;
+            size--;
+        }
+    }
+}
@@ -80,8 +80,24 @@ public class LongStripedSynchronizer<T> {
     }
     @SuppressWarnings("unchecked")
     public T get(long key){
-        int elementPos = smear(Longs.hashCode(key)) & (syncs.length-1);
-        return (T)syncs[elementPos]; //can supress because we fill the elements ourselves
+        return (T)syncs[stripeOf(key)]; //can supress because we fill the elements ourselves
+    }
+
+    /**
+     * @return the position of the stripe which {@code key} belongs to. Callers which need to hold
+     * several stripes at once should acquire them in the order of their positions, so that they
+     * cannot deadlock against each other.
+     */
+    public int stripeOf(long key){
+        return smear(Longs.hashCode(key)) & (syncs.length-1);
+    }
+
+    /**
+     * @return the stripe at {@code position}, as returned by {@link #stripeOf(long)}
+     */
+    @SuppressWarnings("unchecked")
+    public T getStripe(int position){
+        return (T)syncs[position];
     }
 
     /*
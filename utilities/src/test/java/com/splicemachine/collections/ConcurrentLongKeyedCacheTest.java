@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 - 2016 Splice Machine, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.splicemachine.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the ConcurrentLongKeyedCache's correctness in a single thread.
+ */
+public class ConcurrentLongKeyedCacheTest{
+
+    @Test
+    public void testCanPutAndThenFetchFromEmptyCache() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(4,1);
+
+        cache.put(1l,1l);
+
+        Assert.assertEquals("incorrect size estimate!",1,cache.size());
+        Long elem=cache.get(1l);
+        Assert.assertEquals("Incorrect cache fetch!",1l,elem.longValue());
+        Assert.assertEquals("Incorrect hit count!",1l,cache.hitCount());
+    }
+
+    @Test
+    public void testPuttingSameKeyTwiceReplacesEntry() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(4,1);
+
+        cache.put(1l,1l);
+        cache.put(1l,2l);
+
+        Assert.assertEquals("incorrect size estimate!",1,cache.size());
+        Assert.assertEquals("Incorrect cache fetch!",2l,cache.get(1l).longValue());
+    }
+
+    @Test
+    public void testMissingKeyIsCountedAsMiss() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(4,1);
+
+        Assert.assertNull("Found a missing key!",cache.get(1l));
+        Assert.assertFalse("Found a missing key!",cache.contains(1l));
+        Assert.assertEquals("Incorrect miss count!",1l,cache.missCount());
+    }
+
+    @Test
+    public void testEvictsUnreferencedEntriesFirst() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(4,1);
+        for(long i=0;i<4;i++){
+            cache.put(i,i);
+        }
+        //reference everything but 2, so that 2 is the only eviction candidate
+        cache.get(0l);
+        cache.get(1l);
+        cache.get(3l);
+
+        cache.put(4l,4l);
+        Assert.assertEquals("incorrect size estimate!",4,cache.size());
+        Assert.assertEquals("Incorrect eviction count!",1l,cache.evictionCount());
+        Assert.assertFalse("Did not evict the unreferenced entry!",cache.contains(2l));
+        for(long i:new long[]{0l,1l,3l,4l}){
+            Assert.assertTrue("Evicted a referenced entry!",cache.contains(i));
+        }
+    }
+
+    @Test
+    public void testRemove() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(16,1);
+        for(long i=0;i<16;i++){
+            cache.put(i,i);
+        }
+        Assert.assertTrue("Did not remove entry!",cache.remove(5l));
+        Assert.assertFalse("Removed entry twice!",cache.remove(5l));
+        Assert.assertEquals("incorrect size estimate!",15,cache.size());
+        for(long i=0;i<16;i++){
+            if(i==5l) Assert.assertNull("Found removed entry!",cache.get(i));
+            else Assert.assertEquals("Incorrect cache fetch!",i,cache.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testRandomOperationsMatchMap() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=new ConcurrentLongKeyedCache<>(256,4);
+        Map<Long,Long> correct=new HashMap<>();
+        Random random=new Random(0l);
+        for(int i=0;i<100000;i++){
+            long key=random.nextInt(1024);
+            if(random.nextInt(4)==0){
+                cache.remove(key);
+                correct.remove(key);
+            }else{
+                cache.put(key,key+i);
+                correct.put(key,key+i);
+            }
+            Assert.assertTrue("Cache exceeded its maximum size!",cache.size()<=cache.maxSize());
+        }
+        for(long key=0;key<1024;key++){
+            Long value=cache.get(key);
+            if(value!=null)
+                Assert.assertEquals("Incorrect cache fetch!",correct.get(key),value);
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class LongStripedSynchronizerTest {
 
@@ -41,4 +43,17 @@ public class LongStripedSynchronizerTest {
         assertEquals(128, locks.size());
     }
 
+    @Test
+    public void stripePositionsMatchStripes() {
+        // given
+        LongStripedSynchronizer<ReadWriteLock> striped = LongStripedSynchronizer.stripedReadWriteLock(100, false);
+
+        // then
+        for (long i = 0; i < 2000; i++) {
+            int position = striped.stripeOf(i);
+            assertTrue(position >= 0 && position < 128);
+            assertSame(striped.get(i), striped.getStripe(position));
+        }
+    }
+
 }
\ No newline at end of file